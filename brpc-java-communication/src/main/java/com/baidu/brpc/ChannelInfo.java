@@ -22,8 +22,17 @@ import com.baidu.brpc.client.RpcFuture;
 import com.baidu.brpc.client.channel.BrpcChannel;
 import com.baidu.brpc.client.channel.ChannelType;
 import com.baidu.brpc.exceptions.RpcException;
+import com.baidu.brpc.protocol.AttachmentStream;
 import com.baidu.brpc.protocol.Protocol;
 import com.baidu.brpc.protocol.Response;
+import com.baidu.brpc.server.handler.BatchResponseWriter;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import io.netty.channel.Channel;
 import io.netty.util.Attribute;
@@ -45,6 +54,21 @@ public class ChannelInfo {
     private long correlationId;
     private FastFutureStore pendingRpc;
     private DynamicCompositeByteBuf recvBuf = new DynamicCompositeByteBuf(16);
+    // attachment larger than it will be sent in chunks, 0 means never, only used by server
+    private int attachmentChunkSize;
+    // writes responses in batch, only used by server
+    private BatchResponseWriter responseWriter;
+    // bytes of chunked attachment kept before the receiver subscribes, per stream
+    private int attachmentWindowSize = AttachmentStream.DEFAULT_WINDOW_SIZE;
+    // bytes of chunked attachments kept by all streams of the channel
+    private int attachmentConnectionWindowSize = AttachmentStream.DEFAULT_CONNECTION_WINDOW_SIZE;
+    private final AtomicLong attachmentPendingSize = new AtomicLong(0);
+    // attachments being received in chunks in arrival order, key is stream id
+    private Map<Long, AttachmentStream> attachmentStreams;
+    // how many callers are holding this channel, only used by pooled channel
+    private final AtomicInteger borrowedNum = new AtomicInteger(0);
+    // rpc sent on this channel and not finished
+    private final AtomicInteger inFlightNum = new AtomicInteger(0);
 
     public void setProtocol(Protocol protocol) {
         this.protocol = protocol;
@@ -103,10 +127,11 @@ public class ChannelInfo {
      * @param channelType
      */
     public void handleRequestFail(ChannelType channelType, long correlationId) {
-        removeRpcFuture(correlationId);
+        if (removeRpcFuture(correlationId) != null) {
+            decInFlightNum();
+        }
         if (channelType == ChannelType.SHORT_CONNECTION) {
-            channel.close();
-            channelGroup.close();
+            channelGroup.removeChannel(channel);
         } else {
             channelGroup.incFailedNum();
             returnChannelAfterRequest(channelType);
@@ -141,12 +166,101 @@ public class ChannelInfo {
         returnChannelAfterResponse();
     }
 
+    /**
+     * called when a rpc is sent on this client channel.
+     */
+    public void incInFlightNum() {
+        inFlightNum.incrementAndGet();
+        if (channelGroup != null) {
+            channelGroup.incInFlightNum();
+        }
+    }
+
+    /**
+     * called when the response of a rpc sent on this client channel is received or timed out,
+     * whatever the channel type is.
+     */
+    public void decInFlightNum() {
+        inFlightNum.decrementAndGet();
+        if (channelGroup != null) {
+            channelGroup.decInFlightNum();
+        }
+    }
+
     private void returnChannelAfterResponse() {
         if (!protocol.returnChannelBeforeResponse()) {
             channelGroup.returnChannel(channel);
         }
     }
 
+    public synchronized void addAttachmentStream(AttachmentStream attachmentStream) {
+        if (attachmentStreams == null) {
+            attachmentStreams = new LinkedHashMap<Long, AttachmentStream>();
+        }
+        attachmentStreams.put(attachmentStream.getStreamId(), attachmentStream);
+    }
+
+    /**
+     * create and add an attachment stream limited by the windows of the channel.
+     */
+    public AttachmentStream createAttachmentStream(long streamId, long totalSize) {
+        AttachmentStream attachmentStream = new AttachmentStream(
+                streamId, totalSize, attachmentWindowSize, attachmentPendingSize);
+        addAttachmentStream(attachmentStream);
+        return attachmentStream;
+    }
+
+    /**
+     * fail the newest attachment streams which keep chunks,
+     * until the bytes kept by all streams are within the connection window.
+     */
+    public void checkAttachmentWindow() {
+        while (attachmentPendingSize.get() > attachmentConnectionWindowSize) {
+            AttachmentStream newest = null;
+            synchronized (this) {
+                if (attachmentStreams == null) {
+                    return;
+                }
+                for (AttachmentStream stream : attachmentStreams.values()) {
+                    if (stream.getPendingSize() > 0) {
+                        newest = stream;
+                    }
+                }
+                if (newest == null) {
+                    return;
+                }
+                attachmentStreams.remove(newest.getStreamId());
+            }
+            newest.fail(new RpcException(RpcException.SERIALIZATION_EXCEPTION,
+                    "attachment streams of channel exceed window size " + attachmentConnectionWindowSize));
+        }
+    }
+
+    public synchronized AttachmentStream getAttachmentStream(long streamId) {
+        return attachmentStreams == null ? null : attachmentStreams.get(streamId);
+    }
+
+    public synchronized AttachmentStream removeAttachmentStream(long streamId) {
+        return attachmentStreams == null ? null : attachmentStreams.remove(streamId);
+    }
+
+    /**
+     * fail all attachment streams which are not complete when channel is closed
+     */
+    public void failAttachmentStreams(Throwable cause) {
+        List<AttachmentStream> streams;
+        synchronized (this) {
+            if (attachmentStreams == null || attachmentStreams.isEmpty()) {
+                return;
+            }
+            streams = new ArrayList<AttachmentStream>(attachmentStreams.values());
+            attachmentStreams.clear();
+        }
+        for (AttachmentStream stream : streams) {
+            stream.fail(cause);
+        }
+    }
+
     /**
      * channel不可用时或者handler出现异常时处理逻辑
      */
@@ -154,6 +268,7 @@ public class ChannelInfo {
         if (channelGroup != null) {
             channelGroup.removeChannel(channel);
         }
+        failAttachmentStreams(ex);
         // 遍历并删除当前channel下所有RpcFuture
         pendingRpc.traverse(new ChannelErrorStoreWalker(channel, ex));
     }
@@ -2,6 +2,8 @@ package com.baidu.brpc;
 
 import com.baidu.brpc.protocol.ProtocolFactory;
 import com.baidu.brpc.protocol.ProtocolManager;
+import com.baidu.brpc.serialize.Serializer;
+import com.baidu.brpc.serialize.SerializerManager;
 
 import java.util.*;
 
@@ -21,6 +23,7 @@ public class CommunicationSpiManager {
 
     private Object loadLock = new Object();
     private Boolean isLoaded = false;
+    private volatile boolean isSerializerLoaded = false;
 
     /**
      * load all extensions with java spi
@@ -30,6 +33,7 @@ public class CommunicationSpiManager {
             synchronized (loadLock) {
                 if (!isLoaded) {
                     loadProtocol(encoding);
+                    loadSerializer();
                     isLoaded = true;
                 }
             }
@@ -54,4 +58,23 @@ public class CommunicationSpiManager {
         }
     }
 
+    /**
+     * serializers are also loaded when the first rpc method info is created,
+     * which may be earlier than other extensions.
+     */
+    public void loadSerializer() {
+        if (!isSerializerLoaded) {
+            synchronized (loadLock) {
+                if (!isSerializerLoaded) {
+                    SerializerManager serializerManager = SerializerManager.getInstance();
+                    ServiceLoader<Serializer> serializers = ServiceLoader.load(Serializer.class);
+                    for (Serializer serializer : serializers) {
+                        serializerManager.registerSerializer(serializer);
+                    }
+                    isSerializerLoaded = true;
+                }
+            }
+        }
+    }
+
 }
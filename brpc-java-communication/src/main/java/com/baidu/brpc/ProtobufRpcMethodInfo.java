@@ -17,9 +17,13 @@
 package com.baidu.brpc;
 
 import com.baidu.brpc.buffer.DynamicCompositeByteBuf;
+import com.baidu.brpc.protocol.Options;
 import com.baidu.brpc.utils.ProtobufUtils;
 import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.DescriptorProtos;
+import com.google.protobuf.Descriptors;
 import com.google.protobuf.Message;
+import com.google.protobuf.Parser;
 import io.netty.buffer.ByteBuf;
 import lombok.Getter;
 import lombok.Setter;
@@ -31,28 +35,72 @@ import java.lang.reflect.Method;
 @Setter
 @Getter
 public class ProtobufRpcMethodInfo extends RpcMethodInfo {
+	// messages are parsed by parser of default instance, without reflection per call
 	private Message inputInstance;
+	private Parser<? extends Message> inputParser;
+	// kept for compatibility, they are not used to parse messages, use parser instead
+	@Deprecated
 	private Method inputParseFromMethod;
+	@Deprecated
 	private Method inputGetDefaultInstanceMethod;
 
 	private Message outputInstance;
+	private Parser<? extends Message> outputParser;
+	@Deprecated
 	private Method outputParseFromMethod;
+	@Deprecated
 	private Method outputGetDefaultInstanceMethod;
 
 	public ProtobufRpcMethodInfo(Method method) {
 		super(method);
+		this.inputInstance = ProtobufUtils.getDefaultInstance((Class) inputClasses[0]);
+		this.inputParser = inputInstance.getParserForType();
+		this.outputInstance = ProtobufUtils.getDefaultInstance((Class) outputClass);
+		this.outputParser = outputInstance.getParserForType();
 		try {
 			this.inputGetDefaultInstanceMethod = ((Class) inputClasses[0]).getMethod("getDefaultInstance");
-			this.inputInstance = (Message) inputGetDefaultInstanceMethod.invoke(null);
 			this.inputParseFromMethod = ((Class) inputClasses[0]).getMethod("parseFrom", byte[].class);
-
 			this.outputGetDefaultInstanceMethod = ((Class) outputClass).getMethod("getDefaultInstance");
-			this.outputInstance = (Message) outputGetDefaultInstanceMethod.invoke(null);
 			this.outputParseFromMethod = ((Class) outputClass).getMethod("parseFrom", byte[].class);
-
 		} catch (Exception ex) {
 			throw new IllegalArgumentException(ex);
 		}
+		parseCompressOptions();
+	}
+
+	/**
+	 * read request_compression and response_compression of options.proto from the method descriptor,
+	 * if they are not set by {@link com.baidu.brpc.protocol.BrpcMeta}.
+	 */
+	private void parseCompressOptions() {
+		Descriptors.MethodDescriptor methodDescriptor = findMethodDescriptor(inputInstance.getDescriptorForType());
+		if (methodDescriptor == null) {
+			methodDescriptor = findMethodDescriptor(outputInstance.getDescriptorForType());
+		}
+		if (methodDescriptor == null) {
+			return;
+		}
+		DescriptorProtos.MethodOptions methodOptions = methodDescriptor.getOptions();
+		if (requestCompressType < 0 && methodOptions.hasExtension(Options.requestCompression)) {
+			requestCompressType = methodOptions.getExtension(Options.requestCompression).getNumber();
+		}
+		if (responseCompressType < 0 && methodOptions.hasExtension(Options.responseCompression)) {
+			responseCompressType = methodOptions.getExtension(Options.responseCompression).getNumber();
+		}
+	}
+
+	private Descriptors.MethodDescriptor findMethodDescriptor(Descriptors.Descriptor messageDescriptor) {
+		Descriptors.FileDescriptor fileDescriptor = messageDescriptor.getFile();
+		String serviceName = this.serviceName;
+		String packageName = fileDescriptor.getPackage();
+		if (packageName.length() > 0 && serviceName.startsWith(packageName + ".")) {
+			serviceName = serviceName.substring(packageName.length() + 1);
+		}
+		Descriptors.ServiceDescriptor serviceDescriptor = fileDescriptor.findServiceByName(serviceName);
+		if (serviceDescriptor == null) {
+			return null;
+		}
+		return serviceDescriptor.findMethodByName(methodName);
 	}
 
 	@Override
@@ -73,12 +121,8 @@ public class ProtobufRpcMethodInfo extends RpcMethodInfo {
 
 	@Override
 	public Object outputDecode(byte[] output) throws IOException {
-		if (outputParseFromMethod != null && output != null) {
-			try {
-				return outputParseFromMethod.invoke(outputClass, output);
-			} catch (Exception e) {
-				throw new IOException(e.getMessage(), e);
-			}
+		if (output != null) {
+			return outputParser.parseFrom(output);
 		}
 		return null;
 	}
@@ -94,24 +138,18 @@ public class ProtobufRpcMethodInfo extends RpcMethodInfo {
 	}
 
 	public Object outputDecode(InputStream stream) throws IOException {
-		if (outputGetDefaultInstanceMethod != null && stream != null) {
-			try {
-				Message proto = (Message) outputGetDefaultInstanceMethod.invoke(null);
-				proto = proto.newBuilderForType().mergeFrom(stream).build();
-				return proto;
-			} catch (Exception e) {
-				throw new IOException(e.getMessage(), e);
-			}
+		if (stream != null) {
+			return ProtobufUtils.parseFrom(stream, outputInstance);
 		}
 		return null;
 	}
 
 	public Object inputDecode(byte[] input) throws IOException {
-		return inputInstance.getParserForType().parseFrom(input);
+		return inputParser.parseFrom(input);
 	}
 
 	public Object inputDecode(byte[] input, int offset, int len) throws IOException {
-		return inputInstance.getParserForType().parseFrom(input, offset, len);
+		return inputParser.parseFrom(input, offset, len);
 	}
 
 	public Object inputDecode(ByteBuf input) throws IOException {
@@ -123,14 +161,8 @@ public class ProtobufRpcMethodInfo extends RpcMethodInfo {
 	}
 
 	public Object inputDecode(InputStream stream) throws IOException {
-		if (inputGetDefaultInstanceMethod != null && stream != null) {
-			try {
-				Message proto = (Message) inputGetDefaultInstanceMethod.invoke(null);
-				proto = proto.newBuilderForType().mergeFrom(stream).build();
-				return proto;
-			} catch (Exception e) {
-				throw new IOException(e.getMessage(), e);
-			}
+		if (stream != null) {
+			return ProtobufUtils.parseFrom(stream, inputInstance);
 		}
 		return null;
 	}
@@ -6,6 +6,10 @@ import java.net.SocketAddress;
 import java.util.HashMap;
 import java.util.Map;
 
+import com.baidu.brpc.protocol.AttachmentStream;
+import com.baidu.brpc.server.AsyncResponse;
+import com.baidu.brpc.server.handler.ServerWorkTask;
+
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.Channel;
@@ -58,14 +62,30 @@ public class RpcContext {
 
     private Map<String, Object> requestKvAttachment;
     private ByteBuf requestBinaryAttachment;
+    /**
+     * set when request attachment is received in chunks,
+     * the service must subscribe it before return, otherwise it will be cancelled.
+     */
+    private AttachmentStream requestAttachmentStream;
 
     private Map<String, Object> responseKvAttachment;
     private ByteBuf responseBinaryAttachment;
+    /**
+     * set when response attachment is received in chunks,
+     * the application must subscribe or cancel it.
+     */
+    private AttachmentStream responseAttachmentStream;
 
     private Channel channel;
 
     private SocketAddress remoteAddress;
 
+    /**
+     * set by server before calling service method, used by {@link #startAsync()}.
+     */
+    private ServerWorkTask serverWorkTask;
+    private AsyncResponse asyncResponse;
+
     public void reset() {
         readTimeoutMillis = null;
         writeTimeoutMillis = null;
@@ -73,10 +93,31 @@ public class RpcContext {
         requestKvAttachment = null;
         requestBinaryAttachment = null;
         responseBinaryAttachment = null;
+        requestAttachmentStream = null;
+        responseAttachmentStream = null;
         responseKvAttachment = null;
         channel = null;
         remoteAddress = null;
         serviceTag = null;
+        serverWorkTask = null;
+        asyncResponse = null;
+    }
+
+    /**
+     * called in service method to send the response later, see {@link AsyncResponse}.
+     * calling it more than once in the same rpc returns the same instance.
+     *
+     * @throws IllegalStateException if it is not called in service method
+     */
+    @SuppressWarnings("unchecked")
+    public <T> AsyncResponse<T> startAsync() {
+        if (serverWorkTask == null) {
+            throw new IllegalStateException("async response can only be started in service method");
+        }
+        if (asyncResponse == null) {
+            asyncResponse = new AsyncResponse<T>(serverWorkTask);
+        }
+        return asyncResponse;
     }
 
     public void setRequestBinaryAttachment(ByteBuf byteBuf) {
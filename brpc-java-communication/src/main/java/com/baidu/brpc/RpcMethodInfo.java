@@ -17,6 +17,7 @@
 package com.baidu.brpc;
 
 import com.baidu.brpc.buffer.DynamicCompositeByteBuf;
+import com.baidu.brpc.compress.CompressStats;
 import com.baidu.brpc.protocol.nshead.NSHeadMeta;
 import com.baidu.brpc.utils.RpcMetaUtils;
 import com.baidu.brpc.utils.ThreadPool;
@@ -24,8 +25,12 @@ import com.google.protobuf.CodedOutputStream;
 import io.netty.buffer.ByteBuf;
 import lombok.Getter;
 import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import net.sf.cglib.reflect.FastClass;
+import net.sf.cglib.reflect.FastMethod;
 
 import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Type;
 
@@ -35,6 +40,7 @@ import java.lang.reflect.Type;
  */
 @Setter
 @Getter
+@Slf4j
 public class RpcMethodInfo {
 	protected Method method;
 	protected String serviceName;
@@ -45,11 +51,25 @@ public class RpcMethodInfo {
 	// instance of interface which method belongs to
 	protected Object target;
 	protected ThreadPool threadPool;
+	// the method never blocks, so it is executed in io thread
+	protected boolean nonBlocking;
+	// request is decoded when the method is invoked, see com.baidu.brpc.server.LazyDecode
+	protected boolean lazyDecode;
+	// generated invoker of target method, null if it can not be generated
+	protected FastMethod fastMethod;
+	// compress type of request and response set for the method, -1 means not set
+	protected int requestCompressType;
+	protected int responseCompressType;
+	// observed compression ratio of request and response payloads
+	protected CompressStats requestCompressStats = new CompressStats();
+	protected CompressStats responseCompressStats = new CompressStats();
 
 	public RpcMethodInfo(Method method) {
 		RpcMetaUtils.RpcMetaInfo metaInfo = RpcMetaUtils.parseRpcMeta(method);
 		this.serviceName = metaInfo.getServiceName();
 		this.methodName = metaInfo.getMethodName();
+		this.requestCompressType = metaInfo.getRequestCompressType();
+		this.responseCompressType = metaInfo.getResponseCompressType();
 		this.method = method;
 		Type[] inputClasses = method.getGenericParameterTypes();
 		if (inputClasses.length < 0) {
@@ -60,6 +80,37 @@ public class RpcMethodInfo {
 		this.nsHeadMeta = method.getAnnotation(NSHeadMeta.class);
 	}
 
+	public void setTarget(Object target) {
+		this.target = target;
+		this.fastMethod = null;
+		if (target != null && method != null) {
+			try {
+				FastMethod fastMethod = FastClass.create(target.getClass()).getMethod(method);
+				if (fastMethod.getIndex() >= 0) {
+					this.fastMethod = fastMethod;
+				}
+			} catch (Throwable ex) {
+				log.debug("generate invoker for {} failed, use reflection", method, ex);
+			}
+		}
+	}
+
+	/**
+	 * invoke target method at server side, by generated invoker if possible.
+	 *
+	 * @param target service instance
+	 * @param args method arguments
+	 * @return method result
+	 * @throws InvocationTargetException if the method throws exception
+	 * @throws IllegalAccessException if the method is inaccessible
+	 */
+	public Object invoke(Object target, Object[] args) throws InvocationTargetException, IllegalAccessException {
+		if (fastMethod != null && target == this.target) {
+			return fastMethod.invoke(target, args);
+		}
+		return method.invoke(target, args);
+	}
+
 	/**
 	 * encode request at client inside
 	 *
@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.brpc;
+
+import com.baidu.brpc.buffer.DynamicCompositeByteBuf;
+import com.baidu.brpc.serialize.MessageCodec;
+import com.baidu.brpc.serialize.Serializer;
+import com.google.protobuf.CodedOutputStream;
+import io.netty.buffer.ByteBuf;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+
+/**
+ * method info whose request and response are encoded/decoded by a {@link Serializer} loaded from spi.
+ */
+@Setter
+@Getter
+public class SerializerRpcMethodInfo extends RpcMethodInfo {
+	private Serializer serializer;
+	private MessageCodec inputCodec;
+	private MessageCodec outputCodec;
+
+	public SerializerRpcMethodInfo(Method method, Serializer serializer) {
+		super(method);
+		this.serializer = serializer;
+		this.inputCodec = serializer.createCodec(method.getParameterTypes()[0]);
+		this.outputCodec = serializer.createCodec(method.getReturnType());
+	}
+
+	@Override
+	public byte[] inputEncode(Object input) throws IOException {
+		return inputCodec.encode(input);
+	}
+
+	@Override
+	public void inputWriteToStream(Object input, CodedOutputStream stream) throws IOException {
+		stream.writeRawBytes(inputCodec.encode(input));
+	}
+
+	@Override
+	public Object outputDecode(byte[] output) throws IOException {
+		return outputCodec.decode(output, 0, output.length);
+	}
+
+	@Override
+	public Object outputDecode(ByteBuf output) throws IOException {
+		return outputCodec.decode(output);
+	}
+
+	@Override
+	public Object outputDecode(DynamicCompositeByteBuf output) throws IOException {
+		return decode(outputCodec, output);
+	}
+
+	@Override
+	public Object inputDecode(byte[] input) throws IOException {
+		return inputCodec.decode(input, 0, input.length);
+	}
+
+	@Override
+	public Object inputDecode(ByteBuf input) throws IOException {
+		return inputCodec.decode(input);
+	}
+
+	@Override
+	public Object inputDecode(DynamicCompositeByteBuf input) throws IOException {
+		return decode(inputCodec, input);
+	}
+
+	@Override
+	public byte[] outputEncode(Object output) throws IOException {
+		return outputCodec.encode(output);
+	}
+
+	@Override
+	public void outputWriteToStream(Object output, CodedOutputStream stream) throws IOException {
+		stream.writeRawBytes(outputCodec.encode(output));
+	}
+
+	@Override
+	public int getInputSerializedSize(Object input) throws IOException {
+		return inputCodec.getSerializedSize(input);
+	}
+
+	@Override
+	public int getOutputSerializedSize(Object output) throws IOException {
+		return outputCodec.getSerializedSize(output);
+	}
+
+	private static Object decode(MessageCodec codec, DynamicCompositeByteBuf input) throws IOException {
+		ByteBuf byteBuf = input.readRetainedSlice(input.readableBytes());
+		try {
+			return codec.decode(byteBuf);
+		} finally {
+			byteBuf.release();
+		}
+	}
+}
@@ -20,6 +20,7 @@ import io.netty.buffer.ByteBuf;
 import io.netty.buffer.CompositeByteBuf;
 import io.netty.buffer.Unpooled;
 import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.util.ByteProcessor;
 
 import java.nio.ByteOrder;
 import java.util.ArrayDeque;
@@ -38,6 +39,10 @@ import java.util.Iterator;
 public class DynamicCompositeByteBuf {
 	private ArrayDeque<ByteBuf> buffers;
 	private int readableBytes;
+	// total bytes ever added, so that readerPosition can tell how many bytes have been read
+	private long addedBytes;
+	// kept by frame checker between reads of an incomplete frame
+	private Object frameCheckState;
 
 	public DynamicCompositeByteBuf() {
 		this.buffers = new ArrayDeque<ByteBuf>(1);
@@ -58,6 +63,7 @@ public class DynamicCompositeByteBuf {
 		buffers = new ArrayDeque<ByteBuf>(1);
 		buffers.addLast(buf);
 		readableBytes += buf.readableBytes();
+		addedBytes = readableBytes;
 	}
 
 	/**
@@ -74,12 +80,29 @@ public class DynamicCompositeByteBuf {
 			buffers.addLast(bufs[i]);
 			readableBytes += bufs[i].readableBytes();
 		}
+		addedBytes = readableBytes;
 	}
 
 	public int readableBytes() {
 		return readableBytes;
 	}
 
+	/**
+	 * @return total bytes read or skipped since this buffer is created,
+	 * it identifies the frame at the current reader index.
+	 */
+	public long readerPosition() {
+		return addedBytes - readableBytes;
+	}
+
+	public Object getFrameCheckState() {
+		return frameCheckState;
+	}
+
+	public void setFrameCheckState(Object frameCheckState) {
+		this.frameCheckState = frameCheckState;
+	}
+
 	public boolean isEmpty() {
 		return readableBytes == 0;
 	}
@@ -157,6 +180,7 @@ public class DynamicCompositeByteBuf {
 			if (bufLen > 0) {
 				buffers.add(buffer);
 				readableBytes += bufLen;
+				addedBytes += bufLen;
 			}
 		}
 	}
@@ -354,6 +378,81 @@ public class DynamicCompositeByteBuf {
 		return this;
 	}
 
+	/**
+	 * Gets a byte at the given offset from the current {@code readerIndex}
+	 * without modifying the {@code readerIndex} of this buffer.
+	 *
+	 * @throws IndexOutOfBoundsException if {@code this.readableBytes} is less than {@code offset + 1}
+	 */
+	public byte getByte(int offset) {
+		checkReadableBytes0(offset + 1);
+		for (ByteBuf buf : buffers) {
+			int len = buf.readableBytes();
+			if (offset < len) {
+				return buf.getByte(buf.readerIndex() + offset);
+			}
+			offset -= len;
+		}
+		throw new IndexOutOfBoundsException();
+	}
+
+	/**
+	 * Iterates over the specified area of this buffer with the specified {@code processor} in ascending order,
+	 * without modifying the {@code readerIndex} of this buffer.
+	 *
+	 * @return offset from the current {@code readerIndex} of the byte where the processor stops,
+	 * or {@code -1} if the processor iterated to the end of the area.
+	 * @throws IndexOutOfBoundsException if {@code this.readableBytes} is less than {@code offset + length}
+	 */
+	public int forEachByte(int offset, int length, ByteProcessor processor) {
+		checkReadableBytes0(offset + length);
+		int bufStart = 0;
+		for (ByteBuf buf : buffers) {
+			if (length <= 0) {
+				break;
+			}
+			int len = buf.readableBytes();
+			if (offset < bufStart + len) {
+				int start = offset - bufStart;
+				int count = Math.min(len - start, length);
+				int index = buf.forEachByte(buf.readerIndex() + start, count, processor);
+				if (index >= 0) {
+					return bufStart + index - buf.readerIndex();
+				}
+				offset += count;
+				length -= count;
+			}
+			bufStart += len;
+		}
+		return -1;
+	}
+
+	/**
+	 * Gets a 32-bit integer in the Big Endian Byte Order at the given offset from the current {@code readerIndex}
+	 * without modifying the {@code readerIndex} of this buffer.
+	 *
+	 * @throws IndexOutOfBoundsException if {@code this.readableBytes} is less than {@code offset + 4}
+	 */
+	public int getInt(int offset) {
+		checkReadableBytes0(offset + 4);
+		ByteBuf first = buffers.peek();
+		if (first.readableBytes() >= offset + 4) {
+			return first.getInt(first.readerIndex() + offset);
+		}
+		return (getByte(offset) & 0xff) << 24 | (getByte(offset + 1) & 0xff) << 16
+				| (getByte(offset + 2) & 0xff) << 8 | getByte(offset + 3) & 0xff;
+	}
+
+	/**
+	 * Gets a 32-bit integer in the Little Endian Byte Order at the given offset from the current {@code readerIndex}
+	 * without modifying the {@code readerIndex} of this buffer.
+	 *
+	 * @throws IndexOutOfBoundsException if {@code this.readableBytes} is less than {@code offset + 4}
+	 */
+	public int getIntLE(int offset) {
+		return Integer.reverseBytes(getInt(offset));
+	}
+
 	/**
 	 * Gets a byte at the current {@code readerIndex} and increases
 	 * the {@code readerIndex} by {@code 1} in this buffer.
@@ -31,6 +31,7 @@ import com.baidu.brpc.client.channel.BrpcChannel;
 import com.baidu.brpc.client.channel.BrpcChannelFactory;
 import com.baidu.brpc.client.channel.ChannelType;
 import com.baidu.brpc.client.channel.ServiceInstance;
+import com.baidu.brpc.compress.ZstdDictionaryManager;
 import com.baidu.brpc.exceptions.RpcException;
 import com.baidu.brpc.interceptor.ClientInvokeInterceptor;
 import com.baidu.brpc.interceptor.ClientTraceInterceptor;
@@ -45,6 +46,7 @@ import io.netty.channel.ChannelFuture;
 import io.netty.util.Timeout;
 import io.netty.util.Timer;
 import lombok.Getter;
+import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 
 /**
@@ -59,6 +61,9 @@ public class CommunicationClient {
     protected BrpcChannel brpcChannel;
     protected List<Interceptor> interceptors = new ArrayList<Interceptor>();
     private AtomicBoolean stop = new AtomicBoolean(false);
+    // time when the client becomes ready to serve, used for warming up
+    @Setter
+    private volatile long readyTimeMillis;
 
     public CommunicationClient(
             ServiceInstance serviceInstance,
@@ -90,6 +95,8 @@ public class CommunicationClient {
         request.setCorrelationId(rpcFuture.getCorrelationId());
 
         try {
+            // dictionary is shipped according to the selected connection
+            ZstdDictionaryManager.getInstance().attachDictionary(request);
             request.setSendBuf(communicationOptions.getProtocol().encodeRequest(request));
         } catch (Throwable t) {
             throw new RpcException(RpcException.SERIALIZATION_EXCEPTION, t.getMessage(), t);
@@ -105,7 +112,9 @@ public class CommunicationClient {
             // netty will release the send buffer after sent.
             // we retain here, so it can be used when rpc retry.
             request.retain();
+            channelInfo.incInFlightNum();
             ChannelFuture sendFuture = request.getChannel().writeAndFlush(request.getSendBuf());
+            communicationOptions.getProtocol().afterRequestSent(request, sendFuture);
             sendFuture.awaitUninterruptibly(request.getWriteTimeoutMillis());
             if (!sendFuture.isSuccess()) {
                 if (!(sendFuture.cause() instanceof ClosedChannelException)) {
@@ -148,9 +157,8 @@ public class CommunicationClient {
         try {
             channel = brpcChannel.getChannel();
         } catch (NoSuchElementException full) {
-            int maxConnections = brpcChannel.getCurrentMaxConnection() * 2;
-            brpcChannel.updateMaxConnection(maxConnections);
-            String errMsg = String.format("channel pool is exhausted, and double maxTotalConnection,server=%s:%d",
+            String errMsg = String.format("channel pool is exhausted, maxTotalConnection=%d, server=%s:%d",
+                    brpcChannel.getCurrentMaxConnection(),
                     brpcChannel.getServiceInstance().getIp(), brpcChannel.getServiceInstance().getPort());
             log.debug(errMsg);
             throw new RpcException(RpcException.NETWORK_EXCEPTION, errMsg, full);
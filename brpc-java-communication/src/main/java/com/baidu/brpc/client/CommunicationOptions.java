@@ -56,6 +56,8 @@ public class CommunicationOptions {
     // fair load balance will not start, just use random load balance strategy
 //    private float activeInstancesRatioOfFairLoadBalance = 0.5f;
     private int healthyCheckIntervalMillis = 3000;
+    // traffic of a new or recovered instance ramps up linearly in this time, 0 means no warm up
+    private int warmUpMillis = 0;
     // The keep alive
     private boolean keepAlive = true;
     private boolean reuseAddr = true;
@@ -74,6 +76,8 @@ public class CommunicationOptions {
     private int ioThreadNum = Runtime.getRuntime().availableProcessors();
     // threads used for deserialize rpc response and execute the callback
     private int workThreadNum = Runtime.getRuntime().availableProcessors();
+    // run response callbacks in virtual threads instead of work threads, works on jdk 21+
+    private boolean virtualThread = false;
     /**
      * io event type, netty or jdk
      */
@@ -82,11 +86,29 @@ public class CommunicationOptions {
     private int futureBufferSize = 1000000;
     private String encoding = "utf-8";
     private Options.CompressType compressType = Options.CompressType.COMPRESS_TYPE_NONE;
+    // requests smaller than it are sent uncompressed, 0 means no limit
+    private int minCompressSize;
     private ChannelType channelType = ChannelType.POOLED_CONNECTION;
+    // connection num for MULTI_CONNECTION channel type
+    private int multiConnectionNum = 4;
+    // connection select type for MULTI_CONNECTION channel type
+    private int multiConnectionSelectType = BrpcConstants.MULTI_CONNECTION_LEAST_IN_FLIGHT;
+    // max idle connections kept for reuse in SHORT_CONNECTION channel type, 0 means close after each call
+    private int shortConnectionIdleNum;
+    // idle connection of SHORT_CONNECTION channel type is closed after the time
+    private int shortConnectionIdleTimeoutMillis;
+    // send request data in SYN packet (TCP_FASTOPEN_CONNECT), only works with netty epoll
+    private boolean tcpFastOpenConnect;
     private String clientName;
 
     // share worker thread poll and event thread pool between multi RpcClients
     private boolean globalThreadPoolSharing = false;
+    // attachment larger than it is sent to server in chunks, 0 means disabled
+    private int attachmentChunkSize;
+    // bytes of a chunked attachment from server kept before it is subscribed, 0 means the default
+    private int attachmentWindowSize;
+    // bytes of chunked attachments kept by all streams of one connection, 0 means the default
+    private int attachmentConnectionWindowSize;
 
     public CommunicationOptions clone() {
         CommunicationOptions.CommunicationOptionsBuilder builder = CommunicationOptions.builder()
@@ -94,10 +116,17 @@ public class CommunicationOptions {
                 .interceptors(interceptors)
                 .backlog(backlog)
                 .channelType(channelType)
+                .multiConnectionNum(multiConnectionNum)
+                .multiConnectionSelectType(multiConnectionSelectType)
+                .shortConnectionIdleNum(shortConnectionIdleNum)
+                .shortConnectionIdleTimeoutMillis(shortConnectionIdleTimeoutMillis)
+                .tcpFastOpenConnect(tcpFastOpenConnect)
                 .compressType(compressType)
+                .minCompressSize(minCompressSize)
                 .connectTimeoutMillis(connectTimeoutMillis)
                 .encoding(encoding)
                 .healthyCheckIntervalMillis(healthyCheckIntervalMillis)
+                .warmUpMillis(warmUpMillis)
                 .ioThreadNum(ioThreadNum)
                 .keepAlive(keepAlive)
                 .keepAliveTime(keepAliveTime)
@@ -112,9 +141,13 @@ public class CommunicationOptions {
                 .tcpNoDelay(tcpNoDelay)
                 .timeBetweenEvictionRunsMillis(timeBetweenEvictionRunsMillis)
                 .workThreadNum(workThreadNum)
+                .virtualThread(virtualThread)
                 .writeTimeoutMillis(writeTimeoutMillis)
                 .clientName(clientName)
-                .globalThreadPoolSharing(globalThreadPoolSharing);
+                .globalThreadPoolSharing(globalThreadPoolSharing)
+                .attachmentChunkSize(attachmentChunkSize)
+                .attachmentWindowSize(attachmentWindowSize)
+                .attachmentConnectionWindowSize(attachmentConnectionWindowSize);
         return builder.build();
     }
 }
@@ -1,9 +1,7 @@
 package com.baidu.brpc.client;
 
-import com.baidu.brpc.JprotobufRpcMethodInfo;
-import com.baidu.brpc.ProtobufRpcMethodInfo;
 import com.baidu.brpc.RpcMethodInfo;
-import com.baidu.brpc.utils.ProtobufUtils;
+import com.baidu.brpc.serialize.SerializerManager;
 
 import java.lang.reflect.Method;
 import java.util.concurrent.Future;
@@ -48,15 +46,7 @@ public class MethodUtils {
 				}
 			}
 
-			RpcMethodInfo methodInfo;
-			ProtobufUtils.MessageType messageType = ProtobufUtils.getMessageType(syncMethod);
-			if (messageType == ProtobufUtils.MessageType.PROTOBUF) {
-				methodInfo = new ProtobufRpcMethodInfo(syncMethod);
-			} else if (messageType == ProtobufUtils.MessageType.JPROTOBUF) {
-				methodInfo = new JprotobufRpcMethodInfo(syncMethod);
-			} else {
-				methodInfo = new RpcMethodInfo(syncMethod);
-			}
+			RpcMethodInfo methodInfo = SerializerManager.getInstance().createRpcMethodInfo(syncMethod);
 
 			return methodInfo;
 		}
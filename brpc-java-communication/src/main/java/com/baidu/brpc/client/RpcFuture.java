@@ -88,17 +88,27 @@ public class RpcFuture<T> implements AsyncAwareFuture<T> {
         this.response = response;
         this.endTime = System.currentTimeMillis();
 
-        // only long connection need to update channel group
-        if (channelType == ChannelType.SHORT_CONNECTION) {
-            channelInfo.close();
-        } else {
-            if (response != null && (response.getResult() != null || response.isHeartbeat())) {
-                channelInfo.getChannelGroup().updateLatency((int) (endTime - startTime));
-                channelInfo.handleResponseSuccess();
+        try {
+            // only long connection need to update channel group
+            if (channelType == ChannelType.SHORT_CONNECTION) {
+                // connection may be kept for reuse only when the response is received normally
+                if (response != null && response.getException() == null) {
+                    channelInfo.getChannelGroup().returnChannel(channelInfo.getChannel());
+                } else {
+                    channelInfo.close();
+                }
             } else {
-                channelInfo.getChannelGroup().updateLatencyWithReadTimeOut();
-                channelInfo.handleResponseFail();
+                if (response != null && (response.getResult() != null || response.isHeartbeat())) {
+                    channelInfo.getChannelGroup().updateLatency((int) (endTime - startTime));
+                    channelInfo.handleResponseSuccess();
+                } else {
+                    channelInfo.getChannelGroup().updateLatencyWithReadTimeOut();
+                    channelInfo.handleResponseFail();
+                }
             }
+        } finally {
+            // counted in CommunicationClient.execute for every channel type
+            channelInfo.decInFlightNum();
         }
 
         timeout.cancel();
@@ -197,11 +207,15 @@ public class RpcFuture<T> implements AsyncAwareFuture<T> {
             return;
         }
         if (response.getBinaryAttachment() != null
+                || response.getAttachmentStream() != null
                 || response.getKvAttachment() != null) {
             RpcContext rpcContext = RpcContext.getContext();
             if (response.getBinaryAttachment() != null) {
                 rpcContext.setResponseBinaryAttachment(response.getBinaryAttachment());
             }
+            if (response.getAttachmentStream() != null) {
+                rpcContext.setResponseAttachmentStream(response.getAttachmentStream());
+            }
             if (response.getKvAttachment() != null) {
                 rpcContext.setResponseKvAttachment(response.getKvAttachment());
             }
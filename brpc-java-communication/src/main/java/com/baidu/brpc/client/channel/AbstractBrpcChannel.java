@@ -3,6 +3,7 @@
  */
 package com.baidu.brpc.client.channel;
 
+import com.baidu.brpc.ChannelInfo;
 import com.baidu.brpc.RpcMethodInfo;
 import com.baidu.brpc.client.CommunicationOptions;
 import com.baidu.brpc.client.FastFutureStore;
@@ -19,12 +20,15 @@ import io.netty.buffer.ByteBuf;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.GlobalEventExecutor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
 
 import java.net.InetSocketAddress;
 import java.util.Queue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Slf4j
 public abstract class AbstractBrpcChannel implements BrpcChannel {
@@ -32,6 +36,7 @@ public abstract class AbstractBrpcChannel implements BrpcChannel {
     protected CommunicationOptions communicationOptions;
     protected Bootstrap bootstrap;
     protected BootstrapManager bootstrapManager = BootstrapManager.getInstance();
+    protected AtomicInteger inFlightNum = new AtomicInteger(0);
 
     public AbstractBrpcChannel(ServiceInstance serviceInstance,
                                CommunicationOptions communicationOptions) {
@@ -84,6 +89,47 @@ public abstract class AbstractBrpcChannel implements BrpcChannel {
 
     @Override
     public Channel connect() {
+        final String ip = serviceInstance.getIp();
+        final int port = serviceInstance.getPort();
+        ChannelFuture future = connectAsync();
+        future.syncUninterruptibly();
+        if (future.isSuccess()) {
+            return future.channel();
+        } else {
+            // throw exception when connect failed to the connection pool acquirer
+            log.error("connect to {}:{} failed, msg={}", ip, port, future.cause().getMessage());
+            throw new RpcException(future.cause());
+        }
+    }
+
+    /**
+     * connections are created on demand by default, so the channel is always ready.
+     */
+    @Override
+    public Future<Void> prepareConnections() {
+        return GlobalEventExecutor.INSTANCE.newSucceededFuture(null);
+    }
+
+    /**
+     * bind a new connection to this channel group, and apply the options of the connection.
+     */
+    protected ChannelInfo initChannelInfo(Channel channel) {
+        ChannelInfo channelInfo = ChannelInfo.getOrCreateClientChannelInfo(channel);
+        channelInfo.setProtocol(getProtocol());
+        channelInfo.setChannelGroup(this);
+        if (communicationOptions.getAttachmentWindowSize() > 0) {
+            channelInfo.setAttachmentWindowSize(communicationOptions.getAttachmentWindowSize());
+        }
+        if (communicationOptions.getAttachmentConnectionWindowSize() > 0) {
+            channelInfo.setAttachmentConnectionWindowSize(communicationOptions.getAttachmentConnectionWindowSize());
+        }
+        return channelInfo;
+    }
+
+    /**
+     * start connecting without waiting for the result.
+     */
+    protected ChannelFuture connectAsync() {
         final String ip = serviceInstance.getIp();
         final int port = serviceInstance.getPort();
         final ChannelFuture future = bootstrap.connect(new InetSocketAddress(ip, port));
@@ -103,14 +149,7 @@ public abstract class AbstractBrpcChannel implements BrpcChannel {
                 }
             }
         });
-        future.syncUninterruptibly();
-        if (future.isSuccess()) {
-            return future.channel();
-        } else {
-            // throw exception when connect failed to the connection pool acquirer
-            log.error("connect to {}:{} failed, msg={}", ip, port, future.cause().getMessage());
-            throw new RpcException(future.cause());
-        }
+        return future;
     }
 
     @Override
@@ -118,6 +157,21 @@ public abstract class AbstractBrpcChannel implements BrpcChannel {
         return serviceInstance;
     }
 
+    @Override
+    public int getInFlightNum() {
+        return inFlightNum.get();
+    }
+
+    @Override
+    public void incInFlightNum() {
+        inFlightNum.incrementAndGet();
+    }
+
+    @Override
+    public void decInFlightNum() {
+        inFlightNum.decrementAndGet();
+    }
+
     @Override
     public long getFailedNum() {
         return 0;
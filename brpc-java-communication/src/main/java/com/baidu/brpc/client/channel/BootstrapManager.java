@@ -61,6 +61,9 @@ public class BootstrapManager {
         if (communicationOptions.getIoEventType() == BrpcConstants.IO_EVENT_NETTY_EPOLL) {
             bootstrap.channel(EpollSocketChannel.class);
             bootstrap.option(EpollChannelOption.EPOLL_MODE, EpollMode.EDGE_TRIGGERED);
+            if (communicationOptions.isTcpFastOpenConnect()) {
+                bootstrap.option(EpollChannelOption.TCP_FASTOPEN_CONNECT, true);
+            }
         } else {
             bootstrap.channel(NioSocketChannel.class);
         }
@@ -75,7 +78,8 @@ public class BootstrapManager {
         BrpcThreadPoolManager threadPoolManager = BrpcThreadPoolManager.getInstance();
         boolean isSharing = communicationOptions.isGlobalThreadPoolSharing();
         ThreadPool workThreadPool = threadPoolManager.getOrCreateClientWorkThreadPool(
-                serviceName, isSharing, communicationOptions.getWorkThreadNum());
+                serviceName, isSharing, communicationOptions.getWorkThreadNum(),
+                communicationOptions.isVirtualThread());
         ExecutorService exceptionThreadPool = threadPoolManager.getExceptionThreadPool();
         final RpcClientHandler rpcClientHandler = new RpcClientHandler(workThreadPool, exceptionThreadPool);
         final ChannelInitializer<SocketChannel> initializer = new ChannelInitializer<SocketChannel>() {
@@ -6,6 +6,7 @@ package com.baidu.brpc.client.channel;
 
 import com.baidu.brpc.protocol.Protocol;
 import io.netty.channel.Channel;
+import io.netty.util.concurrent.Future;
 
 import java.util.NoSuchElementException;
 import java.util.Queue;
@@ -23,6 +24,13 @@ public interface BrpcChannel {
 
     Channel connect();
 
+    /**
+     * start connecting to the server in background.
+     * The future succeeds when at least one connection is ready,
+     * and fails when all connect attempts failed.
+     */
+    Future<Void> prepareConnections();
+
     ServiceInstance getServiceInstance();
 
     long getFailedNum();
@@ -44,4 +52,13 @@ public interface BrpcChannel {
     int getActiveConnectionNum();
 
     int getIdleConnectionNum();
+
+    /**
+     * rpc sent to the server by all connections and not finished.
+     */
+    int getInFlightNum();
+
+    void incInFlightNum();
+
+    void decInFlightNum();
 }
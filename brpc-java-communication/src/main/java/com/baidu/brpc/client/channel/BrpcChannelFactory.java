@@ -12,6 +12,8 @@ public class BrpcChannelFactory {
             return new BrpcSingleChannel(serviceInstance, communicationOptions);
         } else if (channelType == ChannelType.SHORT_CONNECTION) {
             return new BrpcShortChannel(serviceInstance, communicationOptions);
+        } else if (channelType == ChannelType.MULTI_CONNECTION) {
+            return new BrpcMultiChannel(serviceInstance, communicationOptions);
         } else {
             throw new IllegalArgumentException("channel type is not valid:" + channelType.getName());
         }
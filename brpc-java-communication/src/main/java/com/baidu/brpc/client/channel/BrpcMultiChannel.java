@@ -0,0 +1,328 @@
+/*
+ * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.brpc.client.channel;
+
+import com.baidu.brpc.ChannelInfo;
+import com.baidu.brpc.client.CommunicationOptions;
+import com.baidu.brpc.exceptions.RpcException;
+import com.baidu.brpc.utils.BrpcConstants;
+import com.baidu.brpc.utils.CustomThreadFactory;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.GlobalEventExecutor;
+import io.netty.util.concurrent.Promise;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * BrpcMultiChannel class keeps several persistent connections with one server,
+ * every connection is shared by all requests like {@link BrpcSingleChannel},
+ * so one server can use several io threads and socket buffers without borrowing from a pool.
+ * The connection is selected by least in-flight requests or round-robin.
+ * When no connection is active, all slots are connected in background,
+ * and callers wait for the first one at most connectTimeoutMillis.
+ */
+@Slf4j
+public class BrpcMultiChannel extends AbstractBrpcChannel {
+
+    private static final ExecutorService CONNECTION_SERVICE = Executors.newFixedThreadPool(3, new CustomThreadFactory(
+            "multi-channel-connect-thread"));
+
+    private final AtomicReferenceArray<Channel> channels;
+    // last time of connecting for each slot, avoid busy connecting
+    private final AtomicLongArray lastTryConnectTimes;
+    private final AtomicInteger roundRobinIndex = new AtomicInteger(0);
+    private final boolean leastInFlight;
+    private int connectPeriod;
+    private int connectTimeout;
+    private volatile boolean closed = false;
+    private volatile Future<Void> prepareFuture;
+
+    private AtomicLong failedNum = new AtomicLong(0);
+    private int readTimeOut;
+    private int latencyWindowSize;
+    private Queue<Integer> latencyWindow;
+
+    public static class ReConnectTask implements Runnable {
+        BrpcMultiChannel channelGroup;
+        int index;
+        Channel oldChannel;
+
+        public ReConnectTask(BrpcMultiChannel channelGroup, int index, Channel oldChannel) {
+            this.channelGroup = channelGroup;
+            this.index = index;
+            this.oldChannel = oldChannel;
+        }
+
+        @Override
+        public void run() {
+            if (channelGroup.closed || oldChannel != channelGroup.channels.get(index)) {
+                return;
+            }
+            Channel newChannel = null;
+            try {
+                newChannel = channelGroup.createChannel();
+            } catch (Exception e) {
+                log.info("failed reconnecting");
+            }
+            if (newChannel == null) {
+                return;
+            }
+            if (!channelGroup.channels.compareAndSet(index, oldChannel, newChannel) || channelGroup.closed) {
+                newChannel.close();
+            } else if (oldChannel != null) {
+                oldChannel.close();
+            }
+        }
+    }
+
+    public BrpcMultiChannel(ServiceInstance serviceInstance,
+                            CommunicationOptions communicationOptions) {
+        super(serviceInstance, communicationOptions);
+        int connectionNum = Math.max(communicationOptions.getMultiConnectionNum(), 1);
+        this.channels = new AtomicReferenceArray<Channel>(connectionNum);
+        this.lastTryConnectTimes = new AtomicLongArray(connectionNum);
+        this.leastInFlight = communicationOptions.getMultiConnectionSelectType()
+                == BrpcConstants.MULTI_CONNECTION_LEAST_IN_FLIGHT;
+        this.connectPeriod = communicationOptions.getHealthyCheckIntervalMillis();
+        this.connectTimeout = communicationOptions.getConnectTimeoutMillis();
+        this.readTimeOut = communicationOptions.getReadTimeoutMillis();
+        this.latencyWindowSize = communicationOptions.getLatencyWindowSizeOfFairLoadBalance();
+        this.latencyWindow = new ConcurrentLinkedQueue<Integer>();
+    }
+
+    @Override
+    public Channel getChannel() throws Exception, NoSuchElementException, IllegalStateException {
+        if (closed) {
+            throw new IllegalStateException("channel is closed");
+        }
+        Channel channel = leastInFlight ? selectLeastInFlight() : selectRoundRobin();
+        if (channel != null) {
+            return channel;
+        }
+        // no connection is active, wait for the first connected one without holding the monitor
+        Future<Void> future = prepareConnections();
+        if (!future.awaitUninterruptibly(connectTimeout)) {
+            throw new RpcException(RpcException.NETWORK_EXCEPTION, "connect to "
+                    + serviceInstance.getIp() + ":" + serviceInstance.getPort() + " timeout");
+        }
+        if (!future.isSuccess()) {
+            throw new RpcException(future.cause());
+        }
+        channel = leastInFlight ? selectLeastInFlight() : selectRoundRobin();
+        if (channel == null) {
+            throw new RpcException(RpcException.NETWORK_EXCEPTION, "no active connection");
+        }
+        return channel;
+    }
+
+    @Override
+    public synchronized Future<Void> prepareConnections() {
+        if (closed) {
+            throw new IllegalStateException("channel is closed");
+        }
+        Future<Void> future = prepareFuture;
+        if (future != null && !future.isDone()) {
+            return future;
+        }
+        final Promise<Void> promise = GlobalEventExecutor.INSTANCE.newPromise();
+        prepareFuture = promise;
+        int inactiveNum = channels.length() - countChannel();
+        if (inactiveNum < channels.length()) {
+            promise.trySuccess(null);
+        }
+        final AtomicInteger pendingNum = new AtomicInteger(inactiveNum);
+        long currentTimeMillis = System.currentTimeMillis();
+        for (int i = 0; i < channels.length(); i++) {
+            final int index = i;
+            final Channel oldChannel = channels.get(i);
+            if (isActive(oldChannel)) {
+                continue;
+            }
+            lastTryConnectTimes.set(index, currentTimeMillis);
+            connectAsync().addListener(new ChannelFutureListener() {
+                @Override
+                public void operationComplete(ChannelFuture future) throws Exception {
+                    if (!future.isSuccess()) {
+                        if (pendingNum.decrementAndGet() == 0) {
+                            promise.tryFailure(future.cause());
+                        }
+                        return;
+                    }
+                    Channel newChannel = future.channel();
+                    initChannelInfo(newChannel);
+                    if (!channels.compareAndSet(index, oldChannel, newChannel) || closed) {
+                        newChannel.close();
+                    } else if (oldChannel != null) {
+                        oldChannel.close();
+                    }
+                    promise.trySuccess(null);
+                }
+            });
+        }
+        return promise;
+    }
+
+    @Override
+    public void returnChannel(Channel channel) {
+        // ignore
+    }
+
+    @Override
+    public void removeChannel(Channel channel) {
+        for (int i = 0; i < channels.length(); i++) {
+            if (channels.get(i) == channel) {
+                reconnect(i, channel);
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        for (int i = 0; i < channels.length(); i++) {
+            Channel channel = channels.getAndSet(i, null);
+            if (channel != null) {
+                channel.close();
+            }
+        }
+    }
+
+    @Override
+    public int getCurrentMaxConnection() {
+        return channels.length();
+    }
+
+    @Override
+    public int getActiveConnectionNum() {
+        return countChannel();
+    }
+
+    @Override
+    public int getIdleConnectionNum() {
+        return countChannel();
+    }
+
+    @Override
+    public void updateMaxConnection(int num) {
+        // ignore
+    }
+
+    @Override
+    public long getFailedNum() {
+        return failedNum.get();
+    }
+
+    @Override
+    public void incFailedNum() {
+        failedNum.incrementAndGet();
+    }
+
+    @Override
+    public Queue<Integer> getLatencyWindow() {
+        return latencyWindow;
+    }
+
+    @Override
+    public void updateLatency(int latency) {
+        latencyWindow.add(latency);
+        if (latencyWindow.size() > latencyWindowSize) {
+            latencyWindow.poll();
+        }
+    }
+
+    @Override
+    public void updateLatencyWithReadTimeOut() {
+        updateLatency(readTimeOut);
+    }
+
+    private Channel selectLeastInFlight() {
+        Channel selected = null;
+        int minInFlightNum = Integer.MAX_VALUE;
+        for (int i = 0; i < channels.length(); i++) {
+            Channel channel = channels.get(i);
+            if (!isActive(channel)) {
+                reconnect(i, channel);
+                continue;
+            }
+            int inFlightNum = ChannelInfo.getClientChannelInfo(channel).getInFlightNum().get();
+            if (inFlightNum < minInFlightNum) {
+                minInFlightNum = inFlightNum;
+                selected = channel;
+            }
+        }
+        return selected;
+    }
+
+    private Channel selectRoundRobin() {
+        int length = channels.length();
+        int start = (roundRobinIndex.getAndIncrement() & Integer.MAX_VALUE) % length;
+        for (int i = 0; i < length; i++) {
+            int index = (start + i) % length;
+            Channel channel = channels.get(index);
+            if (isActive(channel)) {
+                return channel;
+            }
+            reconnect(index, channel);
+        }
+        return null;
+    }
+
+    private void reconnect(int index, Channel oldChannel) {
+        long lastTryConnectTime = lastTryConnectTimes.get(index);
+        long currentTimeMillis = System.currentTimeMillis();
+        if (closed || currentTimeMillis - lastTryConnectTime < connectPeriod
+                || !lastTryConnectTimes.compareAndSet(index, lastTryConnectTime, currentTimeMillis)) {
+            return;
+        }
+        if (!CONNECTION_SERVICE.isShutdown()) {
+            CONNECTION_SERVICE.execute(new ReConnectTask(this, index, oldChannel));
+        }
+    }
+
+    private Channel createChannel() {
+        Channel channel = connect();
+        initChannelInfo(channel);
+        return channel;
+    }
+
+    private boolean isActive(Channel channel) {
+        return channel != null && channel.isActive();
+    }
+
+    private int countChannel() {
+        int num = 0;
+        for (int i = 0; i < channels.length(); i++) {
+            if (isActive(channels.get(i))) {
+                num++;
+            }
+        }
+        return num;
+    }
+}
@@ -16,24 +16,62 @@
 
 package com.baidu.brpc.client.channel;
 
+import com.baidu.brpc.ChannelInfo;
 import com.baidu.brpc.client.CommunicationOptions;
+import com.baidu.brpc.exceptions.RpcException;
 import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.GlobalEventExecutor;
+import io.netty.util.concurrent.Promise;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.pool2.impl.GenericObjectPool;
-import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
- * BrpcPooledChannelGroup class keeps fixed connections with one server
+ * BrpcPooledChannelGroup class keeps a bounded number of connections with one server.
+ * <ul>
+ * <li>idle connections are kept in several lock-free lists, one list per io event loop,
+ * and callers start polling from different lists, so they do not contend on one queue.</li>
+ * <li>when no connection is idle, a new connection is created in background,
+ * and if the protocol returns channel before response, the caller shares the least loaded connection,
+ * otherwise it waits for the new or a returned connection at most connectTimeoutMillis.</li>
+ * <li>a channel is in idle lists only when it is not borrowed, so it is never handed out twice.</li>
+ * <li>the number of connections never exceeds maxTotalConnections.</li>
+ * <li>min idle connections are created in background, callers arriving before the first one is ready
+ * wait for it instead of connecting by themselves.</li>
+ * </ul>
  * Created by wenweihu86 on 2017/9/29.
  */
 
 @Slf4j
 public class BrpcPooledChannel extends AbstractBrpcChannel {
-    private GenericObjectPool<Channel> channelFuturePool;
+    private final ConcurrentLinkedQueue<Channel>[] idleChannels;
+    // all connected channels, only modified when channel is created or closed
+    private final List<Channel> allChannels = new CopyOnWriteArrayList<Channel>();
+    // connected channels and channels being connected
+    private final AtomicInteger totalNum = new AtomicInteger(0);
+    private final AtomicInteger waiterNum = new AtomicInteger(0);
+    // ReentrantLock instead of monitor, so waiting virtual threads do not pin carrier threads
+    private final Lock idleLock = new ReentrantLock();
+    private final Condition idleCondition = idleLock.newCondition();
+    private volatile int maxTotal;
+    private final int minIdle;
+    private final int maxWaitMillis;
+    private final boolean shareChannel;
+    private volatile boolean closed = false;
+    private volatile Future<Void> prepareFuture;
     /**
      * failedNum only effect balanceStrategy
      * thread-unsafe type can be accepted, so not use AtomicLong which may affect performance partly
@@ -47,58 +85,145 @@ public class BrpcPooledChannel extends AbstractBrpcChannel {
      */
     private Queue<Integer> latencyWindow;
 
+    private final ChannelFutureListener closeListener = new ChannelFutureListener() {
+        @Override
+        public void operationComplete(ChannelFuture future) throws Exception {
+            removeChannel(future.channel());
+        }
+    };
+
+    @SuppressWarnings("unchecked")
     public BrpcPooledChannel(ServiceInstance serviceInstance,
                              CommunicationOptions communicationOptions) {
         super(serviceInstance, communicationOptions);
         this.readTimeOut = communicationOptions.getReadTimeoutMillis();
         this.latencyWindowSize = communicationOptions.getLatencyWindowSizeOfFairLoadBalance();
         this.latencyWindow = new ConcurrentLinkedQueue<Integer>();
-        GenericObjectPoolConfig conf = new GenericObjectPoolConfig();
+        this.maxTotal = Math.max(communicationOptions.getMaxTotalConnections(), 1);
+        this.minIdle = Math.min(communicationOptions.getMinIdleConnections(), maxTotal);
         // Maximum waiting time, when you need to borrow a connection, the maximum waiting time,
-        // if the time is exceeded, throw an exception, -1 is no time limit
-        conf.setMaxWaitMillis(communicationOptions.getConnectTimeoutMillis());
-        conf.setMaxTotal(communicationOptions.getMaxTotalConnections());
-        conf.setMaxIdle(communicationOptions.getMaxTotalConnections());
-        conf.setMinIdle(communicationOptions.getMinIdleConnections());
-        // Connect test when idle, start asynchronous evict thread for failure detection
-        conf.setTestWhileIdle(true);
-        // Maximum time for connection idle, testWhileIdle needs to be true
-        conf.setTimeBetweenEvictionRunsMillis(communicationOptions.getTimeBetweenEvictionRunsMillis());
-        channelFuturePool = new GenericObjectPool<Channel>(new ChannelPooledObjectFactory(
-                this, serviceInstance.getIp(), serviceInstance.getPort()), conf);
-        try {
-            channelFuturePool.preparePool();
-        } catch (Exception ex) {
-            log.warn("init min idle object pool failed");
+        // if the time is exceeded, throw an exception
+        this.maxWaitMillis = communicationOptions.getConnectTimeoutMillis();
+        this.shareChannel = communicationOptions.getProtocol() != null
+                && communicationOptions.getProtocol().returnChannelBeforeResponse();
+        int listNum = Math.max(Math.min(communicationOptions.getIoThreadNum(), maxTotal), 1);
+        this.idleChannels = new ConcurrentLinkedQueue[listNum];
+        for (int i = 0; i < listNum; i++) {
+            idleChannels[i] = new ConcurrentLinkedQueue<Channel>();
+        }
+        if (minIdle > 0) {
+            prepareConnections();
         }
     }
 
+    @Override
+    public synchronized Future<Void> prepareConnections() {
+        Future<Void> future = prepareFuture;
+        if (future != null && !future.isDone()) {
+            return future;
+        }
+        final Promise<Void> promise = GlobalEventExecutor.INSTANCE.newPromise();
+        prepareFuture = promise;
+        int num = Math.max(minIdle - totalNum.get(), allChannels.isEmpty() ? 1 : 0);
+        List<ChannelFuture> connectFutures = new ArrayList<ChannelFuture>(num);
+        for (int i = 0; i < num; i++) {
+            ChannelFuture connectFuture = createChannelAsync();
+            if (connectFuture == null) {
+                break;
+            }
+            connectFutures.add(connectFuture);
+        }
+        if (!allChannels.isEmpty()) {
+            promise.trySuccess(null);
+        } else if (connectFutures.isEmpty()) {
+            promise.tryFailure(new IllegalStateException("no connection can be created"));
+        }
+        final AtomicInteger pendingNum = new AtomicInteger(connectFutures.size());
+        ChannelFutureListener listener = new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) throws Exception {
+                if (future.isSuccess()) {
+                    promise.trySuccess(null);
+                } else if (pendingNum.decrementAndGet() == 0) {
+                    promise.tryFailure(future.cause());
+                }
+            }
+        };
+        for (ChannelFuture connectFuture : connectFutures) {
+            connectFuture.addListener(listener);
+        }
+        return promise;
+    }
+
     @Override
     public Channel getChannel() throws Exception, NoSuchElementException, IllegalStateException {
-        return channelFuturePool.borrowObject();
+        if (closed) {
+            throw new IllegalStateException("channel pool is closed");
+        }
+        Channel channel = pollIdleChannel();
+        if (channel != null) {
+            return channel;
+        }
+        Future<Void> future = prepareFuture;
+        if (future != null && !future.isDone()) {
+            future.awaitUninterruptibly(maxWaitMillis);
+            channel = pollIdleChannel();
+            if (channel != null) {
+                return channel;
+            }
+        }
+        ChannelFuture connectFuture = createChannelAsync();
+        if (shareChannel) {
+            channel = borrowLeastLoadedChannel();
+            if (channel != null) {
+                return channel;
+            }
+        }
+        return waitIdleChannel(connectFuture);
     }
 
     @Override
     public void returnChannel(Channel channel) {
-        try {
-            channelFuturePool.returnObject(channel);
-        } catch (Exception e) {
-            log.debug("return channel failed:{}", e.getMessage());
+        ChannelInfo channelInfo = ChannelInfo.getClientChannelInfo(channel);
+        if (channelInfo == null) {
+            return;
+        }
+        int borrowedNum = channelInfo.getBorrowedNum().decrementAndGet();
+        if (borrowedNum == 0) {
+            if (channel.isActive() && !closed) {
+                offerIdleChannel(channel);
+            }
+        } else if (borrowedNum < 0) {
+            // returned more than once
+            channelInfo.getBorrowedNum().compareAndSet(borrowedNum, 0);
         }
     }
 
     @Override
     public void removeChannel(Channel channel) {
-        try {
-            channelFuturePool.invalidateObject(channel);
-        } catch (Exception e) {
-            log.debug("remove channel failed:{}", e.getMessage());
+        if (allChannels.remove(channel)) {
+            totalNum.decrementAndGet();
+            if (channel.isOpen()) {
+                channel.close();
+            }
+            // keep min idle connections
+            if (!closed && totalNum.get() < minIdle) {
+                createChannelAsync();
+            }
         }
     }
 
     @Override
     public void close() {
-        channelFuturePool.close();
+        closed = true;
+        for (Channel channel : allChannels) {
+            channel.close();
+        }
+        allChannels.clear();
+        for (Queue<Channel> queue : idleChannels) {
+            queue.clear();
+        }
+        signalIdleWaiters();
     }
 
     @Override
@@ -124,28 +249,33 @@ public class BrpcPooledChannel extends AbstractBrpcChannel {
         }
     }
 
-
     @Override
     public void updateMaxConnection(int num) {
-
-        channelFuturePool.setMaxTotal(num);
-        channelFuturePool.setMaxIdle(num);
-
+        if (num > 0) {
+            this.maxTotal = num;
+        }
     }
 
     @Override
     public int getCurrentMaxConnection() {
-        return channelFuturePool.getMaxTotal();
+        return maxTotal;
     }
 
     @Override
     public int getActiveConnectionNum() {
-        return channelFuturePool.getNumActive();
+        int num = 0;
+        for (Channel channel : allChannels) {
+            ChannelInfo channelInfo = ChannelInfo.getClientChannelInfo(channel);
+            if (channelInfo != null && channelInfo.getBorrowedNum().get() > 0) {
+                num++;
+            }
+        }
+        return num;
     }
 
     @Override
     public int getIdleConnectionNum() {
-        return channelFuturePool.getNumIdle();
+        return allChannels.size() - getActiveConnectionNum();
     }
 
     @Override
@@ -153,4 +283,169 @@ public class BrpcPooledChannel extends AbstractBrpcChannel {
         updateLatency(readTimeOut);
     }
 
+    private Channel pollIdleChannel() {
+        int listNum = idleChannels.length;
+        int start = (int) (Thread.currentThread().getId() % listNum);
+        for (int i = 0; i < listNum; i++) {
+            Queue<Channel> queue = idleChannels[(start + i) % listNum];
+            Channel channel;
+            while ((channel = queue.poll()) != null) {
+                if (!channel.isActive()) {
+                    removeChannel(channel);
+                    continue;
+                }
+                // the channel may be shared by other callers after it was put into idle list
+                if (ChannelInfo.getClientChannelInfo(channel).getBorrowedNum().compareAndSet(0, 1)) {
+                    return channel;
+                }
+            }
+        }
+        return null;
+    }
+
+    private void offerIdleChannel(Channel channel) {
+        int index = (channel.eventLoop().hashCode() & Integer.MAX_VALUE) % idleChannels.length;
+        idleChannels[index].offer(channel);
+        if (waiterNum.get() > 0) {
+            signalIdleWaiters();
+        }
+    }
+
+    private void signalIdleWaiters() {
+        idleLock.lock();
+        try {
+            idleCondition.signalAll();
+        } finally {
+            idleLock.unlock();
+        }
+    }
+
+    /**
+     * share the least loaded borrowed channel.
+     * idle channels, whose borrowed num is 0, are only taken from idle lists,
+     * so a channel is never in idle list while it is borrowed.
+     */
+    private Channel borrowLeastLoadedChannel() {
+        while (true) {
+            Channel leastLoaded = null;
+            ChannelInfo leastLoadedInfo = null;
+            int minBorrowedNum = Integer.MAX_VALUE;
+            for (Channel channel : allChannels) {
+                ChannelInfo channelInfo = ChannelInfo.getClientChannelInfo(channel);
+                if (channelInfo == null || !channel.isActive()) {
+                    continue;
+                }
+                int borrowedNum = channelInfo.getBorrowedNum().get();
+                if (borrowedNum > 0 && borrowedNum < minBorrowedNum) {
+                    minBorrowedNum = borrowedNum;
+                    leastLoaded = channel;
+                    leastLoadedInfo = channelInfo;
+                }
+            }
+            if (leastLoaded == null) {
+                return null;
+            }
+            if (leastLoadedInfo.getBorrowedNum().compareAndSet(minBorrowedNum, minBorrowedNum + 1)) {
+                return leastLoaded;
+            }
+        }
+    }
+
+    /**
+     * wait for a returned or newly connected channel at most maxWaitMillis.
+     *
+     * @param connectFuture connection created for this caller, null if the pool is full
+     */
+    private Channel waitIdleChannel(ChannelFuture connectFuture) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + maxWaitMillis;
+        waiterNum.incrementAndGet();
+        try {
+            while (!closed) {
+                Channel channel;
+                long waitMillis = deadline - System.currentTimeMillis();
+                idleLock.lock();
+                try {
+                    channel = pollIdleChannel();
+                    if (channel == null && connectFuture != null
+                            && connectFuture.isDone() && !connectFuture.isSuccess()) {
+                        throw new RpcException(connectFuture.cause());
+                    }
+                    if (channel == null && waitMillis > 0) {
+                        idleCondition.await(waitMillis, TimeUnit.MILLISECONDS);
+                    }
+                } finally {
+                    idleLock.unlock();
+                }
+                if (channel == null) {
+                    channel = pollIdleChannel();
+                }
+                if (channel != null) {
+                    return channel;
+                }
+                if (System.currentTimeMillis() >= deadline) {
+                    throw new NoSuchElementException("Timeout waiting for idle channel");
+                }
+            }
+            throw new IllegalStateException("channel pool is closed");
+        } finally {
+            waiterNum.decrementAndGet();
+        }
+    }
+
+    private boolean reserve() {
+        while (true) {
+            int num = totalNum.get();
+            if (num >= maxTotal) {
+                return false;
+            }
+            if (totalNum.compareAndSet(num, num + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * connect in background, the channel is put into idle list when connected.
+     *
+     * @return null if there are already maxTotal connections or the pool is closed
+     */
+    private ChannelFuture createChannelAsync() {
+        if (closed || !reserve()) {
+            return null;
+        }
+        ChannelFuture future;
+        try {
+            future = connectAsync();
+        } catch (RuntimeException ex) {
+            totalNum.decrementAndGet();
+            log.debug("create channel failed:{}", ex.getMessage());
+            return null;
+        }
+        future.addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) throws Exception {
+                if (future.isSuccess()) {
+                    addChannel(future.channel());
+                    offerIdleChannel(future.channel());
+                } else {
+                    totalNum.decrementAndGet();
+                    // wake up the caller waiting for this connection
+                    if (waiterNum.get() > 0) {
+                        signalIdleWaiters();
+                    }
+                }
+            }
+        });
+        return future;
+    }
+
+    private void addChannel(Channel channel) {
+        initChannelInfo(channel);
+        allChannels.add(channel);
+        channel.closeFuture().addListener(closeListener);
+        if (closed) {
+            removeChannel(channel);
+        }
+    }
+
 }
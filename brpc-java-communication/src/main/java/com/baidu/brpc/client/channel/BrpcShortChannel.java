@@ -15,34 +15,91 @@
  */
 package com.baidu.brpc.client.channel;
 
-import com.baidu.brpc.ChannelInfo;
 import com.baidu.brpc.client.CommunicationOptions;
 import io.netty.channel.Channel;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
 
 /**
  * BrpcShortChannel build single & short connection with server
- * and channel will be closed by brpc after communication with server
+ * and channel will be closed by brpc after communication with server.
+ * If shortConnectionIdleNum is set, a connection whose response is received
+ * is kept idle for shortConnectionIdleTimeoutMillis and reused by the next call,
+ * like http keep-alive, so a connection is still used by only one call at a time.
  */
 public class BrpcShortChannel extends AbstractBrpcChannel {
 
+    private static class IdleChannel {
+        Channel channel;
+
+        IdleChannel(Channel channel) {
+            this.channel = channel;
+        }
+    }
+
+    private final int maxIdleNum;
+    private final int idleTimeoutMillis;
+    // most recently returned connection is at the tail
+    private final Deque<IdleChannel> idleChannels = new ArrayDeque<IdleChannel>();
+    private volatile boolean closed = false;
+
     public BrpcShortChannel(ServiceInstance instance,
                             CommunicationOptions communicationOptions) {
         super(instance, communicationOptions);
+        if (communicationOptions.getShortConnectionIdleTimeoutMillis() > 0) {
+            this.maxIdleNum = communicationOptions.getShortConnectionIdleNum();
+        } else {
+            this.maxIdleNum = 0;
+        }
+        this.idleTimeoutMillis = communicationOptions.getShortConnectionIdleTimeoutMillis();
     }
 
     @Override
     public Channel getChannel() throws Exception, NoSuchElementException, IllegalStateException {
-        Channel channel = connect();
-        ChannelInfo channelInfo = ChannelInfo.getOrCreateClientChannelInfo(channel);
-        channelInfo.setProtocol(getProtocol());
-        channelInfo.setChannelGroup(this);
+        Channel channel = pollIdleChannel();
+        if (channel != null) {
+            return channel;
+        }
+        channel = connect();
+        initChannelInfo(channel);
         return channel;
     }
 
+    /**
+     * called when the response is received, the channel is kept for reuse or closed.
+     */
     @Override
-    public void returnChannel(Channel channel) {
+    public void returnChannel(final Channel channel) {
+        if (maxIdleNum <= 0 || closed || !channel.isActive()) {
+            channel.close();
+            return;
+        }
+        final IdleChannel idleChannel = new IdleChannel(channel);
+        IdleChannel evicted = null;
+        synchronized (idleChannels) {
+            if (idleChannels.size() >= maxIdleNum) {
+                evicted = idleChannels.pollFirst();
+            }
+            idleChannels.offerLast(idleChannel);
+        }
+        if (evicted != null) {
+            evicted.channel.close();
+        }
+        channel.eventLoop().schedule(new Runnable() {
+            @Override
+            public void run() {
+                boolean expired;
+                synchronized (idleChannels) {
+                    expired = idleChannels.remove(idleChannel);
+                }
+                if (expired) {
+                    channel.close();
+                }
+            }
+        }, idleTimeoutMillis, TimeUnit.MILLISECONDS);
     }
 
     @Override
@@ -52,6 +109,13 @@ public class BrpcShortChannel extends AbstractBrpcChannel {
 
     @Override
     public void close() {
+        closed = true;
+        synchronized (idleChannels) {
+            for (IdleChannel idleChannel : idleChannels) {
+                idleChannel.channel.close();
+            }
+            idleChannels.clear();
+        }
     }
 
     @Override
@@ -70,7 +134,28 @@ public class BrpcShortChannel extends AbstractBrpcChannel {
 
     @Override
     public int getIdleConnectionNum() {
-        return 0;
+        synchronized (idleChannels) {
+            return idleChannels.size();
+        }
+    }
+
+    private Channel pollIdleChannel() {
+        if (maxIdleNum <= 0) {
+            return null;
+        }
+        while (true) {
+            IdleChannel idleChannel;
+            synchronized (idleChannels) {
+                idleChannel = idleChannels.pollLast();
+            }
+            if (idleChannel == null) {
+                return null;
+            }
+            if (idleChannel.channel.isActive()) {
+                return idleChannel.channel;
+            }
+            idleChannel.channel.close();
+        }
     }
 
 }
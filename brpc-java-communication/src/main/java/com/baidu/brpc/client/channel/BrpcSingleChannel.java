@@ -1,9 +1,14 @@
 package com.baidu.brpc.client.channel;
 
-import com.baidu.brpc.ChannelInfo;
 import com.baidu.brpc.client.CommunicationOptions;
+import com.baidu.brpc.exceptions.RpcException;
 import com.baidu.brpc.utils.CustomThreadFactory;
 import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.GlobalEventExecutor;
+import io.netty.util.concurrent.Promise;
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.NoSuchElementException;
@@ -15,7 +20,9 @@ import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * BrpcSingleChannel class keeps single persistent connection with one server
+ * BrpcSingleChannel class keeps single persistent connection with one server.
+ * Connecting is asynchronous, callers arriving while the connection is not ready
+ * share one connect attempt and wait for it at most connectTimeoutMillis.
  */
 @Slf4j
 public class BrpcSingleChannel extends AbstractBrpcChannel {
@@ -23,10 +30,13 @@ public class BrpcSingleChannel extends AbstractBrpcChannel {
     private static final int RETRY_THRESHOLD = 2;
 
     private volatile Channel channel;
+    private volatile Promise<Void> connectPromise;
+    private volatile boolean closed = false;
 
     private volatile Long lastTryConnectTime = 0L;
     private AtomicInteger retryCount = new AtomicInteger(0);
     private int connectPeriod;
+    private int connectTimeout;
 
     private AtomicLong failedNum = new AtomicLong(0);
     private int readTimeOut;
@@ -48,33 +58,10 @@ public class BrpcSingleChannel extends AbstractBrpcChannel {
 
         @Override
         public void run() {
-            if (oldChannel != channelGroup.channel) {
+            if (channelGroup.closed || oldChannel != channelGroup.channel) {
                 return;
             }
-            // avoid busy connecting
-            if (System.currentTimeMillis() - channelGroup.lastTryConnectTime < channelGroup.connectPeriod
-                    && channelGroup.retryCount.get() >= RETRY_THRESHOLD) {
-                return;
-            }
-            synchronized (channelGroup) {
-                if (oldChannel != channelGroup.channel) {
-                    return;
-                }
-                Channel newChannel = null;
-                try {
-                    newChannel = channelGroup.createChannel(
-                            channelGroup.getServiceInstance().getIp(),
-                            channelGroup.getServiceInstance().getPort());
-                } catch (Exception e) {
-                    log.info("failed reconnecting");
-                }
-                if (newChannel != null) {
-                    channelGroup.updateChannel(newChannel);
-                    if (oldChannel != null) {
-                        oldChannel.close();
-                    }
-                }
-            }
+            channelGroup.connectAsyncOnce();
         }
     }
 
@@ -82,6 +69,7 @@ public class BrpcSingleChannel extends AbstractBrpcChannel {
                              CommunicationOptions communicationOptions) {
         super(serviceInstance, communicationOptions);
         this.connectPeriod = communicationOptions.getHealthyCheckIntervalMillis();
+        this.connectTimeout = communicationOptions.getConnectTimeoutMillis();
         this.readTimeOut = communicationOptions.getReadTimeoutMillis();
         this.latencyWindowSize = communicationOptions.getLatencyWindowSizeOfFairLoadBalance();
         this.latencyWindow = new ConcurrentLinkedQueue<Integer>();
@@ -89,16 +77,34 @@ public class BrpcSingleChannel extends AbstractBrpcChannel {
 
     @Override
     public Channel getChannel() throws Exception, NoSuchElementException, IllegalStateException {
-        if (isNonActive(channel)) {
-            synchronized (this) {
-                if (isNonActive(channel)) {
-                    channel = createChannel(serviceInstance.getIp(), serviceInstance.getPort());
-                }
-            }
+        Channel current = channel;
+        if (isActive(current)) {
+            return current;
+        }
+        Future<Void> future = connectAsyncOnce();
+        if (future == null) {
+            return null;
+        }
+        if (!future.awaitUninterruptibly(connectTimeout)) {
+            throw new RpcException(RpcException.NETWORK_EXCEPTION, "connect to "
+                    + serviceInstance.getIp() + ":" + serviceInstance.getPort() + " timeout");
+        }
+        if (!future.isSuccess()) {
+            throw new RpcException(future.cause());
         }
         return channel;
     }
 
+    @Override
+    public Future<Void> prepareConnections() {
+        Future<Void> future = connectAsyncOnce();
+        if (future == null) {
+            return GlobalEventExecutor.INSTANCE.newFailedFuture(new RpcException(RpcException.NETWORK_EXCEPTION,
+                    "connect to " + serviceInstance.getIp() + ":" + serviceInstance.getPort() + " too frequently"));
+        }
+        return future;
+    }
+
     @Override
     public void removeChannel(Channel channel) {
         if (channel != this.channel) {
@@ -120,20 +126,58 @@ public class BrpcSingleChannel extends AbstractBrpcChannel {
         return new ReConnectTask(this, oldChannel);
     }
 
-    private Channel createChannel(String ip, int port) {
-        long currentTimeMillis = System.currentTimeMillis();
+    /**
+     * start connecting if no connect attempt is in progress,
+     * the monitor is only held to start connecting, never during waiting.
+     *
+     * @return the shared connect future, or null if connecting too frequently
+     */
+    private synchronized Future<Void> connectAsyncOnce() {
+        if (closed) {
+            throw new IllegalStateException("channel is closed");
+        }
+        if (isActive(channel)) {
+            return GlobalEventExecutor.INSTANCE.newSucceededFuture(null);
+        }
+        Promise<Void> promise = connectPromise;
+        if (promise != null && !promise.isDone()) {
+            return promise;
+        }
+        final long currentTimeMillis = System.currentTimeMillis();
+        // avoid busy connecting
         if (currentTimeMillis - lastTryConnectTime < connectPeriod
                 && retryCount.getAndIncrement() >= RETRY_THRESHOLD) {
             return null;
-        } else {
-            if (currentTimeMillis - lastTryConnectTime >= connectPeriod) {
-                refreshConnectionState(currentTimeMillis, 1);
-            }
-            Channel channel;
-            channel = doCreateChannel(ip, port);
-            refreshConnectionState(currentTimeMillis, 0);
-            return channel;
         }
+        if (currentTimeMillis - lastTryConnectTime >= connectPeriod) {
+            refreshConnectionState(currentTimeMillis, 1);
+        }
+        final Promise<Void> newPromise = GlobalEventExecutor.INSTANCE.newPromise();
+        connectPromise = newPromise;
+        connectAsync().addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) throws Exception {
+                if (!future.isSuccess()) {
+                    newPromise.tryFailure(future.cause());
+                    return;
+                }
+                Channel newChannel = future.channel();
+                if (closed) {
+                    newChannel.close();
+                    newPromise.tryFailure(new IllegalStateException("channel is closed"));
+                    return;
+                }
+                initChannelInfo(newChannel);
+                Channel oldChannel = channel;
+                updateChannel(newChannel);
+                if (oldChannel != null && oldChannel != newChannel) {
+                    oldChannel.close();
+                }
+                refreshConnectionState(currentTimeMillis, 0);
+                newPromise.trySuccess(null);
+            }
+        });
+        return newPromise;
     }
 
     private void refreshConnectionState(long currentTimeMillis, int retryCount) {
@@ -141,16 +185,9 @@ public class BrpcSingleChannel extends AbstractBrpcChannel {
         lastTryConnectTime = currentTimeMillis;
     }
 
-    private Channel doCreateChannel(String ip, int port) {
-        Channel channel = connect();
-        ChannelInfo channelInfo = ChannelInfo.getOrCreateClientChannelInfo(channel);
-        channelInfo.setProtocol(getProtocol());
-        channelInfo.setChannelGroup(this);
-        return channel;
-    }
-
     @Override
     public void close() {
+        closed = true;
         if (channel != null) {
             channel.close();
             channel = null;
@@ -186,10 +223,6 @@ public class BrpcSingleChannel extends AbstractBrpcChannel {
         return channel != null && channel.isActive();
     }
 
-    private boolean isNonActive(Channel channel) {
-        return !isActive(channel);
-    }
-
     private int countChannel() {
         return isActive(channel) ? 1 : 0;
     }
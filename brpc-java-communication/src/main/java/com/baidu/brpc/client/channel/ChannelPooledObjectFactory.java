@@ -26,7 +26,11 @@ import org.apache.commons.pool2.impl.DefaultPooledObject;
 /**
  * Channel pool for the rpc client.
  * Base on apache.commons.pool.
+ *
+ * @deprecated {@link BrpcPooledChannel} keeps its own lock-free pool and no longer uses commons-pool2,
+ * this class will be removed in a future release.
  */
+@Deprecated
 @Slf4j
 public class ChannelPooledObjectFactory extends BasePooledObjectFactory<Channel> {
 
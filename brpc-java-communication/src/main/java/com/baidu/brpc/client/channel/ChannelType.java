@@ -4,7 +4,8 @@ public enum ChannelType {
 
 	POOLED_CONNECTION(0, "POOLED_CONNECTION"),
 	SINGLE_CONNECTION(1, "SINGLE_CONNECTION"),
-	SHORT_CONNECTION(2, "SHORT_CONNECTION");
+	SHORT_CONNECTION(2, "SHORT_CONNECTION"),
+	MULTI_CONNECTION(3, "MULTI_CONNECTION");
 
 	private int id;
 	private String name;
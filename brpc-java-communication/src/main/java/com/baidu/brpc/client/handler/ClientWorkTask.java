@@ -19,6 +19,7 @@ package com.baidu.brpc.client.handler;
 import com.baidu.brpc.RpcContext;
 import com.baidu.brpc.RpcMethodInfo;
 import com.baidu.brpc.client.RpcFuture;
+import com.baidu.brpc.compress.ZstdDictionaryManager;
 import com.baidu.brpc.protocol.Protocol;
 import com.baidu.brpc.protocol.Request;
 import com.baidu.brpc.protocol.Response;
@@ -59,11 +60,15 @@ public class ClientWorkTask implements Runnable {
         }
 
         Response response;
+        ZstdDictionaryManager dictionaryManager = ZstdDictionaryManager.getInstance();
+        dictionaryManager.setResponseChannel(ctx.channel());
         try {
             response = protocol.decodeResponse(packet, ctx);
         } catch (Exception e) {
             log.warn("decode response failed:", e);
             return;
+        } finally {
+            dictionaryManager.clearResponseChannel();
         }
 
         if (response.getRpcFuture() != null) {
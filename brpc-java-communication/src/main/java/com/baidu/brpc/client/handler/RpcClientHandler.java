@@ -21,6 +21,8 @@ import com.baidu.brpc.exceptions.BadSchemaException;
 import com.baidu.brpc.exceptions.NotEnoughDataException;
 import com.baidu.brpc.exceptions.RpcException;
 import com.baidu.brpc.exceptions.TooBigDataException;
+import com.baidu.brpc.protocol.FrameCheckProtocol;
+import com.baidu.brpc.protocol.Protocol;
 import com.baidu.brpc.utils.ThreadPool;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandler;
@@ -56,7 +58,16 @@ public class RpcClientHandler extends SimpleChannelInboundHandler<Object> {
         int i = 0;
         while (channelInfo.getRecvBuf().readableBytes() > 0) {
             try {
-                Object packet = channelInfo.getProtocol().decode(ctx, channelInfo.getRecvBuf(), false);
+                Protocol protocol = channelInfo.getProtocol();
+                if (protocol instanceof FrameCheckProtocol
+                        && ((FrameCheckProtocol) protocol).checkFrame(channelInfo.getRecvBuf()) > 0) {
+                    break;
+                }
+                Object packet = protocol.decode(ctx, channelInfo.getRecvBuf(), false);
+                if (packet == null) {
+                    // consumed by protocol
+                    continue;
+                }
                 ClientWorkTask task = new ClientWorkTask(packet, channelInfo.getProtocol(), ctx);
                 tasks[i++] = task;
                 if (i == 64) {
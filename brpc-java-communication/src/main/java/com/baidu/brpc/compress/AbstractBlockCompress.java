@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.brpc.compress;
+
+import com.baidu.brpc.RpcMethodInfo;
+import com.baidu.brpc.buffer.DynamicCompositeByteBuf;
+import io.netty.buffer.ByteBuf;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.io.IOException;
+
+/**
+ * Base of codecs which compress the whole serialized message as one block,
+ * so they work on byte arrays instead of streams.
+ */
+public abstract class AbstractBlockCompress implements Compress {
+	// the same as max body size of protocols
+	public static final int DEFAULT_MAX_UNCOMPRESSED_SIZE = 512 * 1024 * 1024;
+
+	/**
+	 * max size of one uncompressed message, larger sizes claimed by the peer are rejected before allocating.
+	 */
+	@Getter
+	@Setter
+	private volatile int maxUncompressedSize = DEFAULT_MAX_UNCOMPRESSED_SIZE;
+
+	/**
+	 * compress the serialized message.
+	 */
+	protected abstract ByteBuf compress(byte[] bytes) throws IOException;
+
+	/**
+	 * uncompress the block at bytes[offset, offset + length).
+	 */
+	protected abstract byte[] uncompress(byte[] bytes, int offset, int length) throws IOException;
+
+	/**
+	 * compress the serialized request or response of the method, subclass may override it to use method info.
+	 */
+	protected ByteBuf compress(byte[] bytes, RpcMethodInfo rpcMethodInfo, boolean isRequest) throws IOException {
+		return compress(bytes);
+	}
+
+	/**
+	 * uncompress the request or response of the method, subclass may override it to use method info.
+	 */
+	protected byte[] uncompress(byte[] bytes, int offset, int length, RpcMethodInfo rpcMethodInfo,
+								boolean isRequest) throws IOException {
+		return uncompress(bytes, offset, length);
+	}
+
+	@Override
+	public ByteBuf compressInput(Object proto, RpcMethodInfo rpcMethodInfo) throws IOException {
+		byte[] bytes = rpcMethodInfo.inputEncode(proto);
+		ByteBuf byteBuf = compress(bytes, rpcMethodInfo, true);
+		record(rpcMethodInfo.getRequestCompressStats(), bytes.length, byteBuf.readableBytes());
+		return byteBuf;
+	}
+
+	@Override
+	public Object uncompressOutput(ByteBuf byteBuf, RpcMethodInfo rpcMethodInfo) throws IOException {
+		return rpcMethodInfo.outputDecode(uncompress(byteBuf, rpcMethodInfo, false));
+	}
+
+	@Override
+	public Object uncompressOutput(byte[] bytes, RpcMethodInfo rpcMethodInfo) throws IOException {
+		return rpcMethodInfo.outputDecode(uncompress(bytes, 0, bytes.length, rpcMethodInfo, false));
+	}
+
+	@Override
+	public Object uncompressOutput(DynamicCompositeByteBuf byteBuf, RpcMethodInfo rpcMethodInfo) throws IOException {
+		return rpcMethodInfo.outputDecode(uncompress(byteBuf, rpcMethodInfo, false));
+	}
+
+	@Override
+	public ByteBuf compressOutput(Object proto, RpcMethodInfo rpcMethodInfo) throws IOException {
+		byte[] bytes = rpcMethodInfo.outputEncode(proto);
+		ByteBuf byteBuf = compress(bytes, rpcMethodInfo, false);
+		record(rpcMethodInfo.getResponseCompressStats(), bytes.length, byteBuf.readableBytes());
+		return byteBuf;
+	}
+
+	@Override
+	public Object uncompressInput(ByteBuf byteBuf, RpcMethodInfo rpcMethodInfo) throws IOException {
+		return rpcMethodInfo.inputDecode(uncompress(byteBuf, rpcMethodInfo, true));
+	}
+
+	@Override
+	public Object uncompressInput(byte[] bytes, RpcMethodInfo rpcMethodInfo) throws IOException {
+		return rpcMethodInfo.inputDecode(uncompress(bytes, 0, bytes.length, rpcMethodInfo, true));
+	}
+
+	@Override
+	public Object uncompressInput(DynamicCompositeByteBuf byteBuf, RpcMethodInfo rpcMethodInfo) throws IOException {
+		return rpcMethodInfo.inputDecode(uncompress(byteBuf, rpcMethodInfo, true));
+	}
+
+	/**
+	 * check the uncompressed size read from the header of compressed data,
+	 * so a small malicious message can not make us allocate a huge array.
+	 *
+	 * @param maxRatio max compress ratio the codec can reach
+	 */
+	protected void checkUncompressedSize(long size, int compressedLength, int maxRatio) throws IOException {
+		if (size < 0 || size > maxUncompressedSize || size > (long) compressedLength * maxRatio + 64) {
+			throw new IOException("bad uncompressed size " + size + " of " + compressedLength + " compressed bytes");
+		}
+	}
+
+	private static void record(CompressStats compressStats, int originalSize, int compressedSize) {
+		if (compressStats != null) {
+			compressStats.record(originalSize, compressedSize);
+		}
+	}
+
+	private byte[] uncompress(ByteBuf byteBuf, RpcMethodInfo rpcMethodInfo, boolean isRequest) throws IOException {
+		int length = byteBuf.readableBytes();
+		byte[] result;
+		if (byteBuf.hasArray()) {
+			result = uncompress(byteBuf.array(), byteBuf.arrayOffset() + byteBuf.readerIndex(), length,
+					rpcMethodInfo, isRequest);
+		} else {
+			byte[] bytes = new byte[length];
+			byteBuf.getBytes(byteBuf.readerIndex(), bytes);
+			result = uncompress(bytes, 0, length, rpcMethodInfo, isRequest);
+		}
+		byteBuf.skipBytes(length);
+		return result;
+	}
+
+	private byte[] uncompress(DynamicCompositeByteBuf byteBuf, RpcMethodInfo rpcMethodInfo, boolean isRequest)
+			throws IOException {
+		int length = byteBuf.readableBytes();
+		if (byteBuf.hasArray()) {
+			byte[] result = uncompress(byteBuf.array(), byteBuf.arrayOffset() + byteBuf.readerIndex(), length,
+					rpcMethodInfo, isRequest);
+			byteBuf.skipBytes(length);
+			return result;
+		}
+		byte[] bytes = new byte[length];
+		byteBuf.readBytes(bytes);
+		return uncompress(bytes, 0, length, rpcMethodInfo, isRequest);
+	}
+}
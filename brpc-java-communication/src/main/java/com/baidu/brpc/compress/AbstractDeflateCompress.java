@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.brpc.compress;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Base of gzip and zlib codecs.
+ * Native {@link Deflater} and {@link Inflater} are created once per thread and reset before each message,
+ * instead of created and ended with the stream of each message.
+ */
+public abstract class AbstractDeflateCompress extends AbstractBlockCompress {
+	// scratch buffer larger than it is not kept by thread
+	private static final int MAX_SCRATCH_SIZE = 1024 * 1024;
+	private static final ThreadLocal<byte[]> SCRATCH = new ThreadLocal<byte[]>() {
+		@Override
+		protected byte[] initialValue() {
+			return new byte[8192];
+		}
+	};
+
+	private final ThreadLocal<Deflater> deflater;
+	private final ThreadLocal<Inflater> inflater;
+
+	/**
+	 * @param nowrap true for raw deflate data, such as the body of gzip, false for zlib format.
+	 */
+	protected AbstractDeflateCompress(final boolean nowrap) {
+		this.deflater = new ThreadLocal<Deflater>() {
+			@Override
+			protected Deflater initialValue() {
+				return new Deflater(Deflater.DEFAULT_COMPRESSION, nowrap);
+			}
+		};
+		this.inflater = new ThreadLocal<Inflater>() {
+			@Override
+			protected Inflater initialValue() {
+				return new Inflater(nowrap);
+			}
+		};
+	}
+
+	/**
+	 * max compressed length, the same as compressBound of zlib.
+	 */
+	protected static int deflateBound(int length) {
+		return length + (length >> 12) + (length >> 14) + (length >> 25) + 13;
+	}
+
+	/**
+	 * compress src into dst from dstOffset, dst should have {@link #deflateBound} bytes at least.
+	 *
+	 * @return end position in dst
+	 */
+	protected int deflate(byte[] src, byte[] dst, int dstOffset) throws IOException {
+		Deflater deflater = this.deflater.get();
+		deflater.reset();
+		deflater.setInput(src);
+		deflater.finish();
+		int pos = dstOffset;
+		while (!deflater.finished()) {
+			int len = deflater.deflate(dst, pos, dst.length - pos);
+			if (len == 0 && pos == dst.length) {
+				throw new IOException("deflate output overflow");
+			}
+			pos += len;
+		}
+		return pos;
+	}
+
+	/**
+	 * uncompress src into dst which has the exact uncompressed length.
+	 */
+	protected void inflate(byte[] src, int srcOffset, int srcLength, byte[] dst) throws IOException {
+		Inflater inflater = this.inflater.get();
+		inflater.reset();
+		inflater.setInput(src, srcOffset, srcLength);
+		try {
+			int pos = 0;
+			while (!inflater.finished()) {
+				if (pos == dst.length) {
+					// dst is full, only the end of stream is expected
+					if (inflater.inflate(new byte[1]) != 0 || !inflater.finished()) {
+						throw new IOException("inflate failed, data is longer than expected");
+					}
+					break;
+				}
+				int len = inflater.inflate(dst, pos, dst.length - pos);
+				if (len == 0 && !inflater.finished() && (inflater.needsInput() || inflater.needsDictionary())) {
+					throw new IOException("inflate failed, data is truncated");
+				}
+				pos += len;
+			}
+			if (pos != dst.length) {
+				throw new IOException("inflate failed, data is shorter than expected");
+			}
+		} catch (DataFormatException ex) {
+			throw new IOException(ex);
+		}
+	}
+
+	/**
+	 * uncompress src whose uncompressed length is unknown.
+	 * it is inflated into the scratch buffer of current thread, and then copied with the exact length.
+	 */
+	protected byte[] inflate(byte[] src, int srcOffset, int srcLength) throws IOException {
+		Inflater inflater = this.inflater.get();
+		inflater.reset();
+		inflater.setInput(src, srcOffset, srcLength);
+		byte[] out = SCRATCH.get();
+		int pos = 0;
+		try {
+			while (!inflater.finished()) {
+				if (pos == out.length) {
+					out = Arrays.copyOf(out, out.length * 2);
+					if (out.length <= MAX_SCRATCH_SIZE) {
+						SCRATCH.set(out);
+					}
+				}
+				int len = inflater.inflate(out, pos, out.length - pos);
+				if (len == 0 && !inflater.finished() && (inflater.needsInput() || inflater.needsDictionary())) {
+					throw new IOException("inflate failed, data is truncated");
+				}
+				pos += len;
+			}
+		} catch (DataFormatException ex) {
+			throw new IOException(ex);
+		}
+		return Arrays.copyOf(out, pos);
+	}
+}
@@ -24,7 +24,6 @@ public class CompressManager {
 	private static final int MAX_COMPRESS_NUM = 16;
 	private static volatile CompressManager instance;
 	private Compress[] compressArray;
-	private int compressNum;
 
 	public static CompressManager getInstance() {
 		if (instance == null) {
@@ -43,11 +42,12 @@ public class CompressManager {
 		compressArray[Options.CompressType.COMPRESS_TYPE_GZIP_VALUE] = new GzipCompress();
 		compressArray[Options.CompressType.COMPRESS_TYPE_ZLIB_VALUE] = new ZlibCompress();
 		compressArray[Options.CompressType.COMPRESS_TYPE_SNAPPY_VALUE] = new SnappyCompress();
-		compressNum = 4;
+		compressArray[Options.CompressType.COMPRESS_TYPE_LZ4_VALUE] = new Lz4Compress();
+		compressArray[Options.CompressType.COMPRESS_TYPE_ZSTD_VALUE] = new ZstdCompress();
 	}
 
 	public Compress getCompress(int compressType) {
-		if (compressType < 0 || compressType >= compressNum) {
+		if (compressType < 0 || compressType >= MAX_COMPRESS_NUM) {
 			throw new RuntimeException("out of bound");
 		}
 		Compress compress = compressArray[compressType];
@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.brpc.compress;
+
+import com.baidu.brpc.RpcMethodInfo;
+import com.baidu.brpc.protocol.Options;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+
+/**
+ * Chooses compress type of each request and response.
+ * <ul>
+ * <li>compress type of the method, set by {@link com.baidu.brpc.protocol.BrpcMeta} or options.proto,
+ * overrides the one of client, and the one of request for response.</li>
+ * <li>payloads smaller than minCompressSize are not compressed.</li>
+ * <li>compression of the method is skipped for a while if its payloads turn out incompressible.</li>
+ * </ul>
+ */
+@Slf4j
+public class CompressPolicy {
+	private static final int NONE = Options.CompressType.COMPRESS_TYPE_NONE_VALUE;
+
+	/**
+	 * @param defaultCompressType compress type of client options
+	 * @param minCompressSize     requests smaller than it are not compressed, 0 means no limit
+	 */
+	public static int selectRequestCompressType(RpcMethodInfo rpcMethodInfo, Object request,
+												int defaultCompressType, int minCompressSize) {
+		int compressType = rpcMethodInfo.getRequestCompressType() >= 0
+				? rpcMethodInfo.getRequestCompressType() : defaultCompressType;
+		if (compressType == NONE) {
+			return NONE;
+		}
+		if (minCompressSize > 0 && request != null) {
+			try {
+				int size = rpcMethodInfo.getInputSerializedSize(request);
+				// 0 means the serializer can not tell the size
+				if (size > 0 && size < minCompressSize) {
+					return NONE;
+				}
+			} catch (IOException ex) {
+				log.debug("get serialized size of request failed:", ex);
+			}
+		}
+		return rpcMethodInfo.getRequestCompressStats().shouldCompress() ? compressType : NONE;
+	}
+
+	/**
+	 * @param requestCompressType compress type of the request, which is used by default
+	 * @param minCompressSize     responses smaller than it are not compressed, 0 means no limit
+	 */
+	public static int selectResponseCompressType(RpcMethodInfo rpcMethodInfo, Object response,
+												 int requestCompressType, int minCompressSize) {
+		if (rpcMethodInfo == null) {
+			return requestCompressType;
+		}
+		int compressType = rpcMethodInfo.getResponseCompressType() >= 0
+				? rpcMethodInfo.getResponseCompressType() : requestCompressType;
+		if (compressType == NONE || response == null) {
+			return compressType;
+		}
+		if (minCompressSize > 0) {
+			try {
+				int size = rpcMethodInfo.getOutputSerializedSize(response);
+				if (size > 0 && size < minCompressSize) {
+					return NONE;
+				}
+			} catch (IOException ex) {
+				log.debug("get serialized size of response failed:", ex);
+			}
+		}
+		return rpcMethodInfo.getResponseCompressStats().shouldCompress() ? compressType : NONE;
+	}
+}
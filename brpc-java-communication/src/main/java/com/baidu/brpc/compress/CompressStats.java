@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.brpc.compress;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Observed compression ratio of request or response payloads of one method.
+ * When the payloads turn out incompressible, compression is skipped for the next calls,
+ * and the skipped num doubles each time the probing call is still incompressible.
+ */
+public class CompressStats {
+	// compressed size / original size larger than it means the payloads are incompressible
+	public static final double INCOMPRESSIBLE_RATIO = 0.9;
+	private static final int MAX_SKIP_NUM = 1024;
+	// weight of the latest sample in moving average
+	private static final double ALPHA = 0.2;
+
+	// moving average of compression ratio, 0 means no sample yet
+	private volatile double ratio;
+	// skip num of the last back-off, 0 means not backing off
+	private volatile int backoffNum;
+	private final AtomicInteger skipNum = new AtomicInteger(0);
+
+	/**
+	 * @return false if compression should be skipped for this call.
+	 */
+	public boolean shouldCompress() {
+		return skipNum.get() <= 0 || skipNum.decrementAndGet() < 0;
+	}
+
+	public void record(int originalSize, int compressedSize) {
+		if (originalSize <= 0) {
+			return;
+		}
+		double sample = (double) compressedSize / originalSize;
+		double ratio = this.ratio;
+		if (ratio == 0 || backoffNum > 0) {
+			// the probing call after back-off decides alone
+			ratio = sample;
+		} else {
+			ratio += ALPHA * (sample - ratio);
+		}
+		this.ratio = ratio;
+		if (ratio > INCOMPRESSIBLE_RATIO) {
+			int backoffNum = Math.min(Math.max(this.backoffNum * 2, 1), MAX_SKIP_NUM);
+			this.backoffNum = backoffNum;
+			skipNum.set(backoffNum);
+		} else {
+			this.backoffNum = 0;
+		}
+	}
+
+	public double getRatio() {
+		return ratio;
+	}
+}
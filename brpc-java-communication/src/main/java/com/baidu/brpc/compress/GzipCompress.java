@@ -16,152 +16,104 @@
 
 package com.baidu.brpc.compress;
 
-import com.baidu.brpc.ProtobufRpcMethodInfo;
-import com.baidu.brpc.RpcMethodInfo;
-import com.baidu.brpc.buffer.DynamicCompositeByteBuf;
-import com.baidu.brpc.buffer.DynamicCompositeByteBufInputStream;
-import com.baidu.brpc.utils.IOUtils;
-import com.google.protobuf.CodedOutputStream;
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.ByteBufInputStream;
-import io.netty.buffer.ByteBufOutputStream;
 import io.netty.buffer.Unpooled;
 import lombok.extern.slf4j.Slf4j;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
+import java.util.zip.CRC32;
 
+/**
+ * gzip codec, each message is one gzip member.
+ * Uncompressed size is read from the trailer, so the message is inflated into an array of the exact size.
+ */
 @Slf4j
-public class GzipCompress implements Compress {
-	@Override
-	public ByteBuf compressInput(Object proto, RpcMethodInfo rpcMethodInfo) throws IOException {
-		int protoSize = rpcMethodInfo.getInputSerializedSize(proto);
-		ByteBuf resBuf = Unpooled.buffer(protoSize);
-		OutputStream outputStream = new ByteBufOutputStream(resBuf);
-		GZIPOutputStream gzipOutputStream = new GZIPOutputStream(outputStream);
+public class GzipCompress extends AbstractDeflateCompress {
+	private static final int HEADER_SIZE = 10;
+	private static final int TRAILER_SIZE = 8;
+	private static final int FHCRC = 2;
+	private static final int FEXTRA = 4;
+	private static final int FNAME = 8;
+	private static final int FCOMMENT = 16;
+	// max ratio of deflate is about 1032:1
+	private static final int MAX_RATIO = 1032;
 
-		if (protoSize > CodedOutputStream.DEFAULT_BUFFER_SIZE) {
-			protoSize = CodedOutputStream.DEFAULT_BUFFER_SIZE;
-		}
-		final CodedOutputStream codedOutputStream =
-				CodedOutputStream.newInstance(gzipOutputStream, protoSize);
-		rpcMethodInfo.inputWriteToStream(proto, codedOutputStream);
-		gzipOutputStream.close();
-		return resBuf;
+	public GzipCompress() {
+		super(true);
 	}
 
 	@Override
-	public Object uncompressOutput(ByteBuf byteBuf, RpcMethodInfo rpcMethodInfo) throws IOException {
-		InputStream inputStream = new ByteBufInputStream(byteBuf);
-		inputStream = new GZIPInputStream(inputStream);
-		try {
-			if (rpcMethodInfo instanceof ProtobufRpcMethodInfo) {
-				return ((ProtobufRpcMethodInfo) rpcMethodInfo).outputDecode(inputStream);
-			} else {
-				byte[] uncompressedBytes = IOUtils.readInputStream(inputStream);
-				return rpcMethodInfo.outputDecode(uncompressedBytes);
-			}
-		} finally {
-			inputStream.close();
-		}
+	protected ByteBuf compress(byte[] bytes) throws IOException {
+		byte[] out = new byte[HEADER_SIZE + deflateBound(bytes.length) + TRAILER_SIZE];
+		// magic, deflate method, no flags, no mtime, no extra flags, unknown os, the same as GZIPOutputStream
+		out[0] = (byte) 0x1f;
+		out[1] = (byte) 0x8b;
+		out[2] = 8;
+		int pos = deflate(bytes, out, HEADER_SIZE);
+		CRC32 crc = new CRC32();
+		crc.update(bytes, 0, bytes.length);
+		writeIntLE(out, pos, (int) crc.getValue());
+		writeIntLE(out, pos + 4, bytes.length);
+		return Unpooled.wrappedBuffer(out, 0, pos + TRAILER_SIZE);
 	}
 
 	@Override
-	public Object uncompressOutput(byte[] bytes, RpcMethodInfo rpcMethodInfo) throws IOException {
-		InputStream inputStream = new ByteArrayInputStream(bytes);
-		inputStream = new GZIPInputStream(inputStream);
-		try {
-			if (rpcMethodInfo instanceof ProtobufRpcMethodInfo) {
-				return ((ProtobufRpcMethodInfo) rpcMethodInfo).outputDecode(inputStream);
-			} else {
-				byte[] uncompressedBytes = IOUtils.readInputStream(inputStream);
-				return rpcMethodInfo.outputDecode(uncompressedBytes);
-			}
-		} finally {
-			inputStream.close();
+	protected byte[] uncompress(byte[] bytes, int offset, int length) throws IOException {
+		int end = offset + length;
+		if (length < HEADER_SIZE + TRAILER_SIZE
+				|| bytes[offset] != (byte) 0x1f || bytes[offset + 1] != (byte) 0x8b || bytes[offset + 2] != 8) {
+			throw new IOException("not in gzip format");
 		}
-	}
-
-	@Override
-	public Object uncompressOutput(DynamicCompositeByteBuf byteBuf, RpcMethodInfo rpcMethodInfo) throws IOException {
-		InputStream inputStream = new DynamicCompositeByteBufInputStream(byteBuf);
-		inputStream = new GZIPInputStream(inputStream);
-		try {
-			if (rpcMethodInfo instanceof ProtobufRpcMethodInfo) {
-				return ((ProtobufRpcMethodInfo) rpcMethodInfo).outputDecode(inputStream);
-			} else {
-				byte[] uncompressedBytes = IOUtils.readInputStream(inputStream);
-				return rpcMethodInfo.outputDecode(uncompressedBytes);
-			}
-		} finally {
-			inputStream.close();
+		int flags = bytes[offset + 3] & 0xFF;
+		int pos = offset + HEADER_SIZE;
+		if ((flags & FEXTRA) != 0) {
+			pos += 2 + ((bytes[pos] & 0xFF) | ((bytes[pos + 1] & 0xFF) << 8));
 		}
-	}
-
-	@Override
-	public Object uncompressInput(ByteBuf byteBuf, RpcMethodInfo rpcMethodInfo) throws IOException {
-		InputStream inputStream = new ByteBufInputStream(byteBuf);
-		inputStream = new GZIPInputStream(inputStream);
-		try {
-			if (rpcMethodInfo instanceof ProtobufRpcMethodInfo) {
-				return ((ProtobufRpcMethodInfo) rpcMethodInfo).inputDecode(inputStream);
-			} else {
-				byte[] uncompressedBytes = IOUtils.readInputStream(inputStream);
-				return rpcMethodInfo.inputDecode(uncompressedBytes);
-			}
-		} finally {
-			inputStream.close();
+		if ((flags & FNAME) != 0) {
+			pos = skipZeroTerminated(bytes, pos, end);
 		}
-	}
-
-	@Override
-	public Object uncompressInput(byte[] bytes, RpcMethodInfo rpcMethodInfo) throws IOException {
-		InputStream inputStream = new ByteArrayInputStream(bytes);
-		inputStream = new GZIPInputStream(inputStream);
-		try {
-			if (rpcMethodInfo instanceof ProtobufRpcMethodInfo) {
-				return ((ProtobufRpcMethodInfo) rpcMethodInfo).inputDecode(inputStream);
-			} else {
-				byte[] uncompressedBytes = IOUtils.readInputStream(inputStream);
-				return rpcMethodInfo.inputDecode(uncompressedBytes);
-			}
-		} finally {
-			inputStream.close();
+		if ((flags & FCOMMENT) != 0) {
+			pos = skipZeroTerminated(bytes, pos, end);
 		}
+		if ((flags & FHCRC) != 0) {
+			pos += 2;
+		}
+		int deflateEnd = end - TRAILER_SIZE;
+		if (pos > deflateEnd) {
+			throw new IOException("bad gzip header");
+		}
+		long size = readIntLE(bytes, end - 4) & 0xFFFFFFFFL;
+		checkUncompressedSize(size, deflateEnd - pos, MAX_RATIO);
+		byte[] uncompressedBytes = new byte[(int) size];
+		inflate(bytes, pos, deflateEnd - pos, uncompressedBytes);
+		CRC32 crc = new CRC32();
+		crc.update(uncompressedBytes, 0, uncompressedBytes.length);
+		if ((int) crc.getValue() != readIntLE(bytes, deflateEnd)) {
+			throw new IOException("corrupt gzip trailer");
+		}
+		return uncompressedBytes;
 	}
 
-	public Object uncompressInput(DynamicCompositeByteBuf byteBuf, RpcMethodInfo rpcMethodInfo) throws IOException {
-		InputStream inputStream = new DynamicCompositeByteBufInputStream(byteBuf);
-		inputStream = new GZIPInputStream(inputStream);
-		try {
-			if (rpcMethodInfo instanceof ProtobufRpcMethodInfo) {
-				return ((ProtobufRpcMethodInfo) rpcMethodInfo).inputDecode(inputStream);
-			} else {
-				byte[] uncompressedBytes = IOUtils.readInputStream(inputStream);
-				return rpcMethodInfo.inputDecode(uncompressedBytes);
+	private static int skipZeroTerminated(byte[] bytes, int pos, int end) throws IOException {
+		while (pos < end) {
+			if (bytes[pos++] == 0) {
+				return pos;
 			}
-		} finally {
-			inputStream.close();
 		}
+		throw new IOException("bad gzip header");
 	}
 
-	@Override
-	public ByteBuf compressOutput(Object proto, RpcMethodInfo rpcMethodInfo) throws IOException {
-		int protoSize = rpcMethodInfo.getOutputSerializedSize(proto);
-		ByteBuf resBuf = Unpooled.buffer(protoSize);
-		OutputStream outputStream = new ByteBufOutputStream(resBuf);
-		outputStream = new GZIPOutputStream(outputStream);
+	private static int readIntLE(byte[] bytes, int pos) {
+		return (bytes[pos] & 0xFF)
+				| ((bytes[pos + 1] & 0xFF) << 8)
+				| ((bytes[pos + 2] & 0xFF) << 16)
+				| ((bytes[pos + 3] & 0xFF) << 24);
+	}
 
-		if (protoSize > CodedOutputStream.DEFAULT_BUFFER_SIZE) {
-			protoSize = CodedOutputStream.DEFAULT_BUFFER_SIZE;
-		}
-		CodedOutputStream codedOutputStream = CodedOutputStream.newInstance(outputStream, protoSize);
-		rpcMethodInfo.outputWriteToStream(proto, codedOutputStream);
-		outputStream.close();
-		return resBuf;
+	private static void writeIntLE(byte[] bytes, int pos, int value) {
+		bytes[pos] = (byte) value;
+		bytes[pos + 1] = (byte) (value >>> 8);
+		bytes[pos + 2] = (byte) (value >>> 16);
+		bytes[pos + 3] = (byte) (value >>> 24);
 	}
 }
@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.brpc.compress;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import lombok.extern.slf4j.Slf4j;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Exception;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4SafeDecompressor;
+import net.jpountz.xxhash.XXHash32;
+import net.jpountz.xxhash.XXHashFactory;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * LZ4 codec, each message is one standard LZ4 frame, which can be read by lz4 library of other languages.
+ * Frames written here have independent blocks and content size, without checksum.
+ * Blocks are compressed and uncompressed by lz4-java, the frame is written directly into one array.
+ */
+@Slf4j
+public class Lz4Compress extends AbstractBlockCompress {
+	private static final int MAGIC = 0x184D2204;
+	// version 01, independent blocks, content size present
+	private static final int FLG = 0x68;
+	private static final int FLG_VERSION_MASK = 0xC0;
+	private static final int FLG_VERSION = 0x40;
+	private static final int FLG_BLOCK_INDEPENDENCE = 0x20;
+	private static final int FLG_BLOCK_CHECKSUM = 0x10;
+	private static final int FLG_CONTENT_SIZE = 0x08;
+	private static final int FLG_CONTENT_CHECKSUM = 0x04;
+	private static final int FLG_DICT_ID = 0x01;
+	// block max size 4MB
+	private static final int BD = 0x70;
+	private static final int MAX_BLOCK_SIZE = 4 << 20;
+	private static final int UNCOMPRESSED_BLOCK_FLAG = 0x80000000;
+	// each extra byte of match length adds 255 bytes
+	private static final int MAX_RATIO = 256;
+
+	private static final LZ4Compressor COMPRESSOR = LZ4Factory.fastestInstance().fastCompressor();
+	private static final LZ4SafeDecompressor DECOMPRESSOR = LZ4Factory.fastestInstance().safeDecompressor();
+	private static final XXHash32 XX_HASH_32 = XXHashFactory.fastestInstance().hash32();
+
+	@Override
+	protected ByteBuf compress(byte[] bytes) throws IOException {
+		int blockNum = Math.max(1, (bytes.length + MAX_BLOCK_SIZE - 1) / MAX_BLOCK_SIZE);
+		// header 15 bytes, size and max compressed length of each block, and end mark
+		int maxBlockLen = COMPRESSOR.maxCompressedLength(Math.min(bytes.length, MAX_BLOCK_SIZE));
+		byte[] out = new byte[15 + blockNum * (4 + maxBlockLen) + 4];
+		writeIntLE(out, 0, MAGIC);
+		out[4] = (byte) FLG;
+		out[5] = (byte) BD;
+		writeLongLE(out, 6, bytes.length);
+		out[14] = (byte) (XX_HASH_32.hash(out, 4, 10, 0) >> 8);
+		int pos = 15;
+		for (int offset = 0; offset < bytes.length; offset += MAX_BLOCK_SIZE) {
+			int length = Math.min(MAX_BLOCK_SIZE, bytes.length - offset);
+			int compressedLen = COMPRESSOR.compress(bytes, offset, length, out, pos + 4, maxBlockLen);
+			if (compressedLen >= length) {
+				System.arraycopy(bytes, offset, out, pos + 4, length);
+				writeIntLE(out, pos, length | UNCOMPRESSED_BLOCK_FLAG);
+				pos += 4 + length;
+			} else {
+				writeIntLE(out, pos, compressedLen);
+				pos += 4 + compressedLen;
+			}
+		}
+		writeIntLE(out, pos, 0);
+		pos += 4;
+		return Unpooled.wrappedBuffer(out, 0, pos);
+	}
+
+	@Override
+	protected byte[] uncompress(byte[] bytes, int offset, int length) throws IOException {
+		try {
+			return uncompressFrame(bytes, offset, length);
+		} catch (IndexOutOfBoundsException ex) {
+			throw new IOException("malformed lz4 frame", ex);
+		} catch (LZ4Exception ex) {
+			throw new IOException("malformed lz4 block", ex);
+		}
+	}
+
+	private byte[] uncompressFrame(byte[] bytes, int offset, int length) throws IOException {
+		int end = offset + length;
+		if (length < 7 || readIntLE(bytes, offset) != MAGIC) {
+			throw new IOException("bad lz4 frame magic");
+		}
+		int flg = bytes[offset + 4] & 0xFF;
+		int bd = bytes[offset + 5] & 0xFF;
+		if ((flg & FLG_VERSION_MASK) != FLG_VERSION) {
+			throw new IOException("unsupported lz4 frame version");
+		}
+		if ((flg & FLG_DICT_ID) != 0) {
+			throw new IOException("lz4 frame with dictionary is not supported");
+		}
+		if ((flg & FLG_BLOCK_INDEPENDENCE) == 0) {
+			throw new IOException("lz4 frame with linked blocks is not supported");
+		}
+		int blockMaxSize = 1 << (8 + 2 * ((bd >> 4) & 0x07));
+		if (blockMaxSize < 64 * 1024) {
+			throw new IOException("bad lz4 block max size");
+		}
+		int pos = offset + 6;
+		long contentSize = -1;
+		if ((flg & FLG_CONTENT_SIZE) != 0) {
+			contentSize = readLongLE(bytes, pos);
+			pos += 8;
+			checkUncompressedSize(contentSize, length, MAX_RATIO);
+		}
+		int headerChecksum = (XX_HASH_32.hash(bytes, offset + 4, pos - offset - 4, 0) >> 8) & 0xFF;
+		if (headerChecksum != (bytes[pos] & 0xFF)) {
+			throw new IOException("bad lz4 frame header checksum");
+		}
+		pos++;
+
+		byte[] out = new byte[contentSize >= 0 ? (int) contentSize : Math.max(length * 2, 64)];
+		int outPos = 0;
+		while (true) {
+			int blockSize = readIntLE(bytes, pos);
+			pos += 4;
+			if (blockSize == 0) {
+				break;
+			}
+			boolean uncompressed = (blockSize & UNCOMPRESSED_BLOCK_FLAG) != 0;
+			blockSize &= ~UNCOMPRESSED_BLOCK_FLAG;
+			if (blockSize > blockMaxSize || pos + blockSize > end) {
+				throw new IOException("bad lz4 block size");
+			}
+			int maxOutLen = uncompressed ? blockSize : (int) Math.min(blockMaxSize, (long) blockSize * MAX_RATIO);
+			if (contentSize < 0 && out.length - outPos < maxOutLen) {
+				checkUncompressedSize((long) outPos + maxOutLen, length, MAX_RATIO);
+				out = Arrays.copyOf(out, Math.max(out.length * 2, outPos + maxOutLen));
+			}
+			if (uncompressed) {
+				System.arraycopy(bytes, pos, out, outPos, blockSize);
+				outPos += blockSize;
+			} else {
+				outPos += DECOMPRESSOR.decompress(bytes, pos, blockSize, out, outPos,
+						Math.min(maxOutLen, out.length - outPos));
+			}
+			pos += blockSize;
+			if ((flg & FLG_BLOCK_CHECKSUM) != 0) {
+				pos += 4;
+			}
+		}
+		if ((flg & FLG_CONTENT_CHECKSUM) != 0) {
+			if (XX_HASH_32.hash(out, 0, outPos, 0) != readIntLE(bytes, pos)) {
+				throw new IOException("bad lz4 content checksum");
+			}
+		}
+		if (contentSize >= 0) {
+			if (outPos != contentSize) {
+				throw new IOException("lz4 content size mismatch");
+			}
+			return out;
+		}
+		return Arrays.copyOf(out, outPos);
+	}
+
+	private static int readIntLE(byte[] bytes, int pos) {
+		return (bytes[pos] & 0xFF)
+				| ((bytes[pos + 1] & 0xFF) << 8)
+				| ((bytes[pos + 2] & 0xFF) << 16)
+				| ((bytes[pos + 3] & 0xFF) << 24);
+	}
+
+	private static long readLongLE(byte[] bytes, int pos) {
+		return (readIntLE(bytes, pos) & 0xFFFFFFFFL) | ((long) readIntLE(bytes, pos + 4) << 32);
+	}
+
+	private static void writeIntLE(byte[] bytes, int pos, int value) {
+		bytes[pos] = (byte) value;
+		bytes[pos + 1] = (byte) (value >>> 8);
+		bytes[pos + 2] = (byte) (value >>> 16);
+		bytes[pos + 3] = (byte) (value >>> 24);
+	}
+
+	private static void writeLongLE(byte[] bytes, int pos, long value) {
+		writeIntLE(bytes, pos, (int) value);
+		writeIntLE(bytes, pos + 4, (int) (value >>> 32));
+	}
+}
@@ -16,119 +16,40 @@
 
 package com.baidu.brpc.compress;
 
-import com.baidu.brpc.ProtobufRpcMethodInfo;
-import com.baidu.brpc.RpcMethodInfo;
-import com.baidu.brpc.buffer.DynamicCompositeByteBuf;
-import com.baidu.brpc.buffer.DynamicCompositeByteBufInputStream;
-import com.baidu.brpc.utils.IOUtils;
-import com.google.protobuf.Message;
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.ByteBufInputStream;
 import io.netty.buffer.Unpooled;
 import lombok.extern.slf4j.Slf4j;
 import org.xerial.snappy.Snappy;
-import org.xerial.snappy.SnappyInputStream;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.InputStream;
 
+/**
+ * Snappy codec, each message is one raw snappy block, which starts with varint uncompressed length.
+ * It is the same as COMPRESS_TYPE_SNAPPY of brpc c++, not the framed stream format of {@link
+ * org.xerial.snappy.SnappyOutputStream}.
+ */
 @Slf4j
-public class SnappyCompress implements Compress {
+public class SnappyCompress extends AbstractBlockCompress {
+	// a copy takes 3 bytes for at most 64 bytes
+	private static final int MAX_RATIO = 22;
+
 	@Override
-	public ByteBuf compressInput(Object proto, RpcMethodInfo rpcMethodInfo) throws IOException {
-		byte[] bytes = rpcMethodInfo.inputEncode(proto);
-		int maxCompressedSize = Snappy.maxCompressedLength(bytes.length);
-		byte[] compressedBytes = new byte[maxCompressedSize];
+	protected ByteBuf compress(byte[] bytes) throws IOException {
+		byte[] compressedBytes = new byte[Snappy.maxCompressedLength(bytes.length)];
 		int compressedLen = Snappy.compress(bytes, 0, bytes.length, compressedBytes, 0);
 		return Unpooled.wrappedBuffer(compressedBytes, 0, compressedLen);
 	}
 
 	@Override
-	public Object uncompressOutput(ByteBuf byteBuf, RpcMethodInfo rpcMethodInfo) throws IOException {
-		InputStream inputStream = new ByteBufInputStream(byteBuf);
-		inputStream = new SnappyInputStream(inputStream);
-		if (rpcMethodInfo instanceof ProtobufRpcMethodInfo) {
-			ProtobufRpcMethodInfo protobufRpcMethodInfo = (ProtobufRpcMethodInfo) rpcMethodInfo;
-			Message proto = (Message) protobufRpcMethodInfo.outputDecode(inputStream);
-			return proto;
-		} else {
-			byte[] uncompressedBytes = IOUtils.readInputStream(inputStream);
-			return rpcMethodInfo.outputDecode(uncompressedBytes);
-		}
-	}
-
-	@Override
-	public Object uncompressOutput(byte[] bytes, RpcMethodInfo rpcMethodInfo) throws IOException {
-		InputStream inputStream = new ByteArrayInputStream(bytes);
-		inputStream = new SnappyInputStream(inputStream);
-		if (rpcMethodInfo instanceof ProtobufRpcMethodInfo) {
-			ProtobufRpcMethodInfo protobufRpcMethodInfo = (ProtobufRpcMethodInfo) rpcMethodInfo;
-			Message proto = (Message) protobufRpcMethodInfo.outputDecode(inputStream);
-			return proto;
-		} else {
-			byte[] uncompressedBytes = IOUtils.readInputStream(inputStream);
-			return rpcMethodInfo.outputDecode(uncompressedBytes);
-		}
-	}
-
-	@Override
-	public Object uncompressOutput(DynamicCompositeByteBuf byteBuf, RpcMethodInfo rpcMethodInfo) throws IOException {
-		InputStream inputStream = new DynamicCompositeByteBufInputStream(byteBuf);
-		inputStream = new SnappyInputStream(inputStream);
-		if (rpcMethodInfo instanceof ProtobufRpcMethodInfo) {
-			ProtobufRpcMethodInfo protobufRpcMethodInfo = (ProtobufRpcMethodInfo) rpcMethodInfo;
-			Message proto = (Message) protobufRpcMethodInfo.outputDecode(inputStream);
-			return proto;
-		} else {
-			byte[] uncompressedBytes = IOUtils.readInputStream(inputStream);
-			return rpcMethodInfo.outputDecode(uncompressedBytes);
-		}
-	}
-
-	@Override
-	public Object uncompressInput(ByteBuf byteBuf, RpcMethodInfo rpcMethodInfo) throws IOException {
-		InputStream inputStream = new ByteBufInputStream(byteBuf);
-		inputStream = new SnappyInputStream(inputStream);
-		if (rpcMethodInfo instanceof ProtobufRpcMethodInfo) {
-			return ((ProtobufRpcMethodInfo) rpcMethodInfo).inputDecode(inputStream);
-		} else {
-			byte[] uncompressedBytes = IOUtils.readInputStream(inputStream);
-			return rpcMethodInfo.inputDecode(uncompressedBytes);
+	protected byte[] uncompress(byte[] bytes, int offset, int length) throws IOException {
+		// uncompressed length is read from the block header, so the result is allocated only once
+		int uncompressedLength = Snappy.uncompressedLength(bytes, offset, length);
+		checkUncompressedSize(uncompressedLength, length, MAX_RATIO);
+		byte[] uncompressedBytes = new byte[uncompressedLength];
+		int uncompressedLen = Snappy.uncompress(bytes, offset, length, uncompressedBytes, 0);
+		if (uncompressedLen != uncompressedBytes.length) {
+			throw new IOException("snappy uncompressed length mismatch");
 		}
+		return uncompressedBytes;
 	}
-
-	@Override
-	public Object uncompressInput(byte[] bytes, RpcMethodInfo rpcMethodInfo) throws IOException {
-		InputStream inputStream = new ByteArrayInputStream(bytes);
-		inputStream = new SnappyInputStream(inputStream);
-		if (rpcMethodInfo instanceof ProtobufRpcMethodInfo) {
-			return ((ProtobufRpcMethodInfo) rpcMethodInfo).inputDecode(inputStream);
-		} else {
-			byte[] uncompressedBytes = IOUtils.readInputStream(inputStream);
-			return rpcMethodInfo.inputDecode(uncompressedBytes);
-		}
-	}
-
-	@Override
-	public Object uncompressInput(DynamicCompositeByteBuf byteBuf, RpcMethodInfo rpcMethodInfo) throws IOException {
-		InputStream inputStream = new DynamicCompositeByteBufInputStream(byteBuf);
-		inputStream = new SnappyInputStream(inputStream);
-		if (rpcMethodInfo instanceof ProtobufRpcMethodInfo) {
-			return ((ProtobufRpcMethodInfo) rpcMethodInfo).inputDecode(inputStream);
-		} else {
-			byte[] uncompressedBytes = IOUtils.readInputStream(inputStream);
-			return rpcMethodInfo.inputDecode(uncompressedBytes);
-		}
-	}
-
-	@Override
-	public ByteBuf compressOutput(Object proto, RpcMethodInfo rpcMethodInfo) throws IOException {
-		byte[] bytes = rpcMethodInfo.outputEncode(proto);
-		int maxCompressedSize = Snappy.maxCompressedLength(bytes.length);
-		byte[] compressedBytes = new byte[maxCompressedSize];
-		int compressedLen = Snappy.compress(bytes, 0, bytes.length, compressedBytes, 0);
-		return Unpooled.wrappedBuffer(compressedBytes, 0, compressedLen);
-	}
-
 }
@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.brpc.compress;
+
+import com.baidu.brpc.RpcMethodInfo;
+import com.baidu.brpc.utils.IOUtils;
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdCompressCtx;
+import com.github.luben.zstd.ZstdDecompressCtx;
+import com.github.luben.zstd.ZstdDictCompress;
+import com.github.luben.zstd.ZstdDictDecompress;
+import com.github.luben.zstd.ZstdException;
+import com.github.luben.zstd.ZstdInputStream;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+/**
+ * Zstandard codec, each message is one zstd frame with content size.
+ * Native compress and decompress contexts are created once per thread and reused,
+ * and an optional dictionary trained from sample messages can be loaded into them,
+ * which improves ratio a lot for small messages with similar structure.
+ * Responses may also be compressed with dictionaries negotiated by {@link ZstdDictionaryManager}.
+ */
+@Slf4j
+public class ZstdCompress extends AbstractBlockCompress {
+	// low levels are nearly as fast as snappy with much better ratio
+	public static final int DEFAULT_LEVEL = 1;
+	private static final int MAX_FRAME_HEADER_SIZE = 18;
+	// a rle block of 4 bytes holds at most 128KB
+	private static final int MAX_RATIO = 32 * 1024;
+
+	@Getter
+	private final int level;
+	private final ZstdDictCompress dictCompress;
+	private final ZstdDictDecompress dictDecompress;
+	// id of the dictionary loaded into contexts, 0 means no dictionary
+	private final long dictId;
+
+	private final ThreadLocal<ZstdCompressCtx> compressCtx = new ThreadLocal<ZstdCompressCtx>() {
+		@Override
+		protected ZstdCompressCtx initialValue() {
+			ZstdCompressCtx ctx = new ZstdCompressCtx();
+			ctx.setLevel(level);
+			ctx.setContentSize(true);
+			if (dictCompress != null) {
+				ctx.loadDict(dictCompress);
+			}
+			return ctx;
+		}
+	};
+
+	private final ThreadLocal<ZstdDecompressCtx> decompressCtx = new ThreadLocal<ZstdDecompressCtx>() {
+		@Override
+		protected ZstdDecompressCtx initialValue() {
+			ZstdDecompressCtx ctx = new ZstdDecompressCtx();
+			if (dictDecompress != null) {
+				ctx.loadDict(dictDecompress);
+			}
+			return ctx;
+		}
+	};
+
+	public ZstdCompress() {
+		this(DEFAULT_LEVEL, null);
+	}
+
+	/**
+	 * @param level      compression level, 1 ~ 22
+	 * @param dictionary dictionary trained by {@link com.github.luben.zstd.ZstdDictTrainer},
+	 *                   peers must use the same dictionary, null means no dictionary.
+	 */
+	public ZstdCompress(int level, byte[] dictionary) {
+		this.level = level;
+		if (dictionary != null) {
+			this.dictCompress = new ZstdDictCompress(dictionary, level);
+			this.dictDecompress = new ZstdDictDecompress(dictionary);
+			this.dictId = Zstd.getDictIdFromDict(dictionary);
+		} else {
+			this.dictCompress = null;
+			this.dictDecompress = null;
+			this.dictId = 0;
+		}
+	}
+
+	@Override
+	protected ByteBuf compress(byte[] bytes, RpcMethodInfo rpcMethodInfo, boolean isRequest) throws IOException {
+		ZstdDictionaryManager.ZstdDictionary dictionary = isRequest
+				? null : ZstdDictionaryManager.getInstance().getNegotiatedDictionary();
+		if (dictionary == null) {
+			return compress(bytes);
+		}
+		byte[] compressedBytes = new byte[(int) Zstd.compressBound(bytes.length)];
+		long compressedLen = Zstd.compressFastDict(compressedBytes, 0, bytes, 0, bytes.length,
+				dictionary.getDictCompress());
+		if (Zstd.isError(compressedLen)) {
+			throw new IOException("zstd compress failed: " + Zstd.getErrorName(compressedLen));
+		}
+		return Unpooled.wrappedBuffer(compressedBytes, 0, (int) compressedLen);
+	}
+
+	@Override
+	protected byte[] uncompress(byte[] bytes, int offset, int length, RpcMethodInfo rpcMethodInfo,
+								boolean isRequest) throws IOException {
+		long frameDictId = getFrameDictId(bytes, offset, length);
+		byte[] uncompressedBytes = uncompressFrame(bytes, offset, length, frameDictId);
+		if (!isRequest) {
+			ZstdDictionaryManager.getInstance().onResponse(rpcMethodInfo, frameDictId, uncompressedBytes);
+		}
+		return uncompressedBytes;
+	}
+
+	@Override
+	protected ByteBuf compress(byte[] bytes) throws IOException {
+		byte[] compressedBytes = new byte[(int) Zstd.compressBound(bytes.length)];
+		try {
+			int compressedLen = compressCtx.get().compressByteArray(
+					compressedBytes, 0, compressedBytes.length, bytes, 0, bytes.length);
+			return Unpooled.wrappedBuffer(compressedBytes, 0, compressedLen);
+		} catch (ZstdException ex) {
+			throw new IOException("zstd compress failed", ex);
+		}
+	}
+
+	@Override
+	protected byte[] uncompress(byte[] bytes, int offset, int length) throws IOException {
+		return uncompressFrame(bytes, offset, length, getFrameDictId(bytes, offset, length));
+	}
+
+	private byte[] uncompressFrame(byte[] bytes, int offset, int length, long frameDictId) throws IOException {
+		ZstdDictionaryManager.ZstdDictionary dictionary = null;
+		if (frameDictId != 0 && frameDictId != dictId) {
+			dictionary = ZstdDictionaryManager.getInstance().getDictionary(frameDictId);
+			if (dictionary == null) {
+				throw new IOException("zstd dictionary " + frameDictId + " is not found");
+			}
+		}
+		long contentSize = Zstd.getFrameContentSize(bytes, offset, length);
+		if (contentSize < 0) {
+			// frame written by streaming api without content size
+			return uncompressStream(bytes, offset, length,
+					dictionary != null ? dictionary.getDictDecompress() : dictDecompress);
+		}
+		checkUncompressedSize(contentSize, length, MAX_RATIO);
+		byte[] uncompressedBytes = new byte[(int) contentSize];
+		if (dictionary != null) {
+			long uncompressedLen = Zstd.decompressFastDict(uncompressedBytes, 0, bytes, offset, length,
+					dictionary.getDictDecompress());
+			if (Zstd.isError(uncompressedLen)) {
+				throw new IOException("zstd uncompress failed: " + Zstd.getErrorName(uncompressedLen));
+			}
+			if (uncompressedLen != uncompressedBytes.length) {
+				throw new IOException("zstd content size mismatch");
+			}
+			return uncompressedBytes;
+		}
+		try {
+			int uncompressedLen = decompressCtx.get().decompressByteArray(
+					uncompressedBytes, 0, uncompressedBytes.length, bytes, offset, length);
+			if (uncompressedLen != uncompressedBytes.length) {
+				throw new IOException("zstd content size mismatch");
+			}
+			return uncompressedBytes;
+		} catch (ZstdException ex) {
+			throw new IOException("zstd uncompress failed", ex);
+		}
+	}
+
+	private byte[] uncompressStream(byte[] bytes, int offset, int length, ZstdDictDecompress dictDecompress)
+			throws IOException {
+		ZstdInputStream inputStream = new ZstdInputStream(new ByteArrayInputStream(bytes, offset, length));
+		try {
+			if (dictDecompress != null) {
+				inputStream.setDict(dictDecompress);
+			}
+			return IOUtils.readInputStream(inputStream,
+					Math.min(getMaxUncompressedSize(), (long) length * MAX_RATIO + 64));
+		} finally {
+			inputStream.close();
+		}
+	}
+
+	/**
+	 * @return dictionary id in frame header, 0 means no dictionary.
+	 */
+	private static long getFrameDictId(byte[] bytes, int offset, int length) {
+		byte[] header = new byte[Math.min(length, MAX_FRAME_HEADER_SIZE)];
+		System.arraycopy(bytes, offset, header, 0, header.length);
+		return Zstd.getDictIdFromFrame(header);
+	}
+}
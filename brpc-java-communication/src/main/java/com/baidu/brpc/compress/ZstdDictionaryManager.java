@@ -0,0 +1,507 @@
+/*
+ * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.brpc.compress;
+
+import com.baidu.brpc.RpcMethodInfo;
+import com.baidu.brpc.protocol.Options;
+import com.baidu.brpc.protocol.Request;
+import com.baidu.brpc.utils.CustomThreadFactory;
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdDictCompress;
+import com.github.luben.zstd.ZstdDictDecompress;
+import com.github.luben.zstd.ZstdDictTrainer;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.handler.codec.base64.Base64;
+import io.netty.util.Attribute;
+import io.netty.util.AttributeKey;
+import io.netty.util.CharsetUtil;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Zstd dictionaries of response types, which improve ratio a lot for small messages with similar structure.
+ * <p>
+ * Client samples the responses of each output type and trains a dictionary from them in background.
+ * For the methods whose output type has a dictionary, the client puts its id in request kv attachment,
+ * and ships the dictionary itself too until a response compressed with it is received on the connection.
+ * A connection whose server keeps responding plain zstd to the shipped dictionary is considered to refuse it,
+ * and the dictionary is not shipped on it any more.
+ * Server accepts shipped dictionaries only when enabled by
+ * {@link com.baidu.brpc.server.RpcServerOptions#acceptZstdDictionary}, and keeps them per connection,
+ * so they are released with the connection and one client can not fill the memory of the whole server.
+ * It compresses the response with a dictionary only when it holds the id,
+ * otherwise the response falls back to plain zstd.
+ * <p>
+ * Dictionary id is written in zstd frame header, so it is also the version:
+ * a new dictionary of the type gets a new id, and frames of old ones can still be decoded
+ * until they are evicted as the least recently used.
+ */
+@Slf4j
+public class ZstdDictionaryManager {
+	public static final String DICT_ID_KEY = "zstd-dict-id";
+	public static final String DICT_KEY = "zstd-dict";
+	// dictionaries shipped by peers larger than it are ignored
+	private static final int MAX_DICT_SIZE = 1024 * 1024;
+	// least recently used dictionaries are evicted beyond it
+	private static final int MAX_DICT_NUM = 64;
+	// dictionaries shipped on one connection
+	private static final int MAX_SHIPPED_DICT_NUM = 8;
+	private static final AttributeKey<DictionaryCache> SHIPPED_DICTIONARIES_KEY =
+			AttributeKey.valueOf("zstd_shipped_dictionaries");
+	// plain zstd responses to a shipped dictionary before the connection is considered to refuse it,
+	// responses of requests sent before shipping are counted too
+	private static final int MAX_PLAIN_RESPONSE_NUM = 8;
+	private static final AttributeKey<ShipStates> SHIP_STATES_KEY = AttributeKey.valueOf("zstd_ship_states");
+
+	private static volatile ZstdDictionaryManager instance;
+
+	// sample and train dictionaries from responses, only client needs it
+	@Getter
+	@Setter
+	private volatile boolean trainingEnabled = false;
+	// one of sampleRate responses is sampled
+	@Getter
+	@Setter
+	private volatile int sampleRate = 10;
+	// dictionary is trained when so many responses are sampled
+	@Getter
+	@Setter
+	private volatile int sampleNum = 1000;
+	@Getter
+	@Setter
+	private volatile int dictSize = 16 * 1024;
+	@Getter
+	@Setter
+	private volatile int level = ZstdCompress.DEFAULT_LEVEL;
+
+	// dictionaries trained or set locally
+	private final DictionaryCache dictionaries = new DictionaryCache(MAX_DICT_NUM);
+	private final ConcurrentMap<String, TypeState> typeStates = new ConcurrentHashMap<String, TypeState>();
+	// dictionary negotiated for the response being encoded by current thread
+	private final ThreadLocal<ZstdDictionary> negotiatedDictionary = new ThreadLocal<ZstdDictionary>();
+	// connection of the response being decoded by current thread
+	private final ThreadLocal<Channel> responseChannel = new ThreadLocal<Channel>();
+	private volatile ExecutorService trainExecutor;
+
+	public static ZstdDictionaryManager getInstance() {
+		if (instance == null) {
+			synchronized (ZstdDictionaryManager.class) {
+				if (instance == null) {
+					instance = new ZstdDictionaryManager();
+				}
+			}
+		}
+		return instance;
+	}
+
+	@Getter
+	public static class ZstdDictionary {
+		private final long id;
+		private final byte[] bytes;
+		private final ZstdDictCompress dictCompress;
+		private final ZstdDictDecompress dictDecompress;
+
+		ZstdDictionary(long id, byte[] bytes, int level) {
+			this.id = id;
+			this.bytes = bytes;
+			this.dictCompress = new ZstdDictCompress(bytes, level);
+			this.dictDecompress = new ZstdDictDecompress(bytes);
+		}
+	}
+
+	/**
+	 * dictionaries by id, evicts the least recently used one when full.
+	 * evicted native dictionaries are freed when they are garbage collected.
+	 */
+	private static class DictionaryCache extends LinkedHashMap<Long, ZstdDictionary> {
+		private final int maxSize;
+
+		DictionaryCache(int maxSize) {
+			super(16, 0.75f, true);
+			this.maxSize = maxSize;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Long, ZstdDictionary> eldest) {
+			return size() > maxSize;
+		}
+
+		synchronized ZstdDictionary getDictionary(long id) {
+			return get(id);
+		}
+
+		synchronized ZstdDictionary putIfAbsent(ZstdDictionary dictionary) {
+			ZstdDictionary old = get(dictionary.getId());
+			if (old != null) {
+				return old;
+			}
+			put(dictionary.getId(), dictionary);
+			return dictionary;
+		}
+	}
+
+	/**
+	 * whether the dictionaries are held by the server of one connection, by dictionary id.
+	 */
+	private static class ShipStates extends LinkedHashMap<Long, ShipState> {
+		ShipStates() {
+			super(16, 0.75f, true);
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Long, ShipState> eldest) {
+			return size() > MAX_DICT_NUM;
+		}
+
+		synchronized ShipState getState(long id, boolean create) {
+			ShipState shipState = get(id);
+			if (shipState == null && create) {
+				shipState = new ShipState();
+				put(id, shipState);
+			}
+			return shipState;
+		}
+	}
+
+	private static class ShipState {
+		// true if server has been seen to use the dictionary, so it is not shipped any more
+		private volatile boolean acked;
+		// true if server does not use the shipped dictionary, so it is not shipped any more
+		private volatile boolean refused;
+		private final AtomicInteger plainResponseNum = new AtomicInteger(0);
+
+		boolean needShip() {
+			return !acked && !refused;
+		}
+
+		void onResponse(boolean dictionaryUsed) {
+			if (dictionaryUsed) {
+				acked = true;
+				plainResponseNum.set(0);
+			} else if (acked) {
+				// server lost the dictionary, ship it again
+				acked = false;
+			} else if (plainResponseNum.incrementAndGet() >= MAX_PLAIN_RESPONSE_NUM) {
+				refused = true;
+			}
+		}
+	}
+
+	private static class TypeState {
+		// dictionary used by the type, null if not trained yet
+		private volatile ZstdDictionary dictionary;
+		private final AtomicLong responseNum = new AtomicLong(0);
+		private final AtomicBoolean training = new AtomicBoolean(false);
+		private List<byte[]> samples = new ArrayList<byte[]>();
+		private int sampleSize;
+	}
+
+	/**
+	 * set dictionary for the output type, such as one trained offline.
+	 * it replaces the former one, which is kept for decoding.
+	 *
+	 * @return dictionary id
+	 */
+	public long setDictionary(Type outputType, byte[] dictionary) {
+		ZstdDictionary zstdDictionary = register(dictionary);
+		TypeState typeState = getTypeState(typeName(outputType));
+		typeState.dictionary = zstdDictionary;
+		return zstdDictionary.getId();
+	}
+
+	/**
+	 * @return dictionary of the output type, null if it has not one.
+	 */
+	public ZstdDictionary getTypeDictionary(Type outputType) {
+		TypeState typeState = typeStates.get(typeName(outputType));
+		return typeState == null ? null : typeState.dictionary;
+	}
+
+	public ZstdDictionary getDictionary(long id) {
+		return dictionaries.getDictionary(id);
+	}
+
+	/**
+	 * called by client before encoding the request, to advertise dictionary of the response type.
+	 * the dictionary is shipped unless the server of {@link Request#getChannel()} holds or refuses it.
+	 */
+	public void attachDictionary(Request request) {
+		if (request.getCompressType() != Options.CompressType.COMPRESS_TYPE_ZSTD_VALUE
+				|| request.getRpcMethodInfo() == null) {
+			return;
+		}
+		TypeState typeState = typeStates.get(typeName(request.getRpcMethodInfo().getOutputClass()));
+		if (typeState == null || typeState.dictionary == null) {
+			return;
+		}
+		ZstdDictionary dictionary = typeState.dictionary;
+		boolean ship = true;
+		if (request.getChannel() != null) {
+			ship = getShipStates(request.getChannel()).getState(dictionary.getId(), true).needShip();
+		}
+		Map<String, Object> kvAttachment = request.getKvAttachment();
+		if (kvAttachment == null) {
+			kvAttachment = new HashMap<String, Object>();
+			request.setKvAttachment(kvAttachment);
+		}
+		try {
+			putDictionary(kvAttachment, dictionary, ship);
+		} catch (UnsupportedOperationException ex) {
+			// unmodifiable map of user
+			kvAttachment = new HashMap<String, Object>(kvAttachment);
+			putDictionary(kvAttachment, dictionary, ship);
+			request.setKvAttachment(kvAttachment);
+		}
+	}
+
+	/**
+	 * the map is sent as the kv attachment of one request, so it is modified in place,
+	 * and the dictionary is removed from it when it is not shipped, in case the map is reused by user.
+	 */
+	private static void putDictionary(Map<String, Object> kvAttachment, ZstdDictionary dictionary, boolean ship) {
+		kvAttachment.put(DICT_ID_KEY, String.valueOf(dictionary.getId()));
+		if (!ship) {
+			kvAttachment.remove(DICT_KEY);
+		} else {
+			ByteBuf encoded = Base64.encode(Unpooled.wrappedBuffer(dictionary.getBytes()), false);
+			kvAttachment.put(DICT_KEY, encoded.toString(CharsetUtil.US_ASCII));
+			encoded.release();
+		}
+	}
+
+	/**
+	 * called by client after the response is uncompressed, to sample it and learn whether the server of
+	 * {@link #setResponseChannel connection} holds the dictionary.
+	 *
+	 * @param frameDictId dictionary id in zstd frame header, 0 means no dictionary
+	 */
+	public void onResponse(RpcMethodInfo rpcMethodInfo, long frameDictId, byte[] bytes) {
+		if (!trainingEnabled && typeStates.isEmpty()) {
+			return;
+		}
+		TypeState typeState = getTypeState(typeName(rpcMethodInfo.getOutputClass()));
+		ZstdDictionary dictionary = typeState.dictionary;
+		if (dictionary != null) {
+			Channel channel = responseChannel.get();
+			ShipStates shipStates = channel == null ? null : channel.attr(SHIP_STATES_KEY).get();
+			ShipState shipState = shipStates == null ? null : shipStates.getState(dictionary.getId(), false);
+			// responses of requests not advertising the dictionary are ignored
+			if (shipState != null) {
+				shipState.onResponse(frameDictId == dictionary.getId());
+			}
+			return;
+		}
+		if (trainingEnabled) {
+			sample(typeState, bytes);
+		}
+	}
+
+	/**
+	 * called by server before encoding the response, to find the dictionary advertised by client.
+	 *
+	 * @param channel        connection of the request, which keeps the dictionaries shipped on it
+	 * @param acceptShipped  whether to register the dictionary shipped by client
+	 */
+	public void negotiate(Request request, Channel channel, boolean acceptShipped) {
+		negotiatedDictionary.remove();
+		Map<String, Object> kvAttachment = request.getKvAttachment();
+		if (kvAttachment == null || !(kvAttachment.get(DICT_ID_KEY) instanceof String)) {
+			return;
+		}
+		long id;
+		try {
+			id = Long.parseLong((String) kvAttachment.get(DICT_ID_KEY));
+		} catch (NumberFormatException ex) {
+			return;
+		}
+		ZstdDictionary dictionary = dictionaries.getDictionary(id);
+		if (dictionary == null && acceptShipped && channel != null) {
+			DictionaryCache shippedDictionaries = getShippedDictionaries(channel);
+			dictionary = shippedDictionaries.getDictionary(id);
+			if (dictionary == null && kvAttachment.get(DICT_KEY) instanceof String) {
+				dictionary = registerShipped((String) kvAttachment.get(DICT_KEY), id, shippedDictionaries);
+			}
+		}
+		if (dictionary != null) {
+			negotiatedDictionary.set(dictionary);
+		}
+	}
+
+	/**
+	 * @return dictionary negotiated for the response being encoded by current thread, null if none.
+	 */
+	public ZstdDictionary getNegotiatedDictionary() {
+		return negotiatedDictionary.get();
+	}
+
+	public void clearNegotiatedDictionary() {
+		negotiatedDictionary.remove();
+	}
+
+	/**
+	 * called by client before decoding the response, so that {@link #onResponse} knows its connection.
+	 */
+	public void setResponseChannel(Channel channel) {
+		responseChannel.set(channel);
+	}
+
+	public void clearResponseChannel() {
+		responseChannel.remove();
+	}
+
+	private ShipStates getShipStates(Channel channel) {
+		Attribute<ShipStates> attribute = channel.attr(SHIP_STATES_KEY);
+		ShipStates shipStates = attribute.get();
+		if (shipStates == null) {
+			shipStates = new ShipStates();
+			ShipStates old = attribute.setIfAbsent(shipStates);
+			if (old != null) {
+				shipStates = old;
+			}
+		}
+		return shipStates;
+	}
+
+	private DictionaryCache getShippedDictionaries(Channel channel) {
+		Attribute<DictionaryCache> attribute = channel.attr(SHIPPED_DICTIONARIES_KEY);
+		DictionaryCache shippedDictionaries = attribute.get();
+		if (shippedDictionaries == null) {
+			shippedDictionaries = new DictionaryCache(MAX_SHIPPED_DICT_NUM);
+			DictionaryCache old = attribute.setIfAbsent(shippedDictionaries);
+			if (old != null) {
+				shippedDictionaries = old;
+			}
+		}
+		return shippedDictionaries;
+	}
+
+	private ZstdDictionary registerShipped(String encodedDictionary, long id, DictionaryCache shippedDictionaries) {
+		if (encodedDictionary.length() > MAX_DICT_SIZE / 3 * 4 + 4) {
+			return null;
+		}
+		ByteBuf decoded = Base64.decode(Unpooled.copiedBuffer(encodedDictionary, CharsetUtil.US_ASCII));
+		try {
+			byte[] bytes = new byte[decoded.readableBytes()];
+			decoded.readBytes(bytes);
+			if (Zstd.getDictIdFromDict(bytes) != id) {
+				log.warn("id of shipped zstd dictionary is not {}", id);
+				return null;
+			}
+			return shippedDictionaries.putIfAbsent(new ZstdDictionary(id, bytes, level));
+		} catch (Exception ex) {
+			log.warn("register shipped zstd dictionary failed:", ex);
+			return null;
+		} finally {
+			decoded.release();
+		}
+	}
+
+	private ZstdDictionary register(byte[] bytes) {
+		long id = Zstd.getDictIdFromDict(bytes);
+		if (id == 0) {
+			throw new IllegalArgumentException("not a zstd dictionary");
+		}
+		ZstdDictionary dictionary = dictionaries.getDictionary(id);
+		if (dictionary == null) {
+			dictionary = dictionaries.putIfAbsent(new ZstdDictionary(id, bytes, level));
+		}
+		return dictionary;
+	}
+
+	private void sample(final TypeState typeState, byte[] bytes) {
+		if (typeState.training.get() || typeState.responseNum.incrementAndGet() % sampleRate != 0) {
+			return;
+		}
+		final List<byte[]> samples;
+		final int sampleSize;
+		synchronized (typeState) {
+			typeState.samples.add(bytes);
+			typeState.sampleSize += bytes.length;
+			if (typeState.samples.size() < sampleNum || !typeState.training.compareAndSet(false, true)) {
+				return;
+			}
+			samples = typeState.samples;
+			sampleSize = typeState.sampleSize;
+			typeState.samples = new ArrayList<byte[]>();
+			typeState.sampleSize = 0;
+		}
+		getTrainExecutor().execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					ZstdDictTrainer trainer = new ZstdDictTrainer(sampleSize, dictSize);
+					for (byte[] sample : samples) {
+						trainer.addSample(sample);
+					}
+					ZstdDictionary dictionary = register(trainer.trainSamples());
+					typeState.dictionary = dictionary;
+					log.info("zstd dictionary {} is trained from {} samples", dictionary.getId(), samples.size());
+				} catch (Exception ex) {
+					// too few or too random samples, try again with the next ones
+					log.warn("train zstd dictionary failed:", ex);
+				} finally {
+					typeState.training.set(false);
+				}
+			}
+		});
+	}
+
+	private ExecutorService getTrainExecutor() {
+		if (trainExecutor == null) {
+			synchronized (this) {
+				if (trainExecutor == null) {
+					trainExecutor = Executors.newSingleThreadExecutor(
+							new CustomThreadFactory("zstd-dict-train-thread"));
+				}
+			}
+		}
+		return trainExecutor;
+	}
+
+	private TypeState getTypeState(String typeName) {
+		TypeState typeState = typeStates.get(typeName);
+		if (typeState == null) {
+			typeState = new TypeState();
+			TypeState old = typeStates.putIfAbsent(typeName, typeState);
+			if (old != null) {
+				typeState = old;
+			}
+		}
+		return typeState;
+	}
+
+	private static String typeName(Type type) {
+		return type instanceof Class ? ((Class) type).getName() : String.valueOf(type);
+	}
+}
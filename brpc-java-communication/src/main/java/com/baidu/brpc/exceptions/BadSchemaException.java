@@ -55,6 +55,19 @@ public class BadSchemaException extends Exception {
 		this.code = code;
 	}
 
+	/**
+	 * create an exception without stack trace, it is preallocated and thrown only for control flow,
+	 * so that decoding does not pay for filling stack trace.
+	 */
+	public static BadSchemaException stackless(String message) {
+		return new BadSchemaException(message) {
+			@Override
+			public synchronized Throwable fillInStackTrace() {
+				return this;
+			}
+		};
+	}
+
 	public int getCode() {
 		return code;
 	}
@@ -16,6 +16,7 @@
 
 package com.baidu.brpc.interceptor;
 
+import com.baidu.brpc.RpcMethodInfo;
 import com.baidu.brpc.exceptions.RpcException;
 import com.baidu.brpc.protocol.Request;
 import com.baidu.brpc.protocol.Response;
@@ -29,7 +30,12 @@ public class ServerInvokeInterceptor extends AbstractInterceptor {
     @Override
     public void aroundProcess(Request request, Response response, InterceptorChain chain) throws RpcException {
         try {
-            response.setResult(request.getTargetMethod().invoke(request.getTarget(), request.getArgs()));
+            RpcMethodInfo rpcMethodInfo = request.getRpcMethodInfo();
+            if (rpcMethodInfo != null && rpcMethodInfo.getMethod() == request.getTargetMethod()) {
+                response.setResult(rpcMethodInfo.invoke(request.getTarget(), request.getArgs()));
+            } else {
+                response.setResult(request.getTargetMethod().invoke(request.getTarget(), request.getArgs()));
+            }
         } catch (InvocationTargetException ex) {
             Throwable targetException = ex.getTargetException();
             if (targetException == null) {
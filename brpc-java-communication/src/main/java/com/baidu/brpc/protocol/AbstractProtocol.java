@@ -16,6 +16,7 @@
 
 package com.baidu.brpc.protocol;
 
+import com.baidu.brpc.buffer.DynamicCompositeByteBuf;
 import com.baidu.brpc.exceptions.NotEnoughDataException;
 
 import io.netty.channel.ChannelFuture;
@@ -27,7 +28,24 @@ import io.netty.channel.ChannelFuture;
  */
 public abstract class AbstractProtocol implements Protocol {
 
-    protected static NotEnoughDataException notEnoughDataException = new NotEnoughDataException();
+    protected static NotEnoughDataException notEnoughDataException = NotEnoughDataException.stackless(
+            "not enough data");
+
+    // 512M
+    protected static final int MAX_BODY_SIZE = 512 * 1024 * 1024;
+
+    /**
+     * helper of {@link FrameCheckProtocol#checkFrame} for frames of fixed head and body.
+     *
+     * @return bytes still needed, 0 if the frame is complete or body size is invalid
+     */
+    protected static int remainingFrameBytes(DynamicCompositeByteBuf in, int headSize, int bodySize) {
+        if (bodySize < 0 || bodySize > MAX_BODY_SIZE) {
+            // decode will report the error
+            return 0;
+        }
+        return Math.max(headSize + bodySize - in.readableBytes(), 0);
+    }
 
     @Override
     public Request createRequest() {
@@ -67,6 +85,11 @@ public abstract class AbstractProtocol implements Protocol {
         return true;
     }
 
+    @Override
+    public void afterRequestSent(Request request, ChannelFuture channelFuture) {
+        // By default, in tcp protocols, there's nothing to to
+    }
+
     @Override
     public void afterResponseSent(Request request, Response response, ChannelFuture channelFuture) {
         // By default, in tcp protocols, there's nothing to to
@@ -23,6 +23,8 @@ import com.baidu.brpc.RpcMethodInfo;
 import com.baidu.brpc.client.CommunicationClient;
 import com.baidu.brpc.client.RpcCallback;
 import com.baidu.brpc.client.RpcFuture;
+import com.baidu.brpc.compress.Compress;
+import com.baidu.brpc.compress.CompressManager;
 import com.baidu.brpc.exceptions.RpcException;
 import com.baidu.brpc.protocol.nshead.NSHead;
 import com.baidu.brpc.protocol.push.SPHead;
@@ -46,10 +48,13 @@ public abstract class AbstractRequest implements Request {
     private String serviceName;
     private String methodName;
     private Object[] args;
+    // args are decoded from it on first access, just used by server
+    private ByteBuf encodedBody;
     private NSHead nsHead;
     private SPHead spHead;
     private Map<String, Object> kvAttachment;
     private ByteBuf binaryAttachment;
+    private AttachmentStream attachmentStream;
     private int compressType;
     private RpcException exception;
     private Channel channel;
@@ -85,9 +90,11 @@ public abstract class AbstractRequest implements Request {
         serviceName = null;
         methodName = null;
         args = null;
+        encodedBody = null;
         nsHead = null;
         kvAttachment = null;
         binaryAttachment = null;
+        attachmentStream = null;
         compressType = 0;
         exception = null;
         channel = null;
@@ -106,6 +113,20 @@ public abstract class AbstractRequest implements Request {
         heartbeat = false;
     }
 
+    @Override
+    public Object[] getArgs() {
+        if (args == null && encodedBody != null) {
+            try {
+                Compress compress = CompressManager.getInstance().getCompress(compressType);
+                Object proto = compress.uncompressInput(encodedBody.duplicate(), rpcMethodInfo);
+                args = new Object[] {proto};
+            } catch (Exception ex) {
+                throw new RpcException(RpcException.SERIALIZATION_EXCEPTION, "decode request failed", ex);
+            }
+        }
+        return args;
+    }
+
     @Override
     public Request retain() {
         if (binaryAttachment != null) {
@@ -120,5 +141,9 @@ public abstract class AbstractRequest implements Request {
             binaryAttachment.release();
             binaryAttachment = null;
         }
+        if (encodedBody != null && encodedBody.refCnt() > 0) {
+            encodedBody.release();
+            encodedBody = null;
+        }
     }
 }
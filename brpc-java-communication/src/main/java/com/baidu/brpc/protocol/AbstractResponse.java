@@ -27,6 +27,7 @@ public abstract class AbstractResponse implements Response {
     private RpcFuture rpcFuture;
     private Map<String, Object> kvAttachment;
     private ByteBuf binaryAttachment;
+    private AttachmentStream attachmentStream;
     private int compressType;
     private boolean heartbeat;
     private NSHead nsHead;
@@ -42,6 +43,7 @@ public abstract class AbstractResponse implements Response {
         nsHead = null;
         kvAttachment = null;
         binaryAttachment = null;
+        attachmentStream = null;
         compressType = 0;
         heartbeat = false;
     }
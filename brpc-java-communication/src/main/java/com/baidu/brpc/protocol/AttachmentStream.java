@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.brpc.protocol;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.baidu.brpc.exceptions.RpcException;
+
+import io.netty.buffer.ByteBuf;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Receiver side of a binary attachment which is sent in chunks (chunk_info of baidu_std).
+ * Chunks are pushed by the io thread as soon as they are decoded,
+ * so the whole attachment never needs to be buffered in the channel recvBuf.
+ * <ul>
+ * <li>chunks arrived before {@link #subscribe(Listener)} are kept, but at most {@code windowSize} bytes,
+ * the stream fails when the window is exceeded.
+ * Bytes kept by all streams of a connection are counted in {@code connectionPendingSize},
+ * which is limited by {@link com.baidu.brpc.ChannelInfo#checkAttachmentWindow()}.</li>
+ * <li>the listener is called in io thread, it must not block,
+ * and it owns every chunk passed to {@link Listener#onChunk(ByteBuf)}, so it must release them.</li>
+ * <li>the receiver must subscribe or {@link #cancel()} the stream, otherwise the kept chunks leak.</li>
+ * </ul>
+ */
+@Slf4j
+@Getter
+public class AttachmentStream {
+    public static final int DEFAULT_WINDOW_SIZE = 64 * 1024 * 1024;
+    public static final int DEFAULT_CONNECTION_WINDOW_SIZE = 256 * 1024 * 1024;
+
+    public interface Listener {
+        void onChunk(ByteBuf chunk);
+
+        void onComplete();
+
+        void onError(Throwable cause);
+    }
+
+    private final long streamId;
+    // total attachment size, read from attachment_size of the head chunk
+    private final long totalSize;
+    // max bytes kept before subscribe
+    private final int windowSize;
+    // bytes kept by all streams of the connection, null if not counted
+    private final AtomicLong connectionPendingSize;
+    private long receivedSize;
+    private int pendingSize;
+    private Queue<ByteBuf> pendingChunks = new ArrayDeque<ByteBuf>();
+    private Listener listener;
+    private Throwable cause;
+    private boolean cancelled;
+
+    public AttachmentStream(long streamId, long totalSize) {
+        this(streamId, totalSize, DEFAULT_WINDOW_SIZE);
+    }
+
+    public AttachmentStream(long streamId, long totalSize, int windowSize) {
+        this(streamId, totalSize, windowSize, null);
+    }
+
+    public AttachmentStream(long streamId, long totalSize, int windowSize, AtomicLong connectionPendingSize) {
+        this.streamId = streamId;
+        this.totalSize = totalSize;
+        this.windowSize = windowSize;
+        this.connectionPendingSize = connectionPendingSize;
+    }
+
+    public synchronized void subscribe(Listener listener) {
+        if (this.listener != null) {
+            throw new IllegalStateException("attachment stream has been subscribed");
+        }
+        this.listener = listener;
+        ByteBuf chunk;
+        while ((chunk = pendingChunks.poll()) != null) {
+            listener.onChunk(chunk);
+        }
+        addPendingSize(-pendingSize);
+        if (cause != null) {
+            listener.onError(cause);
+        } else if (isComplete()) {
+            listener.onComplete();
+        }
+    }
+
+    /**
+     * drop the kept chunks and all chunks arrived later.
+     */
+    public synchronized void cancel() {
+        cancelled = true;
+        releasePendingChunks();
+    }
+
+    /**
+     * called by protocol when a chunk is decoded, the stream owns the chunk.
+     *
+     * @return false if the stream is finished and need no more chunks
+     */
+    public synchronized boolean offer(ByteBuf chunk) {
+        if (cancelled || cause != null || isComplete()) {
+            chunk.release();
+            return false;
+        }
+        receivedSize += chunk.readableBytes();
+        if (receivedSize > totalSize) {
+            chunk.release();
+            fail(new RpcException(RpcException.SERIALIZATION_EXCEPTION,
+                    "attachment stream " + streamId + " receives more than " + totalSize + " bytes"));
+            return false;
+        }
+        if (listener != null) {
+            listener.onChunk(chunk);
+            if (isComplete()) {
+                listener.onComplete();
+            }
+        } else {
+            pendingChunks.add(chunk);
+            addPendingSize(chunk.readableBytes());
+            if (pendingSize > windowSize) {
+                fail(new RpcException(RpcException.SERIALIZATION_EXCEPTION,
+                        "attachment stream " + streamId + " exceeds window size " + windowSize));
+                return false;
+            }
+        }
+        return !isComplete();
+    }
+
+    /**
+     * fail the stream when connection is closed or protocol error,
+     * it has no effect when the stream is already complete.
+     */
+    public synchronized void fail(Throwable cause) {
+        if (this.cause != null || isComplete()) {
+            return;
+        }
+        log.debug("attachment stream {} failed, received={}, total={}", streamId, receivedSize, totalSize);
+        this.cause = cause;
+        releasePendingChunks();
+        if (listener != null) {
+            listener.onError(cause);
+        }
+    }
+
+    public synchronized boolean isComplete() {
+        return receivedSize >= totalSize;
+    }
+
+    public synchronized boolean isSubscribed() {
+        return listener != null;
+    }
+
+    private void releasePendingChunks() {
+        ByteBuf chunk;
+        while ((chunk = pendingChunks.poll()) != null) {
+            chunk.release();
+        }
+        addPendingSize(-pendingSize);
+    }
+
+    private void addPendingSize(int delta) {
+        pendingSize += delta;
+        if (connectionPendingSize != null && delta != 0) {
+            connectionPendingSize.addAndGet(delta);
+        }
+    }
+}
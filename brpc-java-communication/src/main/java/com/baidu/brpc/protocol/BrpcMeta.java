@@ -31,4 +31,14 @@ public @interface BrpcMeta {
 	 * 发给服务端的方法名称，对于brpc标准协议，名称为proto文件中service里的方法名
 	 */
 	String methodName() default "";
+
+	/**
+	 * 请求的压缩类型，取值为{@link Options.CompressType}的number，-1表示使用RpcClientOptions的compressType
+	 */
+	int requestCompressType() default -1;
+
+	/**
+	 * 响应的压缩类型，取值为{@link Options.CompressType}的number，-1表示与请求的压缩类型相同
+	 */
+	int responseCompressType() default -1;
 }
@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.brpc.protocol;
+
+import com.baidu.brpc.buffer.DynamicCompositeByteBuf;
+import com.baidu.brpc.exceptions.NotEnoughDataException;
+
+/**
+ * Protocol which can tell whether the next frame is complete without decoding it.
+ * The read loop of client and server calls {@link #checkFrame} before {@link Protocol#decode},
+ * and stops when more bytes are needed, instead of catching {@link NotEnoughDataException},
+ * which happens on almost every read of large messages.
+ * <p>
+ * {@link Protocol#decode} of these protocols may return null,
+ * when the decoded frame is consumed by the protocol itself, such as an attachment chunk.
+ */
+public interface FrameCheckProtocol {
+
+    /**
+     * check the next frame, the reader index of buffer is not changed.
+     *
+     * @param in received bytes of the channel
+     * @return number of bytes still needed by the next frame,
+     * 0 if the frame is complete, or it is invalid and {@link Protocol#decode} should report the error.
+     */
+    int checkFrame(DynamicCompositeByteBuf in);
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.brpc.protocol;
+
+/**
+ * Protocol which can decode the header and meta of a request without its body.
+ * Server uses it to find the method of the request in io thread, so only requests of
+ * {@link com.baidu.brpc.server.NonBlocking} methods are handled there,
+ * and bodies of the other requests are decoded by work threads.
+ */
+public interface LazyDecodeProtocol {
+
+    /**
+     * decode the request like {@link Protocol#decodeRequest}, but keep the body in {@link Request#getEncodedBody()},
+     * which is decoded on the first access of {@link Request#getArgs()}.
+     */
+    Request decodeRequestHeader(Object packet) throws Exception;
+}
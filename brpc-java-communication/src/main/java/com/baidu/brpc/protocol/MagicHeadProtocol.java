@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.brpc.protocol;
+
+/**
+ * Coexistence protocol which can be recognized by 4 fixed bytes of its packet.
+ * Server reads these bytes of the first packet on a new connection,
+ * and selects the protocol by {@link ProtocolManager#sniffProtocols},
+ * instead of trying to decode with every coexistence protocol.
+ * Coexistence protocols without magic head are tried after all magic heads are not matched.
+ */
+public interface MagicHeadProtocol {
+
+    /**
+     * offset of the magic head in packet.
+     */
+    int getMagicHeadOffset();
+
+    /**
+     * valid magic heads, each is 4 bytes read in big endian order at {@link #getMagicHeadOffset()}.
+     */
+    int[] getMagicHeads();
+}
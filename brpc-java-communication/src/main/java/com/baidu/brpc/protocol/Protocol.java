@@ -100,6 +100,12 @@ public interface Protocol {
      */
     boolean returnChannelBeforeResponse();
 
+    /**
+     * do something if needed after client channel writeAndFlush
+     * @param channelFuture the return value of writeAndFlush
+     */
+    void afterRequestSent(Request request, ChannelFuture channelFuture);
+
     /**************** 仅服务端需要实现的函数 *******************/
 
     /**
@@ -20,6 +20,9 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+
+import com.baidu.brpc.buffer.DynamicCompositeByteBuf;
 
 import lombok.extern.slf4j.Slf4j;
 
@@ -32,6 +35,11 @@ public class ProtocolManager {
     private Map<Integer, Protocol> protocolMap = new HashMap<Integer, Protocol>();
     private List<Protocol> coexistenceProtocols = new ArrayList<Protocol>();
     private int coexistenceProtocolSize = 0;
+    // key is offset of magic head, value is map from magic head to candidate protocols
+    private Map<Integer, Map<Integer, List<Protocol>>> magicHeadProtocolMap
+            = new TreeMap<Integer, Map<Integer, List<Protocol>>>();
+    // coexistence protocols which are not MagicHeadProtocol
+    private List<Protocol> noMagicHeadProtocols = new ArrayList<Protocol>();
 
     private static ProtocolManager instance;
 
@@ -63,10 +71,71 @@ public class ProtocolManager {
         if (protocol.isCoexistence()) {
             coexistenceProtocols.add(protocol);
             coexistenceProtocolSize++;
+            buildMagicHeadIndex();
         }
         log.info("register protocol:{} success", protocolFactory.getProtocolName());
     }
 
+    /**
+     * select candidate coexistence protocols by magic heads of the first packet on a connection.
+     * Candidates of a matched magic head are followed by protocols without magic head,
+     * so the caller still tries to decode with them in order.
+     *
+     * @param in buffer of the connection, its reader index is not changed
+     * @return candidate protocols, they are all coexistence protocols when the packet is too short to check
+     */
+    public List<Protocol> sniffProtocols(DynamicCompositeByteBuf in) {
+        int readableBytes = in.readableBytes();
+        boolean allChecked = true;
+        for (Map.Entry<Integer, Map<Integer, List<Protocol>>> entry : magicHeadProtocolMap.entrySet()) {
+            int offset = entry.getKey();
+            if (readableBytes < offset + 4) {
+                allChecked = false;
+                break;
+            }
+            List<Protocol> protocols = entry.getValue().get(in.getInt(offset));
+            if (protocols != null) {
+                return protocols;
+            }
+        }
+        // not enough data, each protocol decides whether to wait for more data
+        return allChecked ? noMagicHeadProtocols : coexistenceProtocols;
+    }
+
+    private void buildMagicHeadIndex() {
+        Map<Integer, Map<Integer, List<Protocol>>> protocolMap = new TreeMap<Integer, Map<Integer, List<Protocol>>>();
+        List<Protocol> noMagicProtocols = new ArrayList<Protocol>();
+        for (Protocol protocol : coexistenceProtocols) {
+            if (!(protocol instanceof MagicHeadProtocol)) {
+                noMagicProtocols.add(protocol);
+                continue;
+            }
+            MagicHeadProtocol magicHeadProtocol = (MagicHeadProtocol) protocol;
+            Map<Integer, List<Protocol>> magicMap = protocolMap.get(magicHeadProtocol.getMagicHeadOffset());
+            if (magicMap == null) {
+                magicMap = new HashMap<Integer, List<Protocol>>();
+                protocolMap.put(magicHeadProtocol.getMagicHeadOffset(), magicMap);
+            }
+            for (int magicHead : magicHeadProtocol.getMagicHeads()) {
+                List<Protocol> protocols = magicMap.get(magicHead);
+                if (protocols == null) {
+                    protocols = new ArrayList<Protocol>();
+                    magicMap.put(magicHead, protocols);
+                }
+                if (!protocols.contains(protocol)) {
+                    protocols.add(protocol);
+                }
+            }
+        }
+        for (Map<Integer, List<Protocol>> magicMap : protocolMap.values()) {
+            for (List<Protocol> protocols : magicMap.values()) {
+                protocols.addAll(noMagicProtocols);
+            }
+        }
+        magicHeadProtocolMap = protocolMap;
+        noMagicHeadProtocols = noMagicProtocols;
+    }
+
     public Protocol getProtocol(Integer protocolType) {
         Protocol protocol = protocolMap.get(protocolType);
         if (protocol != null) {
@@ -83,10 +83,26 @@ public interface Request {
 
     void setMethodName(String methodName);
 
+    /**
+     * if {@link #getEncodedBody()} is set, args are decoded from it on first access.
+     *
+     * @throws RpcException if the encoded body can not be decoded
+     */
     Object[] getArgs();
 
     void setArgs(Object[] newArgs);
 
+    /**
+     * encoded request body kept by server for method which decodes lazily,
+     * see {@link com.baidu.brpc.server.LazyDecode}.
+     * it is compressed with {@link #getCompressType()}, and released after the response is sent.
+     * messages decoded from it, such as {@link com.baidu.brpc.serialize.RawMessage}, share the buffer,
+     * service should {@code retain()} them if they are used after the response is sent.
+     */
+    ByteBuf getEncodedBody();
+
+    void setEncodedBody(ByteBuf encodedBody);
+
     Map<String, Object> getKvAttachment();
 
     void setKvAttachment(Map<String, Object> requestKvAttachment);
@@ -95,6 +111,14 @@ public interface Request {
 
     void setBinaryAttachment(ByteBuf requestBinaryAttachment);
 
+    /**
+     * not null if the binary attachment is received in chunks,
+     * in this case {@link #getBinaryAttachment()} returns null.
+     */
+    AttachmentStream getAttachmentStream();
+
+    void setAttachmentStream(AttachmentStream attachmentStream);
+
     int getCompressType();
 
     void setCompressType(int number);
@@ -60,6 +60,14 @@ public interface Response {
 
     void setBinaryAttachment(ByteBuf binaryAttachment);
 
+    /**
+     * not null if the binary attachment is received in chunks,
+     * in this case {@link #getBinaryAttachment()} returns null.
+     */
+    AttachmentStream getAttachmentStream();
+
+    void setAttachmentStream(AttachmentStream attachmentStream);
+
     int getCompressType();
 
     void setCompressType(int compressType);
@@ -16,12 +16,16 @@ public class DubboHeader {
 
     public ByteBuf encode() {
         ByteBuf byteBuf = Unpooled.buffer(DubboConstants.FIXED_HEAD_LEN);
+        encode(byteBuf);
+        return byteBuf;
+    }
+
+    public void encode(ByteBuf byteBuf) {
         byteBuf.writeShort(DubboConstants.MAGIC);
         byteBuf.writeByte(flag);
         byteBuf.writeByte(status);
         byteBuf.writeLong(correlationId);
         byteBuf.writeInt(bodyLength);
-        return byteBuf;
     }
 
     public static DubboHeader decode(ByteBuf byteBuf) {
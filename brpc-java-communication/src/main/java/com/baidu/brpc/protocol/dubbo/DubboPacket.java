@@ -7,8 +7,8 @@ import io.netty.buffer.ByteBufInputStream;
 import lombok.Getter;
 import lombok.Setter;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 
 @Setter
 @Getter
@@ -16,13 +16,11 @@ public class DubboPacket {
     private DubboHeader header;
     private ByteBuf bodyBuf;
 
-    public static byte[] encodeHeartbeatBody() throws IOException {
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    public static void encodeHeartbeatBody(OutputStream outputStream) throws IOException {
         Hessian2Output hessian2Output = new Hessian2Output(outputStream);
+        hessian2Output.setSerializerFactory(DubboRequestBody.SERIALIZER_FACTORY);
         hessian2Output.writeString(DubboConstants.HEARTBEAT_EVENT);
         hessian2Output.flushBuffer();
-        byte[] bodyBytes = outputStream.toByteArray();
-        return bodyBytes;
     }
 
     public static Object decodeEventBody(ByteBuf bodyBuf) throws IOException {
@@ -30,6 +28,7 @@ public class DubboPacket {
         try {
             inputStream = new ByteBufInputStream(bodyBuf, true);
             Hessian2Input hessian2Input = new Hessian2Input(inputStream);
+            hessian2Input.setSerializerFactory(DubboRequestBody.SERIALIZER_FACTORY);
             Object bodyObject = hessian2Input.readObject();
             return bodyObject;
         } finally {
@@ -12,9 +12,8 @@ import lombok.Getter;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.lang.reflect.Type;
+import java.io.OutputStream;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -31,19 +30,22 @@ public class DubboRequestBody {
     private String version; // version of service
     private String methodName;
     private Class<?>[] parameterTypes;
+    private String parameterDesc; // desc of parameterTypes, built from it if null
     private Object[] arguments;
     private Map<String, String> attachments = new HashMap<String, String>();
     private RpcMethodInfo rpcMethodInfo; // not serialize
 
-    public byte[] encodeRequestBody() throws IOException {
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    /**
+     * write body into outputStream, which is usually backed by the pooled buffer of the whole packet.
+     */
+    public void encodeRequestBody(OutputStream outputStream) throws IOException {
         Hessian2Output hessian2Output = new Hessian2Output(outputStream);
         hessian2Output.setSerializerFactory(SERIALIZER_FACTORY);
         hessian2Output.writeString(dubboProtocolVersion);
         hessian2Output.writeString(path);
         hessian2Output.writeString(version);
         hessian2Output.writeString(methodName);
-        hessian2Output.writeString(ReflectUtils.getDesc(parameterTypes));
+        hessian2Output.writeString(parameterDesc != null ? parameterDesc : ReflectUtils.getDesc(parameterTypes));
         if (arguments != null) {
             for (int i = 0; i < arguments.length; i++) {
                 hessian2Output.writeObject(arguments[i]);
@@ -53,7 +55,6 @@ public class DubboRequestBody {
             hessian2Output.writeObject(attachments);
         }
         hessian2Output.flushBuffer();
-        return outputStream.toByteArray();
     }
 
     public static DubboRequestBody decodeRequestBody(ByteBuf requestBodyBuf) throws IOException {
@@ -76,22 +77,20 @@ public class DubboRequestBody {
                         "service not found, serviceName:" + serviceName + ", methodName:{}" + methodName);
             }
             requestBody.setRpcMethodInfo(rpcMethodInfo);
-            Type[] inputTypes = rpcMethodInfo.getInputClasses();
 
             Object[] args;
             Class<?>[] pts;
             String desc = hessian2Input.readString();
             if (desc.length() == 0) {
-                pts = new Class<?>[0];
+                pts = ReflectUtils.EMPTY_CLASS_ARRAY;
                 args = new Object[0];
             } else {
-                // 优化反射
-//                pts = ReflectUtils.desc2classArray(desc);
-                pts = new Class[inputTypes.length];
-                args = new Object[inputTypes.length];
+                // parameter types of the registered method are resolved once,
+                // instead of parsing desc by ReflectUtils.desc2classArray for each request.
+                pts = ReflectUtils.getParameterTypes(rpcMethodInfo.getMethod());
+                args = new Object[pts.length];
                 for (int i = 0; i < args.length; i++) {
                     try {
-                        pts[i] = (Class<?>) inputTypes[i];
                         args[i] = hessian2Input.readObject(pts[i]);
                     } catch (Exception e) {
                         if (log.isWarnEnabled()) {
@@ -100,6 +99,7 @@ public class DubboRequestBody {
                     }
                 }
             }
+            requestBody.setParameterDesc(desc);
             requestBody.setParameterTypes(pts);
             requestBody.setArguments(args);
 
@@ -7,8 +7,8 @@ import io.netty.buffer.ByteBufInputStream;
 import lombok.Getter;
 import lombok.Setter;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.Map;
 
 @Setter
@@ -19,8 +19,7 @@ public class DubboResponseBody {
     private Throwable exception = null;
     private Map<String, String> attachments;
 
-    public byte[] encodeResponseBody() throws IOException {
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(DubboConstants.DEFAULT_OUTPUT_BUFFER_SIZE);
+    public void encodeResponseBody(OutputStream outputStream) throws IOException {
         Hessian2Output hessian2Output = new Hessian2Output(outputStream);
         hessian2Output.setSerializerFactory(DubboRequestBody.SERIALIZER_FACTORY);
         hessian2Output.writeInt(responseType);
@@ -28,28 +27,21 @@ public class DubboResponseBody {
         if (attachments != null && attachments.size() > 0) {
             hessian2Output.writeObject(attachments);
         }
-        hessian2Output.flush();
-        return outputStream.toByteArray();
+        hessian2Output.flushBuffer();
     }
 
-    public static byte[] encodeErrorResponseBody(String errorMessage) throws IOException {
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    public static void encodeErrorResponseBody(String errorMessage, OutputStream outputStream) throws IOException {
         Hessian2Output hessian2Output = new Hessian2Output(outputStream);
         hessian2Output.setSerializerFactory(DubboRequestBody.SERIALIZER_FACTORY);
         hessian2Output.writeString(errorMessage);
-        hessian2Output.flush();
-        byte[] bodyBytes = outputStream.toByteArray();
-        return bodyBytes;
+        hessian2Output.flushBuffer();
     }
 
-    public static byte[] encodeHeartbeatResponseBody() throws IOException {
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    public static void encodeHeartbeatResponseBody(OutputStream outputStream) throws IOException {
         Hessian2Output hessian2Output = new Hessian2Output(outputStream);
         hessian2Output.setSerializerFactory(DubboRequestBody.SERIALIZER_FACTORY);
         hessian2Output.writeString(DubboConstants.HEARTBEAT_EVENT);
-        hessian2Output.flush();
-        byte[] bodyBytes = outputStream.toByteArray();
-        return bodyBytes;
+        hessian2Output.flushBuffer();
     }
 
     public static DubboResponseBody decodeResponseBody(ByteBuf responseBodyBuf) throws IOException {
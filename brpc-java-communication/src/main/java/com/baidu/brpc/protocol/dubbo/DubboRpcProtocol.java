@@ -28,7 +28,8 @@ import com.baidu.brpc.protocol.*;
 import com.baidu.brpc.server.ServiceManager;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufInputStream;
-import io.netty.buffer.Unpooled;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.channel.ChannelHandlerContext;
 import lombok.extern.slf4j.Slf4j;
 
@@ -39,16 +40,30 @@ import java.util.Map;
  * dubbo protocol with hession2 serialization
  */
 @Slf4j
-public class DubboRpcProtocol extends AbstractProtocol {
+public class DubboRpcProtocol extends AbstractProtocol implements FrameCheckProtocol {
     protected static final byte FLAG_REQUEST = (byte) 0x80;
     protected static final byte FLAG_TWOWAY = (byte) 0x40;
     protected static final byte FLAG_EVENT = (byte) 0x20;
 
     private static final NotEnoughDataException notEnoughDataException
-            = new NotEnoughDataException("not enough data");
+            = NotEnoughDataException.stackless("not enough data");
+    private static final BadSchemaException badMagicHeadException
+            = BadSchemaException.stackless("not valid magic head for dubbo");
 
     private ServiceManager serviceManager = ServiceManager.getInstance();
 
+    @Override
+    public int checkFrame(DynamicCompositeByteBuf in) {
+        if (in.readableBytes() < DubboConstants.FIXED_HEAD_LEN) {
+            return DubboConstants.FIXED_HEAD_LEN - in.readableBytes();
+        }
+        if ((short) (in.getInt(0) >>> 16) != DubboConstants.MAGIC) {
+            return 0;
+        }
+        // body length is after magic, flag, status and correlation id
+        return remainingFrameBytes(in, DubboConstants.FIXED_HEAD_LEN, in.getInt(12));
+    }
+
     @Override
     public Object decode(ChannelHandlerContext ctx, DynamicCompositeByteBuf in, boolean isDecodingRequest)
             throws TooBigDataException, NotEnoughDataException, BadSchemaException {
@@ -59,7 +74,7 @@ public class DubboRpcProtocol extends AbstractProtocol {
         try {
             DubboHeader dubboHeader = DubboHeader.decode(headerBuf);
             if (dubboHeader.getMagic() != DubboConstants.MAGIC) {
-                throw new BadSchemaException("not valid magic head for dubbo");
+                throw badMagicHeadException;
             }
             // 512M
             if (dubboHeader.getBodyLength() > 512 * 1024 * 1024) {
@@ -95,30 +110,35 @@ public class DubboRpcProtocol extends AbstractProtocol {
         header.setFlag(flag);
         header.setCorrelationId(request.getCorrelationId());
 
-        byte[] bodyBytes = null;
-        if (request.isHeartbeat()) {
-            bodyBytes = DubboPacket.encodeHeartbeatBody();
-        } else {
-            DubboRequestBody requestBody = new DubboRequestBody();
-            requestBody.setPath(request.getServiceName());
-            requestBody.setVersion(request.getSubscribeInfo().getVersion());
-            requestBody.setMethodName(request.getMethodName());
-            requestBody.setParameterTypes(request.getTargetMethod().getParameterTypes());
-            requestBody.setArguments(request.getArgs());
+        ByteBuf packet = allocatePacket();
+        try {
+            ByteBufOutputStream outputStream = new ByteBufOutputStream(packet);
+            if (request.isHeartbeat()) {
+                DubboPacket.encodeHeartbeatBody(outputStream);
+            } else {
+                DubboRequestBody requestBody = new DubboRequestBody();
+                requestBody.setPath(request.getServiceName());
+                requestBody.setVersion(request.getSubscribeInfo().getVersion());
+                requestBody.setMethodName(request.getMethodName());
+                requestBody.setParameterTypes(ReflectUtils.getParameterTypes(request.getTargetMethod()));
+                requestBody.setParameterDesc(ReflectUtils.getParameterDesc(request.getTargetMethod()));
+                requestBody.setArguments(request.getArgs());
 
-            Map<String, String> kvAttachments = new HashMap<String, String>();
-            kvAttachments.put("group", request.getSubscribeInfo().getGroup());
-            if (request.getKvAttachment() != null) {
-                for (Map.Entry<String, Object> entry : request.getKvAttachment().entrySet()) {
-                    kvAttachments.put(entry.getKey(), (String) entry.getValue());
+                Map<String, String> kvAttachments = new HashMap<String, String>();
+                kvAttachments.put("group", request.getSubscribeInfo().getGroup());
+                if (request.getKvAttachment() != null) {
+                    for (Map.Entry<String, Object> entry : request.getKvAttachment().entrySet()) {
+                        kvAttachments.put(entry.getKey(), (String) entry.getValue());
+                    }
                 }
+                requestBody.setAttachments(kvAttachments);
+                requestBody.encodeRequestBody(outputStream);
             }
-            requestBody.setAttachments(kvAttachments);
-            bodyBytes = requestBody.encodeRequestBody();
+            return finishPacket(header, packet);
+        } catch (Exception ex) {
+            packet.release();
+            throw ex;
         }
-        header.setBodyLength(bodyBytes.length);
-
-        return Unpooled.wrappedBuffer(header.encode(), Unpooled.wrappedBuffer(bodyBytes));
     }
 
     @Override
@@ -161,6 +181,7 @@ public class DubboRpcProtocol extends AbstractProtocol {
             try {
                 inputStream = new ByteBufInputStream(dubboPacket.getBodyBuf(), true);
                 Hessian2Input hessian2Input = new Hessian2Input(inputStream);
+                hessian2Input.setSerializerFactory(DubboRequestBody.SERIALIZER_FACTORY);
                 String errorString = hessian2Input.readString();
                 response.setException(new RpcException(RpcException.SERVICE_EXCEPTION, errorString));
             } finally {
@@ -214,7 +235,9 @@ public class DubboRpcProtocol extends AbstractProtocol {
 
     @Override
     public ByteBuf encodeResponse(Request request, Response response) throws Exception {
+        ByteBuf packet = allocatePacket();
         try {
+            ByteBufOutputStream outputStream = new ByteBufOutputStream(packet);
             DubboHeader dubboHeader = new DubboHeader();
             DubboResponseBody responseBody = new DubboResponseBody();
             dubboHeader.setFlag(getContentTypeId());
@@ -224,15 +247,11 @@ public class DubboRpcProtocol extends AbstractProtocol {
             dubboHeader.setCorrelationId(response.getCorrelationId());
             if (response.getException() != null) {
                 dubboHeader.setStatus(DubboConstants.SERVICE_ERROR);
-                byte[] bodyBytes = DubboResponseBody.encodeErrorResponseBody(response.getException().getMessage());
-                dubboHeader.setBodyLength(bodyBytes.length);
-                return Unpooled.wrappedBuffer(dubboHeader.encode(), Unpooled.wrappedBuffer(bodyBytes));
+                DubboResponseBody.encodeErrorResponseBody(response.getException().getMessage(), outputStream);
             } else {
                 dubboHeader.setStatus(DubboConstants.RESPONSE_OK);
                 if (request.isHeartbeat()) {
-                    byte[] bodyBytes = DubboResponseBody.encodeHeartbeatResponseBody();
-                    dubboHeader.setBodyLength(bodyBytes.length);
-                    return Unpooled.wrappedBuffer(dubboHeader.encode(), Unpooled.wrappedBuffer(bodyBytes));
+                    DubboResponseBody.encodeHeartbeatResponseBody(outputStream);
                 } else {
                     responseBody.setResult(response.getResult());
                     if (response.getKvAttachment() != null && response.getKvAttachment().size() > 0) {
@@ -245,12 +264,12 @@ public class DubboRpcProtocol extends AbstractProtocol {
                     } else {
                         responseBody.setResponseType(DubboConstants.RESPONSE_VALUE);
                     }
-                    byte[] bodyBytes = responseBody.encodeResponseBody();
-                    dubboHeader.setBodyLength(bodyBytes.length);
-                    return Unpooled.wrappedBuffer(dubboHeader.encode(), Unpooled.wrappedBuffer(bodyBytes));
+                    responseBody.encodeResponseBody(outputStream);
                 }
             }
+            return finishPacket(dubboHeader, packet);
         } catch (Exception e) {
+            packet.release();
             log.warn("encode response failed", e);
             throw new RpcException(RpcException.SERIALIZATION_EXCEPTION, e);
         }
@@ -264,4 +283,26 @@ public class DubboRpcProtocol extends AbstractProtocol {
     protected byte getContentTypeId() {
         return DubboConstants.HESSIAN2_SERIALIZATION_ID;
     }
+
+    /**
+     * allocate pooled buffer for the whole packet, hessian2 body is written directly after the header space,
+     * so it is neither copied out of a byte array stream nor wrapped again.
+     */
+    private static ByteBuf allocatePacket() {
+        ByteBuf packet = PooledByteBufAllocator.DEFAULT.buffer(DubboConstants.DEFAULT_OUTPUT_BUFFER_SIZE);
+        packet.writerIndex(DubboConstants.FIXED_HEAD_LEN);
+        return packet;
+    }
+
+    /**
+     * fill the header space once body length is known.
+     */
+    private static ByteBuf finishPacket(DubboHeader header, ByteBuf packet) {
+        int writerIndex = packet.writerIndex();
+        header.setBodyLength(writerIndex - DubboConstants.FIXED_HEAD_LEN);
+        packet.writerIndex(0);
+        header.encode(packet);
+        packet.writerIndex(writerIndex);
+        return packet;
+    }
 }
@@ -113,6 +113,11 @@ public final class ReflectUtils {
 
     private static final ConcurrentMap<String, Method> Signature_METHODS_CACHE = new ConcurrentHashMap<String, Method>();
 
+    private static final ConcurrentMap<Method, Class<?>[]> PARAMETER_TYPES_CACHE
+            = new ConcurrentHashMap<Method, Class<?>[]>();
+
+    private static final ConcurrentMap<Method, String> PARAMETER_DESC_CACHE = new ConcurrentHashMap<Method, String>();
+
     private ReflectUtils() {
     }
 
@@ -400,6 +405,38 @@ public final class ReflectUtils {
         return ret.toString();
     }
 
+    /**
+     * get parameter types of method, resolved once and cached.
+     * the returned array is shared, callers must not modify it.
+     *
+     * @param m method.
+     * @return parameter types.
+     */
+    public static Class<?>[] getParameterTypes(final Method m) {
+        Class<?>[] parameterTypes = PARAMETER_TYPES_CACHE.get(m);
+        if (parameterTypes == null) {
+            parameterTypes = m.getParameterTypes();
+            PARAMETER_TYPES_CACHE.put(m, parameterTypes);
+        }
+        return parameterTypes;
+    }
+
+    /**
+     * get parameter types desc of method, built once and cached.
+     * void do(String arg1,boolean arg2) => "Ljava/lang/String;Z"
+     *
+     * @param m method.
+     * @return desc.
+     */
+    public static String getParameterDesc(final Method m) {
+        String desc = PARAMETER_DESC_CACHE.get(m);
+        if (desc == null) {
+            desc = getDesc(getParameterTypes(m));
+            PARAMETER_DESC_CACHE.put(m, desc);
+        }
+        return desc;
+    }
+
     /**
      * get constructor desc.
      * "()V", "(Ljava/lang/String;I)V"
@@ -16,6 +16,7 @@
 
 package com.baidu.brpc.protocol.http;
 
+import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -37,8 +38,10 @@ import com.baidu.brpc.exceptions.RpcException;
 import com.baidu.brpc.exceptions.TooBigDataException;
 import com.baidu.brpc.protocol.AbstractProtocol;
 import com.baidu.brpc.protocol.BrpcMeta;
+import com.baidu.brpc.protocol.FrameCheckProtocol;
 import com.baidu.brpc.protocol.HttpRequest;
 import com.baidu.brpc.protocol.HttpResponse;
+import com.baidu.brpc.protocol.MagicHeadProtocol;
 import com.baidu.brpc.protocol.Options;
 import com.baidu.brpc.protocol.Request;
 import com.baidu.brpc.protocol.Response;
@@ -68,13 +71,15 @@ import io.netty.handler.codec.http.HttpResponseStatus;
 import io.netty.handler.codec.http.HttpUtil;
 import io.netty.handler.codec.http.HttpVersion;
 import io.netty.handler.codec.http.QueryStringDecoder;
+import io.netty.util.ByteProcessor;
+import io.netty.util.CharsetUtil;
 
 /**
  * 处理http rpc协议，包括四种序列化格式：
  * 1、http + protobuf
  * 2、http + json
  */
-public class HttpRpcProtocol extends AbstractProtocol {
+public class HttpRpcProtocol extends AbstractProtocol implements MagicHeadProtocol, FrameCheckProtocol {
     public static final String PROTOCOL_TYPE = "protocol-type";
     private static final Logger LOG = LoggerFactory.getLogger(HttpRpcProtocol.class);
     private static final String CONTENT_TYPE_JSON = "application/json";
@@ -102,6 +107,16 @@ public class HttpRpcProtocol extends AbstractProtocol {
             .serializeSpecialFloatingPointValues()
             .create();
     private static final JsonParser jsonParser = new JsonParser();
+    private static final BadSchemaException badSchemaException = BadSchemaException.stackless("not valid http");
+
+    // first 4 bytes of http request line
+    private static final String[] REQUEST_LINE_HEADS = {
+            "GET ", "POST", "PUT ", "HEAD", "DELE", "OPTI", "PATC", "TRAC", "CONN"};
+    private static final int[] MAGIC_HEADS = new int[REQUEST_LINE_HEADS.length];
+    private static final byte[] CONTENT_LENGTH_NAME =
+            (HttpHeaderNames.CONTENT_LENGTH + ":").getBytes(CharsetUtil.US_ASCII);
+    // header is not searched beyond this size, decode will report the error
+    private static final int MAX_HEADER_SIZE = 64 * 1024;
 
     // HTTP Headers which should not be modified by user
     private static final Set<String> prohibitedHeaders = new HashSet<String>();
@@ -111,6 +126,9 @@ public class HttpRpcProtocol extends AbstractProtocol {
         prohibitedHeaders.add(HttpHeaderNames.CONTENT_LENGTH.toString());
         prohibitedHeaders.add(HttpHeaderNames.CONNECTION.toString());
         prohibitedHeaders.add(CORRELATION_ID);
+        for (int i = 0; i < REQUEST_LINE_HEADS.length; i++) {
+            MAGIC_HEADS[i] = ByteBuffer.wrap(REQUEST_LINE_HEADS[i].getBytes()).getInt();
+        }
     }
 
 
@@ -146,6 +164,39 @@ public class HttpRpcProtocol extends AbstractProtocol {
         return response;
     }
 
+    /**
+     * find the end of http header, and compare content-length with readable bytes.
+     * Chunked body is left to decode.
+     * The scanned header is remembered in the receive buffer, so every read only scans the new bytes.
+     */
+    @Override
+    public int checkFrame(DynamicCompositeByteBuf in) {
+        HeaderScanner scanner;
+        if (in.getFrameCheckState() instanceof HeaderScanner) {
+            scanner = (HeaderScanner) in.getFrameCheckState();
+        } else {
+            scanner = new HeaderScanner();
+            in.setFrameCheckState(scanner);
+        }
+        if (scanner.framePosition != in.readerPosition()) {
+            scanner.reset(in.readerPosition());
+        }
+        if (scanner.headerSize == 0) {
+            int readableBytes = Math.min(in.readableBytes(), MAX_HEADER_SIZE);
+            int index = in.forEachByte(scanner.scannedBytes, readableBytes - scanner.scannedBytes, scanner);
+            if (index < 0) {
+                scanner.scannedBytes = readableBytes;
+                return readableBytes < MAX_HEADER_SIZE ? 1 : 0;
+            }
+            scanner.headerSize = index + 1;
+        }
+        long contentLength = scanner.contentLength;
+        if (contentLength < 0 || contentLength > MAX_BODY_SIZE) {
+            return 0;
+        }
+        return (int) Math.max(scanner.headerSize + contentLength - in.readableBytes(), 0);
+    }
+
     @Override
     public Object decode(ChannelHandlerContext ctx, DynamicCompositeByteBuf in, boolean isDecodingRequest)
             throws BadSchemaException, TooBigDataException, NotEnoughDataException {
@@ -160,7 +211,7 @@ public class HttpRpcProtocol extends AbstractProtocol {
                 if (httpMessage.decoderResult() != null && httpMessage.decoderResult().isFailure()) {
                     // could not decode http message
                     LOG.debug("failed to decode http message", httpMessage.decoderResult().cause());
-                    throw new BadSchemaException();
+                    throw badSchemaException;
                 }
                 String contentTypeAndEncoding = httpMessage.headers().get(HttpHeaderNames.CONTENT_TYPE);
                 // if content-type does not exist, it is /status request, so this protocol can deal with.
@@ -172,13 +223,13 @@ public class HttpRpcProtocol extends AbstractProtocol {
                             && !contentType.equals(CONTENT_TYPE_JSON)) {
                         // this protocol can only deal with http protobuf and http json request.
                         httpMessage = null;
-                        throw new BadSchemaException();
+                        throw badSchemaException;
                     }
                 }
                 decodeSuccess = true;
             }
         } catch (Exception e) {
-            throw new BadSchemaException();
+            throw badSchemaException;
         } finally {
             if (decodeSuccess) {
                 in.skipBytes(byteBuf.readerIndex());
@@ -505,6 +556,16 @@ public class HttpRpcProtocol extends AbstractProtocol {
         return true;
     }
 
+    @Override
+    public int getMagicHeadOffset() {
+        return 0;
+    }
+
+    @Override
+    public int[] getMagicHeads() {
+        return MAGIC_HEADS;
+    }
+
     public static int parseProtocolType(String contentType) {
         String contentType2 = contentType.toLowerCase();
         if (contentType2.equals(HttpRpcProtocol.CONTENT_TYPE_JSON)) {
@@ -779,4 +840,77 @@ public class HttpRpcProtocol extends AbstractProtocol {
 
     }
 
-}
\ No newline at end of file
+
+    /**
+     * scans http header byte by byte, finds the end of header and parses content-length on the way.
+     * It is kept in the receive buffer of the channel until the frame is read.
+     */
+    private static class HeaderScanner implements ByteProcessor {
+        private static final int HEADER_END = ('\r' << 24) | ('\n' << 16) | ('\r' << 8) | '\n';
+        private static final int SKIP_LINE = -1;
+        // content-length is invalid, decode will report the error
+        private static final long INVALID_LENGTH = -2;
+
+        // reader position of the frame being scanned
+        private long framePosition = -1;
+        private int scannedBytes;
+        // 0 until the end of header is found
+        private int headerSize;
+        // -1 if the header has no content-length
+        private long contentLength;
+        // last 4 bytes scanned
+        private int lastBytes;
+        // matched length of content-length name in current line, or SKIP_LINE
+        private int matchedBytes;
+        private boolean valueEnded;
+
+        private void reset(long framePosition) {
+            this.framePosition = framePosition;
+            scannedBytes = 0;
+            headerSize = 0;
+            contentLength = -1;
+            lastBytes = 0;
+            // request line or status line is not a header
+            matchedBytes = SKIP_LINE;
+            valueEnded = false;
+        }
+
+        @Override
+        public boolean process(byte value) {
+            lastBytes = (lastBytes << 8) | (value & 0xFF);
+            if (lastBytes == HEADER_END) {
+                return false;
+            }
+            if (value == '\n') {
+                matchedBytes = 0;
+                return true;
+            }
+            if (matchedBytes == SKIP_LINE) {
+                return true;
+            }
+            if (matchedBytes < CONTENT_LENGTH_NAME.length) {
+                byte lowerValue = value >= 'A' && value <= 'Z' ? (byte) (value + ('a' - 'A')) : value;
+                matchedBytes = lowerValue == CONTENT_LENGTH_NAME[matchedBytes] ? matchedBytes + 1 : SKIP_LINE;
+                if (matchedBytes == CONTENT_LENGTH_NAME.length) {
+                    contentLength = -1;
+                    valueEnded = false;
+                }
+                return true;
+            }
+            if (contentLength == INVALID_LENGTH) {
+                return true;
+            }
+            if (value >= '0' && value <= '9' && !valueEnded) {
+                contentLength = Math.max(contentLength, 0) * 10 + (value - '0');
+                if (contentLength > MAX_BODY_SIZE) {
+                    contentLength = INVALID_LENGTH;
+                }
+            } else if (value == ' ' || value == '\t' || value == '\r') {
+                valueEnded = contentLength >= 0;
+            } else {
+                contentLength = INVALID_LENGTH;
+            }
+            return true;
+        }
+    }
+}
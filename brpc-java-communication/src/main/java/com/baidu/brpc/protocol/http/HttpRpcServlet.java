@@ -82,7 +82,7 @@ public class HttpRpcServlet extends HttpServlet {
         String errorMsg = null;
         try {
             request = protocol.decodeRequest(httpRequest);
-            Object result = request.getTargetMethod().invoke(request.getTarget(), request.getArgs());
+            Object result = request.getRpcMethodInfo().invoke(request.getTarget(), request.getArgs());
             response.setResult(result);
             response.setRpcMethodInfo(request.getRpcMethodInfo());
             response.setLogId(request.getLogId());
@@ -38,7 +38,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.util.Arrays;
+import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -60,9 +60,13 @@ import java.util.Map;
  * </li>
  * </ul>
  */
-public class HuluRpcProtocol extends AbstractProtocol {
+public class HuluRpcProtocol extends AbstractProtocol implements MagicHeadProtocol, FrameCheckProtocol {
 	private static final Logger LOG = LoggerFactory.getLogger(HuluRpcProtocol.class);
 	private static final byte[] MAGIC_HEAD = "HULU".getBytes();
+	private static final int MAGIC_HEAD_NUM = ByteBuffer.wrap(MAGIC_HEAD).getInt();
+	private static final int[] MAGIC_HEADS = {MAGIC_HEAD_NUM};
+	private static final BadSchemaException badMagicHeadException =
+			BadSchemaException.stackless("not valid magic head for hulu");
 	private static final int FIXED_LEN = 12;
 	private static final HuluRpcProto.HuluRpcRequestMeta defaultRpcRequestMetaInstance =
 			HuluRpcProto.HuluRpcRequestMeta.getDefaultInstance();
@@ -337,6 +341,17 @@ public class HuluRpcProtocol extends AbstractProtocol {
 		}
 	}
 
+	@Override
+	public int checkFrame(DynamicCompositeByteBuf in) {
+		if (in.readableBytes() < FIXED_LEN) {
+			return FIXED_LEN - in.readableBytes();
+		}
+		if (in.getInt(0) != MAGIC_HEAD_NUM) {
+			return 0;
+		}
+		return remainingFrameBytes(in, FIXED_LEN, in.getIntLE(4));
+	}
+
 	@Override
 	public HuluRpcDecodePacket decode(ChannelHandlerContext ctx, DynamicCompositeByteBuf in, boolean isDecodingRequest)
 			throws BadSchemaException, TooBigDataException, NotEnoughDataException {
@@ -346,10 +361,8 @@ public class HuluRpcProtocol extends AbstractProtocol {
 		ByteBuf fixHeaderBuf = in.retainedSlice(FIXED_LEN);
 
 		try {
-			byte[] magic = new byte[4];
-			fixHeaderBuf.readBytes(magic);
-			if (!Arrays.equals(magic, MAGIC_HEAD)) {
-				throw new BadSchemaException("not valid magic head for hulu");
+			if (fixHeaderBuf.readInt() != MAGIC_HEAD_NUM) {
+				throw badMagicHeadException;
 			}
 			int bodySize = fixHeaderBuf.readIntLE();
 			int metaSize = fixHeaderBuf.readIntLE();
@@ -382,6 +395,16 @@ public class HuluRpcProtocol extends AbstractProtocol {
 		}
 	}
 
+	@Override
+	public int getMagicHeadOffset() {
+		return 0;
+	}
+
+	@Override
+	public int[] getMagicHeads() {
+		return MAGIC_HEADS;
+	}
+
 	@Override
 	public boolean isCoexistence() {
 		return true;
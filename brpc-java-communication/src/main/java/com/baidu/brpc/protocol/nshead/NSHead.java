@@ -52,6 +52,11 @@ public class NSHead {
 	public static final int NSHEAD_LENGTH = 36;
 	public static final int NSHEAD_MAGIC_NUM = 0xfb709394;
 	public static final int PROVIDER_LENGTH = 16;
+	// offsets in nshead, magic number and body length are little endian
+	public static final int MAGIC_NUM_OFFSET = 24;
+	public static final int BODY_LENGTH_OFFSET = 32;
+	private static final BadSchemaException badMagicNumberException =
+			BadSchemaException.stackless("nshead magic number does not match");
 
 	private static final byte[] ZEROS = new byte[PROVIDER_LENGTH];
 
@@ -104,7 +109,7 @@ public class NSHead {
 		head.provider = new String(bytes, 0, n);
 		head.magicNumber = buf.readIntLE();
 		if (head.magicNumber != NSHEAD_MAGIC_NUM) {
-			throw new BadSchemaException("nshead magic number does not match");
+			throw badMagicNumberException;
 		}
 		head.reserved = buf.readIntLE();
 		head.bodyLength = buf.readIntLE();
@@ -25,6 +25,7 @@ import com.baidu.brpc.exceptions.NotEnoughDataException;
 import com.baidu.brpc.exceptions.RpcException;
 import com.baidu.brpc.exceptions.TooBigDataException;
 import com.baidu.brpc.protocol.AbstractProtocol;
+import com.baidu.brpc.protocol.FrameCheckProtocol;
 import com.baidu.brpc.protocol.Request;
 import com.baidu.brpc.protocol.Response;
 import com.baidu.brpc.protocol.RpcResponse;
@@ -42,7 +43,7 @@ import java.util.Map;
  * nshead based protocol, the header format is {@link NSHead}
  */
 @SuppressWarnings("unchecked")
-public abstract class NSHeadRpcProtocol extends AbstractProtocol {
+public abstract class NSHeadRpcProtocol extends AbstractProtocol implements FrameCheckProtocol {
 	private static final Logger LOG = LoggerFactory.getLogger(NSHeadRpcProtocol.class);
 	protected String encoding = "utf-8";
 
@@ -130,6 +131,17 @@ public abstract class NSHeadRpcProtocol extends AbstractProtocol {
 		return false;
 	}
 
+	@Override
+	public int checkFrame(DynamicCompositeByteBuf in) {
+		if (in.readableBytes() < NSHead.NSHEAD_LENGTH) {
+			return NSHead.NSHEAD_LENGTH - in.readableBytes();
+		}
+		if (in.getIntLE(NSHead.MAGIC_NUM_OFFSET) != NSHead.NSHEAD_MAGIC_NUM) {
+			return 0;
+		}
+		return remainingFrameBytes(in, NSHead.NSHEAD_LENGTH, in.getIntLE(NSHead.BODY_LENGTH_OFFSET));
+	}
+
 	@Override
 	public NSHeadPacket decode(ChannelHandlerContext ctx, DynamicCompositeByteBuf in, boolean isDecodingRequest)
 			throws BadSchemaException, TooBigDataException, NotEnoughDataException {
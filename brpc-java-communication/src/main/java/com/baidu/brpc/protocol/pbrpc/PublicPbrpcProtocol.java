@@ -12,6 +12,7 @@ import com.baidu.brpc.exceptions.RpcException;
 import com.baidu.brpc.exceptions.TooBigDataException;
 import com.baidu.brpc.protocol.AbstractProtocol;
 import com.baidu.brpc.protocol.BaiduRpcErrno;
+import com.baidu.brpc.protocol.FrameCheckProtocol;
 import com.baidu.brpc.protocol.Request;
 import com.baidu.brpc.protocol.Response;
 import com.baidu.brpc.protocol.RpcResponse;
@@ -36,7 +37,7 @@ import java.net.InetAddress;
 import java.util.Calendar;
 
 @Slf4j
-public class PublicPbrpcProtocol extends AbstractProtocol {
+public class PublicPbrpcProtocol extends AbstractProtocol implements FrameCheckProtocol {
 
     private static final String VERSION = "pbrpc=1.0";
     private static final String CHARSET = "utf-8";
@@ -105,6 +106,17 @@ public class PublicPbrpcProtocol extends AbstractProtocol {
     }
 
 
+    @Override
+    public int checkFrame(DynamicCompositeByteBuf in) {
+        if (in.readableBytes() < NSHead.NSHEAD_LENGTH) {
+            return NSHead.NSHEAD_LENGTH - in.readableBytes();
+        }
+        if (in.getIntLE(NSHead.MAGIC_NUM_OFFSET) != NSHead.NSHEAD_MAGIC_NUM) {
+            return 0;
+        }
+        return remainingFrameBytes(in, NSHead.NSHEAD_LENGTH, in.getIntLE(NSHead.BODY_LENGTH_OFFSET));
+    }
+
     @Override
     public PublicPbRpcPacket decode(ChannelHandlerContext ctx, DynamicCompositeByteBuf in,
                                     boolean isDecodingRequest)
@@ -258,9 +270,9 @@ public class PublicPbrpcProtocol extends AbstractProtocol {
         } else {
             headBuilder.setCode(0);
             headBuilder.setText(SUCCESS_TEXT);
-            headBuilder.setCompressType(request.getCompressType());
+            headBuilder.setCompressType(response.getCompressType());
 
-            Compress compress = compressManager.getCompress(request.getCompressType());
+            Compress compress = compressManager.getCompress(response.getCompressType());
             ByteBuf responseProtoBuf = compress.compressOutput(
                     response.getResult(), response.getRpcMethodInfo());
 
@@ -4,6 +4,8 @@ import static com.baidu.brpc.protocol.push.impl.DefaultSPHead.PROVIDER_LENGTH;
 import static com.baidu.brpc.protocol.push.impl.DefaultSPHead.SPHEAD_LENGTH;
 import static com.baidu.brpc.protocol.push.impl.DefaultSPHead.SPHEAD_MAGIC_NUM;
 
+import java.io.IOException;
+
 import org.apache.commons.lang3.Validate;
 
 import com.baidu.brpc.ChannelInfo;
@@ -14,6 +16,8 @@ import com.baidu.brpc.exceptions.BadSchemaException;
 import com.baidu.brpc.exceptions.NotEnoughDataException;
 import com.baidu.brpc.exceptions.RpcException;
 import com.baidu.brpc.exceptions.TooBigDataException;
+import com.baidu.brpc.protocol.FrameCheckProtocol;
+import com.baidu.brpc.protocol.MagicHeadProtocol;
 import com.baidu.brpc.protocol.Request;
 import com.baidu.brpc.protocol.Response;
 import com.baidu.brpc.protocol.RpcRequest;
@@ -22,8 +26,7 @@ import com.baidu.brpc.protocol.push.SPHead;
 import com.baidu.brpc.protocol.push.ServerPushProtocol;
 import com.baidu.brpc.server.PushServerRpcFutureManager;
 import com.baidu.brpc.server.ServiceManager;
-import com.dyuproject.protostuff.LinkedBuffer;
-import com.dyuproject.protostuff.ProtobufIOUtil;
+import com.baidu.brpc.utils.ProtostuffUtils;
 import com.dyuproject.protostuff.Schema;
 import com.dyuproject.protostuff.runtime.RuntimeSchema;
 
@@ -35,7 +38,16 @@ import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
 @SuppressWarnings("unchecked")
-public class DefaultServerPushProtocol implements ServerPushProtocol {
+public class DefaultServerPushProtocol implements ServerPushProtocol, MagicHeadProtocol, FrameCheckProtocol {
+    // magic number is written in little endian after id, version, logId, correlationId and provider
+    private static final int MAGIC_HEAD_OFFSET = 2 + 2 + 8 + 8 + DefaultSPHead.PROVIDER_LENGTH;
+    private static final int[] MAGIC_HEADS = {Integer.reverseBytes(SPHEAD_MAGIC_NUM)};
+    private static final NotEnoughDataException notEnoughDataException = NotEnoughDataException.stackless(
+            "not enough data");
+    private static final BadSchemaException badMagicHeadException = BadSchemaException.stackless(
+            "nshead magic number does not match");
+    private static final Schema<SPBody> SP_BODY_SCHEMA = RuntimeSchema.getSchema(SPBody.class);
+
     protected String encoding = "utf-8";
 
     public DefaultServerPushProtocol(String encoding) {
@@ -149,6 +161,11 @@ public class DefaultServerPushProtocol implements ServerPushProtocol {
         return Unpooled.wrappedBuffer(headerBuf, bodyBuf);
     }
 
+    @Override
+    public void afterRequestSent(Request request, ChannelFuture channelFuture) {
+
+    }
+
     @Override
     public void afterResponseSent(Request request, Response response, ChannelFuture channelFuture) {
 
@@ -177,12 +194,28 @@ public class DefaultServerPushProtocol implements ServerPushProtocol {
         return false;
     }
 
+    @Override
+    public int checkFrame(DynamicCompositeByteBuf in) {
+        if (in.readableBytes() < SPHEAD_LENGTH) {
+            return SPHEAD_LENGTH - in.readableBytes();
+        }
+        if (in.getIntLE(MAGIC_HEAD_OFFSET) != SPHEAD_MAGIC_NUM) {
+            return 0;
+        }
+        // body length is the last field of head
+        int bodyLength = in.getIntLE(SPHEAD_LENGTH - 4);
+        if (bodyLength < 0 || bodyLength > 512 * 1024 * 1024) {
+            return 0;
+        }
+        return Math.max(SPHEAD_LENGTH + bodyLength - in.readableBytes(), 0);
+    }
+
     @Override
     public DefaultServerPushPacket decode(ChannelHandlerContext ctx, DynamicCompositeByteBuf in,
                                           boolean isDecodingRequest)
             throws BadSchemaException, TooBigDataException, NotEnoughDataException {
         if (in.readableBytes() < DefaultSPHead.SPHEAD_LENGTH) {
-            throw new NotEnoughDataException();
+            throw notEnoughDataException;
         }
         DefaultServerPushPacket packet = new DefaultServerPushPacket();
         ByteBuf fixHeaderBuf = in.retainedSlice(DefaultSPHead.SPHEAD_LENGTH);
@@ -198,7 +231,7 @@ public class DefaultServerPushProtocol implements ServerPushProtocol {
             }
 
             if (in.readableBytes() < DefaultSPHead.SPHEAD_LENGTH + bodyLength) {
-                throw new NotEnoughDataException();
+                throw notEnoughDataException;
             }
 
             in.skipBytes(DefaultSPHead.SPHEAD_LENGTH);
@@ -212,12 +245,8 @@ public class DefaultServerPushProtocol implements ServerPushProtocol {
 
     public SPBody decodeBodyByteBuf(ByteBuf bodyByteBuf) {
         try {
-            int readableBytes = bodyByteBuf.readableBytes();
-            byte[] bodyBytes = new byte[readableBytes];
-            bodyByteBuf.readBytes(bodyBytes);
-            Schema<SPBody> schema = RuntimeSchema.getSchema(SPBody.class);
             SPBody spBody = new SPBody();
-            ProtobufIOUtil.mergeFrom(bodyBytes, spBody, schema);
+            ProtostuffUtils.deserialize(bodyByteBuf, spBody, SP_BODY_SCHEMA);
             return spBody;
         } catch (Exception e) {
             throw new RpcException(e);
@@ -261,6 +290,16 @@ public class DefaultServerPushProtocol implements ServerPushProtocol {
         return true;
     }
 
+    @Override
+    public int getMagicHeadOffset() {
+        return MAGIC_HEAD_OFFSET;
+    }
+
+    @Override
+    public int[] getMagicHeads() {
+        return MAGIC_HEADS;
+    }
+
     public ByteBuf encodeRequestBody(Request request, RpcMethodInfo rpcMethodInfo) {
         Validate.notNull(request, "body must not be empty");
 
@@ -270,13 +309,7 @@ public class DefaultServerPushProtocol implements ServerPushProtocol {
         // IMPORTANT: if it is register request, the argument is String.
         // So the push protocol should deal with it specially.
         spBody.setParameters(request.getArgs());
-        byte[] bytes;
-
-        Schema<SPBody> schema = RuntimeSchema.getSchema(SPBody.class);
-        bytes = ProtobufIOUtil.toByteArray(spBody, schema, LinkedBuffer.allocate(500));
-
-        return Unpooled.wrappedBuffer(bytes);
-
+        return encodeBody(spBody);
     }
 
     public ByteBuf encodeResponseBody(Object result, RpcMethodInfo rpcMethodInfo) {
@@ -286,10 +319,15 @@ public class DefaultServerPushProtocol implements ServerPushProtocol {
         spBody.setServiceName(rpcMethodInfo.getServiceName());
         spBody.setMethodName(rpcMethodInfo.getMethodName());
         spBody.setContent(result);
-        byte[] bytes;
-        Schema<SPBody> schema = RuntimeSchema.getSchema(SPBody.class);
-        bytes = ProtobufIOUtil.toByteArray(spBody, schema, LinkedBuffer.allocate(500));
-        return Unpooled.wrappedBuffer(bytes);
+        return encodeBody(spBody);
+    }
+
+    private ByteBuf encodeBody(SPBody spBody) {
+        try {
+            return ProtostuffUtils.serialize(spBody, SP_BODY_SCHEMA, 0);
+        } catch (IOException e) {
+            throw new RpcException(RpcException.SERIALIZATION_EXCEPTION, e);
+        }
     }
 
     public void decodeRequestBody(SPBody body, Request request) {
@@ -331,7 +369,7 @@ public class DefaultServerPushProtocol implements ServerPushProtocol {
         head.provider = new String(bytes, 0, n);
         head.magicNumber = buf.readIntLE();
         if (head.magicNumber != SPHEAD_MAGIC_NUM) {
-            throw new BadSchemaException("nshead magic number does not match");
+            throw badMagicHeadException;
         }
         head.type = buf.readIntLE();
         head.bodyLength = buf.readIntLE();
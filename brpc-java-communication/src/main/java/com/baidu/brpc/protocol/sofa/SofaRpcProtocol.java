@@ -37,7 +37,7 @@ import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Arrays;
+import java.nio.ByteBuffer;
 
 /**
  * Notes on SOFA PBRPC Protocol:
@@ -54,15 +54,31 @@ import java.util.Arrays;
  * <li> sofa-pbrpc does not support attachment. </li>
  * </ul>
  */
-public class SofaRpcProtocol extends AbstractProtocol {
+public class SofaRpcProtocol extends AbstractProtocol implements MagicHeadProtocol, FrameCheckProtocol {
 
 	private static final Logger LOG = LoggerFactory.getLogger(SofaRpcProtocol.class);
 	private final static byte[] MAGIC_HEAD = "SOFA".getBytes();
+	private static final int MAGIC_HEAD_NUM = ByteBuffer.wrap(MAGIC_HEAD).getInt();
+	private static final int[] MAGIC_HEADS = {MAGIC_HEAD_NUM};
+	private static final BadSchemaException badMagicHeadException =
+			BadSchemaException.stackless("not valid magic head for sofa");
 	private static final int FIXED_LEN = 24;
 	private static final SofaRpcProto.SofaRpcMeta defaultRpcMetaInstance =
 			SofaRpcProto.SofaRpcMeta.getDefaultInstance();
 	private static final CompressManager compressManager = CompressManager.getInstance();
 
+	@Override
+	public int checkFrame(DynamicCompositeByteBuf in) {
+		if (in.readableBytes() < FIXED_LEN) {
+			return FIXED_LEN - in.readableBytes();
+		}
+		if (in.getInt(0) != MAGIC_HEAD_NUM) {
+			return 0;
+		}
+		// msgSize is the low 4 bytes of a little endian long
+		return remainingFrameBytes(in, FIXED_LEN, in.getIntLE(16));
+	}
+
 	@Override
 	public SofaRpcDecodePacket decode(ChannelHandlerContext ctx, DynamicCompositeByteBuf in, boolean isDecodingRequest)
 			throws BadSchemaException, TooBigDataException, NotEnoughDataException {
@@ -71,10 +87,8 @@ public class SofaRpcProtocol extends AbstractProtocol {
 		}
 		ByteBuf fixHeaderBuf = in.retainedSlice(FIXED_LEN);
 		try {
-			byte[] magic = new byte[4];
-			fixHeaderBuf.readBytes(magic);
-			if (!Arrays.equals(magic, MAGIC_HEAD)) {
-				throw new BadSchemaException("not valid magic head for sofa");
+			if (fixHeaderBuf.readInt() != MAGIC_HEAD_NUM) {
+				throw badMagicHeadException;
 			}
 			int metaSize = fixHeaderBuf.readIntLE();
 			int bodySize = (int) fixHeaderBuf.readLongLE();
@@ -256,6 +270,16 @@ public class SofaRpcProtocol extends AbstractProtocol {
 		return encode(responsePacket);
 	}
 
+	@Override
+	public int getMagicHeadOffset() {
+		return 0;
+	}
+
+	@Override
+	public int[] getMagicHeads() {
+		return MAGIC_HEADS;
+	}
+
 	@Override
 	public boolean isCoexistence() {
 		return true;
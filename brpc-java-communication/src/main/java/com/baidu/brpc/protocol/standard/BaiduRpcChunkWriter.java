@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.brpc.protocol.standard;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Sends the attachment chunks after the head packet.
+ * The next chunk is written only when the previous one is flushed,
+ * so packets of other rpc on the same channel can interleave with the chunks,
+ * and at most one chunk is pending in the outbound buffer.
+ * The writer owns one reference of the attachment, and releases it when finished.
+ */
+@Slf4j
+public class BaiduRpcChunkWriter implements ChannelFutureListener {
+	private BaiduRpcProtocol protocol;
+	private Channel channel;
+	private long correlationId;
+	private ByteBuf attachment;
+	private int chunkSize;
+	private int offset;
+	private long chunkId;
+
+	public BaiduRpcChunkWriter(BaiduRpcProtocol protocol, Channel channel, long correlationId,
+							   ByteBuf attachment, int chunkSize) {
+		this.protocol = protocol;
+		this.channel = channel;
+		this.correlationId = correlationId;
+		this.attachment = attachment;
+		this.chunkSize = chunkSize;
+		this.offset = attachment.readerIndex();
+	}
+
+	/**
+	 * start to send chunks after the head packet is sent.
+	 *
+	 * @param headFuture the write future of head packet
+	 */
+	public void start(ChannelFuture headFuture) {
+		headFuture.addListener(this);
+	}
+
+	@Override
+	public void operationComplete(ChannelFuture future) throws Exception {
+		if (!future.isSuccess()) {
+			log.debug("send attachment chunk failed, correlationId={}, chunkId={}", correlationId, chunkId);
+			attachment.release();
+			return;
+		}
+		int endIndex = attachment.writerIndex();
+		if (offset >= endIndex) {
+			attachment.release();
+			return;
+		}
+		int length = Math.min(chunkSize, endIndex - offset);
+		ByteBuf chunk = attachment.retainedSlice(offset, length);
+		offset += length;
+		chunkId++;
+		ByteBuf packet;
+		try {
+			packet = protocol.encodeChunk(correlationId, chunkId, chunk);
+		} catch (Exception ex) {
+			log.warn("encode attachment chunk failed:", ex);
+			chunk.release();
+			attachment.release();
+			return;
+		}
+		channel.writeAndFlush(packet).addListener(this);
+	}
+}
@@ -16,6 +16,7 @@
 
 package com.baidu.brpc.protocol.standard;
 
+import com.baidu.brpc.protocol.AttachmentStream;
 import io.netty.buffer.ByteBuf;
 import lombok.Getter;
 import lombok.Setter;
@@ -28,4 +29,8 @@ import lombok.Setter;
 public class BaiduRpcDecodePacket {
 	private ByteBuf metaBuf;
 	private ByteBuf protoAndAttachmentBuf;
+	// parsed from metaBuf in io thread
+	private BaiduRpcProto.RpcMeta rpcMeta;
+	// not null if the attachment is sent in following chunks
+	private AttachmentStream attachmentStream;
 }
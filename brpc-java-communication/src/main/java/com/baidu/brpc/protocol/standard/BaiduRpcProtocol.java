@@ -32,12 +32,14 @@ import com.baidu.brpc.utils.ProtobufUtils;
 import com.google.protobuf.ByteString;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelHandlerContext;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Arrays;
+import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -53,18 +55,23 @@ import java.util.Map;
  * <li> Use service->full_name() and method_name to identify the service and
  * method to call </li>
  * <li> {@code attachment_size} is set iff request/response has attachment </li>
- * <li> The following fields of rpc are not supported yet:
- * <ul>
- * <li>chunk_info</li>
- * </ul>
+ * <li> When attachment is larger than attachmentChunkSize option, it is sent in chunks:
+ * the head packet carries the proto with {@code attachment_size} = total size and
+ * {@code chunk_info} = (correlation_id, 0), each following packet carries one piece of attachment with
+ * {@code chunk_info} = (correlation_id, 1..n). The receiver gets the chunks from {@link AttachmentStream}.
  * </li>
  * </ul>
  * Created by huwenwei on 2017/9/22.
  */
-public class BaiduRpcProtocol extends AbstractProtocol {
+public class BaiduRpcProtocol extends AbstractProtocol
+		implements MagicHeadProtocol, FrameCheckProtocol, LazyDecodeProtocol {
 
 	private static final Logger LOG = LoggerFactory.getLogger(BaiduRpcProtocol.class);
 	private static final byte[] MAGIC_HEAD = "PRPC".getBytes();
+	private static final int MAGIC_HEAD_NUM = ByteBuffer.wrap(MAGIC_HEAD).getInt();
+	private static final int[] MAGIC_HEADS = {MAGIC_HEAD_NUM};
+	private static final BadSchemaException badMagicHeadException =
+			BadSchemaException.stackless("not valid magic head for brpc");
 	private static final int FIXED_LEN = 12;
 	private static final BaiduRpcProto.RpcMeta defaultRpcMetaInstance = BaiduRpcProto.RpcMeta.getDefaultInstance();
 	private static final CompressManager compressManager = CompressManager.getInstance();
@@ -106,8 +113,14 @@ public class BaiduRpcProtocol extends AbstractProtocol {
 		// attachment
 		if (request.getBinaryAttachment() != null
 				&& request.getBinaryAttachment().isReadable()) {
-			packet.setAttachment(request.getBinaryAttachment());
-			metaBuilder.setAttachmentSize(request.getBinaryAttachment().readableBytes());
+			ByteBuf attachment = request.getBinaryAttachment();
+			metaBuilder.setAttachmentSize(attachment.readableBytes());
+			if (isChunked(attachment, getAttachmentChunkSize(request))) {
+				metaBuilder.setChunkInfo(Options.ChunkInfo.newBuilder()
+						.setStreamId(request.getCorrelationId()).setChunkId(0));
+			} else {
+				packet.setAttachment(attachment);
+			}
 		}
 		// auth
 		if (request.getAuth() != null) {
@@ -122,9 +135,9 @@ public class BaiduRpcProtocol extends AbstractProtocol {
 		BaiduRpcDecodePacket responsePacket = (BaiduRpcDecodePacket) packet;
 		ByteBuf metaBuf = responsePacket.getMetaBuf();
 		ByteBuf protoAndAttachmentBuf = responsePacket.getProtoAndAttachmentBuf();
+		AttachmentStream attachmentStream = responsePacket.getAttachmentStream();
 		try {
-			BaiduRpcProto.RpcMeta rpcMeta = (BaiduRpcProto.RpcMeta) ProtobufUtils.parseFrom(
-					metaBuf, defaultRpcMetaInstance);
+			BaiduRpcProto.RpcMeta rpcMeta = parseRpcMeta(responsePacket);
 			RpcResponse rpcResponse = new RpcResponse();
 			long correlationId = rpcMeta.getCorrelationId();
 			rpcResponse.setCorrelationId(correlationId);
@@ -139,6 +152,14 @@ public class BaiduRpcProtocol extends AbstractProtocol {
 			try {
 				if (responseMeta != null && responseMeta.getErrorCode() == 0) {
 					Compress compress = compressManager.getCompress(rpcMeta.getCompressType());
+					if (attachmentStream != null) {
+						// attachment is sent in chunks, the packet only has proto body
+						Object proto = compress.uncompressOutput(protoAndAttachmentBuf, future.getRpcMethodInfo());
+						rpcResponse.setResult(proto);
+						rpcResponse.setAttachmentStream(attachmentStream);
+						attachmentStream = null;
+						return rpcResponse;
+					}
 					int protoSize = protoAndAttachmentBuf.readableBytes()
 							- rpcMeta.getAttachmentSize();
 					// proto body
@@ -167,21 +188,74 @@ public class BaiduRpcProtocol extends AbstractProtocol {
 			if (protoAndAttachmentBuf != null) {
 				protoAndAttachmentBuf.release();
 			}
+			if (attachmentStream != null) {
+				attachmentStream.cancel();
+			}
+		}
+	}
+
+	@Override
+	public int checkFrame(DynamicCompositeByteBuf in) {
+		if (in.readableBytes() < FIXED_LEN) {
+			return FIXED_LEN - in.readableBytes();
+		}
+		if (in.getInt(0) != MAGIC_HEAD_NUM) {
+			return 0;
 		}
+		return remainingFrameBytes(in, FIXED_LEN, in.getInt(4));
 	}
 
 	@Override
 	public BaiduRpcDecodePacket decode(ChannelHandlerContext ctx, DynamicCompositeByteBuf in, boolean isDecodingRequest)
 			throws BadSchemaException, TooBigDataException, NotEnoughDataException {
+		BaiduRpcDecodePacket packet = decodePacket(in);
+		BaiduRpcProto.RpcMeta rpcMeta = packet.getRpcMeta();
+		if (!rpcMeta.hasChunkInfo() || rpcMeta.getAttachmentSize() <= 0) {
+			return packet;
+		}
+		ChannelInfo channelInfo = null;
+		if (ctx != null) {
+			channelInfo = isDecodingRequest
+					? ChannelInfo.getServerChannelInfo(ctx.channel())
+					: ChannelInfo.getClientChannelInfo(ctx.channel());
+		}
+		long streamId = rpcMeta.getChunkInfo().getStreamId();
+		if (rpcMeta.getChunkInfo().getChunkId() == 0) {
+			// head packet, the attachment will come in following packets
+			AttachmentStream attachmentStream = channelInfo != null
+					? channelInfo.createAttachmentStream(streamId, rpcMeta.getAttachmentSize())
+					: new AttachmentStream(streamId, rpcMeta.getAttachmentSize());
+			packet.setAttachmentStream(attachmentStream);
+			return packet;
+		}
+		// attachment chunk, deliver it in io thread
+		packet.getMetaBuf().release();
+		ByteBuf chunk = packet.getProtoAndAttachmentBuf();
+		AttachmentStream attachmentStream = channelInfo != null
+				? channelInfo.getAttachmentStream(streamId) : null;
+		if (attachmentStream == null) {
+			LOG.debug("attachment stream {} not found, drop chunk {}",
+					streamId, rpcMeta.getChunkInfo().getChunkId());
+			chunk.release();
+		} else {
+			if (!attachmentStream.offer(chunk)) {
+				channelInfo.removeAttachmentStream(streamId);
+			}
+			channelInfo.checkAttachmentWindow();
+		}
+		// the chunk is consumed, no packet to process
+		return null;
+	}
+
+	private BaiduRpcDecodePacket decodePacket(DynamicCompositeByteBuf in)
+			throws BadSchemaException, TooBigDataException, NotEnoughDataException {
 		if (in.readableBytes() < FIXED_LEN) {
 			throw notEnoughDataException;
 		}
 		ByteBuf fixHeaderBuf = in.retainedSlice(FIXED_LEN);
 		try {
-			byte[] magic = new byte[4];
-			fixHeaderBuf.readBytes(magic);
-			if (!Arrays.equals(magic, MAGIC_HEAD)) {
-				throw new BadSchemaException("not valid magic head for brpc");
+			if (fixHeaderBuf.readInt() != MAGIC_HEAD_NUM) {
+				throw badMagicHeadException;
 			}
 
 			int bodySize = fixHeaderBuf.readInt();
@@ -205,9 +279,18 @@ public class BaiduRpcProtocol extends AbstractProtocol {
 				ByteBuf protoAndAttachmentBuf = in.readRetainedSlice(bodySize - metaSize);
 				packet.setProtoAndAttachmentBuf(protoAndAttachmentBuf);
 
+				// meta is parsed in io thread, so that attachment chunks can be dispatched here
+				packet.setRpcMeta((BaiduRpcProto.RpcMeta) ProtobufUtils.parseFrom(
+						metaBuf.duplicate(), defaultRpcMetaInstance));
 				return packet;
 			} catch (Exception ex) {
 				LOG.warn("decode failed:", ex);
+				if (packet.getMetaBuf() != null) {
+					packet.getMetaBuf().release();
+				}
+				if (packet.getProtoAndAttachmentBuf() != null) {
+					packet.getProtoAndAttachmentBuf().release();
+				}
 				throw new RpcException(RpcException.SERIALIZATION_EXCEPTION, ex);
 			}
 		} finally {
@@ -217,14 +300,23 @@ public class BaiduRpcProtocol extends AbstractProtocol {
 
 	@Override
 	public Request decodeRequest(Object packet) throws Exception {
+		return decodeRequest(packet, false);
+	}
+
+	@Override
+	public Request decodeRequestHeader(Object packet) throws Exception {
+		return decodeRequest(packet, true);
+	}
+
+	private Request decodeRequest(Object packet, boolean headerOnly) throws Exception {
 		Request request = this.createRequest();
 		BaiduRpcDecodePacket requestPacket = (BaiduRpcDecodePacket) packet;
 		ByteBuf metaBuf = requestPacket.getMetaBuf();
 		ByteBuf protoAndAttachmentBuf = requestPacket.getProtoAndAttachmentBuf();
+		AttachmentStream attachmentStream = requestPacket.getAttachmentStream();
 		BaiduRpcProto.RpcMeta rpcMeta;
 		try {
-			rpcMeta = (BaiduRpcProto.RpcMeta) ProtobufUtils.parseFrom(
-					metaBuf, defaultRpcMetaInstance);
+			rpcMeta = parseRpcMeta(requestPacket);
 			BaiduRpcProto.RpcRequestMeta requestMeta = rpcMeta.getRequest();
 			request.setCorrelationId(rpcMeta.getCorrelationId());
 			int compressType = rpcMeta.getCompressType();
@@ -270,13 +362,33 @@ public class BaiduRpcProtocol extends AbstractProtocol {
 
 			// proto body
 			Compress compress = compressManager.getCompress(compressType);
-			if (rpcMeta.hasAttachmentSize() && rpcMeta.getAttachmentSize() > 0) {
+			boolean lazyDecode = headerOnly || rpcMethodInfo.isLazyDecode();
+			if (attachmentStream != null) {
+				// attachment is sent in chunks, the packet only has proto body
+				if (lazyDecode) {
+					request.setEncodedBody(protoAndAttachmentBuf);
+					protoAndAttachmentBuf = null;
+				} else {
+					Object proto = compress.uncompressInput(protoAndAttachmentBuf, rpcMethodInfo);
+					request.setArgs(new Object[]{proto});
+				}
+				request.setAttachmentStream(attachmentStream);
+				attachmentStream = null;
+			} else if (rpcMeta.hasAttachmentSize() && rpcMeta.getAttachmentSize() > 0) {
 				int protoSize = protoAndAttachmentBuf.readableBytes() - rpcMeta.getAttachmentSize();
-				ByteBuf protoBuf = protoAndAttachmentBuf.readSlice(protoSize);
-				Object proto = compress.uncompressInput(protoBuf, rpcMethodInfo);
-				request.setArgs(new Object[]{proto});
+				if (lazyDecode) {
+					request.setEncodedBody(protoAndAttachmentBuf.readRetainedSlice(protoSize));
+				} else {
+					ByteBuf protoBuf = protoAndAttachmentBuf.readSlice(protoSize);
+					Object proto = compress.uncompressInput(protoBuf, rpcMethodInfo);
+					request.setArgs(new Object[]{proto});
+				}
 				request.setBinaryAttachment(protoAndAttachmentBuf);
 				protoAndAttachmentBuf = null;
+			} else if (lazyDecode) {
+				// decoded by request on first access of args
+				request.setEncodedBody(protoAndAttachmentBuf);
+				protoAndAttachmentBuf = null;
 			} else {
 				Object proto = compress.uncompressInput(protoAndAttachmentBuf, rpcMethodInfo);
 				request.setArgs(new Object[]{proto});
@@ -289,6 +401,9 @@ public class BaiduRpcProtocol extends AbstractProtocol {
 			if (protoAndAttachmentBuf != null) {
 				protoAndAttachmentBuf.release();
 			}
+			if (attachmentStream != null) {
+				attachmentStream.cancel();
+			}
 		}
 	}
 
@@ -319,8 +434,14 @@ public class BaiduRpcProtocol extends AbstractProtocol {
 
 			// attachment
 			if (response.getBinaryAttachment() != null) {
-				responsePacket.setAttachment(response.getBinaryAttachment());
-				metaBuilder.setAttachmentSize(response.getBinaryAttachment().readableBytes());
+				ByteBuf attachment = response.getBinaryAttachment();
+				metaBuilder.setAttachmentSize(attachment.readableBytes());
+				if (request != null && isChunked(attachment, getAttachmentChunkSize(request.getChannel()))) {
+					metaBuilder.setChunkInfo(Options.ChunkInfo.newBuilder()
+							.setStreamId(response.getCorrelationId()).setChunkId(0));
+				} else {
+					responsePacket.setAttachment(attachment);
+				}
 			}
 			responsePacket.setRpcMeta(metaBuilder.build());
 		}
@@ -351,11 +472,87 @@ public class BaiduRpcProtocol extends AbstractProtocol {
 			return Unpooled.wrappedBuffer(headerBuf, metaBuf, protoBuf, attachmentBuf);
 		} else if (protoBuf != null) {
 			return Unpooled.wrappedBuffer(headerBuf, metaBuf, protoBuf);
+		} else if (attachmentBuf != null) {
+			return Unpooled.wrappedBuffer(headerBuf, metaBuf, attachmentBuf);
 		} else {
 			return Unpooled.wrappedBuffer(headerBuf, metaBuf);
 		}
 	}
 
+	/**
+	 * encode one piece of chunked attachment, chunkId starts from 1.
+	 */
+	protected ByteBuf encodeChunk(long correlationId, long chunkId, ByteBuf chunk) throws Exception {
+		BaiduRpcProto.RpcMeta.Builder metaBuilder = BaiduRpcProto.RpcMeta.newBuilder();
+		metaBuilder.setCorrelationId(correlationId);
+		metaBuilder.setAttachmentSize(chunk.readableBytes());
+		metaBuilder.setChunkInfo(Options.ChunkInfo.newBuilder()
+				.setStreamId(correlationId).setChunkId(chunkId));
+		BaiduRpcEncodePacket packet = new BaiduRpcEncodePacket();
+		packet.setRpcMeta(metaBuilder.build());
+		packet.setAttachment(chunk);
+		return encode(packet);
+	}
+
+	@Override
+	public void afterRequestSent(Request request, ChannelFuture channelFuture) {
+		ByteBuf attachment = request.getBinaryAttachment();
+		int chunkSize = getAttachmentChunkSize(request);
+		if (isChunked(attachment, chunkSize)) {
+			new BaiduRpcChunkWriter(this, channelFuture.channel(), request.getCorrelationId(),
+					attachment, chunkSize).start(channelFuture);
+		}
+	}
+
+	@Override
+	public void afterResponseSent(Request request, Response response, ChannelFuture channelFuture) {
+		if (request == null || response.getException() != null) {
+			return;
+		}
+		ByteBuf attachment = response.getBinaryAttachment();
+		int chunkSize = getAttachmentChunkSize(request.getChannel());
+		if (isChunked(attachment, chunkSize)) {
+			new BaiduRpcChunkWriter(this, channelFuture.channel(), response.getCorrelationId(),
+					attachment, chunkSize).start(channelFuture);
+		}
+	}
+
+	private static boolean isChunked(ByteBuf attachment, int chunkSize) {
+		return chunkSize > 0 && attachment != null && attachment.readableBytes() > chunkSize;
+	}
+
+	private static int getAttachmentChunkSize(Request request) {
+		if (request.getCommunicationClient() == null) {
+			return 0;
+		}
+		return request.getCommunicationClient().getCommunicationOptions().getAttachmentChunkSize();
+	}
+
+	private static int getAttachmentChunkSize(Channel channel) {
+		if (channel == null) {
+			return 0;
+		}
+		ChannelInfo channelInfo = ChannelInfo.getServerChannelInfo(channel);
+		return channelInfo == null ? 0 : channelInfo.getAttachmentChunkSize();
+	}
+
+	private BaiduRpcProto.RpcMeta parseRpcMeta(BaiduRpcDecodePacket packet) throws Exception {
+		if (packet.getRpcMeta() != null) {
+			return packet.getRpcMeta();
+		}
+		return (BaiduRpcProto.RpcMeta) ProtobufUtils.parseFrom(packet.getMetaBuf(), defaultRpcMetaInstance);
+	}
+
+	@Override
+	public int getMagicHeadOffset() {
+		return 0;
+	}
+
+	@Override
+	public int[] getMagicHeads() {
+		return MAGIC_HEADS;
+	}
+
 	@Override
 	public boolean isCoexistence() {
 		return true;
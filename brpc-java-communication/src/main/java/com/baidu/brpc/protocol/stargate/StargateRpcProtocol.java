@@ -15,6 +15,7 @@
  */
 package com.baidu.brpc.protocol.stargate;
 
+import java.io.IOException;
 import java.lang.reflect.Method;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -30,19 +31,18 @@ import com.baidu.brpc.exceptions.BadSchemaException;
 import com.baidu.brpc.exceptions.NotEnoughDataException;
 import com.baidu.brpc.exceptions.TooBigDataException;
 import com.baidu.brpc.protocol.AbstractProtocol;
+import com.baidu.brpc.protocol.FrameCheckProtocol;
 import com.baidu.brpc.protocol.Request;
 import com.baidu.brpc.protocol.Response;
 import com.baidu.brpc.protocol.RpcRequest;
 import com.baidu.brpc.protocol.RpcResponse;
 import com.baidu.brpc.server.ServiceManager;
 import com.baidu.brpc.utils.NetUtils;
-import com.dyuproject.protostuff.LinkedBuffer;
-import com.dyuproject.protostuff.ProtobufIOUtil;
+import com.baidu.brpc.utils.ProtostuffUtils;
 import com.dyuproject.protostuff.Schema;
 import com.dyuproject.protostuff.runtime.RuntimeSchema;
 
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelHandlerContext;
 import lombok.extern.slf4j.Slf4j;
 
@@ -55,12 +55,12 @@ import lombok.extern.slf4j.Slf4j;
  * +-----------------------------------+----------------+
  */
 @Slf4j
-public class StargateRpcProtocol extends AbstractProtocol {
+public class StargateRpcProtocol extends AbstractProtocol implements FrameCheckProtocol {
 
     private static final int FIXED_HEAD_LEN = 4;
 
     private static final NotEnoughDataException notEnoughDataException
-            = new NotEnoughDataException("Stargate not enough data");
+            = NotEnoughDataException.stackless("Stargate not enough data");
 
     private static final String SERIALIZATION_EXCEPTION = "decode error,this problem is usually caused by"
             + "\n 1: difference of api.jar between server and client."
@@ -86,9 +86,26 @@ public class StargateRpcProtocol extends AbstractProtocol {
     };
 
     private ServiceManager serviceManager = ServiceManager.getInstance();
-    private boolean init = false;
+    private static volatile boolean init = false;
+
+    /**
+     * schemas are resolved once, after runtime env is inited.
+     */
+    private static class Schemas {
+        static {
+            initRuntimeEnv();
+        }
+
+        static final Schema<StargateRpcRequestPacket> REQUEST = RuntimeSchema.getSchema(StargateRpcRequestPacket.class);
+        static final Schema<StargateRpcResponsePacket> RESPONSE
+                = RuntimeSchema.getSchema(StargateRpcResponsePacket.class);
+    }
 
     public void initEnv() {
+        initRuntimeEnv();
+    }
+
+    private static void initRuntimeEnv() {
         // init Stargate protoStuff
         // docs http://javadox.com/io.protostuff/protostuff-runtime/1.3.8/io/protostuff/runtime/RuntimeEnv.html
         if (!init) {
@@ -103,6 +120,14 @@ public class StargateRpcProtocol extends AbstractProtocol {
         }
     }
 
+    @Override
+    public int checkFrame(DynamicCompositeByteBuf in) {
+        if (in.readableBytes() < FIXED_HEAD_LEN) {
+            return FIXED_HEAD_LEN - in.readableBytes();
+        }
+        return remainingFrameBytes(in, FIXED_HEAD_LEN, in.getInt(0));
+    }
+
     @Override
     public Object decode(ChannelHandlerContext ctx, DynamicCompositeByteBuf in, boolean isDecodingRequest)
             throws TooBigDataException, NotEnoughDataException, BadSchemaException {
@@ -122,10 +147,8 @@ public class StargateRpcProtocol extends AbstractProtocol {
                 throw notEnoughDataException;
             }
 
-            byte[] body = new byte[bodySize];
             in.skipBytes(FIXED_HEAD_LEN);
-            in.readBytes(body);
-            return body;
+            return in.readRetainedSlice(bodySize);
         } finally {
             head.release();
         }
@@ -154,11 +177,7 @@ public class StargateRpcProtocol extends AbstractProtocol {
         }
 
         try {
-            initEnv();
-            Schema<StargateRpcRequestPacket> schema = RuntimeSchema.getSchema(StargateRpcRequestPacket.class);
-            byte[] body = ProtobufIOUtil.toByteArray(requestPacket, schema, LinkedBuffer.allocate(500));
-            byte[] head = buildHead(body);
-            return Unpooled.wrappedBuffer(head, body);
+            return encodePacket(requestPacket, Schemas.REQUEST);
         } catch (Exception e) {
             log.warn(SERIALIZATION_EXCEPTION, e);
             throw new BadSchemaException(SERIALIZATION_EXCEPTION, e);
@@ -174,8 +193,7 @@ public class StargateRpcProtocol extends AbstractProtocol {
     public Response decodeResponse(Object msg, ChannelHandlerContext ctx) throws Exception {
         try {
             StargateRpcResponsePacket rpcResponse = new StargateRpcResponsePacket();
-            Schema<StargateRpcResponsePacket> schema = RuntimeSchema.getSchema(StargateRpcResponsePacket.class);
-            ProtobufIOUtil.mergeFrom((byte[]) msg, rpcResponse, schema);
+            decodePacket((ByteBuf) msg, rpcResponse, Schemas.RESPONSE);
             try {
                 Response response = new RpcResponse();
                 response.setResult(rpcResponse.getResult());
@@ -211,9 +229,7 @@ public class StargateRpcProtocol extends AbstractProtocol {
     public Request decodeRequest(Object packet) throws BadSchemaException {
         try {
             StargateRpcRequestPacket requestPacket = new StargateRpcRequestPacket();
-            initEnv();
-            Schema<StargateRpcRequestPacket> schema = RuntimeSchema.getSchema(StargateRpcRequestPacket.class);
-            ProtobufIOUtil.mergeFrom((byte[]) packet, requestPacket, schema);
+            decodePacket((ByteBuf) packet, requestPacket, Schemas.REQUEST);
 
             String serviceName = requestPacket.getUri().getServiceName();
             String methodName = requestPacket.getMethodName();
@@ -257,11 +273,7 @@ public class StargateRpcProtocol extends AbstractProtocol {
                 responsePacket.setAttachments(response.getKvAttachment());
             }
 
-            Schema<StargateRpcResponsePacket> schema = RuntimeSchema.getSchema(StargateRpcResponsePacket.class);
-            byte[] body = ProtobufIOUtil.toByteArray(responsePacket, schema, LinkedBuffer.allocate(500));
-            byte[] head = buildHead(body);
-
-            return Unpooled.wrappedBuffer(head, body);
+            return encodePacket(responsePacket, Schemas.RESPONSE);
         } catch (Exception e) {
             log.warn(SERIALIZATION_EXCEPTION, e);
             throw new BadSchemaException(SERIALIZATION_EXCEPTION, e);
@@ -269,18 +281,23 @@ public class StargateRpcProtocol extends AbstractProtocol {
     }
 
     /**
-     * 根据Body的长度，生产4位数组的Head
-     *
-     * @param body 二进制Body
+     * 序列化Body到池化的ByteBuf中，并在前4位写入Body长度作为Head
+     */
+    private <T> ByteBuf encodePacket(T packet, Schema<T> schema) throws IOException {
+        ByteBuf byteBuf = ProtostuffUtils.serialize(packet, schema, FIXED_HEAD_LEN);
+        byteBuf.setInt(0, byteBuf.readableBytes() - FIXED_HEAD_LEN);
+        return byteBuf;
+    }
+
+    /**
+     * 直接从ByteBuf反序列化Body，并释放ByteBuf
      */
-    private byte[] buildHead(byte[] body) {
-        int length = body.length;
-        return new byte[]{
-                (byte) ((length >> 24) & 0xFF),
-                (byte) ((length >> 16) & 0xFF),
-                (byte) ((length >> 8) & 0xFF),
-                (byte) (length & 0xFF)
-        };
+    private <T> void decodePacket(ByteBuf body, T packet, Schema<T> schema) throws IOException {
+        try {
+            ProtostuffUtils.deserialize(body, packet, schema);
+        } finally {
+            body.release();
+        }
     }
 
 }
@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.brpc.serialize;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.util.CharsetUtil;
+import io.netty.util.ReferenceCounted;
+
+/**
+ * FlatBuffers style message, which is a view over its serialized buffer, so it is decoded without parsing.
+ * fields are read from the buffer when accessed.
+ * <p>
+ * layout, all integers are little endian:
+ * <pre>
+ * | field count n (int) | offset of field 0 .. n-1 (int) | field data ... |
+ * </pre>
+ * offset is relative to the start of message, 0 means the field is absent.
+ * scalar field is stored at its offset, and string, bytes or nested message is stored as length (int) and data.
+ * <p>
+ * subclass defines typed getters by field index, and must have a public constructor with one {@link ByteBuf}.
+ * it is created by {@link FlatMessageBuilder}, or decoded by {@link FlatSerializer}.
+ * <p>
+ * message decoded from received data keeps a retained slice of it.
+ * request message is released by server after the service method returns,
+ * holder should {@link #retain()} it if it is used after that.
+ * response message is owned by caller, which should {@link #release()} it when done.
+ * received message returned by service method is released by server after the response is sent,
+ * service should {@link #retain()} it before returning if it is kept, such as cached.
+ * message created by {@link FlatMessageBuilder} is never released by server.
+ */
+public abstract class FlatMessage implements ReferenceCounted {
+	protected static final int INT_SIZE = 4;
+
+	protected final ByteBuf buf;
+	private final int start;
+	private final int fieldCount;
+	private boolean received;
+
+	protected FlatMessage(ByteBuf buf) {
+		this.buf = buf;
+		this.start = buf.readerIndex();
+		this.fieldCount = buf.getIntLE(start);
+	}
+
+	/**
+	 * @return true if the message is decoded by {@link FlatSerializer} from received data.
+	 */
+	public boolean isReceived() {
+		return received;
+	}
+
+	FlatMessage markReceived() {
+		received = true;
+		return this;
+	}
+
+	/**
+	 * @return serialized message, it is not copied.
+	 */
+	public ByteBuf getBuffer() {
+		return buf;
+	}
+
+	public int getFieldCount() {
+		return fieldCount;
+	}
+
+	public boolean hasField(int field) {
+		return fieldOffset(field) != 0;
+	}
+
+	protected int getInt(int field, int defaultValue) {
+		int offset = fieldOffset(field);
+		return offset != 0 ? buf.getIntLE(start + offset) : defaultValue;
+	}
+
+	protected long getLong(int field, long defaultValue) {
+		int offset = fieldOffset(field);
+		return offset != 0 ? buf.getLongLE(start + offset) : defaultValue;
+	}
+
+	protected double getDouble(int field, double defaultValue) {
+		int offset = fieldOffset(field);
+		return offset != 0 ? Double.longBitsToDouble(buf.getLongLE(start + offset)) : defaultValue;
+	}
+
+	protected boolean getBoolean(int field, boolean defaultValue) {
+		int offset = fieldOffset(field);
+		return offset != 0 ? buf.getByte(start + offset) != 0 : defaultValue;
+	}
+
+	protected String getString(int field) {
+		int offset = fieldOffset(field);
+		if (offset == 0) {
+			return null;
+		}
+		int index = start + offset;
+		return buf.toString(index + INT_SIZE, buf.getIntLE(index), CharsetUtil.UTF_8);
+	}
+
+	/**
+	 * @return slice of bytes field, it shares the buffer of message and is not retained.
+	 */
+	protected ByteBuf getBytes(int field) {
+		int offset = fieldOffset(field);
+		if (offset == 0) {
+			return null;
+		}
+		int index = start + offset;
+		return buf.slice(index + INT_SIZE, buf.getIntLE(index));
+	}
+
+	/**
+	 * nested message is also a view, such as {@code new Address(getBytes(field))}.
+	 */
+	protected ByteBuf getMessage(int field) {
+		return getBytes(field);
+	}
+
+	private int fieldOffset(int field) {
+		if (field < 0 || field >= fieldCount) {
+			return 0;
+		}
+		return buf.getIntLE(start + INT_SIZE + field * INT_SIZE);
+	}
+
+	@Override
+	public int refCnt() {
+		return buf.refCnt();
+	}
+
+	@Override
+	public FlatMessage retain() {
+		buf.retain();
+		return this;
+	}
+
+	@Override
+	public FlatMessage retain(int increment) {
+		buf.retain(increment);
+		return this;
+	}
+
+	@Override
+	public FlatMessage touch() {
+		buf.touch();
+		return this;
+	}
+
+	@Override
+	public FlatMessage touch(Object hint) {
+		buf.touch(hint);
+		return this;
+	}
+
+	@Override
+	public boolean release() {
+		return buf.release();
+	}
+
+	@Override
+	public boolean release(int decrement) {
+		return buf.release(decrement);
+	}
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.brpc.serialize;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.util.CharsetUtil;
+
+/**
+ * write fields into the layout of {@link FlatMessage}.
+ * fields can be added in any order, and each field is added at most once.
+ */
+public class FlatMessageBuilder {
+	private static final int DEFAULT_INITIAL_CAPACITY = 256;
+
+	private final ByteBuf buf;
+	private final int fieldCount;
+
+	public FlatMessageBuilder(int fieldCount) {
+		this(fieldCount, DEFAULT_INITIAL_CAPACITY);
+	}
+
+	public FlatMessageBuilder(int fieldCount, int initialCapacity) {
+		this.fieldCount = fieldCount;
+		int headSize = FlatMessage.INT_SIZE * (fieldCount + 1);
+		this.buf = Unpooled.buffer(Math.max(initialCapacity, headSize));
+		buf.writeIntLE(fieldCount);
+		buf.writeZero(headSize - FlatMessage.INT_SIZE);
+	}
+
+	public FlatMessageBuilder addInt(int field, int value) {
+		startField(field);
+		buf.writeIntLE(value);
+		return this;
+	}
+
+	public FlatMessageBuilder addLong(int field, long value) {
+		startField(field);
+		buf.writeLongLE(value);
+		return this;
+	}
+
+	public FlatMessageBuilder addDouble(int field, double value) {
+		startField(field);
+		buf.writeLongLE(Double.doubleToRawLongBits(value));
+		return this;
+	}
+
+	public FlatMessageBuilder addBoolean(int field, boolean value) {
+		startField(field);
+		buf.writeByte(value ? 1 : 0);
+		return this;
+	}
+
+	/**
+	 * null value is not added, and the field is absent.
+	 */
+	public FlatMessageBuilder addString(int field, String value) {
+		if (value == null) {
+			return this;
+		}
+		startField(field);
+		int lengthIndex = buf.writerIndex();
+		buf.writeIntLE(0);
+		int length = buf.writeCharSequence(value, CharsetUtil.UTF_8);
+		buf.setIntLE(lengthIndex, length);
+		return this;
+	}
+
+	public FlatMessageBuilder addBytes(int field, byte[] value) {
+		if (value == null) {
+			return this;
+		}
+		startField(field);
+		buf.writeIntLE(value.length);
+		buf.writeBytes(value);
+		return this;
+	}
+
+	/**
+	 * the readable bytes of value are copied, and its reader index is not changed.
+	 */
+	public FlatMessageBuilder addBytes(int field, ByteBuf value) {
+		if (value == null) {
+			return this;
+		}
+		startField(field);
+		buf.writeIntLE(value.readableBytes());
+		buf.writeBytes(value, value.readerIndex(), value.readableBytes());
+		return this;
+	}
+
+	public FlatMessageBuilder addMessage(int field, FlatMessage value) {
+		return addBytes(field, value != null ? value.getBuffer() : null);
+	}
+
+	/**
+	 * @return serialized message, which is passed to the constructor of {@link FlatMessage} subclass.
+	 */
+	public ByteBuf finish() {
+		return buf;
+	}
+
+	private void startField(int field) {
+		if (field < 0 || field >= fieldCount) {
+			throw new IndexOutOfBoundsException("field " + field + " is out of count " + fieldCount);
+		}
+		buf.setIntLE(FlatMessage.INT_SIZE * (field + 1), buf.writerIndex());
+	}
+}
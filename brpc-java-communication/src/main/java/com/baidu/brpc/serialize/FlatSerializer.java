@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.brpc.serialize;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
+
+/**
+ * serializer of {@link FlatMessage}, the message is sent as its buffer,
+ * and decoded as a view over the received buffer.
+ */
+public class FlatSerializer implements Serializer {
+	public static final String NAME = "flat";
+
+	@Override
+	public int getPriority() {
+		return DEFAULT_PRIORITY;
+	}
+
+	@Override
+	public String getName() {
+		return NAME;
+	}
+
+	@Override
+	public boolean isSupported(Class<?> messageClass) {
+		return FlatMessage.class.isAssignableFrom(messageClass)
+				&& !Modifier.isAbstract(messageClass.getModifiers());
+	}
+
+	@Override
+	public MessageCodec createCodec(Class<?> messageClass) {
+		try {
+			return new FlatMessageCodec(messageClass.getConstructor(ByteBuf.class));
+		} catch (NoSuchMethodException ex) {
+			throw new IllegalArgumentException(messageClass.getName() + " has no constructor with ByteBuf", ex);
+		}
+	}
+
+	private static class FlatMessageCodec implements MessageCodec {
+		private final Constructor<?> constructor;
+
+		FlatMessageCodec(Constructor<?> constructor) {
+			this.constructor = constructor;
+		}
+
+		@Override
+		public byte[] encode(Object message) throws IOException {
+			ByteBuf buf = ((FlatMessage) message).getBuffer();
+			return ByteBufUtil.getBytes(buf, buf.readerIndex(), buf.readableBytes(), false);
+		}
+
+		@Override
+		public int getSerializedSize(Object message) throws IOException {
+			return ((FlatMessage) message).getBuffer().readableBytes();
+		}
+
+		@Override
+		public Object decode(byte[] bytes, int offset, int length) throws IOException {
+			return newMessage(Unpooled.wrappedBuffer(bytes, offset, length));
+		}
+
+		@Override
+		public Object decode(ByteBuf byteBuf) throws IOException {
+			ByteBuf messageBuf = byteBuf.readRetainedSlice(byteBuf.readableBytes());
+			try {
+				return newMessage(messageBuf);
+			} catch (IOException ex) {
+				messageBuf.release();
+				throw ex;
+			}
+		}
+
+		private Object newMessage(ByteBuf buf) throws IOException {
+			try {
+				return ((FlatMessage) constructor.newInstance(buf)).markReceived();
+			} catch (InvocationTargetException ex) {
+				throw new IOException("decode " + constructor.getDeclaringClass().getName() + " failed",
+						ex.getCause());
+			} catch (Exception ex) {
+				throw new IOException("decode " + constructor.getDeclaringClass().getName() + " failed", ex);
+			}
+		}
+	}
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.brpc.serialize;
+
+import io.netty.buffer.ByteBuf;
+
+import java.io.IOException;
+
+/**
+ * encode and decode messages of one class.
+ */
+public interface MessageCodec {
+
+	byte[] encode(Object message) throws IOException;
+
+	int getSerializedSize(Object message) throws IOException;
+
+	Object decode(byte[] bytes, int offset, int length) throws IOException;
+
+	/**
+	 * decode the readable bytes of byteBuf, and skip them.
+	 * codec may return a view which keeps a retained slice of byteBuf instead of parsing it,
+	 * such message should implement {@link io.netty.util.ReferenceCounted}, and it is released by its holder.
+	 */
+	Object decode(ByteBuf byteBuf) throws IOException;
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.brpc.serialize;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.util.ReferenceCounted;
+
+/**
+ * message kept in its encoded form, it is sent and received by {@link RawSerializer} without decoding.
+ * <p>
+ * relay service declares the same service name and method name as the downstream service,
+ * with {@code RawMessage} as request and response:
+ * <pre>
+ * public interface EchoRelay {
+ *     &#64;BrpcMeta(serviceName = "example.EchoService", methodName = "Echo")
+ *     RawMessage echo(RawMessage request);
+ * }
+ * </pre>
+ * the server implementation forwards the request by a client proxy of the same interface,
+ * and returns the response of downstream. binary attachment of request is in
+ * {@link com.baidu.brpc.RpcContext} when the service method is called, and it is sent with the downstream call.
+ * <p>
+ * received message keeps a retained slice of the received buffer, and is released like {@link FlatMessage}.
+ * message created by service, such as a cached one, is never released by server.
+ */
+public class RawMessage implements ReferenceCounted {
+	private final ByteBuf buf;
+	private boolean received;
+
+	public RawMessage(ByteBuf buf) {
+		this.buf = buf;
+	}
+
+	public RawMessage(byte[] bytes) {
+		this(Unpooled.wrappedBuffer(bytes));
+	}
+
+	/**
+	 * @return true if the message is decoded by {@link RawSerializer} from received data.
+	 */
+	public boolean isReceived() {
+		return received;
+	}
+
+	RawMessage markReceived() {
+		received = true;
+		return this;
+	}
+
+	/**
+	 * @return encoded message, it is not copied.
+	 */
+	public ByteBuf getBuffer() {
+		return buf;
+	}
+
+	@Override
+	public int refCnt() {
+		return buf.refCnt();
+	}
+
+	@Override
+	public RawMessage retain() {
+		buf.retain();
+		return this;
+	}
+
+	@Override
+	public RawMessage retain(int increment) {
+		buf.retain(increment);
+		return this;
+	}
+
+	@Override
+	public RawMessage touch() {
+		buf.touch();
+		return this;
+	}
+
+	@Override
+	public RawMessage touch(Object hint) {
+		buf.touch(hint);
+		return this;
+	}
+
+	@Override
+	public boolean release() {
+		return buf.release();
+	}
+
+	@Override
+	public boolean release(int decrement) {
+		return buf.release(decrement);
+	}
+}
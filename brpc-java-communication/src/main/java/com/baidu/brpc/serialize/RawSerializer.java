@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.brpc.serialize;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+
+import java.io.IOException;
+
+/**
+ * serializer of {@link RawMessage}, the encoded body is passed through unchanged.
+ */
+public class RawSerializer implements Serializer {
+	public static final String NAME = "raw";
+
+	private static final MessageCodec CODEC = new RawMessageCodec();
+
+	@Override
+	public int getPriority() {
+		return DEFAULT_PRIORITY;
+	}
+
+	@Override
+	public String getName() {
+		return NAME;
+	}
+
+	@Override
+	public boolean isSupported(Class<?> messageClass) {
+		return messageClass == RawMessage.class;
+	}
+
+	@Override
+	public MessageCodec createCodec(Class<?> messageClass) {
+		return CODEC;
+	}
+
+	private static class RawMessageCodec implements MessageCodec {
+		@Override
+		public byte[] encode(Object message) throws IOException {
+			ByteBuf buf = ((RawMessage) message).getBuffer();
+			return ByteBufUtil.getBytes(buf, buf.readerIndex(), buf.readableBytes(), false);
+		}
+
+		@Override
+		public int getSerializedSize(Object message) throws IOException {
+			return ((RawMessage) message).getBuffer().readableBytes();
+		}
+
+		@Override
+		public Object decode(byte[] bytes, int offset, int length) throws IOException {
+			return new RawMessage(Unpooled.wrappedBuffer(bytes, offset, length)).markReceived();
+		}
+
+		@Override
+		public Object decode(ByteBuf byteBuf) throws IOException {
+			return new RawMessage(byteBuf.readRetainedSlice(byteBuf.readableBytes())).markReceived();
+		}
+	}
+}
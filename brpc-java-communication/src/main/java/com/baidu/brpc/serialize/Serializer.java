@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.brpc.serialize;
+
+/**
+ * serialization of request and response messages which are neither protobuf nor jprotobuf classes.
+ * implementations are loaded by java spi, see {@link com.baidu.brpc.CommunicationSpiManager}.
+ */
+public interface Serializer {
+	/**
+	 * serializers are matched by priority, the lower priority will be matched earlier.
+	 */
+	int DEFAULT_PRIORITY = 100;
+
+	int getPriority();
+
+	String getName();
+
+	/**
+	 * @param messageClass request or response class of rpc method
+	 * @return true if the class can be serialized
+	 */
+	boolean isSupported(Class<?> messageClass);
+
+	/**
+	 * create codec of the message class, it is called once when rpc method is parsed.
+	 */
+	MessageCodec createCodec(Class<?> messageClass);
+}
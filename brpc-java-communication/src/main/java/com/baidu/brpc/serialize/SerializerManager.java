@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.brpc.serialize;
+
+import com.baidu.brpc.CommunicationSpiManager;
+import com.baidu.brpc.JprotobufRpcMethodInfo;
+import com.baidu.brpc.ProtobufRpcMethodInfo;
+import com.baidu.brpc.RpcMethodInfo;
+import com.baidu.brpc.SerializerRpcMethodInfo;
+import com.baidu.brpc.utils.ProtobufUtils;
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * manages serializers and creates {@link RpcMethodInfo} by message types of rpc method.
+ */
+@Slf4j
+public class SerializerManager {
+	private static volatile SerializerManager instance;
+	// sorted by priority, it is replaced when a serializer is registered
+	private volatile List<Serializer> serializers = new ArrayList<Serializer>();
+
+	public static SerializerManager getInstance() {
+		if (instance == null) {
+			synchronized (SerializerManager.class) {
+				if (instance == null) {
+					instance = new SerializerManager();
+				}
+			}
+		}
+		return instance;
+	}
+
+	private SerializerManager() {
+	}
+
+	public synchronized void registerSerializer(Serializer serializer) {
+		List<Serializer> newSerializers = new ArrayList<Serializer>(serializers.size() + 1);
+		for (Serializer s : serializers) {
+			if (!s.getName().equals(serializer.getName())) {
+				newSerializers.add(s);
+			}
+		}
+		newSerializers.add(serializer);
+		Collections.sort(newSerializers, new Comparator<Serializer>() {
+			@Override
+			public int compare(Serializer o1, Serializer o2) {
+				return o1.getPriority() - o2.getPriority();
+			}
+		});
+		serializers = newSerializers;
+		log.info("register serializer, name={}, priority={}", serializer.getName(), serializer.getPriority());
+	}
+
+	public List<Serializer> getSerializers() {
+		return serializers;
+	}
+
+	/**
+	 * find the serializer which supports both request and response class of method.
+	 *
+	 * @return null if no serializer supports the method
+	 */
+	public Serializer getSerializer(Method method) {
+		Class<?>[] parameterTypes = method.getParameterTypes();
+		if (parameterTypes.length != 1) {
+			return null;
+		}
+		for (Serializer serializer : serializers) {
+			if (serializer.isSupported(parameterTypes[0]) && serializer.isSupported(method.getReturnType())) {
+				return serializer;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * protobuf and jprotobuf messages are handled by builtin method infos,
+	 * other messages by the matched serializer, and the rest are pojo.
+	 */
+	public RpcMethodInfo createRpcMethodInfo(Method method) {
+		ProtobufUtils.MessageType messageType = ProtobufUtils.getMessageType(method);
+		if (messageType == ProtobufUtils.MessageType.PROTOBUF) {
+			return new ProtobufRpcMethodInfo(method);
+		} else if (messageType == ProtobufUtils.MessageType.JPROTOBUF) {
+			return new JprotobufRpcMethodInfo(method);
+		}
+		CommunicationSpiManager.getInstance().loadSerializer();
+		Serializer serializer = getSerializer(method);
+		if (serializer != null) {
+			return new SerializerRpcMethodInfo(method, serializer);
+		}
+		return new RpcMethodInfo(method);
+	}
+}
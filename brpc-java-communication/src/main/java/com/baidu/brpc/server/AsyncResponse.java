@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.baidu.brpc.server;
+
+import com.baidu.brpc.client.RpcCallback;
+import com.baidu.brpc.server.handler.ServerWorkTask;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * AsyncResponse completes a rpc after the service method returns,
+ * so the work thread is released without waiting for downstream services.
+ * It is created by {@link com.baidu.brpc.RpcContext#startAsync()} in service method,
+ * and can be passed to async client directly as {@link RpcCallback}.
+ * <ul>
+ * <li>the return value of service method is ignored, the result is given by {@link #success(Object)}.</li>
+ * <li>exception thrown by service method fails the rpc if it is not completed.</li>
+ * <li>attachments of response must be set in RpcContext before service method returns.</li>
+ * <li>the request binary attachment is released after the response is sent.</li>
+ * <li>server interceptors handle the response when service method returns, before it is completed.</li>
+ * </ul>
+ */
+@Slf4j
+public class AsyncResponse<T> implements RpcCallback<T> {
+    private final ServerWorkTask workTask;
+    private final AtomicBoolean completed = new AtomicBoolean(false);
+    // response is sent when both the service method returns and the rpc is completed
+    private final AtomicInteger pendingNum = new AtomicInteger(2);
+    private volatile T result;
+    private volatile Throwable exception;
+
+    public AsyncResponse(ServerWorkTask workTask) {
+        this.workTask = workTask;
+    }
+
+    @Override
+    public void success(T response) {
+        if (!completed.compareAndSet(false, true)) {
+            log.warn("async response is completed repeatedly, logId={}", workTask.getRequest().getLogId());
+            return;
+        }
+        this.result = response;
+        done();
+    }
+
+    @Override
+    public void fail(Throwable e) {
+        if (!completed.compareAndSet(false, true)) {
+            log.debug("async response is completed, ignore exception:", e);
+            return;
+        }
+        this.exception = e;
+        done();
+    }
+
+    public boolean isCompleted() {
+        return completed.get();
+    }
+
+    /**
+     * called by server when service method returns.
+     */
+    public void onMethodReturned() {
+        done();
+    }
+
+    private void done() {
+        if (pendingNum.decrementAndGet() == 0) {
+            workTask.sendAsyncResponse(result, exception);
+        }
+    }
+}
@@ -16,8 +16,6 @@
 
 package com.baidu.brpc.server;
 
-import com.baidu.brpc.JprotobufRpcMethodInfo;
-import com.baidu.brpc.ProtobufRpcMethodInfo;
 import com.baidu.brpc.RpcContext;
 import com.baidu.brpc.RpcMethodInfo;
 import com.baidu.brpc.client.AsyncAwareFuture;
@@ -33,7 +31,7 @@ import com.baidu.brpc.protocol.nshead.NSHead;
 import com.baidu.brpc.protocol.nshead.NSHeadMeta;
 import com.baidu.brpc.protocol.push.SPHead;
 import com.baidu.brpc.protocol.push.ServerPushProtocol;
-import com.baidu.brpc.utils.ProtobufUtils;
+import com.baidu.brpc.serialize.SerializerManager;
 import io.netty.channel.Channel;
 import lombok.extern.slf4j.Slf4j;
 import net.sf.cglib.proxy.Enhancer;
@@ -120,15 +118,7 @@ public class BrpcPushProxy implements MethodInterceptor {
                 throw new IllegalArgumentException("can not find sync method:" + method.getName());
             }
 
-            RpcMethodInfo methodInfo;
-            ProtobufUtils.MessageType messageType = ProtobufUtils.getMessageType(syncMethod);
-            if (messageType == ProtobufUtils.MessageType.PROTOBUF) {
-                methodInfo = new ProtobufRpcMethodInfo(syncMethod);
-            } else if (messageType == ProtobufUtils.MessageType.JPROTOBUF) {
-                methodInfo = new JprotobufRpcMethodInfo(syncMethod);
-            } else {
-                methodInfo = new RpcMethodInfo(syncMethod);
-            }
+            RpcMethodInfo methodInfo = SerializerManager.getInstance().createRpcMethodInfo(syncMethod);
 
             rpcMethodMap.put(method.getName(), methodInfo);
             log.debug("client serviceName={}, methodName={}",
@@ -18,6 +18,7 @@ package com.baidu.brpc.server;
 
 import com.baidu.brpc.ChannelInfo;
 import com.baidu.brpc.CommunicationSpiManager;
+import com.baidu.brpc.RpcMethodInfo;
 import com.baidu.brpc.client.AsyncAwareFuture;
 import com.baidu.brpc.client.RpcFuture;
 import com.baidu.brpc.exceptions.RpcException;
@@ -37,10 +38,13 @@ import io.netty.channel.epoll.EpollChannelOption;
 import io.netty.channel.epoll.EpollEventLoopGroup;
 import io.netty.channel.epoll.EpollMode;
 import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.channel.group.DefaultChannelGroup;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
 import io.netty.handler.timeout.IdleStateHandler;
+import io.netty.util.concurrent.GlobalEventExecutor;
 import io.netty.util.Timeout;
 import io.netty.util.Timer;
 import io.netty.util.TimerTask;
@@ -54,6 +58,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Created by wenweihu86 on 2019/12/07.
@@ -92,6 +97,15 @@ public class CommunicationServer {
     protected AtomicBoolean stop = new AtomicBoolean(false);
     protected Timer timeoutTimer;
     protected ServiceManager serviceManager = ServiceManager.getInstance();
+    // requests are decoded in io thread when any non-blocking method is registered
+    protected volatile boolean nonBlockingServiceRegistered = false;
+    protected EventLoopWatchdog eventLoopWatchdog;
+    // listening channel, closed first when shutdown so no new connection is accepted
+    protected Channel serverChannel;
+    // accepted connections, closed after in-flight requests are drained
+    protected ChannelGroup childChannels = new DefaultChannelGroup(GlobalEventExecutor.INSTANCE);
+    // requests received and not responded yet, waited by shutdown
+    protected AtomicInteger inFlightRequestNum = new AtomicInteger(0);
 
     public CommunicationServer(int port) {
         this(null, port, new RpcServerOptions());
@@ -135,8 +149,7 @@ public class CommunicationServer {
         if (rpcServerOptions.isGlobalThreadPoolSharing()) {
             threadPool = ServerWorkThreadPoolInstance.getOrCreateInstance(rpcServerOptions.getWorkThreadNum());
         } else {
-            threadPool = new ThreadPool(rpcServerOptions.getWorkThreadNum(),
-                    new CustomThreadFactory("server-work-thread"));
+            threadPool = createWorkThreadPool(rpcServerOptions, "server-work-thread");
         }
 
         if (rpcServerOptions.getIoEventType() == BrpcConstants.IO_EVENT_NETTY_EPOLL) {
@@ -156,6 +169,12 @@ public class CommunicationServer {
             bootstrap.channel(EpollServerSocketChannel.class);
             bootstrap.option(EpollChannelOption.EPOLL_MODE, EpollMode.EDGE_TRIGGERED);
             bootstrap.childOption(EpollChannelOption.EPOLL_MODE, EpollMode.EDGE_TRIGGERED);
+            if (rpcServerOptions.isReusePort()) {
+                bootstrap.option(EpollChannelOption.SO_REUSEPORT, true);
+            }
+            if (rpcServerOptions.getTcpFastOpen() > 0) {
+                bootstrap.option(EpollChannelOption.TCP_FASTOPEN, rpcServerOptions.getTcpFastOpen());
+            }
             log.info("use netty epoll edge trigger mode");
         } else {
             if (rpcServerOptions.isGlobalThreadPoolSharing()) {
@@ -187,6 +206,7 @@ public class CommunicationServer {
         ChannelInitializer<SocketChannel> initializer = new ChannelInitializer<SocketChannel>() {
             @Override
             protected void initChannel(SocketChannel ch) throws Exception {
+                childChannels.add(ch);
                 ch.pipeline().addLast(
                         "idleStateAwareHandler", new IdleStateHandler(
                                 0,
@@ -234,17 +254,44 @@ public class CommunicationServer {
     public void registerService(Object service, Class targetClass, NamingOptions namingOptions,
                                 RpcServerOptions serverOptions) {
         serviceList.add(service);
+        boolean nonBlocking = rpcServerOptions.isNonBlocking()
+                || (serverOptions != null && serverOptions.isNonBlocking());
         ThreadPool customThreadPool = threadPool;
-        if (serverOptions != null) {
-            customThreadPool = new ThreadPool(serverOptions.getWorkThreadNum(),
-                    new CustomThreadFactory(service.getClass().getSimpleName() + "-work-thread"));
+        if (serverOptions != null && !nonBlocking) {
+            customThreadPool = createWorkThreadPool(serverOptions,
+                    service.getClass().getSimpleName() + "-work-thread");
             customThreadPools.add(customThreadPool);
         }
 
-        if (targetClass == null) {
-            serviceManager.registerService(service, customThreadPool);
-        } else {
-            serviceManager.registerService(targetClass, service, customThreadPool);
+        List<RpcMethodInfo> methodInfos = serviceManager.registerService(
+                targetClass, service, customThreadPool, nonBlocking);
+        if (rpcServerOptions.isLazyDecode() || (serverOptions != null && serverOptions.isLazyDecode())) {
+            for (RpcMethodInfo methodInfo : methodInfos) {
+                methodInfo.setLazyDecode(true);
+            }
+        }
+        for (RpcMethodInfo methodInfo : methodInfos) {
+            if (methodInfo.isNonBlocking()) {
+                onNonBlockingServiceRegistered();
+                break;
+            }
+        }
+    }
+
+    private ThreadPool createWorkThreadPool(RpcServerOptions options, String namePrefix) {
+        ThreadPool pool = ThreadPool.newThreadPool(options.getWorkThreadNum(), namePrefix,
+                options.isVirtualThread(), options.getWorkQueueSize());
+        pool.setName(namePrefix);
+        pool.setMaxQueueDelayMillis(options.getMaxQueueDelayMillis());
+        pool.setRejectOnFull(options.isRejectOnQueueFull());
+        return pool;
+    }
+
+    protected synchronized void onNonBlockingServiceRegistered() {
+        nonBlockingServiceRegistered = true;
+        if (eventLoopWatchdog == null && rpcServerOptions.getIoThreadStallThresholdMillis() > 0) {
+            eventLoopWatchdog = new EventLoopWatchdog(workerGroup, rpcServerOptions.getIoThreadStallThresholdMillis());
+            eventLoopWatchdog.start();
         }
     }
 
@@ -263,6 +310,7 @@ public class CommunicationServer {
                 channelFuture = bootstrap.bind(port);
             }
             channelFuture.sync();
+            serverChannel = channelFuture.channel();
             if (port == 0 && channelFuture.channel() != null) {
                 // update port to the actual value in case the server in started on a random port
                 Channel channel = channelFuture.channel();
@@ -279,8 +327,32 @@ public class CommunicationServer {
         }
     }
 
+    /**
+     * shutdown the server gracefully:
+     * <ol>
+     * <li>{@link #beforeDrain()}, such as unregister from naming service, so clients stop sending new requests.</li>
+     * <li>wait {@link RpcServerOptions#getUnregisterGracePeriodMillis()} for clients to learn the change,
+     * requests and connections are still served meanwhile.</li>
+     * <li>close the listening channel, a new process bound with {@link RpcServerOptions#isReusePort()}
+     * can accept connections on the same port from now on.</li>
+     * <li>wait in-flight requests to be responded,
+     * at most {@link RpcServerOptions#getGracefulShutdownTimeoutMillis()}.</li>
+     * <li>close accepted connections, clients reconnect to other servers,
+     * and then stop io and work threads.</li>
+     * </ol>
+     */
     public boolean shutdown() {
         if (stop.compareAndSet(false, true)) {
+            beforeDrain();
+            waitUnregisterGracePeriod();
+            if (serverChannel != null) {
+                serverChannel.close().syncUninterruptibly();
+            }
+            drainInFlightRequests();
+            childChannels.close().awaitUninterruptibly();
+            if (eventLoopWatchdog != null) {
+                eventLoopWatchdog.stop();
+            }
             if (bossGroup != null && !rpcServerOptions.isGlobalThreadPoolSharing()) {
                 bossGroup.shutdownGracefully().syncUninterruptibly();
             }
@@ -305,6 +377,54 @@ public class CommunicationServer {
         return stop.get();
     }
 
+    /**
+     * called when a request is received, it is in flight until {@link #onRequestFinished()}.
+     */
+    public void onRequestReceived() {
+        inFlightRequestNum.incrementAndGet();
+    }
+
+    /**
+     * called when the response of a request is sent, or the request is dropped.
+     */
+    public void onRequestFinished() {
+        inFlightRequestNum.decrementAndGet();
+    }
+
+    /**
+     * called by {@link #shutdown()} before it stops accepting connections and drains requests.
+     */
+    protected void beforeDrain() {
+    }
+
+    private void waitUnregisterGracePeriod() {
+        if (rpcServerOptions.getUnregisterGracePeriodMillis() <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(rpcServerOptions.getUnregisterGracePeriodMillis());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void drainInFlightRequests() {
+        long deadline = System.currentTimeMillis() + rpcServerOptions.getGracefulShutdownTimeoutMillis();
+        while (inFlightRequestNum.get() > 0) {
+            if (System.currentTimeMillis() >= deadline) {
+                log.warn("{} requests are not finished before graceful shutdown timeout",
+                        inFlightRequestNum.get());
+                return;
+            }
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
     public Protocol getProtocol() {
         return protocol;
     }
@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.baidu.brpc.server;
+
+import com.baidu.brpc.thread.TimerInstance;
+import io.netty.util.Timeout;
+import io.netty.util.TimerTask;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.EventExecutorGroup;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * EventLoopWatchdog detects io threads which are stalled by a long task,
+ * such as a {@link NonBlocking} service method which actually blocks.
+ * It submits a probe task to every io thread periodically,
+ * and when a probe is not run within the threshold, it reports the stack of that io thread.
+ */
+@Slf4j
+public class EventLoopWatchdog implements TimerTask {
+    private final List<Probe> probes = new ArrayList<Probe>();
+    private final long thresholdMillis;
+    private final long checkIntervalMillis;
+    private final AtomicLong stallCount = new AtomicLong(0);
+    private volatile boolean stopped = false;
+
+    private static class Probe implements Runnable {
+        private final EventExecutor executor;
+        // submit time of the pending probe, 0 means it has run
+        private volatile long submitTime;
+        private volatile Thread thread;
+        private boolean reported;
+
+        Probe(EventExecutor executor) {
+            this.executor = executor;
+        }
+
+        @Override
+        public void run() {
+            thread = Thread.currentThread();
+            submitTime = 0;
+        }
+    }
+
+    public EventLoopWatchdog(EventExecutorGroup eventLoopGroup, long thresholdMillis) {
+        for (EventExecutor executor : eventLoopGroup) {
+            probes.add(new Probe(executor));
+        }
+        this.thresholdMillis = thresholdMillis;
+        this.checkIntervalMillis = Math.max(thresholdMillis / 2, 1);
+    }
+
+    public void start() {
+        TimerInstance.getInstance().newTimeout(this, checkIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public void stop() {
+        stopped = true;
+    }
+
+    /**
+     * @return times of io thread stalls detected
+     */
+    public long getStallCount() {
+        return stallCount.get();
+    }
+
+    @Override
+    public void run(Timeout timeout) {
+        if (stopped) {
+            return;
+        }
+        check(System.currentTimeMillis());
+        TimerInstance.getInstance().newTimeout(this, checkIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    void check(long currentTimeMillis) {
+        for (Probe probe : probes) {
+            long submitTime = probe.submitTime;
+            if (submitTime == 0) {
+                if (probe.executor.isShuttingDown()) {
+                    continue;
+                }
+                probe.reported = false;
+                probe.submitTime = currentTimeMillis;
+                try {
+                    probe.executor.execute(probe);
+                } catch (RejectedExecutionException ex) {
+                    probe.submitTime = 0;
+                }
+            } else if (!probe.reported && currentTimeMillis - submitTime >= thresholdMillis) {
+                probe.reported = true;
+                stallCount.incrementAndGet();
+                Thread thread = probe.thread;
+                log.warn("io thread {} is stalled for {}ms, stack:{}",
+                        thread != null ? thread.getName() : probe.executor,
+                        currentTimeMillis - submitTime, getStackTrace(thread));
+            }
+        }
+    }
+
+    private static String getStackTrace(Thread thread) {
+        if (thread == null) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder();
+        for (StackTraceElement element : thread.getStackTrace()) {
+            sb.append("\n\tat ").append(element);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.brpc.server;
+
+import java.lang.annotation.*;
+
+/**
+ * declares that the request of service method is decoded when it is invoked, not when it is received.
+ * The encoded body is kept in request, so requests rejected by interceptors, such as rate limit or auth,
+ * are never decoded. It can annotate the method or the interface / implementation class of service,
+ * and works for protocols which support it, such as baidu_std.
+ * Use {@link com.baidu.brpc.serialize.RawMessage} as request and response to forward the body without decoding.
+ * <p>
+ * messages decoded by framework, the request and a response returned by downstream, are released
+ * by server after the response is sent. Service should {@code retain()} a received message which it keeps,
+ * once for each time it is returned. Messages created by service are never released by server.
+ */
+@Target({ElementType.METHOD, ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface LazyDecode {
+}
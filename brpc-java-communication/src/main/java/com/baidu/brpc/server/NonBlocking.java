@@ -0,0 +1,32 @@
+/*
+ * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.brpc.server;
+
+import java.lang.annotation.*;
+
+/**
+ * declares that the service method never blocks, such as reading an in-memory map,
+ * so it is decoded and executed in the netty io thread without switching to work thread.
+ * It can annotate the method or the interface / implementation class of service.
+ * A blocking method with this annotation stalls all connections of the io thread,
+ * see {@link RpcServerOptions#getIoThreadStallThresholdMillis()}.
+ */
+@Target({ElementType.METHOD, ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface NonBlocking {
+}
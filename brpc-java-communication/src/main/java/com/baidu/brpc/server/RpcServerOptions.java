@@ -16,6 +16,7 @@
 
 package com.baidu.brpc.server;
 
+import com.baidu.brpc.protocol.AttachmentStream;
 import com.baidu.brpc.utils.BrpcConstants;
 import io.netty.handler.timeout.IdleState;
 import io.netty.handler.timeout.IdleStateEvent;
@@ -53,10 +54,23 @@ public class RpcServerOptions {
     private int ioThreadNum = Runtime.getRuntime().availableProcessors();
     // real work threads
     private int workThreadNum = Runtime.getRuntime().availableProcessors();
+    // run service methods in virtual threads, one per request, works on jdk 21+ without global thread pool sharing,
+    // at most workThreadNum + workQueueSize requests run at the same time
+    private boolean virtualThread = false;
+    // max tasks waiting in work queue, it works for the server, or for one service with its own options
+    private int workQueueSize = 1024;
+    // request waits in work queue longer than it is failed without being executed, 0 means no limit
+    private int maxQueueDelayMillis = 0;
+    // request is failed at once when work queue is full, instead of blocking the io thread or shared work thread
+    private boolean rejectOnQueueFull = false;
     /**
      * io event type, netty or jdk
      */
     private int ioEventType = BrpcConstants.IO_EVENT_JDK;
+    // SO_REUSEPORT, several servers can bind the same port, only works with netty epoll
+    private boolean reusePort = false;
+    // queue length of TCP_FASTOPEN, 0 means disabled, only works with netty epoll
+    private int tcpFastOpen = 0;
     // The max size
     private int maxSize = Integer.MAX_VALUE;
 
@@ -71,6 +85,40 @@ public class RpcServerOptions {
     private String namingServiceUrl = "";
     // share global thread pool between multi rpcServer
     private boolean globalThreadPoolSharing = false;
+    // attachment larger than it is sent to client in chunks, 0 means disabled
+    private int attachmentChunkSize = 0;
+    // bytes of a chunked attachment from client kept before the service subscribes it
+    private int attachmentWindowSize = AttachmentStream.DEFAULT_WINDOW_SIZE;
+    // bytes of chunked attachments kept by all streams of one connection
+    private int attachmentConnectionWindowSize = AttachmentStream.DEFAULT_CONNECTION_WINDOW_SIZE;
+    /**
+     * all methods of services are non-blocking, and run in io thread like methods with {@link NonBlocking}.
+     * it works for the whole server, or for one service registered with its own options.
+     */
+    private boolean nonBlocking = false;
+    /**
+     * requests of all methods are decoded when invoked like methods with {@link LazyDecode}.
+     * it works for the whole server, or for one service registered with its own options.
+     */
+    private boolean lazyDecode = false;
+    // io thread which runs one task longer than it is reported as stalled, 0 means disabled
+    private int ioThreadStallThresholdMillis = 100;
+    // responses of one connection are written by io thread in batch and flushed once
+    private boolean batchResponseFlush = true;
+    // max time that shutdown waits in-flight requests to be responded before closing connections
+    private int gracefulShutdownTimeoutMillis = 5000;
+    /**
+     * time that shutdown waits after unregistering from naming service, before it stops accepting connections
+     * and drains requests, so clients have time to learn the server is removed.
+     */
+    private int unregisterGracePeriodMillis = 0;
+    // responses smaller than it are sent uncompressed whatever the compress type of request, 0 means no limit
+    private int minCompressSize = 0;
+    /**
+     * register zstd dictionaries shipped by clients for their connections, and compress responses with them,
+     * see {@link com.baidu.brpc.compress.ZstdDictionaryManager}.
+     */
+    private boolean acceptZstdDictionary = false;
 
     public RpcServerOptions(RpcServerOptions options) {
         this.copyFrom(options);
@@ -84,6 +132,9 @@ public class RpcServerOptions {
         this.jarvisPortName = options.jarvisPortName;
         this.keepAlive = options.keepAlive;
         this.keepAliveTime = options.keepAliveTime;
+        this.ioEventType = options.ioEventType;
+        this.reusePort = options.reusePort;
+        this.tcpFastOpen = options.tcpFastOpen;
         this.maxSize = options.maxSize;
         this.namingServiceUrl = options.namingServiceUrl;
         this.protocolType = options.protocolType;
@@ -92,7 +143,22 @@ public class RpcServerOptions {
         this.soLinger = options.soLinger;
         this.tcpNoDelay = options.tcpNoDelay;
         this.workThreadNum = options.workThreadNum;
+        this.virtualThread = options.virtualThread;
+        this.workQueueSize = options.workQueueSize;
+        this.maxQueueDelayMillis = options.maxQueueDelayMillis;
+        this.rejectOnQueueFull = options.rejectOnQueueFull;
         this.globalThreadPoolSharing = options.globalThreadPoolSharing;
+        this.attachmentChunkSize = options.attachmentChunkSize;
+        this.attachmentWindowSize = options.attachmentWindowSize;
+        this.attachmentConnectionWindowSize = options.attachmentConnectionWindowSize;
+        this.nonBlocking = options.nonBlocking;
+        this.lazyDecode = options.lazyDecode;
+        this.ioThreadStallThresholdMillis = options.ioThreadStallThresholdMillis;
+        this.batchResponseFlush = options.batchResponseFlush;
+        this.gracefulShutdownTimeoutMillis = options.gracefulShutdownTimeoutMillis;
+        this.unregisterGracePeriodMillis = options.unregisterGracePeriodMillis;
+        this.minCompressSize = options.minCompressSize;
+        this.acceptZstdDictionary = options.acceptZstdDictionary;
     }
 
     public String toString() {
@@ -106,13 +172,30 @@ public class RpcServerOptions {
                 + ", acceptorThreadNum=" + this.getAcceptorThreadNum()
                 + ", ioThreadNum=" + this.getIoThreadNum()
                 + ", workThreadNum=" + this.getWorkThreadNum()
+                + ", virtualThread=" + this.isVirtualThread()
+                + ", workQueueSize=" + this.getWorkQueueSize()
+                + ", maxQueueDelayMillis=" + this.getMaxQueueDelayMillis()
+                + ", rejectOnQueueFull=" + this.isRejectOnQueueFull()
                 + ", ioEventType=" + this.getIoEventType()
+                + ", reusePort=" + this.isReusePort()
+                + ", tcpFastOpen=" + this.getTcpFastOpen()
                 + ", maxSize=" + this.getMaxSize()
                 + ", maxTryTimes=" + this.getMaxTryTimes()
                 + ", protocolType=" + this.getProtocolType()
                 + ", encoding=" + this.getEncoding()
                 + ", jarvisPortName=" + this.getJarvisPortName()
                 + ", namingServiceUrl=" + this.getNamingServiceUrl()
-                + ", globalThreadPoolSharing=" + this.isGlobalThreadPoolSharing() + ")";
+                + ", globalThreadPoolSharing=" + this.isGlobalThreadPoolSharing()
+                + ", attachmentChunkSize=" + this.getAttachmentChunkSize()
+                + ", attachmentWindowSize=" + this.getAttachmentWindowSize()
+                + ", attachmentConnectionWindowSize=" + this.getAttachmentConnectionWindowSize()
+                + ", nonBlocking=" + this.isNonBlocking()
+                + ", lazyDecode=" + this.isLazyDecode()
+                + ", ioThreadStallThresholdMillis=" + this.getIoThreadStallThresholdMillis()
+                + ", batchResponseFlush=" + this.isBatchResponseFlush()
+                + ", gracefulShutdownTimeoutMillis=" + this.getGracefulShutdownTimeoutMillis()
+                + ", unregisterGracePeriodMillis=" + this.getUnregisterGracePeriodMillis()
+                + ", minCompressSize=" + this.getMinCompressSize()
+                + ", acceptZstdDictionary=" + this.isAcceptZstdDictionary() + ")";
     }
 }
@@ -62,12 +62,16 @@ public class ServerStatus {
         ret.append("Compress enabled(Gzip Snappy)").append(LINE_BREAK);
         ret.append("Attachment enabled").append(LINE_BREAK);
 
-        ThreadPool.StatInfo threadPoolInfo = server.getThreadPool().getStatInfo();
         ret.append("--------------Thread status----------------").append(LINE_BREAK);
-        ret.append("Thread count:").append(threadPoolInfo.getThreadNum()).append(LINE_BREAK);
-        ret.append("Queue capacity:").append(threadPoolInfo.getDefaultQueueCapacity()).append(LINE_BREAK);
-        ret.append("Producer queue size:").append(threadPoolInfo.getProducerQueueSize()).append(LINE_BREAK);
-        ret.append("Consumer queue size:").append(threadPoolInfo.getConsumerQueueSize()).append(LINE_BREAK);
+        appendThreadPoolStatus(ret, server.getThreadPool());
+        for (ThreadPool customThreadPool : server.getCustomThreadPools()) {
+            ret.append(LINE_BREAK).append("Thread pool:").append(customThreadPool.getName()).append(LINE_BREAK);
+            appendThreadPoolStatus(ret, customThreadPool);
+        }
+        if (server.getEventLoopWatchdog() != null) {
+            ret.append("Io thread stall count:").append(server.getEventLoopWatchdog().getStallCount())
+                    .append(LINE_BREAK);
+        }
         ret.append(LINE_BREAK).append(LINE_BREAK);
 
         ret.append(PRE_STARTS);
@@ -103,6 +107,18 @@ public class ServerStatus {
         return ret.toString();
     }
 
+    private void appendThreadPoolStatus(StringBuilder ret, ThreadPool threadPool) {
+        ThreadPool.StatInfo threadPoolInfo = threadPool.getStatInfo();
+        ret.append("Thread count:").append(threadPoolInfo.getThreadNum()).append(LINE_BREAK);
+        ret.append("Queue capacity:").append(threadPoolInfo.getDefaultQueueCapacity()).append(LINE_BREAK);
+        ret.append("Producer queue size:").append(threadPoolInfo.getProducerQueueSize()).append(LINE_BREAK);
+        ret.append("Consumer queue size:").append(threadPoolInfo.getConsumerQueueSize()).append(LINE_BREAK);
+        ret.append("Avg queue wait(us):").append(threadPoolInfo.getAvgQueueWaitMicros()).append(LINE_BREAK);
+        ret.append("Max queue wait(us):").append(threadPoolInfo.getMaxQueueWaitMicros()).append(LINE_BREAK);
+        ret.append("Rejected task count:").append(threadPoolInfo.getRejectedTaskNum()).append(LINE_BREAK);
+        ret.append("Expired task count:").append(threadPoolInfo.getExpiredTaskNum()).append(LINE_BREAK);
+    }
+
     /**
      * Gets the online duration.
      *
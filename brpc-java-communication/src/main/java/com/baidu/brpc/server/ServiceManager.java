@@ -16,16 +16,18 @@
 
 package com.baidu.brpc.server;
 
-import com.baidu.brpc.JprotobufRpcMethodInfo;
-import com.baidu.brpc.ProtobufRpcMethodInfo;
 import com.baidu.brpc.RpcMethodInfo;
-import com.baidu.brpc.utils.ProtobufUtils;
+import com.baidu.brpc.serialize.SerializerManager;
 import com.baidu.brpc.utils.ThreadPool;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -37,6 +39,8 @@ public class ServiceManager {
 	private static volatile ServiceManager instance;
 
 	private Map<String, RpcMethodInfo> serviceMap;
+	// immutable lookup table, rebuilt when a method is registered, so lookup needs no lock
+	private volatile MethodTable methodTable = new MethodTable(new ArrayList<RpcMethodInfo>());
 
 	public static ServiceManager getInstance() {
 		if (instance == null) {
@@ -54,17 +58,26 @@ public class ServiceManager {
 	}
 
 	public void registerService(Object service, ThreadPool threadPool) {
-		Class[] interfaces = service.getClass().getInterfaces();
-		if (interfaces.length != 1) {
-			LOG.error("service must implement one interface only");
-			throw new RuntimeException("service must implement one interface only");
-		}
-		Class clazz = interfaces[0];
-		Method[] methods = clazz.getDeclaredMethods();
-		registerService(methods, service, threadPool);
+		registerService(null, service, threadPool, false);
 	}
 
 	public void registerService(Class targetClass, Object service, ThreadPool threadPool) {
+		registerService(targetClass, service, threadPool, false);
+	}
+
+	/**
+	 * register all methods of the service interface.
+	 *
+	 * @param targetClass class implements the service interface, null means class of service
+	 * @param nonBlocking all methods of service are non-blocking,
+	 *                    otherwise only methods annotated with {@link NonBlocking} are.
+	 * @return the registered methods
+	 */
+	public List<RpcMethodInfo> registerService(Class targetClass, Object service, ThreadPool threadPool,
+											   boolean nonBlocking) {
+		if (targetClass == null) {
+			targetClass = service.getClass();
+		}
 		Class[] interfaces = targetClass.getInterfaces();
 		if (interfaces.length != 1) {
 			LOG.error("service must implement one interface only");
@@ -72,7 +85,7 @@ public class ServiceManager {
 		}
 		Class clazz = interfaces[0];
 		Method[] methods = clazz.getDeclaredMethods();
-		registerService(methods, service, threadPool);
+		return registerService(methods, targetClass, service, threadPool, nonBlocking);
 	}
 
 	public void registerPushService(Object service) {
@@ -103,32 +116,58 @@ public class ServiceManager {
 	}
 
 	protected void registerService(Method[] methods, Object service, ThreadPool threadPool) {
+		registerService(methods, service.getClass(), service, threadPool, false);
+	}
+
+	protected List<RpcMethodInfo> registerService(Method[] methods, Class targetClass, Object service,
+												  ThreadPool threadPool, boolean nonBlocking) {
+		List<RpcMethodInfo> methodInfos = new ArrayList<RpcMethodInfo>(methods.length);
 		for (Method method : methods) {
-			RpcMethodInfo methodInfo;
-			ProtobufUtils.MessageType messageType = ProtobufUtils.getMessageType(method);
-			if (messageType == ProtobufUtils.MessageType.PROTOBUF) {
-				methodInfo = new ProtobufRpcMethodInfo(method);
-			} else if (messageType == ProtobufUtils.MessageType.JPROTOBUF) {
-				methodInfo = new JprotobufRpcMethodInfo(method);
-			} else {
-				methodInfo = new RpcMethodInfo(method);
-			}
+			RpcMethodInfo methodInfo = SerializerManager.getInstance().createRpcMethodInfo(method);
 			methodInfo.setTarget(service);
 			methodInfo.setThreadPool(threadPool);
+			methodInfo.setNonBlocking(nonBlocking || isAnnotated(method, targetClass, NonBlocking.class));
+			methodInfo.setLazyDecode(isAnnotated(method, targetClass, LazyDecode.class));
 			registerService(methodInfo);
-			LOG.info("register service, serviceName={}, methodName={}",
-					methodInfo.getServiceName(), methodInfo.getMethodName());
+			methodInfos.add(methodInfo);
+			LOG.info("register service, serviceName={}, methodName={}, nonBlocking={}, lazyDecode={}",
+					methodInfo.getServiceName(), methodInfo.getMethodName(), methodInfo.isNonBlocking(),
+					methodInfo.isLazyDecode());
 		}
+		return methodInfos;
 	}
 
-	protected void registerService(RpcMethodInfo methodInfo) {
+	/**
+	 * check annotation, such as {@link NonBlocking}, on interface method, interface, implementation method and class.
+	 */
+	private static boolean isAnnotated(Method method, Class targetClass, Class<? extends Annotation> annotation) {
+		if (method.isAnnotationPresent(annotation)
+				|| method.getDeclaringClass().isAnnotationPresent(annotation)
+				|| targetClass.isAnnotationPresent(annotation)) {
+			return true;
+		}
+		try {
+			Method targetMethod = targetClass.getMethod(method.getName(), method.getParameterTypes());
+			return targetMethod.isAnnotationPresent(annotation);
+		} catch (NoSuchMethodException ex) {
+			return false;
+		}
+	}
+
+	protected synchronized void registerService(RpcMethodInfo methodInfo) {
 		String key = buildServiceKey(methodInfo.getServiceName(), methodInfo.getMethodName());
 		serviceMap.put(key, methodInfo);
+		methodTable = new MethodTable(serviceMap.values());
 	}
 
+	/**
+	 * find method case-insensitively, it builds no key string on the request path.
+	 */
 	public RpcMethodInfo getService(String serviceName, String methodName) {
-		String key = buildServiceKey(serviceName, methodName);
-		return serviceMap.get(key);
+		if (serviceName == null || methodName == null) {
+			return null;
+		}
+		return methodTable.get(serviceName, methodName);
 	}
 
 	public RpcMethodInfo getService(String serviceMethodName) {
@@ -145,4 +184,54 @@ public class ServiceManager {
 		stringBuilder.append(serviceName.toLowerCase()).append(".").append(methodName.toLowerCase());
 		return stringBuilder.toString();
 	}
+
+	/**
+	 * open addressing hash table keyed by lower case "serviceName.methodName",
+	 * the hash is computed over the original names, and entries are compared ignoring case.
+	 */
+	private static class MethodTable {
+		private final RpcMethodInfo[] methodInfos;
+		private final int mask;
+
+		MethodTable(Collection<RpcMethodInfo> values) {
+			int capacity = 2;
+			while (capacity < values.size() * 2) {
+				capacity <<= 1;
+			}
+			this.methodInfos = new RpcMethodInfo[capacity];
+			this.mask = capacity - 1;
+			for (RpcMethodInfo methodInfo : values) {
+				int index = hash(methodInfo.getServiceName(), methodInfo.getMethodName()) & mask;
+				while (methodInfos[index] != null) {
+					index = (index + 1) & mask;
+				}
+				methodInfos[index] = methodInfo;
+			}
+		}
+
+		RpcMethodInfo get(String serviceName, String methodName) {
+			int index = hash(serviceName, methodName) & mask;
+			RpcMethodInfo methodInfo;
+			while ((methodInfo = methodInfos[index]) != null) {
+				if (methodInfo.getMethodName().equalsIgnoreCase(methodName)
+						&& methodInfo.getServiceName().equalsIgnoreCase(serviceName)) {
+					return methodInfo;
+				}
+				index = (index + 1) & mask;
+			}
+			return null;
+		}
+
+		private static int hash(String serviceName, String methodName) {
+			int hash = 0;
+			for (int i = 0; i < serviceName.length(); i++) {
+				hash = 31 * hash + Character.toLowerCase(serviceName.charAt(i));
+			}
+			hash = 31 * hash + '.';
+			for (int i = 0; i < methodName.length(); i++) {
+				hash = 31 * hash + Character.toLowerCase(methodName.charAt(i));
+			}
+			return hash ^ (hash >>> 16);
+		}
+	}
 }
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.brpc.server.handler;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.baidu.brpc.ChannelInfo;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelPromise;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Coalesces responses of one server channel before flush.
+ * Work threads put responses into a queue, and at most one drain task is pending in the event loop,
+ * which writes all queued responses and flushes once.
+ * So pipelined requests of one read are answered with one flush,
+ * instead of one event loop task and one syscall per response.
+ */
+@Slf4j
+public class BatchResponseWriter {
+    private final Channel channel;
+    private final Queue<PendingWrite> pendingWrites = new ConcurrentLinkedQueue<PendingWrite>();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean(false);
+    private final Runnable drainTask = new Runnable() {
+        @Override
+        public void run() {
+            drain();
+        }
+    };
+
+    private static class PendingWrite {
+        ByteBuf msg;
+        ChannelPromise promise;
+
+        PendingWrite(ByteBuf msg, ChannelPromise promise) {
+            this.msg = msg;
+            this.promise = promise;
+        }
+    }
+
+    public BatchResponseWriter(Channel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * write response with the batch writer of channel,
+     * or write and flush it directly if batching is not enabled on the channel.
+     */
+    public static ChannelFuture writeResponse(Channel channel, ByteBuf msg) {
+        ChannelInfo channelInfo = ChannelInfo.getServerChannelInfo(channel);
+        if (channelInfo == null || channelInfo.getResponseWriter() == null) {
+            return channel.writeAndFlush(msg);
+        }
+        return channelInfo.getResponseWriter().write(msg);
+    }
+
+    public ChannelFuture write(ByteBuf msg) {
+        ChannelPromise promise = channel.newPromise();
+        pendingWrites.offer(new PendingWrite(msg, promise));
+        if (drainScheduled.compareAndSet(false, true)) {
+            try {
+                channel.eventLoop().execute(drainTask);
+            } catch (RejectedExecutionException ex) {
+                log.debug("event loop is shutdown, discard responses");
+                discard(ex);
+            }
+        }
+        return promise;
+    }
+
+    private void drain() {
+        // responses queued after this are drained now or by the next task
+        drainScheduled.set(false);
+        PendingWrite pendingWrite;
+        while ((pendingWrite = pendingWrites.poll()) != null) {
+            channel.write(pendingWrite.msg, pendingWrite.promise);
+        }
+        channel.flush();
+    }
+
+    private void discard(Throwable cause) {
+        PendingWrite pendingWrite;
+        while ((pendingWrite = pendingWrites.poll()) != null) {
+            pendingWrite.msg.release();
+            pendingWrite.promise.tryFailure(cause);
+        }
+    }
+}
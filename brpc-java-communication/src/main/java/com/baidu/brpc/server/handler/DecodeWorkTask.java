@@ -17,6 +17,8 @@
 package com.baidu.brpc.server.handler;
 
 import com.baidu.brpc.client.RpcFuture;
+import com.baidu.brpc.exceptions.RpcException;
+import com.baidu.brpc.protocol.LazyDecodeProtocol;
 import com.baidu.brpc.protocol.Protocol;
 import com.baidu.brpc.protocol.Request;
 import com.baidu.brpc.protocol.Response;
@@ -27,13 +29,13 @@ import com.baidu.brpc.protocol.push.ServerPushPacket;
 import com.baidu.brpc.protocol.push.ServerPushProtocol;
 import com.baidu.brpc.server.CommunicationServer;
 import com.baidu.brpc.server.ServerStatus;
+import com.baidu.brpc.utils.ThreadPool;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.http.*;
-import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
@@ -45,15 +47,53 @@ import static io.netty.handler.codec.http.HttpVersion.HTTP_1_1;
 @Slf4j
 @Setter
 @Getter
-@AllArgsConstructor
 public class DecodeWorkTask implements Runnable {
     private CommunicationServer rpcServer;
     private Object packet;
     private Protocol protocol;
     private ChannelHandlerContext ctx;
+    // time when the packet is received
+    private long createNanos;
+    // not null if the task is rejected by work thread pool
+    private RpcException rejectException;
+
+    public DecodeWorkTask(CommunicationServer rpcServer, Object packet, Protocol protocol,
+                          ChannelHandlerContext ctx) {
+        this.rpcServer = rpcServer;
+        this.packet = packet;
+        this.protocol = protocol;
+        this.ctx = ctx;
+        this.createNanos = System.nanoTime();
+    }
+
+    /**
+     * send the exception as response in current thread,
+     * only the header of the request is decoded if the protocol supports {@link LazyDecodeProtocol}.
+     */
+    public void reject(RpcException exception) {
+        this.rejectException = exception;
+        run();
+    }
 
     @Override
     public void run() {
+        boolean dispatched = false;
+        try {
+            dispatched = decodeAndDispatch();
+        } finally {
+            if (!dispatched) {
+                rpcServer.onRequestFinished();
+            }
+        }
+    }
+
+    /**
+     * @return true if the request is dispatched to {@link ServerWorkTask}, which finishes it after response is sent.
+     */
+    private boolean decodeAndDispatch() {
+        if (rejectException == null && !ctx.executor().inEventLoop()) {
+            rpcServer.getThreadPool().recordQueueWait(System.nanoTime() - createNanos);
+        }
         if (protocol instanceof HttpRpcProtocol) {
             FullHttpRequest fullHttpRequest = (FullHttpRequest) packet;
             try {
@@ -66,11 +106,11 @@ public class DecodeWorkTask implements Runnable {
                     }
                     BrpcHttpResponseEncoder encoder = new BrpcHttpResponseEncoder();
                     ByteBuf responseByteBuf = encoder.encode(fullHttpResponse);
-                    ChannelFuture f = ctx.channel().writeAndFlush(responseByteBuf);
+                    ChannelFuture f = BatchResponseWriter.writeResponse(ctx.channel(), responseByteBuf);
                     if (!HttpUtil.isKeepAlive(fullHttpRequest)) {
                         f.addListener(ChannelFutureListener.CLOSE);
                     }
-                    return;
+                    return false;
                 } else if (fullHttpRequest.uri().equals("/") || fullHttpRequest.uri().equals("/status")) {
                     ServerStatus serverStatus = rpcServer.getServerStatus();
 
@@ -84,28 +124,28 @@ public class DecodeWorkTask implements Runnable {
                     }
                     BrpcHttpResponseEncoder encoder = new BrpcHttpResponseEncoder();
                     ByteBuf responseByteBuf = encoder.encode(fullHttpResponse);
-                    ChannelFuture f = ctx.channel().writeAndFlush(responseByteBuf);
+                    ChannelFuture f = BatchResponseWriter.writeResponse(ctx.channel(), responseByteBuf);
                     if (!HttpUtil.isKeepAlive(fullHttpRequest)) {
                         f.addListener(ChannelFutureListener.CLOSE);
                     }
-                    return;
+                    return false;
                 }
             } catch (Exception ex) {
                 log.warn("send status info response failed:", ex);
-                return;
+                return false;
             }
         } else if (protocol instanceof ServerPushProtocol) {
             SPHead spHead = ((ServerPushPacket) packet).getSpHead();
             if (spHead.getType() == SPHead.TYPE_PUSH_RESPONSE) {
                 processClientResponse();
-                return;
+                return false;
             }
         }
 
         Request request = null;
         Response response = protocol.createResponse();
         try {
-            request = protocol.decodeRequest(packet);
+            request = decodeRequest();
             if (request.isHeartbeat()) {
                 log.debug("receive hearbeat event from {}", ctx.channel().remoteAddress().toString());
             }
@@ -118,25 +158,65 @@ public class DecodeWorkTask implements Runnable {
                 response.setException(request.getException());
             }
         }
+        if (response.getException() == null && rejectException != null) {
+            response.setException(rejectException);
+        }
 
         if (request == null || response.getException() != null) {
-            try {
-                ByteBuf byteBuf = protocol.encodeResponse(request, response);
-                ChannelFuture channelFuture = ctx.channel().writeAndFlush(byteBuf);
-                protocol.afterResponseSent(request, response, channelFuture);
-            } catch (Exception ex) {
-                log.warn("send response failed:", ex);
-            }
-            return;
+            sendErrorResponse(request, response);
+            return false;
         }
 
         ServerWorkTask workTask = new ServerWorkTask(rpcServer, protocol, request, response, ctx);
-        if (request.isHeartbeat() || request.getRpcMethodInfo().getThreadPool() == rpcServer.getThreadPool()) {
+        // queue delay is counted from receiving the packet when it runs in current thread
+        workTask.setEnqueueNanos(createNanos);
+        ThreadPool threadPool = request.getRpcMethodInfo().getThreadPool();
+        if (request.isHeartbeat() || request.getRpcMethodInfo().isNonBlocking()) {
+            // service run in the current thread, which may be io thread
+            workTask.run();
+        } else if (!ctx.executor().inEventLoop() && threadPool == rpcServer.getThreadPool()) {
             // service run in the current thread
             workTask.run();
         } else {
             // service run in individual thread
-            request.getRpcMethodInfo().getThreadPool().submit(workTask);
+            workTask.setEnqueueNanos(System.nanoTime());
+            workTask.setSubmitted(true);
+            boolean submitted = threadPool.isRejectOnFull()
+                    ? threadPool.trySubmit(workTask) : threadPool.submit(workTask);
+            if (!submitted) {
+                response.setException(new RpcException(RpcException.SERVICE_EXCEPTION,
+                        "work queue of service is full"));
+                sendErrorResponse(request, response);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Request decodeRequest() throws Exception {
+        if (protocol instanceof LazyDecodeProtocol && (rejectException != null || ctx.executor().inEventLoop())) {
+            // io thread only finds the method, body of blocking method is decoded by work thread on first access,
+            // and body of rejected request is never decoded
+            return ((LazyDecodeProtocol) protocol).decodeRequestHeader(packet);
+        }
+        return protocol.decodeRequest(packet);
+    }
+
+    private void sendErrorResponse(Request request, Response response) {
+        try {
+            ByteBuf byteBuf = protocol.encodeResponse(request, response);
+            ChannelFuture channelFuture = BatchResponseWriter.writeResponse(ctx.channel(), byteBuf);
+            protocol.afterResponseSent(request, response, channelFuture);
+        } catch (Exception ex) {
+            log.warn("send response failed:", ex);
+        } finally {
+            // request rejected before invoking is never decoded
+            if (request != null && request.getEncodedBody() != null) {
+                if (request.getEncodedBody().refCnt() > 0) {
+                    request.getEncodedBody().release();
+                }
+                request.setEncodedBody(null);
+            }
         }
     }
 
@@ -22,10 +22,13 @@ import com.baidu.brpc.exceptions.BadSchemaException;
 import com.baidu.brpc.exceptions.NotEnoughDataException;
 import com.baidu.brpc.exceptions.RpcException;
 import com.baidu.brpc.exceptions.TooBigDataException;
+import com.baidu.brpc.protocol.FrameCheckProtocol;
+import com.baidu.brpc.protocol.LazyDecodeProtocol;
 import com.baidu.brpc.protocol.Protocol;
 import com.baidu.brpc.protocol.ProtocolManager;
 import com.baidu.brpc.server.CommunicationServer;
 import com.baidu.brpc.server.ChannelManager;
+import com.baidu.brpc.utils.ThreadPool;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
@@ -42,6 +45,10 @@ import java.util.List;
 @ChannelHandler.Sharable
 @Slf4j
 public class RpcServerHandler extends SimpleChannelInboundHandler<Object> {
+    private static final BadSchemaException BAD_SCHEMA_EXCEPTION = BadSchemaException.stackless("bad schema");
+    // returned by decodeHeader when the frame is not complete
+    private static final Object NEED_MORE_DATA = new Object();
+
     private CommunicationServer rpcServer;
 
     public RpcServerHandler(CommunicationServer rpcServer) {
@@ -52,6 +59,13 @@ public class RpcServerHandler extends SimpleChannelInboundHandler<Object> {
     public void channelActive(ChannelHandlerContext ctx) throws Exception {
         ChannelInfo channelInfo = ChannelInfo.getOrCreateServerChannelInfo(ctx.channel());
         channelInfo.setProtocol(rpcServer.getProtocol());
+        channelInfo.setAttachmentChunkSize(rpcServer.getRpcServerOptions().getAttachmentChunkSize());
+        channelInfo.setAttachmentWindowSize(rpcServer.getRpcServerOptions().getAttachmentWindowSize());
+        channelInfo.setAttachmentConnectionWindowSize(
+                rpcServer.getRpcServerOptions().getAttachmentConnectionWindowSize());
+        if (rpcServer.getRpcServerOptions().isBatchResponseFlush()) {
+            channelInfo.setResponseWriter(new BatchResponseWriter(ctx.channel()));
+        }
     }
 
     @Override
@@ -66,10 +80,25 @@ public class RpcServerHandler extends SimpleChannelInboundHandler<Object> {
             while (channelInfo.getRecvBuf().readableBytes() > 0) {
                 try {
                     Object packet = decodeHeader(ctx, channelInfo, channelInfo.getRecvBuf());
-                    DecodeWorkTask task = new DecodeWorkTask(rpcServer, packet, channelInfo.getProtocol(), ctx);
+                    if (packet == NEED_MORE_DATA) {
+                        break;
+                    }
+                    if (packet == null) {
+                        // consumed by protocol
+                        continue;
+                    }
+                    rpcServer.onRequestReceived();
+                    Protocol protocol = channelInfo.getProtocol();
+                    DecodeWorkTask task = new DecodeWorkTask(rpcServer, packet, protocol, ctx);
+                    if (rpcServer.isNonBlockingServiceRegistered() && protocol instanceof LazyDecodeProtocol) {
+                        // only header is decoded in io thread to find the method,
+                        // then requests of blocking methods are submitted to work threads with body undecoded
+                        task.run();
+                        continue;
+                    }
                     tasks[i++] = task;
                     if (i == 64) {
-                        rpcServer.getThreadPool().submit(tasks, 0, i);
+                        submitDecodeTasks(tasks, i);
                         i = 0;
                     }
                 } catch (NotEnoughDataException ex1) {
@@ -81,12 +110,24 @@ public class RpcServerHandler extends SimpleChannelInboundHandler<Object> {
                 }
             }
             if (i > 0) {
-                rpcServer.getThreadPool().submit(tasks, 0, i);
-
+                submitDecodeTasks(tasks, i);
             }
         }
     }
 
+    private void submitDecodeTasks(DecodeWorkTask[] tasks, int num) {
+        ThreadPool threadPool = rpcServer.getThreadPool();
+        if (!threadPool.isRejectOnFull()) {
+            threadPool.submit(tasks, 0, num);
+            return;
+        }
+        int accepted = (int) threadPool.trySubmit(tasks, 0, num);
+        for (int i = accepted; i < num; i++) {
+            // error response is built from the request header, body is not decoded
+            tasks[i].reject(new RpcException(RpcException.SERVICE_EXCEPTION, "work queue of server is full"));
+        }
+    }
+
     @Override
     public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
         if (ctx.channel().isActive()
@@ -97,18 +138,20 @@ public class RpcServerHandler extends SimpleChannelInboundHandler<Object> {
         log.debug("meet exception, may be connection is closed, msg={}", cause.getMessage());
         log.debug("remove from channel map");
         ChannelManager.getInstance().removeChannel(ctx.channel());
+        failAttachmentStreams(ctx);
         ctx.close();
     }
 
     /**
      * 尝试用各个协议解析header。
+     * 先根据包头的magic head选出候选协议，见{@link ProtocolManager#sniffProtocols}，再依次尝试候选协议。
      * 所目前所有的协议至少都需要12字节，以第一个协议抛出not enough data异常后，就不重试剩余协议了。
      * 只要有一个协议抛too big data异常，就不再重试剩余协议。
      *
      * @param channelInfo      channel信息，包含protocol
      * @param compositeByteBuf 输入buffer
      *
-     * @return 反序列化后packet
+     * @return 反序列化后packet，协议实现{@link FrameCheckProtocol}时，包不完整返回NEED_MORE_DATA
      *
      * @throws NotEnoughDataException
      * @throws TooBigDataException
@@ -120,13 +163,21 @@ public class RpcServerHandler extends SimpleChannelInboundHandler<Object> {
             throws NotEnoughDataException, TooBigDataException, BadSchemaException {
         Protocol protocol = channelInfo.getProtocol();
         if (protocol != null) {
+            if (protocol instanceof FrameCheckProtocol
+                    && ((FrameCheckProtocol) protocol).checkFrame(compositeByteBuf) > 0) {
+                return NEED_MORE_DATA;
+            }
             return protocol.decode(ctx, compositeByteBuf, true);
         }
-        ProtocolManager protocolManager = ProtocolManager.getInstance();
-        List<Protocol> protocols = protocolManager.getCoexistenceProtocols();
-        int protocolSize = protocolManager.getCoexistenceProtocolSize();
+        List<Protocol> protocols = ProtocolManager.getInstance().sniffProtocols(compositeByteBuf);
+        int protocolSize = protocols.size();
         for (int i = 0; i < protocolSize; i++) {
             Protocol protocol1 = protocols.get(i);
+            if (protocol1 instanceof FrameCheckProtocol
+                    && ((FrameCheckProtocol) protocol1).checkFrame(compositeByteBuf) > 0) {
+                // wait for more data like the not enough data exception, and don't try remaining protocols
+                return NEED_MORE_DATA;
+            }
             try {
                 Object packet = protocol1.decode(ctx, compositeByteBuf, true);
                 channelInfo.setProtocol(protocol1);
@@ -136,12 +187,21 @@ public class RpcServerHandler extends SimpleChannelInboundHandler<Object> {
                 continue;
             }
         }
-        throw new BadSchemaException("bad schema");
+        throw BAD_SCHEMA_EXCEPTION;
+    }
+
+    private void failAttachmentStreams(ChannelHandlerContext ctx) {
+        ChannelInfo channelInfo = ChannelInfo.getServerChannelInfo(ctx.channel());
+        if (channelInfo != null) {
+            channelInfo.failAttachmentStreams(
+                    new RpcException(RpcException.NETWORK_EXCEPTION, "channel is closed"));
+        }
     }
 
     @Override
     public void channelInactive(ChannelHandlerContext ctx) throws Exception {
         ChannelManager.getInstance().removeChannel(ctx.channel());
+        failAttachmentStreams(ctx);
         ctx.fireChannelInactive();
     }
 
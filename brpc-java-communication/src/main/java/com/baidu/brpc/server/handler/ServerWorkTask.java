@@ -17,14 +17,22 @@
 package com.baidu.brpc.server.handler;
 
 import com.baidu.brpc.RpcContext;
+import com.baidu.brpc.compress.CompressPolicy;
+import com.baidu.brpc.compress.ZstdDictionaryManager;
+import com.baidu.brpc.exceptions.RpcException;
+import com.baidu.brpc.protocol.Options;
 import com.baidu.brpc.protocol.Protocol;
 import com.baidu.brpc.protocol.Request;
 import com.baidu.brpc.protocol.Response;
+import com.baidu.brpc.server.AsyncResponse;
+import com.baidu.brpc.serialize.FlatMessage;
+import com.baidu.brpc.serialize.RawMessage;
 import com.baidu.brpc.server.CommunicationServer;
+import com.baidu.brpc.utils.ThreadPool;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelHandlerContext;
-import lombok.AllArgsConstructor;
+import io.netty.util.ReferenceCounted;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
@@ -32,13 +40,26 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 @Setter
 @Getter
-@AllArgsConstructor
 public class ServerWorkTask implements Runnable {
     private CommunicationServer rpcServer;
     private Protocol protocol;
     private Request request;
     private Response response;
     private ChannelHandlerContext ctx;
+    // time when the request starts waiting, used to check max queue delay of thread pool
+    private long enqueueNanos;
+    // true if the task is submitted to thread pool of the method instead of running inline
+    private boolean submitted;
+
+    public ServerWorkTask(CommunicationServer rpcServer, Protocol protocol, Request request,
+                          Response response, ChannelHandlerContext ctx) {
+        this.rpcServer = rpcServer;
+        this.protocol = protocol;
+        this.request = request;
+        this.response = response;
+        this.ctx = ctx;
+        this.enqueueNanos = System.nanoTime();
+    }
 
     @Override
     public void run() {
@@ -50,10 +71,14 @@ public class ServerWorkTask implements Runnable {
             rpcContext.setChannel(ctx.channel());
 
             if (request.getBinaryAttachment() != null
+                    || request.getAttachmentStream() != null
                     || request.getKvAttachment() != null) {
                 if (request.getBinaryAttachment() != null) {
                     rpcContext.setRequestBinaryAttachment(request.getBinaryAttachment());
                 }
+                if (request.getAttachmentStream() != null) {
+                    rpcContext.setRequestAttachmentStream(request.getAttachmentStream());
+                }
                 if (request.getKvAttachment() != null) {
                     rpcContext.setRequestKvAttachment(request.getKvAttachment());
                 }
@@ -67,9 +92,16 @@ public class ServerWorkTask implements Runnable {
         }
 
         if (!request.isHeartbeat() && response.getException() == null) {
+            checkQueueDelay();
+        }
+
+        AsyncResponse asyncResponse = null;
+        if (!request.isHeartbeat() && response.getException() == null) {
+            rpcContext.setServerWorkTask(this);
             rpcServer.execute(request, response);
             if (RpcContext.isSet()) {
                 rpcContext = RpcContext.getContext();
+                asyncResponse = rpcContext.getAsyncResponse();
                 if (rpcContext.getResponseBinaryAttachment() != null
                         && rpcContext.getResponseBinaryAttachment().isReadable()) {
                     response.setBinaryAttachment(rpcContext.getResponseBinaryAttachment());
@@ -81,14 +113,16 @@ public class ServerWorkTask implements Runnable {
             }
         }
 
-        if (!request.isOneWay()) {
-            try {
-                ByteBuf byteBuf = protocol.encodeResponse(request, response);
-                ChannelFuture channelFuture = ctx.channel().writeAndFlush(byteBuf);
-                protocol.afterResponseSent(request, response, channelFuture);
-            } catch (Exception ex) {
-                log.warn("send response failed:", ex);
+        if (asyncResponse != null) {
+            if (response.getException() != null) {
+                // service method throws after starting async
+                asyncResponse.fail(response.getException());
             }
+            // request attachment is released after the response is sent
+            rpcContext.setRequestBinaryAttachment((ByteBuf) null);
+        } else {
+            sendResponse();
+            releaseArgs();
         }
 
         if (rpcContext != null) {
@@ -96,7 +130,129 @@ public class ServerWorkTask implements Runnable {
                     && rpcContext.getRequestBinaryAttachment().refCnt() > 0) {
                 rpcContext.getRequestBinaryAttachment().release();
             }
+            // nobody will consume the chunks any more
+            if (rpcContext.getRequestAttachmentStream() != null
+                    && !rpcContext.getRequestAttachmentStream().isSubscribed()) {
+                rpcContext.getRequestAttachmentStream().cancel();
+            }
             rpcContext.reset();
         }
+        if (asyncResponse != null) {
+            asyncResponse.onMethodReturned();
+        }
+    }
+
+    /**
+     * called by {@link AsyncResponse} when the rpc is completed and service method has returned.
+     */
+    public void sendAsyncResponse(Object result, Throwable exception) {
+        if (exception != null) {
+            response.setException(exception);
+        } else {
+            response.setException(null);
+            response.setResult(result);
+        }
+        sendResponse();
+        if (request.getBinaryAttachment() != null
+                && request.getBinaryAttachment().refCnt() > 0) {
+            request.getBinaryAttachment().release();
+        }
+        releaseArgs();
+    }
+
+    /**
+     * release encoded body of request, request messages which are views over the received buffer,
+     * such as {@link FlatMessage}, and result which is received by framework,
+     * such as {@link RawMessage} returned by downstream.
+     * result created by service may be cached and returned again, so it is not released.
+     */
+    private void releaseArgs() {
+        ByteBuf encodedBody = request.getEncodedBody();
+        if (encodedBody != null) {
+            // set to null before getArgs, so that args not decoded yet will not be decoded
+            request.setEncodedBody(null);
+            if (encodedBody.refCnt() > 0) {
+                encodedBody.release();
+            }
+        }
+        Object result = response.getResult();
+        if (request.getArgs() != null) {
+            for (Object arg : request.getArgs()) {
+                if (arg == result) {
+                    // service returns the request itself
+                    result = null;
+                }
+                release(arg);
+            }
+        }
+        if (isReceived(result)) {
+            release(result);
+        }
+    }
+
+    private static boolean isReceived(Object message) {
+        if (message instanceof RawMessage) {
+            return ((RawMessage) message).isReceived();
+        }
+        if (message instanceof FlatMessage) {
+            return ((FlatMessage) message).isReceived();
+        }
+        return false;
+    }
+
+    private static void release(Object message) {
+        if (message instanceof ReferenceCounted && ((ReferenceCounted) message).refCnt() > 0) {
+            ((ReferenceCounted) message).release();
+        }
+    }
+
+    private void checkQueueDelay() {
+        if (request.getRpcMethodInfo() == null) {
+            return;
+        }
+        ThreadPool threadPool = request.getRpcMethodInfo().getThreadPool();
+        if (threadPool == null) {
+            return;
+        }
+        long waitNanos = System.nanoTime() - enqueueNanos;
+        if (submitted) {
+            threadPool.recordQueueWait(waitNanos);
+        }
+        int maxQueueDelayMillis = threadPool.getMaxQueueDelayMillis();
+        if (maxQueueDelayMillis > 0 && waitNanos > maxQueueDelayMillis * 1000000L) {
+            threadPool.recordExpired();
+            response.setException(new RpcException(RpcException.SERVICE_EXCEPTION,
+                    "request waits in queue for " + waitNanos / 1000000 + "ms, more than "
+                            + maxQueueDelayMillis + "ms"));
+        }
+    }
+
+    private void sendResponse() {
+        try {
+            if (!request.isOneWay()) {
+                response.setCompressType(CompressPolicy.selectResponseCompressType(response.getRpcMethodInfo(),
+                        response.getResult(), request.getCompressType(),
+                        rpcServer.getRpcServerOptions().getMinCompressSize()));
+                ByteBuf byteBuf;
+                if (response.getCompressType() == Options.CompressType.COMPRESS_TYPE_ZSTD_VALUE) {
+                    ZstdDictionaryManager dictionaryManager = ZstdDictionaryManager.getInstance();
+                    dictionaryManager.negotiate(request, ctx.channel(),
+                            rpcServer.getRpcServerOptions().isAcceptZstdDictionary());
+                    try {
+                        byteBuf = protocol.encodeResponse(request, response);
+                    } finally {
+                        dictionaryManager.clearNegotiatedDictionary();
+                    }
+                } else {
+                    byteBuf = protocol.encodeResponse(request, response);
+                }
+                ChannelFuture channelFuture = BatchResponseWriter.writeResponse(ctx.channel(), byteBuf);
+                protocol.afterResponseSent(request, response, channelFuture);
+            }
+        } catch (Exception ex) {
+            log.warn("send response failed:", ex);
+        } finally {
+            rpcServer.onRequestFinished();
+        }
     }
 }
@@ -85,12 +85,17 @@ public class BrpcThreadPoolManager {
     }
 
     public ThreadPool getOrCreateClientWorkThreadPool(String serviceName, boolean isSharing, int threadNum) {
+        return getOrCreateClientWorkThreadPool(serviceName, isSharing, threadNum, false);
+    }
+
+    public ThreadPool getOrCreateClientWorkThreadPool(String serviceName, boolean isSharing, int threadNum,
+                                                      boolean virtualThread) {
         if (isSharing) {
             if (defaultWorkThreadPool == null) {
                 synchronized (BrpcThreadPoolManager.class) {
                     if (defaultWorkThreadPool == null) {
-                        defaultWorkThreadPool = new ThreadPool(threadNum,
-                                new CustomThreadFactory("brpc-client-work-thread-default"));
+                        defaultWorkThreadPool = ThreadPool.newThreadPool(threadNum,
+                                "brpc-client-work-thread-default", virtualThread);
                     }
                 }
             }
@@ -101,8 +106,8 @@ public class BrpcThreadPoolManager {
         if ((threadPool = workThreadPoolMap.get(serviceName)) == null) {
             synchronized (internalServiceName(serviceName).intern()) {
                 if ((threadPool = workThreadPoolMap.get(serviceName)) == null) {
-                    threadPool = new ThreadPool(threadNum,
-                            new CustomThreadFactory("brpc-client-work-thread-" + serviceName));
+                    threadPool = ThreadPool.newThreadPool(threadNum,
+                            "brpc-client-work-thread-" + serviceName, virtualThread);
                     workThreadPoolMap.put(serviceName, threadPool);
                 }
             }
@@ -3,4 +3,8 @@ package com.baidu.brpc.utils;
 public class BrpcConstants {
 	public static int IO_EVENT_JDK = 1;
 	public static int IO_EVENT_NETTY_EPOLL = 2;
+
+	// how to select connection for MULTI_CONNECTION channel type
+	public static int MULTI_CONNECTION_LEAST_IN_FLIGHT = 0;
+	public static int MULTI_CONNECTION_ROUND_ROBIN = 1;
 }
@@ -24,10 +24,20 @@ public class IOUtils {
 	private static final int BUFFER_SIZE = 256;
 
 	public static byte[] readInputStream(InputStream inputStream) throws IOException {
+		return readInputStream(inputStream, Long.MAX_VALUE);
+	}
+
+	/**
+	 * read all bytes of the stream, fail if there are more than maxSize bytes.
+	 */
+	public static byte[] readInputStream(InputStream inputStream, long maxSize) throws IOException {
 		byte[] buf = new byte[BUFFER_SIZE];
 		ByteArrayOutputStream out = new ByteArrayOutputStream();
 		int n;
 		while ((n = inputStream.read(buf)) >= 0) {
+			if (out.size() + n > maxSize) {
+				throw new IOException("input stream is larger than " + maxSize + " bytes");
+			}
 			out.write(buf, 0, n);
 		}
 		return out.toByteArray();
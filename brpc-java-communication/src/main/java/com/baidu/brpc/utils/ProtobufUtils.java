@@ -19,6 +19,7 @@ package com.baidu.brpc.utils;
 import com.baidu.bjf.remoting.protobuf.annotation.Protobuf;
 import com.baidu.bjf.remoting.protobuf.annotation.ProtobufClass;
 import com.baidu.brpc.buffer.DynamicCompositeByteBuf;
+import com.google.protobuf.CodedInputStream;
 import com.google.protobuf.Message;
 import io.netty.buffer.ByteBuf;
 import lombok.extern.slf4j.Slf4j;
@@ -27,9 +28,13 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 @Slf4j
 public class ProtobufUtils {
+	private static final ConcurrentMap<Class, Message> DEFAULT_INSTANCES = new ConcurrentHashMap<Class, Message>();
+
 	public enum MessageType {
 		PROTOBUF,
 		JPROTOBUF,
@@ -69,12 +74,28 @@ public class ProtobufUtils {
 		return MessageType.POJO;
 	}
 
+	/**
+	 * get default instance of protobuf message class, it is cached after first call.
+	 */
+	public static Message getDefaultInstance(Class clazz) {
+		Message defaultInstance = DEFAULT_INSTANCES.get(clazz);
+		if (defaultInstance == null) {
+			try {
+				defaultInstance = (Message) clazz.getMethod("getDefaultInstance").invoke(null);
+			} catch (Exception ex) {
+				throw new IllegalArgumentException("get default instance of " + clazz.getName() + " failed", ex);
+			}
+			Message old = DEFAULT_INSTANCES.putIfAbsent(clazz, defaultInstance);
+			if (old != null) {
+				defaultInstance = old;
+			}
+		}
+		return defaultInstance;
+	}
+
 	public static Message parseFrom(InputStream inputStream, Class clazz) {
 		try {
-			Method method = clazz.getMethod("getDefaultInstance");
-			Message proto = (Message) method.invoke(null);
-			proto = proto.newBuilderForType().mergeFrom(inputStream).build();
-			return proto;
+			return parseFrom(inputStream, getDefaultInstance(clazz));
 		} catch (Exception ex) {
 			String errorMsg = String.format("parse proto failed, msg=%s", ex.getMessage());
 			log.error(errorMsg);
@@ -84,9 +105,7 @@ public class ProtobufUtils {
 
 	public static Message parseFrom(byte[] inputBytes, Class clazz) {
 		try {
-			Method method = clazz.getMethod("parseFrom", byte[].class);
-			Message proto = (Message) method.invoke(null, inputBytes);
-			return proto;
+			return parseFrom(inputBytes, getDefaultInstance(clazz));
 		} catch (Exception ex) {
 			String errorMsg = String.format("parse proto failed, msg=%s", ex.getMessage());
 			log.error(errorMsg);
@@ -95,7 +114,15 @@ public class ProtobufUtils {
 	}
 
 	/**
-	 * parse proto from netty {@link ByteBuf}
+	 * parse proto from stream directly, it is not wrapped by other buffered stream.
+	 */
+	public static Message parseFrom(InputStream inputStream, Message defaultInstance) throws IOException {
+		return defaultInstance.getParserForType().parseFrom(CodedInputStream.newInstance(inputStream));
+	}
+
+	/**
+	 * parse proto from netty {@link ByteBuf},
+	 * heap buffer is parsed from its backing array without copy.
 	 *
 	 * @param input           netty ByteBuf
 	 * @param defaultInstance default instance for proto
@@ -104,6 +131,12 @@ public class ProtobufUtils {
 	 */
 	public static Message parseFrom(ByteBuf input, Message defaultInstance) throws IOException {
 		final int length = input.readableBytes();
+		if (input.hasArray()) {
+			Message message = defaultInstance.getParserForType().parseFrom(
+					input.array(), input.arrayOffset() + input.readerIndex(), length);
+			input.skipBytes(length);
+			return message;
+		}
 		byte[] array = new byte[length];
 		input.readBytes(array, 0, length);
 		return defaultInstance.getParserForType().parseFrom(array);
@@ -114,12 +147,15 @@ public class ProtobufUtils {
 	}
 
 	public static Message parseFrom(DynamicCompositeByteBuf input, Message defaultInstance) throws IOException {
-		final byte[] array;
-		final int offset;
 		final int length = input.readableBytes();
-		array = new byte[length];
+		if (input.hasArray()) {
+			Message message = defaultInstance.getParserForType().parseFrom(
+					input.array(), input.arrayOffset() + input.readerIndex(), length);
+			input.skipBytes(length);
+			return message;
+		}
+		byte[] array = new byte[length];
 		input.readBytes(array, 0, length);
-		offset = 0;
-		return defaultInstance.getParserForType().parseFrom(array, offset, length);
+		return defaultInstance.getParserForType().parseFrom(array, 0, length);
 	}
 }
@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.brpc.utils;
+
+import com.dyuproject.protostuff.LinkedBuffer;
+import com.dyuproject.protostuff.ProtobufIOUtil;
+import com.dyuproject.protostuff.Schema;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.PooledByteBufAllocator;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * protostuff serialization between messages and netty buffers.
+ * {@link LinkedBuffer} is reused by thread, it is cleared after each message,
+ * so only the head node of default size is kept.
+ */
+public class ProtostuffUtils {
+	private static final ThreadLocal<LinkedBuffer> LINKED_BUFFER = new ThreadLocal<LinkedBuffer>() {
+		@Override
+		protected LinkedBuffer initialValue() {
+			return LinkedBuffer.allocate(LinkedBuffer.DEFAULT_BUFFER_SIZE);
+		}
+	};
+
+	/**
+	 * serialize message into a pooled buffer of exact size.
+	 *
+	 * @param reservedBytes bytes left at the beginning of buffer for protocol head,
+	 *                      writer index is after the serialized message.
+	 */
+	public static <T> ByteBuf serialize(T message, Schema<T> schema, int reservedBytes) throws IOException {
+		LinkedBuffer linkedBuffer = LINKED_BUFFER.get();
+		try {
+			int size = ProtobufIOUtil.writeTo(linkedBuffer, message, schema);
+			ByteBuf byteBuf = PooledByteBufAllocator.DEFAULT.buffer(reservedBytes + size);
+			byteBuf.writerIndex(reservedBytes);
+			// ByteBufOutputStream is also a DataOutput, which is not needed here
+			OutputStream outputStream = new ByteBufOutputStream(byteBuf);
+			try {
+				LinkedBuffer.writeTo(outputStream, linkedBuffer);
+			} catch (IOException ex) {
+				byteBuf.release();
+				throw ex;
+			}
+			return byteBuf;
+		} finally {
+			linkedBuffer.clear();
+		}
+	}
+
+	/**
+	 * merge message from the readable bytes of byteBuf, array of heap buffer is parsed in place.
+	 */
+	public static <T> void deserialize(ByteBuf byteBuf, T message, Schema<T> schema) throws IOException {
+		int length = byteBuf.readableBytes();
+		if (byteBuf.hasArray()) {
+			ProtobufIOUtil.mergeFrom(byteBuf.array(), byteBuf.arrayOffset() + byteBuf.readerIndex(), length,
+					message, schema);
+			byteBuf.skipBytes(length);
+			return;
+		}
+		LinkedBuffer linkedBuffer = LINKED_BUFFER.get();
+		try {
+			ProtobufIOUtil.mergeFrom(new ByteBufInputStream(byteBuf, length), message, schema, linkedBuffer);
+		} finally {
+			linkedBuffer.clear();
+		}
+	}
+}
@@ -30,21 +30,26 @@ public class RpcMetaUtils {
 	public static class RpcMetaInfo {
 		private String serviceName;
 		private String methodName;
+		// -1 means not set
+		private int requestCompressType = -1;
+		private int responseCompressType = -1;
 	}
 
 	public static RpcMetaInfo parseRpcMeta(Method targetMethod) {
 		String serviceName;
 		String methodName;
+		RpcMetaInfo rpcMetaInfo = new RpcMetaInfo();
 		BrpcMeta rpcMeta = targetMethod.getAnnotation(BrpcMeta.class);
 		if (rpcMeta != null) {
 			serviceName = rpcMeta.serviceName();
 			methodName = rpcMeta.methodName();
+			rpcMetaInfo.setRequestCompressType(rpcMeta.requestCompressType());
+			rpcMetaInfo.setResponseCompressType(rpcMeta.responseCompressType());
 		} else {
 			serviceName = targetMethod.getDeclaringClass().getName();
 			methodName = targetMethod.getName();
 		}
 		log.debug("serviceName={}, methodName={}", serviceName, methodName);
-		RpcMetaInfo rpcMetaInfo = new RpcMetaInfo();
 		rpcMetaInfo.setServiceName(serviceName);
 		rpcMetaInfo.setMethodName(methodName);
 		return rpcMetaInfo;
@@ -18,9 +18,16 @@ package com.baidu.brpc.utils;
 
 import lombok.Getter;
 import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -35,6 +42,7 @@ import java.util.concurrent.locks.ReentrantLock;
  * @author Zhangyi Chen (chenzhangyi01@baidu.com)
  * @update Wenwei hu (huwenwei@baidu.com)
  */
+@Slf4j
 public final class ThreadPool {
 	private static final int DEFAULT_QUEUE_SIZE = 1024;
 
@@ -48,6 +56,70 @@ public final class ThreadPool {
 	private ArrayList<Thread> threads;
 
 	private volatile boolean stopped;
+	// not null in thread per task mode, every task runs in a new thread, such as virtual thread
+	private ThreadFactory taskThreadFactory;
+	// bounds the number of running tasks in thread per task mode, like the queue of platform threads
+	private Semaphore taskPermits;
+	// threads of running tasks, interrupted and joined by stop
+	private Set<Thread> taskThreads;
+	private int queueCapacity;
+	// shown in status page
+	private String name;
+
+	// checked by submitters and tasks, the pool itself does not use them
+	// submitters call trySubmit and reject tasks instead of waiting when queue is full
+	private volatile boolean rejectOnFull;
+	// max milliseconds a task can wait in queue before it is failed, 0 means no limit
+	private volatile int maxQueueDelayMillis;
+
+	// queue wait statistics reported by tasks
+	private final AtomicLong queuedTaskNum = new AtomicLong(0);
+	private final AtomicLong totalQueueWaitNanos = new AtomicLong(0);
+	private final AtomicLong maxQueueWaitNanos = new AtomicLong(0);
+	private final AtomicLong rejectedTaskNum = new AtomicLong(0);
+	private final AtomicLong expiredTaskNum = new AtomicLong(0);
+
+	/**
+	 * creates a pool of virtual threads if virtualThread is true and it is supported by jdk,
+	 * otherwise a pool of threadNum platform threads.
+	 */
+	public static ThreadPool newThreadPool(int threadNum, String namePrefix, boolean virtualThread) {
+		return newThreadPool(threadNum, namePrefix, virtualThread, 0);
+	}
+
+	public static ThreadPool newThreadPool(int threadNum, String namePrefix, boolean virtualThread, int queueSize) {
+		if (virtualThread) {
+			ThreadFactory virtualThreadFactory = VirtualThreads.newThreadFactory(namePrefix);
+			if (virtualThreadFactory != null) {
+				// as many tasks as platform threads and their queue can hold
+				return newThreadPerTaskPool(virtualThreadFactory,
+						threadNum + (queueSize > 0 ? queueSize : DEFAULT_QUEUE_SIZE));
+			}
+			log.warn("virtual thread is not supported by current jdk, use {} threads instead", threadNum);
+		}
+		return new ThreadPool(threadNum, new CustomThreadFactory(namePrefix), queueSize);
+	}
+
+	/**
+	 * creates a pool which runs every task in a new thread from taskThreadFactory,
+	 * tasks are never queued, so it only fits cheap threads like virtual thread.
+	 *
+	 * @param maxTaskNum max running tasks, submit waits and trySubmit rejects when so many tasks are running
+	 */
+	public static ThreadPool newThreadPerTaskPool(ThreadFactory taskThreadFactory, int maxTaskNum) {
+		return new ThreadPool(taskThreadFactory, maxTaskNum);
+	}
+
+	private ThreadPool(ThreadFactory taskThreadFactory, int maxTaskNum) {
+		if (maxTaskNum <= 0) {
+			throw new IllegalArgumentException("maxTaskNum=" + maxTaskNum + " should be positive");
+		}
+		this.threads = new ArrayList<Thread>(0);
+		this.taskThreadFactory = taskThreadFactory;
+		this.taskPermits = new Semaphore(maxTaskNum);
+		this.taskThreads = Collections.newSetFromMap(new ConcurrentHashMap<Thread, Boolean>());
+		this.queueCapacity = maxTaskNum;
+	}
 
 	public ThreadPool(int initialThreadNum, ThreadFactory threadFactory) {
 		this(initialThreadNum, threadFactory, 0);
@@ -65,6 +137,7 @@ public final class ThreadPool {
 		if (queueSize <= 0) {
 			queueSize = DEFAULT_QUEUE_SIZE;
 		}
+		queueCapacity = queueSize;
 		produced = new BoundedQueue<Runnable>(queueSize);
 		toConsume = new BoundedQueue<Runnable>(queueSize);
 		consumerLock = new ReentrantLock();
@@ -139,6 +212,10 @@ public final class ThreadPool {
 
 	public void stop() {
 		stopped = true;
+		if (taskThreadFactory != null) {
+			stopTaskThreads();
+			return;
+		}
 		producerLock.lock();
 		try {
 			isProducerNotEmptyCondition.signalAll();
@@ -167,6 +244,9 @@ public final class ThreadPool {
 	}
 
 	public long submit(Runnable[] tasks, int offset, int len) {
+		if (taskThreadFactory != null) {
+			return startTaskThreads(tasks, offset, len, true);
+		}
 		int cur = offset;
 		int end = offset + len;
 		while (!stopped && cur < end) {
@@ -196,10 +276,172 @@ public final class ThreadPool {
 		return cur - offset;
 	}
 
+	/**
+	 * submit tasks without waiting, so it can be called in io threads.
+	 *
+	 * @return number of tasks accepted, tasks after them are rejected because queue is full or pool is stopped
+	 */
+	public long trySubmit(Runnable[] tasks, int offset, int len) {
+		if (taskThreadFactory != null) {
+			int started = (int) startTaskThreads(tasks, offset, len, false);
+			if (started < len) {
+				rejectedTaskNum.addAndGet(len - started);
+			}
+			return started;
+		}
+		int toProduce = 0;
+		if (!stopped) {
+			producerLock.lock();
+			try {
+				toProduce = Math.min(produced.remainingCapacity(), len);
+				if (toProduce > 0) {
+					boolean wasEmpty = produced.isEmpty();
+					produced.addAll(tasks, offset, toProduce);
+					if (wasEmpty) {
+						isProducerNotEmptyCondition.signalAll();
+					}
+				}
+			} finally {
+				producerLock.unlock();
+			}
+		}
+		if (toProduce < len) {
+			rejectedTaskNum.addAndGet(len - toProduce);
+		}
+		return toProduce;
+	}
+
+	public boolean trySubmit(Runnable task) {
+		Runnable[] tasks = {task};
+		return trySubmit(tasks, 0, 1) == 1;
+	}
+
+	/**
+	 * called by task when it starts to run.
+	 *
+	 * @param waitNanos time from the task is submitted to it runs
+	 */
+	public void recordQueueWait(long waitNanos) {
+		queuedTaskNum.incrementAndGet();
+		totalQueueWaitNanos.addAndGet(waitNanos);
+		long max;
+		while (waitNanos > (max = maxQueueWaitNanos.get())) {
+			if (maxQueueWaitNanos.compareAndSet(max, waitNanos)) {
+				break;
+			}
+		}
+	}
+
+	/**
+	 * called by task which is failed because it waits longer than {@link #getMaxQueueDelayMillis()}.
+	 */
+	public void recordExpired() {
+		expiredTaskNum.incrementAndGet();
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	public boolean isRejectOnFull() {
+		return rejectOnFull;
+	}
+
+	public void setRejectOnFull(boolean rejectOnFull) {
+		this.rejectOnFull = rejectOnFull;
+	}
+
+	public int getMaxQueueDelayMillis() {
+		return maxQueueDelayMillis;
+	}
+
+	public void setMaxQueueDelayMillis(int maxQueueDelayMillis) {
+		this.maxQueueDelayMillis = maxQueueDelayMillis;
+	}
+
+	/**
+	 * @param wait wait for running tasks to finish when there are max tasks running, otherwise reject the rest
+	 * @return number of tasks started
+	 */
+	private long startTaskThreads(Runnable[] tasks, int offset, int len, boolean wait) {
+		int cur = offset;
+		int end = offset + len;
+		for (; !stopped && cur < end; cur++) {
+			if (!acquireTaskPermit(wait)) {
+				break;
+			}
+			final Runnable task = tasks[cur];
+			Thread thread = taskThreadFactory.newThread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						task.run();
+					} finally {
+						taskThreads.remove(Thread.currentThread());
+						taskPermits.release();
+					}
+				}
+			});
+			taskThreads.add(thread);
+			thread.start();
+		}
+		return cur - offset;
+	}
+
+	private boolean acquireTaskPermit(boolean wait) {
+		if (!wait) {
+			return taskPermits.tryAcquire();
+		}
+		while (!stopped) {
+			try {
+				if (taskPermits.tryAcquire(10, TimeUnit.MILLISECONDS)) {
+					return true;
+				}
+			} catch (InterruptedException ex) {
+				// ignore like the queue of platform threads
+			}
+		}
+		return false;
+	}
+
+	private void stopTaskThreads() {
+		for (Thread thread : taskThreads) {
+			thread.interrupt();
+		}
+		for (Thread thread : taskThreads) {
+			if (thread == Thread.currentThread()) {
+				// stopped by one of its own tasks
+				continue;
+			}
+			try {
+				thread.join();
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+
 	public StatInfo getStatInfo() {
 		StatInfo statInfo = new StatInfo();
+		long queuedNum = queuedTaskNum.get();
+		statInfo.setQueuedTaskNum(queuedNum);
+		statInfo.setAvgQueueWaitMicros(queuedNum == 0 ? 0 : totalQueueWaitNanos.get() / queuedNum / 1000);
+		statInfo.setMaxQueueWaitMicros(maxQueueWaitNanos.get() / 1000);
+		statInfo.setRejectedTaskNum(rejectedTaskNum.get());
+		statInfo.setExpiredTaskNum(expiredTaskNum.get());
+		if (taskThreadFactory != null) {
+			// thread per task
+			statInfo.setThreadNum(taskThreads.size());
+			statInfo.setDefaultQueueCapacity(queueCapacity);
+			return statInfo;
+		}
 		statInfo.setThreadNum(threads.size());
-		statInfo.setDefaultQueueCapacity(DEFAULT_QUEUE_SIZE);
+		statInfo.setDefaultQueueCapacity(queueCapacity);
 		statInfo.setProducerQueueSize(produced.size());
 		statInfo.setConsumerQueueSize(toConsume.size());
 		return statInfo;
@@ -212,6 +454,12 @@ public final class ThreadPool {
 		private int defaultQueueCapacity;
 		private int producerQueueSize;
 		private int consumerQueueSize;
+		// tasks which reported queue wait time
+		private long queuedTaskNum;
+		private long avgQueueWaitMicros;
+		private long maxQueueWaitMicros;
+		private long rejectedTaskNum;
+		private long expiredTaskNum;
 	}
 
 	public boolean isStopped() {
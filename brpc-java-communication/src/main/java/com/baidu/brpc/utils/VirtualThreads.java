@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.baidu.brpc.utils;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * creates virtual threads by reflection, since the source is compiled for old jdk.
+ * virtual threads are supported since jdk 21, on older jdk {@link #newThreadFactory(String)} returns null.
+ * <p>
+ * Virtual threads park cheaply in {@link java.util.concurrent.locks.LockSupport} based waits,
+ * such as RpcFuture.get(), but a virtual thread blocking inside a {@code synchronized} block
+ * pins its carrier thread, so blocking operations should not be called while holding a monitor.
+ */
+@Slf4j
+public class VirtualThreads {
+    private static final Method OF_VIRTUAL_METHOD;
+    private static final Method NAME_METHOD;
+    private static final Method FACTORY_METHOD;
+
+    static {
+        Method ofVirtualMethod = null;
+        Method nameMethod = null;
+        Method factoryMethod = null;
+        try {
+            Class builderClass = Class.forName("java.lang.Thread$Builder");
+            ofVirtualMethod = Thread.class.getMethod("ofVirtual");
+            nameMethod = builderClass.getMethod("name", String.class, long.class);
+            factoryMethod = builderClass.getMethod("factory");
+        } catch (Throwable ex) {
+            log.debug("virtual thread is not supported, ex={}", ex.getMessage());
+            ofVirtualMethod = null;
+        }
+        OF_VIRTUAL_METHOD = ofVirtualMethod;
+        NAME_METHOD = nameMethod;
+        FACTORY_METHOD = factoryMethod;
+    }
+
+    private VirtualThreads() {
+    }
+
+    public static boolean isSupported() {
+        return OF_VIRTUAL_METHOD != null;
+    }
+
+    /**
+     * @param namePrefix prefix of thread name, followed by an increasing number
+     * @return factory of virtual threads, or null if not supported
+     */
+    public static ThreadFactory newThreadFactory(String namePrefix) {
+        if (OF_VIRTUAL_METHOD == null) {
+            return null;
+        }
+        try {
+            Object builder = OF_VIRTUAL_METHOD.invoke(null);
+            NAME_METHOD.invoke(builder, namePrefix + "-", 0L);
+            return (ThreadFactory) FACTORY_METHOD.invoke(builder);
+        } catch (Exception ex) {
+            log.warn("create virtual thread factory failed:", ex);
+            return null;
+        }
+    }
+}
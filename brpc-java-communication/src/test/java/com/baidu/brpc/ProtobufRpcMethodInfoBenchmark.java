@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.brpc;
+
+import com.baidu.brpc.protocol.standard.Echo;
+import com.baidu.brpc.protocol.standard.EchoService;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.Unpooled;
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+
+/**
+ * benchmark of parsing response by reflective parseFrom and by cached parser of default instance.
+ */
+public class ProtobufRpcMethodInfoBenchmark {
+	private static final int TIMES = 2000000;
+
+	@Test
+	public void testBenchmark() throws Exception {
+		Method method = EchoService.class.getMethod("echo", Echo.EchoRequest.class);
+		ProtobufRpcMethodInfo rpcMethodInfo = new ProtobufRpcMethodInfo(method);
+		Method parseFromMethod = Echo.EchoResponse.class.getMethod("parseFrom", byte[].class);
+		Method getDefaultInstanceMethod = Echo.EchoResponse.class.getMethod("getDefaultInstance");
+		byte[] bytes = Echo.EchoResponse.newBuilder().setMessage("hello world").build().toByteArray();
+		ByteBuf buf = Unpooled.wrappedBuffer(bytes);
+
+		// warm jvm
+		for (int ix = 0; ix < 2; ++ix) {
+			runReflectParse(parseFromMethod, bytes);
+			runParser(rpcMethodInfo, bytes);
+			runReflectStream(getDefaultInstanceMethod, buf);
+			runParserStream(rpcMethodInfo, buf);
+			runCopyByteBuf(rpcMethodInfo, buf);
+			runByteBuf(rpcMethodInfo, buf);
+		}
+
+		for (int ix = 0; ix < 3; ++ix) {
+			long t1 = runReflectParse(parseFromMethod, bytes);
+			long t2 = runParser(rpcMethodInfo, bytes);
+			System.out.println("byte[]: reflect = " + t1 + "ms, parser = " + t2 + "ms, " + ((double) t1) / t2);
+
+			t1 = runReflectStream(getDefaultInstanceMethod, buf);
+			t2 = runParserStream(rpcMethodInfo, buf);
+			System.out.println("stream: reflect = " + t1 + "ms, parser = " + t2 + "ms, " + ((double) t1) / t2);
+
+			t1 = runCopyByteBuf(rpcMethodInfo, buf);
+			t2 = runByteBuf(rpcMethodInfo, buf);
+			System.out.println("ByteBuf: copy = " + t1 + "ms, in place = " + t2 + "ms, " + ((double) t1) / t2);
+		}
+	}
+
+	private long runReflectParse(Method parseFromMethod, byte[] bytes) throws Exception {
+		long t1 = System.currentTimeMillis();
+		for (int i = 0; i < TIMES; i++) {
+			parseFromMethod.invoke(null, bytes);
+		}
+		return System.currentTimeMillis() - t1;
+	}
+
+	private long runParser(ProtobufRpcMethodInfo rpcMethodInfo, byte[] bytes) throws Exception {
+		long t1 = System.currentTimeMillis();
+		for (int i = 0; i < TIMES; i++) {
+			rpcMethodInfo.outputDecode(bytes);
+		}
+		return System.currentTimeMillis() - t1;
+	}
+
+	private long runReflectStream(Method getDefaultInstanceMethod, ByteBuf buf) throws Exception {
+		long t1 = System.currentTimeMillis();
+		for (int i = 0; i < TIMES; i++) {
+			Echo.EchoResponse instance = (Echo.EchoResponse) getDefaultInstanceMethod.invoke(null);
+			instance.newBuilderForType().mergeFrom(new ByteBufInputStream(buf.duplicate())).build();
+		}
+		return System.currentTimeMillis() - t1;
+	}
+
+	private long runParserStream(ProtobufRpcMethodInfo rpcMethodInfo, ByteBuf buf) throws Exception {
+		long t1 = System.currentTimeMillis();
+		for (int i = 0; i < TIMES; i++) {
+			rpcMethodInfo.outputDecode(new ByteBufInputStream(buf.duplicate()));
+		}
+		return System.currentTimeMillis() - t1;
+	}
+
+	private long runCopyByteBuf(ProtobufRpcMethodInfo rpcMethodInfo, ByteBuf buf) throws Exception {
+		long t1 = System.currentTimeMillis();
+		for (int i = 0; i < TIMES; i++) {
+			ByteBuf input = buf.duplicate();
+			byte[] array = new byte[input.readableBytes()];
+			input.readBytes(array);
+			rpcMethodInfo.outputDecode(array);
+		}
+		return System.currentTimeMillis() - t1;
+	}
+
+	private long runByteBuf(ProtobufRpcMethodInfo rpcMethodInfo, ByteBuf buf) throws Exception {
+		long t1 = System.currentTimeMillis();
+		for (int i = 0; i < TIMES; i++) {
+			rpcMethodInfo.outputDecode(buf.duplicate());
+		}
+		return System.currentTimeMillis() - t1;
+	}
+}
@@ -39,6 +39,14 @@ public class TestProtobufRpcMethodInfo {
 		Assert.assertTrue(rpcMethodInfo.getInputGetDefaultInstanceMethod() != null);
 	}
 
+	@Test
+	public void testParser() throws Exception {
+		Method method = EchoService.class.getMethod("echo", Echo.EchoRequest.class);
+		ProtobufRpcMethodInfo rpcMethodInfo = new ProtobufRpcMethodInfo(method);
+		Assert.assertTrue(rpcMethodInfo.getInputParser() != null);
+		Assert.assertTrue(rpcMethodInfo.getOutputParser() != null);
+	}
+
 	@Test
 	public void testInputEncode() throws Exception {
 		Method method = EchoService.class.getMethod("echo", Echo.EchoRequest.class);
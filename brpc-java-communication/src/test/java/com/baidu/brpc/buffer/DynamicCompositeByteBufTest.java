@@ -287,6 +287,21 @@ public class DynamicCompositeByteBufTest {
 		Assert.assertTrue(compositeByteBuf.readLongLE() == 234L);
 	}
 
+	@Test
+	public void testGetInt() {
+		ByteBuf buf1 = Unpooled.wrappedBuffer(new byte[] {1, 2, 3});
+		ByteBuf buf2 = Unpooled.wrappedBuffer(new byte[] {4, 5, 6, 7, 8});
+		ByteBuf[] bufs = new ByteBuf[]{buf1, buf2};
+		DynamicCompositeByteBuf compositeByteBuf = new DynamicCompositeByteBuf(bufs, 0, 2);
+		Assert.assertEquals(0x01020304, compositeByteBuf.getInt(0));
+		Assert.assertEquals(0x05060708, compositeByteBuf.getInt(4));
+		Assert.assertEquals(6, compositeByteBuf.getByte(5));
+		// reader index is not changed
+		Assert.assertEquals(8, compositeByteBuf.readableBytes());
+		Assert.assertEquals(1, compositeByteBuf.readByte());
+		compositeByteBuf.release();
+	}
+
 	@Test
 	public void testRelease() {
 		byte[] bytes1 = "hello".getBytes();
@@ -146,6 +146,23 @@ public class RpcFutureTest extends BaseMockitoTest {
         }
     }
 
+    @Test
+    public void testShortConnectionDecInFlightNum() throws Exception {
+        rpcFuture.setChannelType(ChannelType.SHORT_CONNECTION);
+        rpcFuture.handleResponse(null);
+        verify(channelInfo).close();
+        verify(channelInfo).decInFlightNum();
+    }
+
+    @Test
+    public void testPooledConnectionDecInFlightNum() throws Exception {
+        Response response = new RpcResponse();
+        response.setResult("hello world");
+        rpcFuture.handleResponse(response);
+        verify(channelInfo).handleResponseSuccess();
+        verify(channelInfo).decInFlightNum();
+    }
+
     @Test
     public void testSyncHandleTimeout() throws Exception {
         try {
@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2018 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.brpc.client.channel;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.baidu.brpc.ChannelInfo;
+import com.baidu.brpc.client.CommunicationOptions;
+import com.baidu.brpc.protocol.Protocol;
+import com.baidu.brpc.utils.BrpcConstants;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+public class BrpcMultiChannelTest {
+
+    private BrpcMultiChannel multiChannel;
+
+    @After
+    public void after() {
+        if (multiChannel != null) {
+            multiChannel.close();
+        }
+    }
+
+    @Test
+    public void testRoundRobin() throws Exception {
+        multiChannel = createChannel(BrpcConstants.MULTI_CONNECTION_ROUND_ROBIN);
+        Channel first = multiChannel.getChannel();
+        waitConnected(3);
+        Set<Channel> selected = new HashSet<Channel>();
+        for (int i = 0; i < 3; i++) {
+            selected.add(multiChannel.getChannel());
+        }
+        assertThat(selected.size(), is(3));
+        assertThat(selected.contains(first), is(true));
+    }
+
+    @Test
+    public void testLeastInFlight() throws Exception {
+        multiChannel = createChannel(BrpcConstants.MULTI_CONNECTION_LEAST_IN_FLIGHT);
+        multiChannel.getChannel();
+        waitConnected(3);
+        Channel busy = multiChannel.getChannel();
+        ChannelInfo.getClientChannelInfo(busy).getInFlightNum().incrementAndGet();
+        Channel channel = multiChannel.getChannel();
+        assertThat(channel, not(sameInstance(busy)));
+        ChannelInfo.getClientChannelInfo(busy).getInFlightNum().decrementAndGet();
+    }
+
+    @Test
+    public void testPrepareConnections() throws Exception {
+        multiChannel = createChannel(BrpcConstants.MULTI_CONNECTION_ROUND_ROBIN);
+        assertThat(multiChannel.prepareConnections().isSuccess(), is(true));
+        assertThat(multiChannel.getActiveConnectionNum(), is(3));
+    }
+
+    private void waitConnected(int num) throws InterruptedException {
+        for (int i = 0; i < 100 && multiChannel.getActiveConnectionNum() < num; i++) {
+            Thread.sleep(10);
+        }
+        assertThat(multiChannel.getActiveConnectionNum(), is(num));
+    }
+
+    private BrpcMultiChannel createChannel(int selectType) {
+        Protocol protocol = mock(Protocol.class);
+        when(protocol.returnChannelBeforeResponse()).thenReturn(true);
+        CommunicationOptions options = CommunicationOptions.builder()
+                .protocol(protocol)
+                .multiConnectionNum(3)
+                .multiConnectionSelectType(selectType)
+                .healthyCheckIntervalMillis(3000)
+                .ioThreadNum(1)
+                .workThreadNum(1)
+                .build();
+        ServiceInstance serviceInstance = new ServiceInstance("127.0.0.1", 8000);
+        serviceInstance.setServiceName("BrpcMultiChannelTest");
+        return new BrpcMultiChannel(serviceInstance, options) {
+            @Override
+            public Channel connect() {
+                return new EmbeddedChannel();
+            }
+
+            @Override
+            protected ChannelFuture connectAsync() {
+                return new EmbeddedChannel().newSucceededFuture();
+            }
+        };
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.brpc.client.channel;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.baidu.brpc.client.CommunicationOptions;
+import com.baidu.brpc.protocol.Protocol;
+
+import io.netty.channel.Channel;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+public class BrpcShortChannelTest {
+
+    private BrpcShortChannel shortChannel;
+
+    @After
+    public void after() {
+        if (shortChannel != null) {
+            shortChannel.close();
+        }
+    }
+
+    @Test
+    public void testCloseWithoutCache() throws Exception {
+        shortChannel = createChannel(0, 1000);
+        Channel channel = shortChannel.getChannel();
+        shortChannel.returnChannel(channel);
+        assertThat(channel.isOpen(), is(false));
+        assertThat(shortChannel.getChannel(), not(sameInstance(channel)));
+    }
+
+    @Test
+    public void testReuseIdleChannel() throws Exception {
+        shortChannel = createChannel(1, 1000);
+        Channel channel1 = shortChannel.getChannel();
+        Channel channel2 = shortChannel.getChannel();
+        assertThat(channel2, not(sameInstance(channel1)));
+        shortChannel.returnChannel(channel1);
+        shortChannel.returnChannel(channel2);
+        // only one idle connection is kept, the older one is closed
+        assertThat(channel1.isOpen(), is(false));
+        assertThat(shortChannel.getIdleConnectionNum(), is(1));
+        assertThat(shortChannel.getChannel(), sameInstance(channel2));
+        assertThat(shortChannel.getIdleConnectionNum(), is(0));
+    }
+
+    @Test
+    public void testIdleTimeout() throws Exception {
+        shortChannel = createChannel(2, 1);
+        EmbeddedChannel channel = (EmbeddedChannel) shortChannel.getChannel();
+        shortChannel.returnChannel(channel);
+        Thread.sleep(10);
+        channel.runScheduledPendingTasks();
+        assertThat(channel.isOpen(), is(false));
+        assertThat(shortChannel.getIdleConnectionNum(), is(0));
+    }
+
+    private BrpcShortChannel createChannel(int idleNum, int idleTimeoutMillis) {
+        CommunicationOptions options = CommunicationOptions.builder()
+                .protocol(mock(Protocol.class))
+                .shortConnectionIdleNum(idleNum)
+                .shortConnectionIdleTimeoutMillis(idleTimeoutMillis)
+                .ioThreadNum(1)
+                .workThreadNum(1)
+                .build();
+        ServiceInstance serviceInstance = new ServiceInstance("127.0.0.1", 8000);
+        serviceInstance.setServiceName("BrpcShortChannelTest");
+        return new BrpcShortChannel(serviceInstance, options) {
+            @Override
+            public Channel connect() {
+                return new EmbeddedChannel();
+            }
+        };
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.brpc.client.channel;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.baidu.brpc.client.CommunicationOptions;
+import com.baidu.brpc.protocol.Protocol;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+public class BrpcSingleChannelTest {
+
+    private BrpcSingleChannel singleChannel;
+    private AtomicInteger connectNum = new AtomicInteger(0);
+    private volatile ChannelPromise connectPromise;
+
+    @After
+    public void after() {
+        if (singleChannel != null) {
+            singleChannel.close();
+        }
+    }
+
+    @Test
+    public void testShareConnectAttempt() throws Exception {
+        singleChannel = createChannel();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Callable<Channel> task = new Callable<Channel>() {
+                @Override
+                public Channel call() throws Exception {
+                    return singleChannel.getChannel();
+                }
+            };
+            Future<Channel> future1 = executor.submit(task);
+            Future<Channel> future2 = executor.submit(task);
+            for (int i = 0; i < 100 && connectPromise == null; i++) {
+                Thread.sleep(10);
+            }
+            Thread.sleep(50);
+            connectPromise.setSuccess();
+            Channel channel1 = future1.get(1, TimeUnit.SECONDS);
+            Channel channel2 = future2.get(1, TimeUnit.SECONDS);
+            assertThat(channel1, sameInstance(channel2));
+            assertThat(connectNum.get(), is(1));
+            assertThat(singleChannel.getChannel(), sameInstance(channel1));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testPrepareConnections() throws Exception {
+        singleChannel = createChannel();
+        io.netty.util.concurrent.Future<Void> future = singleChannel.prepareConnections();
+        assertThat(future.isDone(), is(false));
+        connectPromise.setSuccess();
+        assertThat(future.await(1000), is(true));
+        assertThat(future.isSuccess(), is(true));
+        assertThat(singleChannel.getActiveConnectionNum(), is(1));
+    }
+
+    private BrpcSingleChannel createChannel() {
+        Protocol protocol = mock(Protocol.class);
+        when(protocol.returnChannelBeforeResponse()).thenReturn(true);
+        CommunicationOptions options = CommunicationOptions.builder()
+                .protocol(protocol)
+                .connectTimeoutMillis(3000)
+                .healthyCheckIntervalMillis(3000)
+                .ioThreadNum(1)
+                .workThreadNum(1)
+                .build();
+        ServiceInstance serviceInstance = new ServiceInstance("127.0.0.1", 8000);
+        serviceInstance.setServiceName("BrpcSingleChannelTest");
+        return new BrpcSingleChannel(serviceInstance, options) {
+            @Override
+            protected ChannelFuture connectAsync() {
+                connectNum.incrementAndGet();
+                connectPromise = new EmbeddedChannel().newPromise();
+                return connectPromise;
+            }
+        };
+    }
+}
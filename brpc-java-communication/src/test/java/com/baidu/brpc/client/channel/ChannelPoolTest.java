@@ -16,40 +16,30 @@
 package com.baidu.brpc.client.channel;
 
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.junit.Assert.assertThat;
-import static org.mockito.Mockito.doAnswer;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.NoSuchElementException;
 
-import org.apache.commons.pool2.impl.GenericObjectPool;
-import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
 import org.junit.After;
-import org.junit.Before;
 import org.junit.Test;
-import org.mockito.invocation.InvocationOnMock;
-import org.mockito.stubbing.Answer;
+
+import com.baidu.brpc.client.CommunicationOptions;
+import com.baidu.brpc.exceptions.RpcException;
+import com.baidu.brpc.protocol.Protocol;
 
 import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.embedded.EmbeddedChannel;
 
 public class ChannelPoolTest {
 
-    private GenericObjectPool<Channel> pool;
-
-    @Before
-    public void before() throws Exception {
-        ChannelPooledObjectFactory pooledObjectFactory =
-                spy(new ChannelPooledObjectFactory(mock(BrpcChannel.class), "127.0.0.1", 8000));
-        doAnswer(new Answer<Channel>() {
-            public Channel answer(InvocationOnMock invocation) {
-                return mock(Channel.class);
-            }
-        }).when(pooledObjectFactory).create();
-        GenericObjectPoolConfig conf = new GenericObjectPoolConfig();
-        conf.setMaxTotal(5);
-        conf.setMaxIdle(5);
-        conf.setMinIdle(3);
-        pool = new GenericObjectPool<Channel>(pooledObjectFactory, conf);
-    }
+    private BrpcPooledChannel pool;
 
     @After
     public void after() {
@@ -60,16 +50,107 @@ public class ChannelPoolTest {
 
     @Test
     public void test() throws Exception {
-        pool.preparePool();
-        assertThat(pool.getNumIdle(), is(3));
-        Channel channel1 = pool.borrowObject();
-        Channel channel2 = pool.borrowObject();
-        assertThat(pool.getNumActive(), is(2));
-        Channel channel3 = pool.borrowObject();
-        pool.returnObject(channel1);
-        pool.returnObject(channel2);
-        pool.returnObject(channel3);
-        assertThat(pool.getNumIdle(), is(3));
+        pool = createPool(false, 5, 3);
+        assertThat(pool.getIdleConnectionNum(), is(3));
+        Channel channel1 = pool.getChannel();
+        Channel channel2 = pool.getChannel();
+        assertThat(pool.getActiveConnectionNum(), is(2));
+        Channel channel3 = pool.getChannel();
+        pool.returnChannel(channel1);
+        pool.returnChannel(channel2);
+        pool.returnChannel(channel3);
+        assertThat(pool.getIdleConnectionNum(), is(3));
+    }
+
+    @Test
+    public void testMaxTotal() throws Exception {
+        pool = createPool(false, 2, 0);
+        Channel channel1 = pool.getChannel();
+        Channel channel2 = pool.getChannel();
+        assertThat(channel1, not(sameInstance(channel2)));
+        try {
+            pool.getChannel();
+            fail("pool should be exhausted");
+        } catch (NoSuchElementException ex) {
+            // expected
+        }
+        assertThat(pool.getCurrentMaxConnection(), is(2));
+        pool.returnChannel(channel2);
+        assertThat(pool.getChannel(), sameInstance(channel2));
+    }
+
+    @Test
+    public void testShareLeastLoadedChannel() throws Exception {
+        pool = createPool(true, 1, 1);
+        Channel channel1 = pool.getChannel();
+        Channel channel2 = pool.getChannel();
+        assertThat(channel2, sameInstance(channel1));
+        pool.returnChannel(channel1);
+        assertThat(pool.getActiveConnectionNum(), is(1));
+        pool.returnChannel(channel2);
+        assertThat(pool.getActiveConnectionNum(), is(0));
     }
 
+    @Test
+    public void testRemoveClosedChannel() throws Exception {
+        pool = createPool(false, 2, 2);
+        Channel channel = pool.getChannel();
+        channel.close();
+        assertThat(pool.getIdleConnectionNum() + pool.getActiveConnectionNum(), is(2));
+        assertThat(pool.getChannel(), not(sameInstance(channel)));
+    }
+
+    @Test
+    public void testConnectFailed() throws Exception {
+        CommunicationOptions options = CommunicationOptions.builder()
+                .protocol(mock(Protocol.class))
+                .maxTotalConnections(1)
+                .minIdleConnections(0)
+                .connectTimeoutMillis(1000)
+                .ioThreadNum(1)
+                .workThreadNum(1)
+                .build();
+        ServiceInstance serviceInstance = new ServiceInstance("127.0.0.1", 8000);
+        serviceInstance.setServiceName("ChannelPoolTest");
+        pool = new BrpcPooledChannel(serviceInstance, options) {
+            @Override
+            protected ChannelFuture connectAsync() {
+                return new EmbeddedChannel().newFailedFuture(new IOException("connection refused"));
+            }
+        };
+        long startMillis = System.currentTimeMillis();
+        try {
+            pool.getChannel();
+            fail("connect should fail");
+        } catch (RpcException ex) {
+            // fail without waiting for connect timeout
+            assertThat(System.currentTimeMillis() - startMillis < 1000, is(true));
+        }
+    }
+
+    private BrpcPooledChannel createPool(boolean shareChannel, int maxTotal, int minIdle) {
+        Protocol protocol = mock(Protocol.class);
+        when(protocol.returnChannelBeforeResponse()).thenReturn(shareChannel);
+        CommunicationOptions options = CommunicationOptions.builder()
+                .protocol(protocol)
+                .maxTotalConnections(maxTotal)
+                .minIdleConnections(minIdle)
+                .connectTimeoutMillis(50)
+                .ioThreadNum(1)
+                .workThreadNum(1)
+                .build();
+        ServiceInstance serviceInstance = new ServiceInstance("127.0.0.1", 8000);
+        serviceInstance.setServiceName("ChannelPoolTest");
+        return new BrpcPooledChannel(serviceInstance, options) {
+            @Override
+            public Channel connect() {
+                return new EmbeddedChannel();
+            }
+
+            @Override
+            protected ChannelFuture connectAsync() {
+                return new EmbeddedChannel().newSucceededFuture();
+            }
+        };
+    }
 }
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2018 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.brpc.compress;
+
+import com.baidu.brpc.ProtobufRpcMethodInfo;
+import com.baidu.brpc.protocol.BrpcMeta;
+import com.baidu.brpc.protocol.Options;
+import com.baidu.brpc.protocol.standard.Echo;
+import com.baidu.brpc.protocol.standard.EchoService;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class CompressPolicyTest {
+	private static final int NONE = Options.CompressType.COMPRESS_TYPE_NONE_VALUE;
+	private static final int GZIP = Options.CompressType.COMPRESS_TYPE_GZIP_VALUE;
+	private static final int ZSTD = Options.CompressType.COMPRESS_TYPE_ZSTD_VALUE;
+
+	public interface CompressEchoService {
+		@BrpcMeta(serviceName = "example.EchoService", methodName = "Echo",
+				requestCompressType = Options.CompressType.COMPRESS_TYPE_ZSTD_VALUE,
+				responseCompressType = Options.CompressType.COMPRESS_TYPE_NONE_VALUE)
+		Echo.EchoResponse echo(Echo.EchoRequest request);
+	}
+
+	@Test
+	public void testMethodOverride() throws Exception {
+		ProtobufRpcMethodInfo rpcMethodInfo = new ProtobufRpcMethodInfo(
+				CompressEchoService.class.getMethod("echo", Echo.EchoRequest.class));
+		Echo.EchoRequest request = Echo.EchoRequest.newBuilder().setMessage("hello").build();
+		Echo.EchoResponse response = Echo.EchoResponse.newBuilder().setMessage("hello").build();
+		assertThat(CompressPolicy.selectRequestCompressType(rpcMethodInfo, request, GZIP, 0), is(ZSTD));
+		assertThat(CompressPolicy.selectResponseCompressType(rpcMethodInfo, response, ZSTD, 0), is(NONE));
+	}
+
+	@Test
+	public void testMinCompressSize() throws Exception {
+		ProtobufRpcMethodInfo rpcMethodInfo = new ProtobufRpcMethodInfo(
+				EchoService.class.getMethod("echo", Echo.EchoRequest.class));
+		Echo.EchoRequest small = Echo.EchoRequest.newBuilder().setMessage("hello").build();
+		Echo.EchoRequest large = Echo.EchoRequest.newBuilder().setMessage(repeat("hello", 100)).build();
+		assertThat(CompressPolicy.selectRequestCompressType(rpcMethodInfo, small, GZIP, 128), is(NONE));
+		assertThat(CompressPolicy.selectRequestCompressType(rpcMethodInfo, large, GZIP, 128), is(GZIP));
+		assertThat(CompressPolicy.selectRequestCompressType(rpcMethodInfo, small, GZIP, 0), is(GZIP));
+
+		Echo.EchoResponse response = Echo.EchoResponse.newBuilder().setMessage("hello").build();
+		assertThat(CompressPolicy.selectResponseCompressType(rpcMethodInfo, response, GZIP, 128), is(NONE));
+		assertThat(CompressPolicy.selectResponseCompressType(rpcMethodInfo, response, GZIP, 0), is(GZIP));
+	}
+
+	@Test
+	public void testBackoffWhenIncompressible() throws Exception {
+		ProtobufRpcMethodInfo rpcMethodInfo = new ProtobufRpcMethodInfo(
+				EchoService.class.getMethod("echo", Echo.EchoRequest.class));
+		Echo.EchoRequest request = Echo.EchoRequest.newBuilder().setMessage(repeat("hello", 100)).build();
+		CompressStats compressStats = rpcMethodInfo.getRequestCompressStats();
+
+		// the first call is compressed and found incompressible
+		assertThat(CompressPolicy.selectRequestCompressType(rpcMethodInfo, request, GZIP, 0), is(GZIP));
+		compressStats.record(1000, 990);
+		assertThat(CompressPolicy.selectRequestCompressType(rpcMethodInfo, request, GZIP, 0), is(NONE));
+		// probing call is still incompressible, so the next two calls are skipped
+		assertThat(CompressPolicy.selectRequestCompressType(rpcMethodInfo, request, GZIP, 0), is(GZIP));
+		compressStats.record(1000, 1010);
+		assertThat(CompressPolicy.selectRequestCompressType(rpcMethodInfo, request, GZIP, 0), is(NONE));
+		assertThat(CompressPolicy.selectRequestCompressType(rpcMethodInfo, request, GZIP, 0), is(NONE));
+		// compressible payloads stop the back-off
+		assertThat(CompressPolicy.selectRequestCompressType(rpcMethodInfo, request, GZIP, 0), is(GZIP));
+		new GzipCompress().compressInput(request, rpcMethodInfo);
+		assertThat(compressStats.getRatio() < CompressStats.INCOMPRESSIBLE_RATIO, is(true));
+		assertThat(CompressPolicy.selectRequestCompressType(rpcMethodInfo, request, GZIP, 0), is(GZIP));
+		// response is not affected
+		assertThat(rpcMethodInfo.getResponseCompressStats().shouldCompress(), is(true));
+	}
+
+	private static String repeat(String s, int times) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < times; i++) {
+			sb.append(s);
+		}
+		return sb.toString();
+	}
+}
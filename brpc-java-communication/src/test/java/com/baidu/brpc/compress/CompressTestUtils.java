@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2018 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.brpc.compress;
+
+import com.baidu.brpc.JprotobufRpcMethodInfo;
+import com.baidu.brpc.protocol.jprotobuf.EchoRequest;
+import com.baidu.brpc.protocol.jprotobuf.EchoResponse;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+import java.io.IOException;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class CompressTestUtils {
+	/**
+	 * message without fields is encoded to empty bytes, it is compressed,
+	 * and uncompressed from a direct buffer which has no backing array.
+	 */
+	public static void checkEmptyMessage(Compress compress, JprotobufRpcMethodInfo rpcMethodInfo)
+			throws IOException {
+		EchoRequest request = new EchoRequest();
+		assertThat(rpcMethodInfo.getInputSerializedSize(request), is(0));
+		ByteBuf directBuf = toDirectBuffer(compress.compressInput(request, rpcMethodInfo));
+		try {
+			EchoRequest request2 = (EchoRequest) compress.uncompressInput(directBuf, rpcMethodInfo);
+			assertThat(request2.getMessage(), nullValue());
+			assertThat(directBuf.readableBytes(), is(0));
+		} finally {
+			directBuf.release();
+		}
+
+		EchoResponse response = new EchoResponse();
+		assertThat(rpcMethodInfo.getOutputSerializedSize(response), is(0));
+		directBuf = toDirectBuffer(compress.compressOutput(response, rpcMethodInfo));
+		try {
+			EchoResponse response2 = (EchoResponse) compress.uncompressOutput(directBuf, rpcMethodInfo);
+			assertThat(response2.getMessage(), nullValue());
+			assertThat(directBuf.readableBytes(), is(0));
+		} finally {
+			directBuf.release();
+		}
+	}
+
+	private static ByteBuf toDirectBuffer(ByteBuf byteBuf) {
+		ByteBuf directBuf = Unpooled.directBuffer(byteBuf.readableBytes()).writeBytes(byteBuf);
+		byteBuf.release();
+		return directBuf;
+	}
+}
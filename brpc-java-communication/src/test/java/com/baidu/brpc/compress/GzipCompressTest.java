@@ -22,12 +22,22 @@ import com.baidu.brpc.protocol.jprotobuf.EchoRequest;
 import com.baidu.brpc.protocol.jprotobuf.EchoResponse;
 import com.baidu.brpc.protocol.standard.Echo;
 import com.baidu.brpc.protocol.standard.EchoService;
+import com.baidu.brpc.utils.IOUtils;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.lang.reflect.Method;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.GZIPInputStream;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
 
 public class GzipCompressTest {
 	private static ProtobufRpcMethodInfo protobufRpcMethodInfo;
@@ -113,4 +123,28 @@ public class GzipCompressTest {
 		Echo.EchoResponse response1 = (Echo.EchoResponse) object;
 		System.out.println(response1.getMessage());
 	}
+
+	@Test
+	public void testCompatibleWithJdkStream() throws IOException {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 1000; i++) {
+			sb.append("hello").append(i);
+		}
+		Echo.EchoRequest request = Echo.EchoRequest.newBuilder().setMessage(sb.toString()).build();
+		ByteBuf byteBuf = compress.compressInput(request, protobufRpcMethodInfo);
+		InputStream inputStream = new GZIPInputStream(new ByteBufInputStream(byteBuf));
+		assertThat(Echo.EchoRequest.parseFrom(IOUtils.readInputStream(inputStream)), is(request));
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		OutputStream outputStream = new GZIPOutputStream(bytes);
+		request.writeTo(outputStream);
+		outputStream.close();
+		Object object = compress.uncompressInput(bytes.toByteArray(), protobufRpcMethodInfo);
+		assertThat((Echo.EchoRequest) object, is(request));
+	}
+
+	@Test
+	public void testEmptyMessage() throws IOException {
+		CompressTestUtils.checkEmptyMessage(compress, jprotobufRpcMethodInfo);
+	}
 }
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2018 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.brpc.compress;
+
+import com.baidu.brpc.JprotobufRpcMethodInfo;
+import com.baidu.brpc.ProtobufRpcMethodInfo;
+import com.baidu.brpc.buffer.DynamicCompositeByteBuf;
+import com.baidu.brpc.protocol.jprotobuf.EchoRequest;
+import com.baidu.brpc.protocol.jprotobuf.EchoResponse;
+import com.baidu.brpc.protocol.standard.Echo;
+import com.baidu.brpc.protocol.standard.EchoService;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import net.jpountz.xxhash.XXHashFactory;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class Lz4CompressTest {
+	private static ProtobufRpcMethodInfo protobufRpcMethodInfo;
+	private static JprotobufRpcMethodInfo jprotobufRpcMethodInfo;
+	private static Lz4Compress compress;
+
+	@BeforeClass
+	public static void beforeClass() throws NoSuchMethodException {
+		Method method = EchoService.class.getMethod("echo", Echo.EchoRequest.class);
+		protobufRpcMethodInfo = new ProtobufRpcMethodInfo(method);
+		Method method1 = com.baidu.brpc.protocol.jprotobuf.EchoService.class.getMethod("echo",
+				EchoRequest.class);
+		jprotobufRpcMethodInfo = new JprotobufRpcMethodInfo(method1);
+		compress = new Lz4Compress();
+	}
+
+	@Test
+	public void testUncompressInputForProtobuf() throws IOException {
+		Echo.EchoRequest request = Echo.EchoRequest.newBuilder().setMessage("hello").build();
+		ByteBuf byteBuf = compress.compressInput(request, protobufRpcMethodInfo);
+		Echo.EchoRequest request2 = (Echo.EchoRequest) compress.uncompressInput(byteBuf, protobufRpcMethodInfo);
+		assertThat(request2.getMessage(), is("hello"));
+		assertThat(byteBuf.readableBytes(), is(0));
+	}
+
+	@Test
+	public void testProtobufEncodeRequestJprotobufDecodeRequest() throws IOException {
+		Echo.EchoRequest request = Echo.EchoRequest.newBuilder().setMessage("hello").build();
+		ByteBuf byteBuf = compress.compressInput(request, protobufRpcMethodInfo);
+		byte[] bytes = new byte[byteBuf.readableBytes()];
+		byteBuf.readBytes(bytes);
+		EchoRequest request2 = (EchoRequest) compress.uncompressInput(bytes, jprotobufRpcMethodInfo);
+		assertThat(request2.getMessage(), is("hello"));
+	}
+
+	@Test
+	public void testJprotobufEncodeResponseProtobufDecodeResponse() throws IOException {
+		EchoResponse response = new EchoResponse();
+		response.setMessage("hello");
+		ByteBuf byteBuf = compress.compressOutput(response, jprotobufRpcMethodInfo);
+		DynamicCompositeByteBuf compositeByteBuf = new DynamicCompositeByteBuf(byteBuf);
+		Echo.EchoResponse response1 = (Echo.EchoResponse) compress.uncompressOutput(
+				compositeByteBuf, protobufRpcMethodInfo);
+		assertThat(response1.getMessage(), is("hello"));
+		compositeByteBuf.release();
+	}
+
+	@Test
+	public void testLargeMessage() throws IOException {
+		StringBuilder sb = new StringBuilder();
+		Random random = new Random(0);
+		while (sb.length() < 5 * 1024 * 1024) {
+			// compressible text with some random parts
+			sb.append("message-").append(random.nextInt(1000)).append(' ');
+		}
+		Echo.EchoResponse response = Echo.EchoResponse.newBuilder().setMessage(sb.toString()).build();
+		ByteBuf byteBuf = compress.compressOutput(response, protobufRpcMethodInfo);
+		assertTrue(byteBuf.readableBytes() < response.getSerializedSize() / 2);
+		ByteBuf directBuf = Unpooled.directBuffer(byteBuf.readableBytes()).writeBytes(byteBuf);
+		Echo.EchoResponse response1 = (Echo.EchoResponse) compress.uncompressOutput(
+				directBuf, protobufRpcMethodInfo);
+		assertThat(response1.getMessage(), is(response.getMessage()));
+		directBuf.release();
+	}
+
+	@Test
+	public void testUncompressFrameWithChecksum() throws IOException {
+		// frame of "hello hello hello hello" written by commons-compress, with content checksum
+		byte[] frame = new byte[] {
+				0x04, 0x22, 0x4d, 0x18, 0x64, 0x70, (byte) 0xb9, 0x16, 0x00, 0x00, 0x00, 0x61, 0x68, 0x65,
+				0x6c, 0x6c, 0x6f, 0x20, 0x06, 0x00, (byte) 0xc0, 0x20, 0x68, 0x65, 0x6c, 0x6c, 0x6f, 0x20,
+				0x68, 0x65, 0x6c, 0x6c, 0x6f, 0x00, 0x00, 0x00, 0x00, (byte) 0xf2, 0x6b, (byte) 0x94, 0x0b};
+		byte[] bytes = compress.uncompress(frame, 0, frame.length);
+		assertThat(new String(bytes, "UTF-8"), is("hello hello hello hello"));
+	}
+
+	@Test
+	public void testUncompressFrameWithHugeContentSize() throws IOException {
+		// empty frame which claims 1GB content
+		byte[] frame = new byte[] {0x04, 0x22, 0x4d, 0x18, 0x68, 0x70, 0, 0, 0, 0x40, 0, 0, 0, 0, 0, 0, 0, 0, 0};
+		frame[14] = (byte) (XXHashFactory.fastestInstance().hash32().hash(frame, 4, 10, 0) >> 8);
+		try {
+			compress.uncompress(frame, 0, frame.length);
+			fail("huge content size should be rejected");
+		} catch (IOException ex) {
+			assertTrue(ex.getMessage().startsWith("bad uncompressed size"));
+		}
+	}
+}
@@ -23,12 +23,19 @@ import com.baidu.brpc.protocol.jprotobuf.EchoResponse;
 import com.baidu.brpc.protocol.standard.Echo;
 import com.baidu.brpc.protocol.standard.EchoService;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import org.junit.BeforeClass;
 import org.junit.Test;
+import org.xerial.snappy.Snappy;
 
 import java.io.IOException;
 import java.lang.reflect.Method;
 
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
 public class SnappyCompressTest {
 	private static ProtobufRpcMethodInfo protobufRpcMethodInfo;
 	private static JprotobufRpcMethodInfo jprotobufRpcMethodInfo;
@@ -113,4 +120,43 @@ public class SnappyCompressTest {
 		Echo.EchoResponse response1 = (Echo.EchoResponse) object;
 		System.out.println(response1.getMessage());
 	}
+
+	@Test
+	public void testRawBlockFormat() throws IOException {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 1000; i++) {
+			sb.append("hello").append(i);
+		}
+		Echo.EchoRequest request = Echo.EchoRequest.newBuilder().setMessage(sb.toString()).build();
+		ByteBuf byteBuf = compress.compressInput(request, protobufRpcMethodInfo);
+		byte[] bytes = new byte[byteBuf.readableBytes()];
+		byteBuf.readBytes(bytes);
+		assertThat(Echo.EchoRequest.parseFrom(Snappy.uncompress(bytes)), is(request));
+
+		Object object = compress.uncompressInput(Snappy.compress(request.toByteArray()), protobufRpcMethodInfo);
+		assertThat((Echo.EchoRequest) object, is(request));
+	}
+
+	@Test
+	public void testUncompressDirectBuffer() throws IOException {
+		Echo.EchoResponse response = Echo.EchoResponse.newBuilder().setMessage("hello").build();
+		ByteBuf byteBuf = compress.compressOutput(response, protobufRpcMethodInfo);
+		ByteBuf directBuf = Unpooled.directBuffer().writeBytes(byteBuf);
+		Object object = compress.uncompressOutput(directBuf, protobufRpcMethodInfo);
+		assertThat((Echo.EchoResponse) object, is(response));
+		assertThat(directBuf.readableBytes(), is(0));
+		directBuf.release();
+	}
+
+	@Test
+	public void testUncompressHugeLength() throws IOException {
+		// block which claims 1GB uncompressed length
+		byte[] bytes = new byte[] {(byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x04, 0x00, 0x61};
+		try {
+			compress.uncompress(bytes, 0, bytes.length);
+			fail("huge length should be rejected");
+		} catch (IOException ex) {
+			assertTrue(ex.getMessage().startsWith("bad uncompressed size"));
+		}
+	}
 }
@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2018 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.brpc.compress;
+
+import com.baidu.brpc.JprotobufRpcMethodInfo;
+import com.baidu.brpc.ProtobufRpcMethodInfo;
+import com.baidu.brpc.buffer.DynamicCompositeByteBuf;
+import com.baidu.brpc.protocol.jprotobuf.EchoRequest;
+import com.baidu.brpc.protocol.jprotobuf.EchoResponse;
+import com.baidu.brpc.protocol.standard.Echo;
+import com.baidu.brpc.protocol.standard.EchoService;
+import com.github.luben.zstd.ZstdDictTrainer;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ZstdCompressTest {
+	private static ProtobufRpcMethodInfo protobufRpcMethodInfo;
+	private static JprotobufRpcMethodInfo jprotobufRpcMethodInfo;
+	private static ZstdCompress compress;
+
+	@BeforeClass
+	public static void beforeClass() throws NoSuchMethodException {
+		Method method = EchoService.class.getMethod("echo", Echo.EchoRequest.class);
+		protobufRpcMethodInfo = new ProtobufRpcMethodInfo(method);
+		Method method1 = com.baidu.brpc.protocol.jprotobuf.EchoService.class.getMethod("echo",
+				EchoRequest.class);
+		jprotobufRpcMethodInfo = new JprotobufRpcMethodInfo(method1);
+		compress = new ZstdCompress();
+	}
+
+	@Test
+	public void testUncompressInputForProtobuf() throws IOException {
+		Echo.EchoRequest request = Echo.EchoRequest.newBuilder().setMessage("hello").build();
+		ByteBuf byteBuf = compress.compressInput(request, protobufRpcMethodInfo);
+		Echo.EchoRequest request2 = (Echo.EchoRequest) compress.uncompressInput(byteBuf, protobufRpcMethodInfo);
+		assertThat(request2.getMessage(), is("hello"));
+		assertThat(byteBuf.readableBytes(), is(0));
+	}
+
+	@Test
+	public void testProtobufEncodeRequestJprotobufDecodeRequest() throws IOException {
+		Echo.EchoRequest request = Echo.EchoRequest.newBuilder().setMessage("hello").build();
+		ByteBuf byteBuf = compress.compressInput(request, protobufRpcMethodInfo);
+		byte[] bytes = new byte[byteBuf.readableBytes()];
+		byteBuf.readBytes(bytes);
+		EchoRequest request2 = (EchoRequest) compress.uncompressInput(bytes, jprotobufRpcMethodInfo);
+		assertThat(request2.getMessage(), is("hello"));
+	}
+
+	@Test
+	public void testJprotobufEncodeResponseProtobufDecodeResponse() throws IOException {
+		EchoResponse response = new EchoResponse();
+		response.setMessage("hello");
+		ByteBuf byteBuf = compress.compressOutput(response, jprotobufRpcMethodInfo);
+		DynamicCompositeByteBuf compositeByteBuf = new DynamicCompositeByteBuf(byteBuf);
+		Echo.EchoResponse response1 = (Echo.EchoResponse) compress.uncompressOutput(
+				compositeByteBuf, protobufRpcMethodInfo);
+		assertThat(response1.getMessage(), is("hello"));
+		compositeByteBuf.release();
+	}
+
+	@Test
+	public void testLargeMessage() throws IOException {
+		StringBuilder sb = new StringBuilder();
+		Random random = new Random(0);
+		while (sb.length() < 5 * 1024 * 1024) {
+			// compressible text with some random parts
+			sb.append("message-").append(random.nextInt(1000)).append(' ');
+		}
+		Echo.EchoResponse response = Echo.EchoResponse.newBuilder().setMessage(sb.toString()).build();
+		ByteBuf byteBuf = compress.compressOutput(response, protobufRpcMethodInfo);
+		assertTrue(byteBuf.readableBytes() < response.getSerializedSize() / 2);
+		ByteBuf directBuf = Unpooled.directBuffer(byteBuf.readableBytes()).writeBytes(byteBuf);
+		Echo.EchoResponse response1 = (Echo.EchoResponse) compress.uncompressOutput(
+				directBuf, protobufRpcMethodInfo);
+		assertThat(response1.getMessage(), is(response.getMessage()));
+		directBuf.release();
+	}
+
+	@Test
+	public void testDictionary() throws IOException {
+		ZstdDictTrainer trainer = new ZstdDictTrainer(1024 * 1024, 4096);
+		for (int i = 0; i < 1000; i++) {
+			Echo.EchoRequest sample = Echo.EchoRequest.newBuilder().setMessage("hello world " + i).build();
+			trainer.addSample(sample.toByteArray());
+		}
+		ZstdCompress dictCompress = new ZstdCompress(ZstdCompress.DEFAULT_LEVEL, trainer.trainSamples());
+		Echo.EchoRequest request = Echo.EchoRequest.newBuilder().setMessage("hello world 1234").build();
+		ByteBuf withDict = dictCompress.compressInput(request, protobufRpcMethodInfo);
+		ByteBuf withoutDict = compress.compressInput(request, protobufRpcMethodInfo);
+		assertTrue(withDict.readableBytes() < withoutDict.readableBytes());
+		Echo.EchoRequest request2 = (Echo.EchoRequest) dictCompress.uncompressInput(withDict, protobufRpcMethodInfo);
+		assertThat(request2.getMessage(), is(request.getMessage()));
+	}
+
+	@Test
+	public void testUncompressFrameWithHugeContentSize() throws IOException {
+		// frame header which claims 1GB content, followed by garbage
+		byte[] frame = new byte[] {0x28, (byte) 0xb5, 0x2f, (byte) 0xfd, (byte) 0xe0,
+				0, 0, 0, 0x40, 0, 0, 0, 0, 1, 0, 0, 0};
+		try {
+			compress.uncompress(frame, 0, frame.length);
+			fail("huge content size should be rejected");
+		} catch (IOException ex) {
+			assertTrue(ex.getMessage().startsWith("bad uncompressed size"));
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void testMaxUncompressedSize() throws IOException {
+		ZstdCompress sizeLimitedCompress = new ZstdCompress();
+		sizeLimitedCompress.setMaxUncompressedSize(1024);
+		ByteBuf byteBuf = sizeLimitedCompress.compress(new byte[4096]);
+		byte[] bytes = new byte[byteBuf.readableBytes()];
+		byteBuf.readBytes(bytes);
+		sizeLimitedCompress.uncompress(bytes, 0, bytes.length);
+	}
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright (c) 2018 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.brpc.compress;
+
+import com.baidu.brpc.JprotobufRpcMethodInfo;
+import com.baidu.brpc.ProtobufRpcMethodInfo;
+import com.baidu.brpc.protocol.Options;
+import com.baidu.brpc.protocol.RpcRequest;
+import com.baidu.brpc.protocol.jprotobuf.EchoRequest;
+import com.baidu.brpc.protocol.jprotobuf.EchoResponse;
+import com.baidu.brpc.protocol.standard.Echo;
+import com.baidu.brpc.protocol.standard.EchoService;
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdDictTrainer;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.base64.Base64;
+import io.netty.util.CharsetUtil;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class ZstdDictionaryManagerTest {
+	private static final int ZSTD = Options.CompressType.COMPRESS_TYPE_ZSTD_VALUE;
+
+	@Test
+	public void testNegotiation() throws Exception {
+		ProtobufRpcMethodInfo rpcMethodInfo = new ProtobufRpcMethodInfo(
+				EchoService.class.getMethod("echo", Echo.EchoRequest.class));
+		ZstdDictionaryManager dictionaryManager = ZstdDictionaryManager.getInstance();
+		ZstdCompress compress = new ZstdCompress();
+		byte[] dictionary = trainDictionary("response of echo ");
+		long dictId = Zstd.getDictIdFromDict(dictionary);
+		Echo.EchoResponse response = Echo.EchoResponse.newBuilder().setMessage("response of echo 1234").build();
+
+		// server does not hold the dictionary, so response is plain zstd
+		RpcRequest request = new RpcRequest();
+		Map<String, Object> kvAttachment = new HashMap<String, Object>();
+		kvAttachment.put(ZstdDictionaryManager.DICT_ID_KEY, String.valueOf(dictId));
+		request.setKvAttachment(kvAttachment);
+		EmbeddedChannel channel = new EmbeddedChannel();
+		dictionaryManager.negotiate(request, channel, true);
+		assertThat(dictionaryManager.getNegotiatedDictionary(), nullValue());
+		ByteBuf plain = compress.compressOutput(response, rpcMethodInfo);
+		dictionaryManager.clearNegotiatedDictionary();
+
+		// dictionary shipped by client is registered and used
+		ByteBuf encoded = Base64.encode(Unpooled.wrappedBuffer(dictionary), false);
+		kvAttachment.put(ZstdDictionaryManager.DICT_KEY, encoded.toString(CharsetUtil.US_ASCII));
+		encoded.release();
+		dictionaryManager.negotiate(request, channel, false);
+		assertThat(dictionaryManager.getNegotiatedDictionary(), nullValue());
+		dictionaryManager.negotiate(request, channel, true);
+		assertThat(dictionaryManager.getNegotiatedDictionary().getId(), is(dictId));
+		ByteBuf withDict = compress.compressOutput(response, rpcMethodInfo);
+		dictionaryManager.clearNegotiatedDictionary();
+		assertTrue(withDict.readableBytes() < plain.readableBytes());
+
+		// shipped dictionary is kept by the connection only
+		kvAttachment.remove(ZstdDictionaryManager.DICT_KEY);
+		dictionaryManager.negotiate(request, channel, true);
+		assertThat(dictionaryManager.getNegotiatedDictionary().getId(), is(dictId));
+		dictionaryManager.negotiate(request, new EmbeddedChannel(), true);
+		assertThat(dictionaryManager.getNegotiatedDictionary(), nullValue());
+		assertThat(dictionaryManager.getDictionary(dictId), nullValue());
+
+		// client ships the dictionary until server of the connection is seen to use it
+		dictionaryManager.setDictionary(Echo.EchoResponse.class, dictionary);
+		EmbeddedChannel clientChannel = new EmbeddedChannel();
+		RpcRequest clientRequest = newRequest(rpcMethodInfo, clientChannel);
+		dictionaryManager.attachDictionary(clientRequest);
+		assertThat((String) clientRequest.getKvAttachment().get(ZstdDictionaryManager.DICT_ID_KEY),
+				is(String.valueOf(dictId)));
+		assertThat(clientRequest.getKvAttachment().get(ZstdDictionaryManager.DICT_KEY), notNullValue());
+
+		assertThat(receiveResponse(compress, withDict, rpcMethodInfo, clientChannel), is((Object) response));
+		clientRequest = newRequest(rpcMethodInfo, clientChannel);
+		dictionaryManager.attachDictionary(clientRequest);
+		assertThat(clientRequest.getKvAttachment().get(ZstdDictionaryManager.DICT_ID_KEY), notNullValue());
+		assertThat(clientRequest.getKvAttachment().get(ZstdDictionaryManager.DICT_KEY), nullValue());
+		// other connections still ship it
+		clientRequest = newRequest(rpcMethodInfo, new EmbeddedChannel());
+		dictionaryManager.attachDictionary(clientRequest);
+		assertThat(clientRequest.getKvAttachment().get(ZstdDictionaryManager.DICT_KEY), notNullValue());
+
+		// a plain response means the server lost the dictionary, so ship it again
+		assertThat(receiveResponse(compress, plain, rpcMethodInfo, clientChannel), is((Object) response));
+		clientRequest = newRequest(rpcMethodInfo, clientChannel);
+		dictionaryManager.attachDictionary(clientRequest);
+		assertThat(clientRequest.getKvAttachment().get(ZstdDictionaryManager.DICT_KEY), notNullValue());
+
+		// kv attachment of user is modified in place
+		Map<String, Object> userKvAttachment = new HashMap<String, Object>();
+		userKvAttachment.put("key", "value");
+		clientRequest = newRequest(rpcMethodInfo, clientChannel);
+		clientRequest.setKvAttachment(userKvAttachment);
+		dictionaryManager.attachDictionary(clientRequest);
+		assertThat(clientRequest.getKvAttachment(), sameInstance(userKvAttachment));
+		assertThat((String) userKvAttachment.get(ZstdDictionaryManager.DICT_ID_KEY), is(String.valueOf(dictId)));
+	}
+
+	@Test
+	public void testShipPerConnection() throws Exception {
+		ProtobufRpcMethodInfo rpcMethodInfo = new ProtobufRpcMethodInfo(
+				EchoService.class.getMethod("echo", Echo.EchoRequest.class));
+		ZstdDictionaryManager dictionaryManager = ZstdDictionaryManager.getInstance();
+		ZstdCompress compress = new ZstdCompress();
+		dictionaryManager.setDictionary(Echo.EchoResponse.class, trainDictionary("shipped response "));
+		Echo.EchoResponse response = Echo.EchoResponse.newBuilder().setMessage("shipped response 1234").build();
+
+		// one connection to a server using the dictionary, the other to a server not accepting it
+		EmbeddedChannel acceptedChannel = new EmbeddedChannel();
+		EmbeddedChannel acceptedServerChannel = new EmbeddedChannel();
+		EmbeddedChannel refusedChannel = new EmbeddedChannel();
+		int refusedShipNum = 0;
+		for (int i = 0; i < 20; i++) {
+			boolean shipped = call(compress, response, rpcMethodInfo, acceptedChannel, acceptedServerChannel);
+			// plain responses of the other connection do not make it ship again
+			assertThat(shipped, is(i == 0));
+			if (call(compress, response, rpcMethodInfo, refusedChannel, null)) {
+				refusedShipNum++;
+			}
+		}
+		// refused after a few plain responses, not shipped on every request
+		assertThat(refusedShipNum > 0 && refusedShipNum < 20, is(true));
+		RpcRequest request = newRequest(rpcMethodInfo, refusedChannel);
+		dictionaryManager.attachDictionary(request);
+		assertThat(request.getKvAttachment().get(ZstdDictionaryManager.DICT_ID_KEY), notNullValue());
+		assertThat(request.getKvAttachment().get(ZstdDictionaryManager.DICT_KEY), nullValue());
+	}
+
+	@Test
+	public void testTraining() throws Exception {
+		JprotobufRpcMethodInfo rpcMethodInfo = new JprotobufRpcMethodInfo(
+				com.baidu.brpc.protocol.jprotobuf.EchoService.class.getMethod("echo", EchoRequest.class));
+		ZstdDictionaryManager dictionaryManager = ZstdDictionaryManager.getInstance();
+		ZstdCompress compress = new ZstdCompress();
+		dictionaryManager.setSampleRate(1);
+		dictionaryManager.setSampleNum(500);
+		dictionaryManager.setDictSize(2048);
+		dictionaryManager.setTrainingEnabled(true);
+		try {
+			for (int i = 0; i < 500; i++) {
+				EchoResponse response = new EchoResponse();
+				response.setMessage("trained response " + i);
+				ByteBuf byteBuf = compress.compressOutput(response, rpcMethodInfo);
+				compress.uncompressOutput(byteBuf, rpcMethodInfo);
+			}
+			for (int i = 0; i < 100 && dictionaryManager.getTypeDictionary(EchoResponse.class) == null; i++) {
+				Thread.sleep(100);
+			}
+			assertThat(dictionaryManager.getTypeDictionary(EchoResponse.class), notNullValue());
+		} finally {
+			dictionaryManager.setTrainingEnabled(false);
+			dictionaryManager.setSampleRate(10);
+			dictionaryManager.setSampleNum(1000);
+			dictionaryManager.setDictSize(16 * 1024);
+		}
+	}
+
+	/**
+	 * send a request on the client channel, and receive the response from the server,
+	 * which uses dictionaries only when serverChannel is not null.
+	 *
+	 * @return whether the dictionary is shipped by the request
+	 */
+	private static boolean call(ZstdCompress compress, Echo.EchoResponse response,
+								ProtobufRpcMethodInfo rpcMethodInfo, Channel clientChannel,
+								Channel serverChannel) throws Exception {
+		ZstdDictionaryManager dictionaryManager = ZstdDictionaryManager.getInstance();
+		RpcRequest request = newRequest(rpcMethodInfo, clientChannel);
+		dictionaryManager.attachDictionary(request);
+		ByteBuf responseBuf;
+		if (serverChannel != null) {
+			dictionaryManager.negotiate(request, serverChannel, true);
+		}
+		try {
+			responseBuf = compress.compressOutput(response, rpcMethodInfo);
+		} finally {
+			dictionaryManager.clearNegotiatedDictionary();
+		}
+		assertThat(receiveResponse(compress, responseBuf, rpcMethodInfo, clientChannel), is((Object) response));
+		return request.getKvAttachment().containsKey(ZstdDictionaryManager.DICT_KEY);
+	}
+
+	private static Object receiveResponse(ZstdCompress compress, ByteBuf responseBuf,
+										  ProtobufRpcMethodInfo rpcMethodInfo, Channel channel) throws Exception {
+		ZstdDictionaryManager dictionaryManager = ZstdDictionaryManager.getInstance();
+		dictionaryManager.setResponseChannel(channel);
+		try {
+			return compress.uncompressOutput(responseBuf, rpcMethodInfo);
+		} finally {
+			dictionaryManager.clearResponseChannel();
+		}
+	}
+
+	private static byte[] trainDictionary(String messagePrefix) {
+		ZstdDictTrainer trainer = new ZstdDictTrainer(1024 * 1024, 4096);
+		for (int i = 0; i < 1000; i++) {
+			trainer.addSample(Echo.EchoResponse.newBuilder().setMessage(messagePrefix + i).build()
+					.toByteArray());
+		}
+		return trainer.trainSamples();
+	}
+
+	private static RpcRequest newRequest(ProtobufRpcMethodInfo rpcMethodInfo, Channel channel) {
+		RpcRequest request = new RpcRequest();
+		request.setCompressType(ZSTD);
+		request.setRpcMethodInfo(rpcMethodInfo);
+		request.setChannel(channel);
+		return request;
+	}
+}
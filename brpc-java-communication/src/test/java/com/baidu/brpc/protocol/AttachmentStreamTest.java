@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.brpc.protocol;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+public class AttachmentStreamTest {
+
+    @Test
+    public void testChunksBeforeSubscribeAreKept() {
+        AttachmentStream stream = new AttachmentStream(1, 6);
+        ByteBuf chunk1 = Unpooled.wrappedBuffer("abc".getBytes());
+        assertTrue(stream.offer(chunk1));
+        CollectListener listener = new CollectListener();
+        stream.subscribe(listener);
+        assertEquals("abc", listener.content());
+        assertFalse(listener.completed);
+
+        ByteBuf chunk2 = Unpooled.wrappedBuffer("def".getBytes());
+        assertFalse(stream.offer(chunk2));
+        assertEquals("abcdef", listener.content());
+        assertTrue(listener.completed);
+        assertTrue(stream.isComplete());
+    }
+
+    @Test
+    public void testWindowExceeded() {
+        AttachmentStream stream = new AttachmentStream(1, 10, 4);
+        ByteBuf chunk1 = Unpooled.wrappedBuffer("abc".getBytes());
+        ByteBuf chunk2 = Unpooled.wrappedBuffer("def".getBytes());
+        assertTrue(stream.offer(chunk1));
+        assertFalse(stream.offer(chunk2));
+        assertEquals(0, chunk1.refCnt());
+        assertEquals(0, chunk2.refCnt());
+
+        CollectListener listener = new CollectListener();
+        stream.subscribe(listener);
+        assertNotNull(listener.cause);
+        assertEquals("", listener.content());
+    }
+
+    @Test
+    public void testCancel() {
+        AttachmentStream stream = new AttachmentStream(1, 6);
+        ByteBuf chunk1 = Unpooled.wrappedBuffer("abc".getBytes());
+        ByteBuf chunk2 = Unpooled.wrappedBuffer("def".getBytes());
+        stream.offer(chunk1);
+        stream.cancel();
+        assertEquals(0, chunk1.refCnt());
+        assertFalse(stream.offer(chunk2));
+        assertEquals(0, chunk2.refCnt());
+    }
+
+    @Test
+    public void testFailAfterCompleteIsIgnored() {
+        AttachmentStream stream = new AttachmentStream(1, 3);
+        stream.offer(Unpooled.wrappedBuffer("abc".getBytes()));
+        stream.fail(new RuntimeException("closed"));
+        CollectListener listener = new CollectListener();
+        stream.subscribe(listener);
+        assertEquals("abc", listener.content());
+        assertTrue(listener.completed);
+        assertEquals(null, listener.cause);
+    }
+
+    private static class CollectListener implements AttachmentStream.Listener {
+        private List<String> chunks = new ArrayList<String>();
+        private boolean completed;
+        private Throwable cause;
+
+        @Override
+        public void onChunk(ByteBuf chunk) {
+            byte[] bytes = new byte[chunk.readableBytes()];
+            chunk.readBytes(bytes);
+            chunk.release();
+            chunks.add(new String(bytes));
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+        }
+
+        @Override
+        public void onError(Throwable cause) {
+            this.cause = cause;
+        }
+
+        private String content() {
+            StringBuilder sb = new StringBuilder();
+            for (String chunk : chunks) {
+                sb.append(chunk);
+            }
+            return sb.toString();
+        }
+    }
+}
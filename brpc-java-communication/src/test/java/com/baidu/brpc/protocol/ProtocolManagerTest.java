@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.brpc.protocol;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.List;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.baidu.brpc.CommunicationSpiManager;
+import com.baidu.brpc.buffer.DynamicCompositeByteBuf;
+import com.baidu.brpc.protocol.http.HttpRpcProtocol;
+import com.baidu.brpc.protocol.hulu.HuluRpcProtocol;
+import com.baidu.brpc.protocol.push.impl.DefaultSPHead;
+import com.baidu.brpc.protocol.push.impl.DefaultServerPushProtocol;
+import com.baidu.brpc.protocol.standard.BaiduRpcProtocol;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+public class ProtocolManagerTest {
+
+    @BeforeClass
+    public static void beforeClass() {
+        CommunicationSpiManager.getInstance().loadAllExtensions("utf-8");
+    }
+
+    @Test
+    public void testSniffProtocols() {
+        assertSniffed("PRPC0000000000000000", BaiduRpcProtocol.class);
+        assertSniffed("HULU0000000000000000", HuluRpcProtocol.class);
+        assertSniffed("POST /example HTTP/1.1\r\n", HttpRpcProtocol.class);
+
+        ByteBuf pushHead = new DefaultServerPushProtocol("utf-8").headToBytes(new DefaultSPHead());
+        DynamicCompositeByteBuf in = new DynamicCompositeByteBuf(pushHead);
+        assertThat(ProtocolManager.getInstance().sniffProtocols(in).get(0),
+                instanceOf(DefaultServerPushProtocol.class));
+        in.release();
+    }
+
+    @Test
+    public void testSniffShortPacket() {
+        DynamicCompositeByteBuf in = new DynamicCompositeByteBuf(Unpooled.wrappedBuffer("PR".getBytes()));
+        ProtocolManager protocolManager = ProtocolManager.getInstance();
+        assertThat(protocolManager.sniffProtocols(in), is(protocolManager.getCoexistenceProtocols()));
+        in.release();
+    }
+
+    @Test
+    public void testSniffUnknownPacket() {
+        DynamicCompositeByteBuf in = new DynamicCompositeByteBuf(
+                Unpooled.wrappedBuffer(new byte[DefaultSPHead.SPHEAD_LENGTH]));
+        assertThat(ProtocolManager.getInstance().sniffProtocols(in).size(), is(0));
+        in.release();
+    }
+
+    private void assertSniffed(String packet, Class protocolClass) {
+        DynamicCompositeByteBuf in = new DynamicCompositeByteBuf(Unpooled.wrappedBuffer(packet.getBytes()));
+        List<Protocol> protocols = ProtocolManager.getInstance().sniffProtocols(in);
+        assertThat(protocols.get(0), instanceOf(protocolClass));
+        assertThat(in.readableBytes(), is(packet.length()));
+        in.release();
+    }
+}
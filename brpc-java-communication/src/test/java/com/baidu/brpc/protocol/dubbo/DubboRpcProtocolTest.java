@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.brpc.protocol.dubbo;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.baidu.brpc.buffer.DynamicCompositeByteBuf;
+import com.baidu.brpc.protocol.Request;
+import com.baidu.brpc.protocol.Response;
+import com.baidu.brpc.protocol.RpcRequest;
+import com.baidu.brpc.protocol.RpcResponse;
+import com.baidu.brpc.server.ServiceManager;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.Unpooled;
+
+public class DubboRpcProtocolTest {
+
+    public interface DubboEchoService {
+        String echo(String message, List<Integer> ids);
+    }
+
+    public static class DubboEchoServiceImpl implements DubboEchoService {
+        @Override
+        public String echo(String message, List<Integer> ids) {
+            return message + ids;
+        }
+    }
+
+    @Test
+    public void testRequestBody() throws Exception {
+        ServiceManager.getInstance().registerService(new DubboEchoServiceImpl());
+        Method method = DubboEchoService.class.getMethod("echo", String.class, List.class);
+        assertThat(ReflectUtils.getParameterDesc(method), is("Ljava/lang/String;Ljava/util/List;"));
+        assertThat(ReflectUtils.getParameterTypes(method), sameInstance(ReflectUtils.getParameterTypes(method)));
+
+        DubboRequestBody requestBody = new DubboRequestBody();
+        requestBody.setPath(DubboEchoService.class.getName());
+        requestBody.setVersion("1.0.0");
+        requestBody.setMethodName("echo");
+        requestBody.setParameterTypes(ReflectUtils.getParameterTypes(method));
+        requestBody.setParameterDesc(ReflectUtils.getParameterDesc(method));
+        requestBody.setArguments(new Object[] {"hello", Arrays.asList(1, 2)});
+        requestBody.getAttachments().put("group", "normal");
+        ByteBuf bodyBuf = Unpooled.buffer();
+        requestBody.encodeRequestBody(new ByteBufOutputStream(bodyBuf));
+
+        DubboRequestBody decodedBody = DubboRequestBody.decodeRequestBody(bodyBuf);
+        assertThat(decodedBody.getRpcMethodInfo().getMethod(), is(method));
+        assertThat(decodedBody.getParameterTypes(), sameInstance(ReflectUtils.getParameterTypes(method)));
+        assertThat(decodedBody.getArguments()[0], is((Object) "hello"));
+        assertThat(decodedBody.getArguments()[1], is((Object) Arrays.asList(1, 2)));
+        assertThat(decodedBody.getAttachments().get("group"), is("normal"));
+    }
+
+    @Test
+    public void testEncodeResponse() throws Exception {
+        DubboRpcProtocol protocol = new DubboRpcProtocol();
+        Request request = new RpcRequest();
+        Response response = new RpcResponse();
+        response.setCorrelationId(10);
+        response.setResult("hello");
+        ByteBuf packet = protocol.encodeResponse(request, response);
+
+        DubboPacket dubboPacket = (DubboPacket) protocol.decode(null, new DynamicCompositeByteBuf(packet), false);
+        assertThat(dubboPacket.getHeader().getCorrelationId(), is(10L));
+        assertThat(dubboPacket.getHeader().getStatus(), is(DubboConstants.RESPONSE_OK));
+        assertThat(dubboPacket.getHeader().getBodyLength(), is(dubboPacket.getBodyBuf().readableBytes()));
+        DubboResponseBody responseBody = DubboResponseBody.decodeResponseBody(dubboPacket.getBodyBuf());
+        assertThat(responseBody.getResult(), is((Object) "hello"));
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.brpc.protocol.http;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import com.baidu.brpc.buffer.DynamicCompositeByteBuf;
+import com.baidu.brpc.protocol.Options;
+
+import io.netty.buffer.Unpooled;
+
+public class HttpRpcProtocolTest {
+    private HttpRpcProtocol protocol = new HttpRpcProtocol(
+            Options.ProtocolType.PROTOCOL_HTTP_JSON_VALUE, "utf-8");
+
+    @Test
+    public void testCheckFrame() {
+        DynamicCompositeByteBuf in = new DynamicCompositeByteBuf();
+        in.addBuffer(Unpooled.wrappedBuffer("POST /example HTTP/1.1\r\nHost: localhost\r\n".getBytes()));
+        // header is not complete
+        assertEquals(1, protocol.checkFrame(in));
+
+        in.addBuffer(Unpooled.wrappedBuffer("Content-Length: 10\r\n\r\nabc".getBytes()));
+        assertEquals(7, protocol.checkFrame(in));
+
+        in.addBuffer(Unpooled.wrappedBuffer("defghij".getBytes()));
+        assertEquals(0, protocol.checkFrame(in));
+        in.release();
+    }
+
+    @Test
+    public void testCheckFrameWithoutBody() {
+        DynamicCompositeByteBuf in = new DynamicCompositeByteBuf(
+                Unpooled.wrappedBuffer("GET /status HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes()));
+        assertEquals(0, protocol.checkFrame(in));
+        in.release();
+    }
+
+    @Test
+    public void testCheckFrameAcrossReads() {
+        DynamicCompositeByteBuf in = new DynamicCompositeByteBuf();
+        // header name is case insensitive, and header end is split between reads
+        in.addBuffer(Unpooled.wrappedBuffer("POST /a HTTP/1.1\r\nCONTENT-length:  3 \r\n\r".getBytes()));
+        assertEquals(1, protocol.checkFrame(in));
+        in.addBuffer(Unpooled.wrappedBuffer("\nabcPOST /b HTTP/1.1\r\ncontent-length: 2\r\n\r\nd".getBytes()));
+        assertEquals(0, protocol.checkFrame(in));
+
+        // next frame is scanned from its own start after the first frame is read
+        in.skipBytes("POST /a HTTP/1.1\r\nCONTENT-length:  3 \r\n\r\nabc".length());
+        assertEquals(1, protocol.checkFrame(in));
+        in.release();
+    }
+
+    @Test
+    public void testCheckFrameWithBadContentLength() {
+        DynamicCompositeByteBuf in = new DynamicCompositeByteBuf(
+                Unpooled.wrappedBuffer("POST /a HTTP/1.1\r\nContent-Length: 1 2\r\n\r\n".getBytes()));
+        // left to decode to report the error
+        assertEquals(0, protocol.checkFrame(in));
+        in.release();
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.brpc.protocol.standard;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.junit.Test;
+
+import com.baidu.brpc.ChannelInfo;
+import com.baidu.brpc.buffer.DynamicCompositeByteBuf;
+import com.baidu.brpc.protocol.AttachmentStream;
+import com.baidu.brpc.protocol.Options;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+public class BaiduRpcChunkTest {
+    private BaiduRpcProtocol protocol = new BaiduRpcProtocol();
+
+    @Test
+    public void testDecodeChunks() throws Exception {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        ChannelInfo channelInfo = ChannelInfo.getOrCreateServerChannelInfo(channel);
+        ChannelHandlerContext ctx = mock(ChannelHandlerContext.class);
+        when(ctx.channel()).thenReturn(channel);
+
+        // head packet
+        BaiduRpcEncodePacket headPacket = new BaiduRpcEncodePacket();
+        headPacket.setRpcMeta(BaiduRpcProto.RpcMeta.newBuilder()
+                .setCorrelationId(7)
+                .setAttachmentSize(6)
+                .setChunkInfo(Options.ChunkInfo.newBuilder().setStreamId(7).setChunkId(0))
+                .build());
+        headPacket.setProto(Unpooled.wrappedBuffer("proto".getBytes()));
+
+        DynamicCompositeByteBuf in = new DynamicCompositeByteBuf();
+        in.addBuffer(protocol.encode(headPacket));
+        in.addBuffer(protocol.encodeChunk(7, 1, Unpooled.wrappedBuffer("abc".getBytes())));
+
+        BaiduRpcDecodePacket packet = protocol.decode(ctx, in, true);
+        AttachmentStream stream = packet.getAttachmentStream();
+        assertNotNull(stream);
+        assertEquals(6, stream.getTotalSize());
+        assertEquals(5, packet.getProtoAndAttachmentBuf().readableBytes());
+        packet.getMetaBuf().release();
+        packet.getProtoAndAttachmentBuf().release();
+
+        // the chunk is consumed by decode, no packet is returned
+        assertEquals(0, protocol.checkFrame(in));
+        assertNull(protocol.decode(ctx, in, true));
+        assertEquals(0, in.readableBytes());
+        assertEquals(3, stream.getReceivedSize());
+
+        in.addBuffer(protocol.encodeChunk(7, 2, Unpooled.wrappedBuffer("def".getBytes())));
+        assertNull(protocol.decode(ctx, in, true));
+        assertTrue(stream.isComplete());
+        assertNull(channelInfo.getAttachmentStream(7));
+
+        final StringBuilder sb = new StringBuilder();
+        stream.subscribe(new AttachmentStream.Listener() {
+            @Override
+            public void onChunk(ByteBuf chunk) {
+                byte[] bytes = new byte[chunk.readableBytes()];
+                chunk.readBytes(bytes);
+                chunk.release();
+                sb.append(new String(bytes));
+            }
+
+            @Override
+            public void onComplete() {
+                sb.append("$");
+            }
+
+            @Override
+            public void onError(Throwable cause) {
+            }
+        });
+        assertEquals("abcdef$", sb.toString());
+        channel.close();
+    }
+
+    @Test
+    public void testConnectionWindow() throws Exception {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        ChannelInfo channelInfo = ChannelInfo.getOrCreateServerChannelInfo(channel);
+        channelInfo.setAttachmentWindowSize(100);
+        channelInfo.setAttachmentConnectionWindowSize(10);
+        ChannelHandlerContext ctx = mock(ChannelHandlerContext.class);
+        when(ctx.channel()).thenReturn(channel);
+
+        AttachmentStream stream1 = decodeHead(ctx, 1, 8);
+        AttachmentStream stream2 = decodeHead(ctx, 2, 8);
+        assertEquals(100, stream1.getWindowSize());
+
+        DynamicCompositeByteBuf in = new DynamicCompositeByteBuf();
+        in.addBuffer(protocol.encodeChunk(1, 1, Unpooled.wrappedBuffer("abcde".getBytes())));
+        in.addBuffer(protocol.encodeChunk(2, 1, Unpooled.wrappedBuffer("abcdef".getBytes())));
+        assertNull(protocol.decode(ctx, in, true));
+        assertNull(protocol.decode(ctx, in, true));
+
+        // the newest stream fails when streams of the channel keep more than the window
+        assertNotNull(stream2.getCause());
+        assertEquals(0, stream2.getPendingSize());
+        assertNull(channelInfo.getAttachmentStream(2));
+        assertNull(stream1.getCause());
+        assertEquals(5, stream1.getPendingSize());
+        assertEquals(5, channelInfo.getAttachmentPendingSize().get());
+
+        stream1.cancel();
+        assertEquals(0, channelInfo.getAttachmentPendingSize().get());
+        channel.close();
+    }
+
+    private AttachmentStream decodeHead(ChannelHandlerContext ctx, long streamId, int attachmentSize)
+            throws Exception {
+        BaiduRpcEncodePacket headPacket = new BaiduRpcEncodePacket();
+        headPacket.setRpcMeta(BaiduRpcProto.RpcMeta.newBuilder()
+                .setCorrelationId(streamId)
+                .setAttachmentSize(attachmentSize)
+                .setChunkInfo(Options.ChunkInfo.newBuilder().setStreamId(streamId).setChunkId(0))
+                .build());
+        headPacket.setProto(Unpooled.wrappedBuffer("proto".getBytes()));
+        DynamicCompositeByteBuf in = new DynamicCompositeByteBuf(protocol.encode(headPacket));
+        BaiduRpcDecodePacket packet = protocol.decode(ctx, in, true);
+        packet.getMetaBuf().release();
+        packet.getProtoAndAttachmentBuf().release();
+        return packet.getAttachmentStream();
+    }
+
+    @Test
+    public void testCheckFrame() throws Exception {
+        BaiduRpcEncodePacket packet = new BaiduRpcEncodePacket();
+        packet.setRpcMeta(BaiduRpcProto.RpcMeta.newBuilder().setCorrelationId(1).build());
+        packet.setProto(Unpooled.wrappedBuffer("proto".getBytes()));
+        ByteBuf buf = protocol.encode(packet);
+        int frameSize = buf.readableBytes();
+
+        DynamicCompositeByteBuf in = new DynamicCompositeByteBuf();
+        assertEquals(12, protocol.checkFrame(in));
+        in.addBuffer(buf.readRetainedSlice(12));
+        assertEquals(frameSize - 12, protocol.checkFrame(in));
+        in.addBuffer(buf);
+        assertEquals(0, protocol.checkFrame(in));
+        // reader index is not changed
+        assertEquals(frameSize, in.readableBytes());
+        in.release();
+    }
+}
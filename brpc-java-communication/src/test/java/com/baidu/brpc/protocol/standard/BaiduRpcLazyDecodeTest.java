@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.brpc.protocol.standard;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.baidu.brpc.ChannelInfo;
+import com.baidu.brpc.RpcMethodInfo;
+import com.baidu.brpc.buffer.DynamicCompositeByteBuf;
+import com.baidu.brpc.exceptions.RpcException;
+import com.baidu.brpc.protocol.Request;
+import com.baidu.brpc.protocol.RpcRequest;
+import com.baidu.brpc.server.ServiceManager;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.CharsetUtil;
+
+public class BaiduRpcLazyDecodeTest {
+    private BaiduRpcProtocol protocol = new BaiduRpcProtocol();
+    private RpcMethodInfo methodInfo;
+    private EmbeddedChannel channel;
+    private ChannelHandlerContext ctx;
+
+    @Before
+    public void setUp() {
+        ServiceManager serviceManager = ServiceManager.getInstance();
+        serviceManager.registerService(new EchoServiceImpl(), null);
+        methodInfo = serviceManager.getService("example.EchoService", "Echo");
+        methodInfo.setLazyDecode(true);
+        channel = new EmbeddedChannel();
+        ChannelInfo.getOrCreateServerChannelInfo(channel);
+        ctx = mock(ChannelHandlerContext.class);
+        when(ctx.channel()).thenReturn(channel);
+    }
+
+    @After
+    public void tearDown() {
+        methodInfo.setLazyDecode(false);
+        channel.close();
+    }
+
+    @Test
+    public void testDecodeOnFirstAccess() throws Exception {
+        Request request = decodeRequest("hello", null);
+        ByteBuf encodedBody = request.getEncodedBody();
+        assertNotNull(encodedBody);
+        assertNull(request.getBinaryAttachment());
+
+        Object[] args = request.getArgs();
+        assertEquals("hello", ((Echo.EchoRequest) args[0]).getMessage());
+        assertSame(args, request.getArgs());
+        // body can still be forwarded after decoding
+        assertTrue(encodedBody.isReadable());
+
+        request.release();
+        assertEquals(0, encodedBody.refCnt());
+        assertNull(request.getEncodedBody());
+    }
+
+    @Test
+    public void testDecodeWithAttachment() throws Exception {
+        Request request = decodeRequest("hello", "attachment");
+        assertEquals("attachment", request.getBinaryAttachment().toString(CharsetUtil.UTF_8));
+        assertEquals("hello", ((Echo.EchoRequest) request.getArgs()[0]).getMessage());
+        request.release();
+    }
+
+    @Test
+    public void testDecodeFailed() throws Exception {
+        Request request = decodeRequest("hello", null);
+        request.getEncodedBody().release();
+        request.setEncodedBody(Unpooled.wrappedBuffer(new byte[] {(byte) 0xff, (byte) 0xff}));
+        try {
+            request.getArgs();
+            fail("decode should fail");
+        } catch (RpcException ex) {
+            assertEquals(RpcException.SERIALIZATION_EXCEPTION, ex.getCode());
+        }
+        request.release();
+    }
+
+    @Test
+    public void testDecodeRequestHeader() throws Exception {
+        methodInfo.setLazyDecode(false);
+        Request request = decodeRequest("hello", null, true);
+        assertSame(methodInfo, request.getRpcMethodInfo());
+        assertEquals(1, request.getCorrelationId());
+        assertNotNull(request.getEncodedBody());
+        assertEquals("hello", ((Echo.EchoRequest) request.getArgs()[0]).getMessage());
+        request.release();
+
+        // methods not annotated are decoded at once by decodeRequest
+        request = decodeRequest("hello", null, false);
+        assertNull(request.getEncodedBody());
+        request.release();
+    }
+
+    private Request decodeRequest(String message, String attachment) throws Exception {
+        return decodeRequest(message, attachment, false);
+    }
+
+    private Request decodeRequest(String message, String attachment, boolean headerOnly) throws Exception {
+        RpcRequest rpcRequest = new RpcRequest();
+        rpcRequest.setCorrelationId(1);
+        rpcRequest.setServiceName(methodInfo.getServiceName());
+        rpcRequest.setMethodName(methodInfo.getMethodName());
+        rpcRequest.setRpcMethodInfo(methodInfo);
+        rpcRequest.setArgs(new Object[] {Echo.EchoRequest.newBuilder().setMessage(message).build()});
+        if (attachment != null) {
+            rpcRequest.setBinaryAttachment(Unpooled.wrappedBuffer(attachment.getBytes()));
+        }
+        DynamicCompositeByteBuf in = new DynamicCompositeByteBuf();
+        in.addBuffer(protocol.encodeRequest(rpcRequest));
+        BaiduRpcDecodePacket packet = protocol.decode(ctx, in, true);
+        Request request = headerOnly ? protocol.decodeRequestHeader(packet) : protocol.decodeRequest(packet);
+        assertNull(request.getException());
+        return request;
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.brpc.serialize;
+
+import com.baidu.brpc.RpcMethodInfo;
+import com.baidu.brpc.SerializerRpcMethodInfo;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+
+public class FlatSerializerTest {
+	public static class EchoMessage extends FlatMessage {
+		public EchoMessage(ByteBuf buf) {
+			super(buf);
+		}
+
+		public static EchoMessage create(String message, long id) {
+			return new EchoMessage(new FlatMessageBuilder(3)
+					.addString(0, message)
+					.addLong(1, id)
+					.finish());
+		}
+
+		public String getMessage() {
+			return getString(0);
+		}
+
+		public long getId() {
+			return getLong(1, 0);
+		}
+
+		public ByteBuf getData() {
+			return getBytes(2);
+		}
+	}
+
+	public interface EchoService {
+		EchoMessage echo(EchoMessage request);
+	}
+
+	@Test
+	public void testBuildAndRead() {
+		EchoMessage message = new EchoMessage(new FlatMessageBuilder(3)
+				.addLong(1, 10L)
+				.addString(0, "hello")
+				.addBytes(2, new byte[] {1, 2, 3})
+				.finish());
+		Assert.assertEquals("hello", message.getMessage());
+		Assert.assertEquals(10L, message.getId());
+		Assert.assertEquals(3, message.getData().readableBytes());
+		Assert.assertEquals(2, message.getData().getByte(1));
+
+		EchoMessage empty = new EchoMessage(new FlatMessageBuilder(3).finish());
+		Assert.assertFalse(empty.hasField(0));
+		Assert.assertNull(empty.getMessage());
+		Assert.assertEquals(0L, empty.getId());
+	}
+
+	@Test
+	public void testDecodeView() throws Exception {
+		EchoMessage message = EchoMessage.create("hello", 1L);
+		ByteBuf received = Unpooled.directBuffer();
+		received.writeBytes(message.getBuffer(), 0, message.getBuffer().readableBytes());
+
+		MessageCodec codec = new FlatSerializer().createCodec(EchoMessage.class);
+		EchoMessage decoded = (EchoMessage) codec.decode(received);
+		Assert.assertEquals(0, received.readableBytes());
+		Assert.assertEquals(2, received.refCnt());
+		Assert.assertEquals("hello", decoded.getMessage());
+		Assert.assertEquals(1L, decoded.getId());
+
+		received.release();
+		Assert.assertEquals("hello", decoded.getMessage());
+		decoded.release();
+		Assert.assertEquals(0, received.refCnt());
+	}
+
+	@Test
+	public void testCreateRpcMethodInfo() throws Exception {
+		Method method = EchoService.class.getMethod("echo", EchoMessage.class);
+		RpcMethodInfo rpcMethodInfo = SerializerManager.getInstance().createRpcMethodInfo(method);
+		Assert.assertTrue(rpcMethodInfo instanceof SerializerRpcMethodInfo);
+		Assert.assertEquals(FlatSerializer.NAME,
+				((SerializerRpcMethodInfo) rpcMethodInfo).getSerializer().getName());
+
+		EchoMessage request = EchoMessage.create("hello", 2L);
+		byte[] bytes = rpcMethodInfo.inputEncode(request);
+		Assert.assertEquals(rpcMethodInfo.getInputSerializedSize(request), bytes.length);
+
+		EchoMessage decoded = (EchoMessage) rpcMethodInfo.inputDecode(Unpooled.wrappedBuffer(bytes));
+		Assert.assertEquals("hello", decoded.getMessage());
+		Assert.assertEquals(2L, decoded.getId());
+		decoded.release();
+	}
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.brpc.serialize;
+
+import com.baidu.brpc.RpcMethodInfo;
+import com.baidu.brpc.SerializerRpcMethodInfo;
+import com.baidu.brpc.protocol.BrpcMeta;
+import com.baidu.brpc.protocol.standard.Echo;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+
+public class RawSerializerTest {
+	public interface EchoRelay {
+		@BrpcMeta(serviceName = "example.EchoService", methodName = "Echo")
+		RawMessage echo(RawMessage request);
+	}
+
+	@Test
+	public void testCreateRpcMethodInfo() throws Exception {
+		Method method = EchoRelay.class.getMethod("echo", RawMessage.class);
+		RpcMethodInfo rpcMethodInfo = SerializerManager.getInstance().createRpcMethodInfo(method);
+		Assert.assertTrue(rpcMethodInfo instanceof SerializerRpcMethodInfo);
+		Assert.assertEquals(RawSerializer.NAME,
+				((SerializerRpcMethodInfo) rpcMethodInfo).getSerializer().getName());
+		Assert.assertEquals("example.EchoService", rpcMethodInfo.getServiceName());
+	}
+
+	@Test
+	public void testPassThrough() throws Exception {
+		Method method = EchoRelay.class.getMethod("echo", RawMessage.class);
+		RpcMethodInfo rpcMethodInfo = SerializerManager.getInstance().createRpcMethodInfo(method);
+		byte[] bytes = Echo.EchoRequest.newBuilder().setMessage("hello").build().toByteArray();
+		ByteBuf received = Unpooled.directBuffer();
+		received.writeBytes(bytes);
+
+		RawMessage request = (RawMessage) rpcMethodInfo.inputDecode(received);
+		Assert.assertEquals(0, received.readableBytes());
+		Assert.assertEquals(2, received.refCnt());
+
+		// forwarded to downstream unchanged
+		byte[] forwarded = rpcMethodInfo.inputEncode(request);
+		Assert.assertArrayEquals(bytes, forwarded);
+		Assert.assertEquals(bytes.length, rpcMethodInfo.getInputSerializedSize(request));
+		Assert.assertEquals("hello", Echo.EchoRequest.parseFrom(forwarded).getMessage());
+
+		request.release();
+		received.release();
+		Assert.assertEquals(0, received.refCnt());
+	}
+}
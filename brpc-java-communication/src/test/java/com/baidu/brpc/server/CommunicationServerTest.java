@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.brpc.server;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+public class CommunicationServerTest {
+
+    @Test
+    public void testShutdownDrainsInFlightRequests() throws Exception {
+        RpcServerOptions options = new RpcServerOptions();
+        options.setGracefulShutdownTimeoutMillis(5000);
+        final CommunicationServer server = new CommunicationServer("127.0.0.1", 0, options);
+        server.start();
+        final Socket socket = new Socket("127.0.0.1", server.getPort());
+        server.onRequestReceived();
+
+        final AtomicBoolean listenerClosed = new AtomicBoolean(false);
+        Thread finisher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(200);
+                    listenerClosed.set(!canConnect(server.getPort()));
+                    // accepted connection is still open while draining
+                    assertThat(socket.isClosed(), is(false));
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    server.onRequestFinished();
+                }
+            }
+        });
+        finisher.start();
+
+        long startMillis = System.currentTimeMillis();
+        assertThat(server.shutdown(), is(true));
+        long elapsedMillis = System.currentTimeMillis() - startMillis;
+        finisher.join();
+        assertTrue(elapsedMillis >= 200);
+        assertTrue(elapsedMillis < 5000);
+        assertThat(listenerClosed.get(), is(true));
+        // accepted connection is closed by server after draining
+        assertThat(socket.getInputStream().read(), is(-1));
+        socket.close();
+    }
+
+    @Test
+    public void testShutdownTimeout() {
+        RpcServerOptions options = new RpcServerOptions();
+        options.setGracefulShutdownTimeoutMillis(100);
+        CommunicationServer server = new CommunicationServer("127.0.0.1", 0, options);
+        server.start();
+        server.onRequestReceived();
+
+        long startMillis = System.currentTimeMillis();
+        assertThat(server.shutdown(), is(true));
+        assertTrue(System.currentTimeMillis() - startMillis >= 100);
+        assertThat(server.getInFlightRequestNum().get(), is(1));
+        assertThat(server.shutdown(), is(false));
+    }
+
+    @Test
+    public void testUnregisterGracePeriod() throws Exception {
+        RpcServerOptions options = new RpcServerOptions();
+        options.setUnregisterGracePeriodMillis(300);
+        final AtomicBoolean unregistered = new AtomicBoolean(false);
+        final CommunicationServer server = new CommunicationServer("127.0.0.1", 0, options) {
+            @Override
+            protected void beforeDrain() {
+                unregistered.set(true);
+            }
+        };
+        server.start();
+
+        final AtomicBoolean acceptedInGracePeriod = new AtomicBoolean(false);
+        Thread checker = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(100);
+                    acceptedInGracePeriod.set(unregistered.get() && canConnect(server.getPort()));
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        checker.start();
+
+        long startMillis = System.currentTimeMillis();
+        assertThat(server.shutdown(), is(true));
+        checker.join();
+        assertTrue(System.currentTimeMillis() - startMillis >= 300);
+        assertThat(acceptedInGracePeriod.get(), is(true));
+        assertThat(canConnect(server.getPort()), is(false));
+    }
+
+    private static boolean canConnect(int port) {
+        Socket socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress("127.0.0.1", port), 1000);
+            return true;
+        } catch (IOException ex) {
+            return false;
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException ex) {
+                // ignore
+            }
+        }
+    }
+}
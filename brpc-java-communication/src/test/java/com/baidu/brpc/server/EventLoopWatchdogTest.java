@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.baidu.brpc.server;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import io.netty.channel.DefaultEventLoopGroup;
+import io.netty.channel.EventLoopGroup;
+
+public class EventLoopWatchdogTest {
+
+    @Test
+    public void testStall() throws Exception {
+        EventLoopGroup eventLoopGroup = new DefaultEventLoopGroup(1);
+        try {
+            EventLoopWatchdog watchdog = new EventLoopWatchdog(eventLoopGroup, 100);
+            long now = System.currentTimeMillis();
+            watchdog.check(now);
+            Thread.sleep(50);
+            watchdog.check(now + 200);
+            Thread.sleep(50);
+            assertThat(watchdog.getStallCount(), is(0L));
+
+            final CountDownLatch latch = new CountDownLatch(1);
+            eventLoopGroup.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        latch.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+            watchdog.check(now + 300);
+            watchdog.check(now + 350);
+            assertThat(watchdog.getStallCount(), is(0L));
+            watchdog.check(now + 400);
+            assertThat(watchdog.getStallCount(), is(1L));
+            // one stall is reported only once
+            watchdog.check(now + 500);
+            assertThat(watchdog.getStallCount(), is(1L));
+            latch.countDown();
+        } finally {
+            eventLoopGroup.shutdownGracefully().syncUninterruptibly();
+        }
+    }
+}
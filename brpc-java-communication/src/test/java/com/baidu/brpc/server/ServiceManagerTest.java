@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.brpc.server;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+
+import com.baidu.brpc.RpcMethodInfo;
+import com.baidu.brpc.protocol.standard.Echo;
+import com.baidu.brpc.protocol.standard.EchoService;
+import com.baidu.brpc.protocol.standard.EchoServiceImpl;
+
+public class ServiceManagerTest {
+
+    @Test
+    public void testGetServiceIgnoreCase() {
+        ServiceManager serviceManager = ServiceManager.getInstance();
+        serviceManager.registerService(new EchoServiceImpl(), null);
+        RpcMethodInfo methodInfo = serviceManager.getService("example.EchoService", "Echo");
+        assertThat(methodInfo, notNullValue());
+        assertThat(serviceManager.getService("EXAMPLE.echoservice", "echo"), sameInstance(methodInfo));
+        assertThat(serviceManager.getService("example.EchoService.Echo", ""), nullValue());
+        assertThat(serviceManager.getService("example.EchoService", "Echo2"), nullValue());
+        assertThat(serviceManager.getService(null, "Echo"), nullValue());
+    }
+
+    @Test
+    public void testInvoke() throws Exception {
+        ServiceManager serviceManager = ServiceManager.getInstance();
+        serviceManager.registerService(new EchoServiceImpl(), null);
+        RpcMethodInfo methodInfo = serviceManager.getService("example.EchoService", "Echo");
+        assertThat(methodInfo.getFastMethod(), notNullValue());
+        Echo.EchoRequest request = Echo.EchoRequest.newBuilder().setMessage("hello").build();
+        Echo.EchoResponse response = (Echo.EchoResponse) methodInfo.invoke(
+                methodInfo.getTarget(), new Object[] {request});
+        assertThat(response.getMessage(), is("hello"));
+    }
+
+    @Test
+    public void testNonBlocking() {
+        ServiceManager serviceManager = ServiceManager.getInstance();
+        serviceManager.registerService(new EchoServiceImpl(), null);
+        assertThat(serviceManager.getService("example.EchoService", "Echo").isNonBlocking(), is(false));
+
+        serviceManager.registerService(null, new EchoServiceImpl(), null, true);
+        assertThat(serviceManager.getService("example.EchoService", "Echo").isNonBlocking(), is(true));
+
+        serviceManager.registerService(new NonBlockingEchoServiceImpl(), null);
+        assertThat(serviceManager.getService("example.EchoService", "Echo").isNonBlocking(), is(true));
+    }
+
+    @Test
+    public void testLazyDecode() {
+        ServiceManager serviceManager = ServiceManager.getInstance();
+        serviceManager.registerService(new LazyDecodeEchoServiceImpl(), null);
+        assertThat(serviceManager.getService("example.EchoService", "Echo").isLazyDecode(), is(true));
+
+        serviceManager.registerService(new EchoServiceImpl(), null);
+        assertThat(serviceManager.getService("example.EchoService", "Echo").isLazyDecode(), is(false));
+    }
+
+    @LazyDecode
+    public static class LazyDecodeEchoServiceImpl implements EchoService {
+        @Override
+        public Echo.EchoResponse echo(Echo.EchoRequest request) {
+            return Echo.EchoResponse.newBuilder().setMessage(request.getMessage()).build();
+        }
+    }
+
+    public static class NonBlockingEchoServiceImpl implements EchoService {
+        @NonBlocking
+        @Override
+        public Echo.EchoResponse echo(Echo.EchoRequest request) {
+            return Echo.EchoResponse.newBuilder().setMessage(request.getMessage()).build();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.brpc.server.handler;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.baidu.brpc.ChannelInfo;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+public class BatchResponseWriterTest {
+    private final AtomicInteger flushNum = new AtomicInteger(0);
+    private EmbeddedChannel channel;
+
+    @Before
+    public void before() {
+        channel = new EmbeddedChannel(new ChannelOutboundHandlerAdapter() {
+            @Override
+            public void flush(ChannelHandlerContext ctx) throws Exception {
+                flushNum.incrementAndGet();
+                super.flush(ctx);
+            }
+        });
+        ChannelInfo.getOrCreateServerChannelInfo(channel).setResponseWriter(new BatchResponseWriter(channel));
+    }
+
+    @After
+    public void after() {
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    public void testFlushOncePerBatch() {
+        ChannelFuture[] futures = new ChannelFuture[3];
+        for (int i = 0; i < futures.length; i++) {
+            futures[i] = BatchResponseWriter.writeResponse(channel, Unpooled.buffer(4).writeInt(i));
+        }
+        // nothing is written until event loop drains the queue
+        assertThat(channel.outboundMessages().size(), is(0));
+
+        channel.runPendingTasks();
+        assertThat(flushNum.get(), is(1));
+        for (int i = 0; i < futures.length; i++) {
+            assertThat(futures[i].isSuccess(), is(true));
+            ByteBuf msg = channel.readOutbound();
+            // responses keep the order of writing
+            assertThat(msg.readInt(), is(i));
+            msg.release();
+        }
+    }
+
+    @Test
+    public void testWriteWithoutBatch() {
+        ChannelInfo.getServerChannelInfo(channel).setResponseWriter(null);
+        ChannelFuture future = BatchResponseWriter.writeResponse(channel, Unpooled.buffer(4).writeInt(1));
+        assertThat(future.isSuccess(), is(true));
+        assertThat(flushNum.get(), is(1));
+        assertThat(channel.outboundMessages().size(), is(1));
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.brpc.server.handler;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.baidu.brpc.exceptions.RpcException;
+import com.baidu.brpc.protocol.LazyDecodeProtocol;
+import com.baidu.brpc.protocol.Protocol;
+import com.baidu.brpc.protocol.Request;
+import com.baidu.brpc.protocol.Response;
+import com.baidu.brpc.protocol.RpcRequest;
+import com.baidu.brpc.protocol.RpcResponse;
+import com.baidu.brpc.server.CommunicationServer;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+public class DecodeWorkTaskTest {
+    private EmbeddedChannel channel;
+    private CommunicationServer rpcServer;
+
+    @Before
+    public void before() {
+        channel = new EmbeddedChannel(new ChannelInboundHandlerAdapter());
+        rpcServer = mock(CommunicationServer.class);
+    }
+
+    @After
+    public void after() {
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    public void testRejectWithoutDecodingBody() throws Exception {
+        Protocol protocol = mock(Protocol.class, withSettings().extraInterfaces(LazyDecodeProtocol.class));
+        Object packet = new Object();
+        Request request = new RpcRequest();
+        request.setCorrelationId(1);
+        ByteBuf encodedBody = Unpooled.buffer(8).writeLong(1);
+        request.setEncodedBody(encodedBody);
+        Response response = new RpcResponse();
+        when(protocol.createResponse()).thenReturn(response);
+        when(((LazyDecodeProtocol) protocol).decodeRequestHeader(packet)).thenReturn(request);
+        when(protocol.encodeResponse(any(Request.class), any(Response.class))).thenReturn(Unpooled.buffer(1));
+
+        DecodeWorkTask task = new DecodeWorkTask(rpcServer, packet, protocol, channel.pipeline().firstContext());
+        task.reject(new RpcException(RpcException.SERVICE_EXCEPTION, "work queue of server is full"));
+
+        verify(protocol, never()).decodeRequest(any());
+        verify(protocol).encodeResponse(request, response);
+        assertThat(response.getException(), instanceOf(RpcException.class));
+        assertThat(encodedBody.refCnt(), is(0));
+        verify(rpcServer).onRequestFinished();
+    }
+}
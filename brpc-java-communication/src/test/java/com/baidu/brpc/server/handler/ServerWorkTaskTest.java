@@ -0,0 +1,198 @@
+/*
+ * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.baidu.brpc.server.handler;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.baidu.brpc.RpcContext;
+import com.baidu.brpc.RpcMethodInfo;
+import com.baidu.brpc.exceptions.RpcException;
+import com.baidu.brpc.protocol.Protocol;
+import com.baidu.brpc.protocol.Request;
+import com.baidu.brpc.protocol.Response;
+import com.baidu.brpc.protocol.RpcRequest;
+import com.baidu.brpc.protocol.RpcResponse;
+import com.baidu.brpc.serialize.RawMessage;
+import com.baidu.brpc.serialize.RawSerializer;
+import com.baidu.brpc.server.AsyncResponse;
+import com.baidu.brpc.server.CommunicationServer;
+import com.baidu.brpc.server.RpcServerOptions;
+import com.baidu.brpc.utils.CustomThreadFactory;
+import com.baidu.brpc.utils.ThreadPool;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+public class ServerWorkTaskTest {
+    private EmbeddedChannel channel;
+    private CommunicationServer rpcServer;
+    private Protocol protocol;
+    private Request request;
+    private Response response;
+
+    @Before
+    public void before() throws Exception {
+        channel = new EmbeddedChannel(new ChannelInboundHandlerAdapter());
+        rpcServer = mock(CommunicationServer.class);
+        when(rpcServer.getRpcServerOptions()).thenReturn(new RpcServerOptions());
+        protocol = mock(Protocol.class);
+        when(protocol.encodeResponse(any(Request.class), any(Response.class))).thenReturn(Unpooled.buffer(1));
+        request = new RpcRequest();
+        response = new RpcResponse();
+    }
+
+    @After
+    public void after() {
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    public void testAsyncResponse() throws Exception {
+        final AtomicReference<AsyncResponse<String>> asyncResponse = new AtomicReference<AsyncResponse<String>>();
+        doAnswer(new Answer() {
+            @Override
+            public Object answer(InvocationOnMock invocation) {
+                asyncResponse.set(RpcContext.getContext().<String>startAsync());
+                return null;
+            }
+        }).when(rpcServer).execute(any(Request.class), any(Response.class));
+        ByteBuf attachment = Unpooled.buffer(8).writeLong(1);
+        request.setBinaryAttachment(attachment);
+
+        new ServerWorkTask(rpcServer, protocol, request, response, channel.pipeline().firstContext()).run();
+        assertThat(asyncResponse.get(), notNullValue());
+        assertThat(RpcContext.getContext().getAsyncResponse(), nullValue());
+        verify(protocol, never()).encodeResponse(any(Request.class), any(Response.class));
+        assertThat(attachment.refCnt(), is(1));
+
+        asyncResponse.get().success("hello");
+        verify(protocol).encodeResponse(request, response);
+        assertThat((String) response.getResult(), is("hello"));
+        assertThat(channel.outboundMessages().size(), is(1));
+        assertThat(attachment.refCnt(), is(0));
+    }
+
+    @Test
+    public void testCompleteBeforeReturn() throws Exception {
+        final RuntimeException exception = new RuntimeException("failed");
+        doAnswer(new Answer() {
+            @Override
+            public Object answer(InvocationOnMock invocation) throws Exception {
+                RpcContext.getContext().startAsync().fail(exception);
+                // not sent until service method returns
+                verify(protocol, never()).encodeResponse(any(Request.class), any(Response.class));
+                return null;
+            }
+        }).when(rpcServer).execute(any(Request.class), any(Response.class));
+
+        new ServerWorkTask(rpcServer, protocol, request, response, channel.pipeline().firstContext()).run();
+        verify(protocol).encodeResponse(request, response);
+        assertThat(response.getException(), is((Throwable) exception));
+    }
+
+    @Test
+    public void testQueueDelayExpired() throws Exception {
+        ThreadPool threadPool = new ThreadPool(1, new CustomThreadFactory("test"));
+        threadPool.setMaxQueueDelayMillis(10);
+        RpcMethodInfo rpcMethodInfo = mock(RpcMethodInfo.class);
+        when(rpcMethodInfo.getThreadPool()).thenReturn(threadPool);
+        request.setRpcMethodInfo(rpcMethodInfo);
+
+        ServerWorkTask workTask = new ServerWorkTask(rpcServer, protocol, request, response,
+                channel.pipeline().firstContext());
+        workTask.setSubmitted(true);
+        workTask.setEnqueueNanos(System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(50));
+        workTask.run();
+        verify(rpcServer, never()).execute(any(Request.class), any(Response.class));
+        verify(protocol).encodeResponse(request, response);
+        assertThat(response.getException(), instanceOf(RpcException.class));
+        assertThat(threadPool.getStatInfo().getExpiredTaskNum(), is(1L));
+        assertThat(threadPool.getStatInfo().getQueuedTaskNum(), is(1L));
+        threadPool.stop();
+        threadPool.join();
+    }
+
+    @Test
+    public void testCachedResultNotReleased() throws Exception {
+        final RawMessage cached = new RawMessage(new byte[] {1, 2, 3});
+        returnResult(cached);
+        when(protocol.encodeResponse(any(Request.class), any(Response.class))).thenAnswer(new Answer<ByteBuf>() {
+            @Override
+            public ByteBuf answer(InvocationOnMock invocation) {
+                return Unpooled.buffer(1);
+            }
+        });
+        for (int i = 0; i < 2; i++) {
+            new ServerWorkTask(rpcServer, protocol, new RpcRequest(), new RpcResponse(),
+                    channel.pipeline().firstContext()).run();
+        }
+        verify(protocol, times(2)).encodeResponse(any(Request.class), any(Response.class));
+        assertThat(cached.refCnt(), is(1));
+        assertThat(cached.getBuffer().readableBytes(), is(3));
+    }
+
+    @Test
+    public void testReceivedResultReleased() throws Exception {
+        ByteBuf received = Unpooled.directBuffer().writeBytes(new byte[] {1, 2, 3});
+        RawMessage downstreamResponse = (RawMessage) new RawSerializer()
+                .createCodec(RawMessage.class).decode(received);
+        received.release();
+        returnResult(downstreamResponse);
+
+        new ServerWorkTask(rpcServer, protocol, request, response, channel.pipeline().firstContext()).run();
+        verify(protocol).encodeResponse(request, response);
+        assertThat(downstreamResponse.refCnt(), is(0));
+    }
+
+    private void returnResult(final Object result) {
+        doAnswer(new Answer() {
+            @Override
+            public Object answer(InvocationOnMock invocation) {
+                ((Response) invocation.getArgument(1)).setResult(result);
+                return null;
+            }
+        }).when(rpcServer).execute(any(Request.class), any(Response.class));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testStartAsyncOutOfService() {
+        RpcContext.getContext().startAsync();
+    }
+}
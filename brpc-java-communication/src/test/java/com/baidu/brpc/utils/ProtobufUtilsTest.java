@@ -80,4 +80,32 @@ public class ProtobufUtilsTest {
 		Echo.EchoRequest request1 = (Echo.EchoRequest) ProtobufUtils.parseFrom(compositeByteBuf, defaultInstance);
 		Assert.assertTrue(request1.getMessage().equals(request.getMessage()));
 	}
+
+	@Test
+	public void testParseFromHeapSlice() throws IOException {
+		Echo.EchoRequest request = Echo.EchoRequest.newBuilder().setMessage("hello").build();
+		byte[] bytes = request.toByteArray();
+		ByteBuf buf = Unpooled.buffer(bytes.length + 8);
+		buf.writeLong(0);
+		buf.writeBytes(bytes);
+		buf.readLong();
+		ByteBuf slice = buf.slice();
+		Echo.EchoRequest request1 = (Echo.EchoRequest) ProtobufUtils.parseFrom(slice, request.getDefaultInstanceForType());
+		Assert.assertTrue(request1.getMessage().equals(request.getMessage()));
+		Assert.assertEquals(0, slice.readableBytes());
+
+		ByteBuf direct = Unpooled.directBuffer(bytes.length);
+		direct.writeBytes(bytes);
+		Echo.EchoRequest request2 = (Echo.EchoRequest) ProtobufUtils.parseFrom(direct, request.getDefaultInstanceForType());
+		Assert.assertTrue(request2.getMessage().equals(request.getMessage()));
+		Assert.assertEquals(0, direct.readableBytes());
+		direct.release();
+	}
+
+	@Test
+	public void testGetDefaultInstance() {
+		Message defaultInstance = ProtobufUtils.getDefaultInstance(Echo.EchoRequest.class);
+		Assert.assertSame(Echo.EchoRequest.getDefaultInstance(), defaultInstance);
+		Assert.assertSame(defaultInstance, ProtobufUtils.getDefaultInstance(Echo.EchoRequest.class));
+	}
 }
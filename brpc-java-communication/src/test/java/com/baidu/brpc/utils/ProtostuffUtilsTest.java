@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.brpc.utils;
+
+import com.baidu.brpc.protocol.push.impl.SPBody;
+import com.dyuproject.protostuff.LinkedBuffer;
+import com.dyuproject.protostuff.ProtobufIOUtil;
+import com.dyuproject.protostuff.Schema;
+import com.dyuproject.protostuff.runtime.RuntimeSchema;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+
+public class ProtostuffUtilsTest {
+	private static final Schema<SPBody> SCHEMA = RuntimeSchema.getSchema(SPBody.class);
+
+	@Test
+	public void testSerialize() throws IOException {
+		SPBody spBody = createBody(5000);
+		ByteBuf byteBuf = ProtostuffUtils.serialize(spBody, SCHEMA, 4);
+		try {
+			byte[] expected = ProtobufIOUtil.toByteArray(spBody, SCHEMA, LinkedBuffer.allocate(500));
+			Assert.assertEquals(4 + expected.length, byteBuf.readableBytes());
+			Assert.assertEquals(byteBuf.readableBytes(), byteBuf.capacity());
+			byte[] bytes = new byte[expected.length];
+			byteBuf.getBytes(4, bytes);
+			Assert.assertArrayEquals(expected, bytes);
+		} finally {
+			byteBuf.release();
+		}
+
+		// linked buffer of the thread is cleared and reusable
+		ByteBuf byteBuf2 = ProtostuffUtils.serialize(createBody(10), SCHEMA, 0);
+		SPBody decoded = new SPBody();
+		ProtostuffUtils.deserialize(byteBuf2, decoded, SCHEMA);
+		byteBuf2.release();
+		Assert.assertEquals(createBody(10).getContent(), decoded.getContent());
+	}
+
+	@Test
+	public void testDeserialize() throws IOException {
+		SPBody spBody = createBody(5000);
+		byte[] bytes = ProtobufIOUtil.toByteArray(spBody, SCHEMA, LinkedBuffer.allocate(500));
+
+		// heap buffer with offset
+		ByteBuf heapBuf = Unpooled.buffer(bytes.length + 3);
+		heapBuf.writeBytes(new byte[3]).writeBytes(bytes).skipBytes(3);
+		SPBody decoded = new SPBody();
+		ProtostuffUtils.deserialize(heapBuf, decoded, SCHEMA);
+		Assert.assertEquals(spBody.getServiceName(), decoded.getServiceName());
+		Assert.assertEquals(spBody.getContent(), decoded.getContent());
+		Assert.assertEquals(0, heapBuf.readableBytes());
+
+		// composite buffer has no array
+		CompositeByteBuf compositeBuf = Unpooled.compositeBuffer();
+		compositeBuf.addComponent(true, Unpooled.wrappedBuffer(bytes, 0, 100));
+		compositeBuf.addComponent(true, Unpooled.wrappedBuffer(bytes, 100, bytes.length - 100));
+		decoded = new SPBody();
+		ProtostuffUtils.deserialize(compositeBuf, decoded, SCHEMA);
+		Assert.assertEquals(spBody.getMethodName(), decoded.getMethodName());
+		Assert.assertEquals(spBody.getContent(), decoded.getContent());
+		Assert.assertEquals(0, compositeBuf.readableBytes());
+	}
+
+	private static SPBody createBody(int contentLength) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < contentLength; i++) {
+			sb.append((char) ('a' + i % 26));
+		}
+		SPBody spBody = new SPBody();
+		spBody.setServiceName("EchoService");
+		spBody.setMethodName("echo");
+		spBody.setContent(sb.toString());
+		return spBody;
+	}
+}
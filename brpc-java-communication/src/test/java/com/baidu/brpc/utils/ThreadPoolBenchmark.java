@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.baidu.brpc.utils;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * benchmark of work thread pool and virtual threads for io bound service methods,
+ * every task sleeps like waiting for a downstream service.
+ * run it on jdk 21+ to compare with virtual threads.
+ */
+public class ThreadPoolBenchmark {
+	private static final int THREAD_NUM = Runtime.getRuntime().availableProcessors();
+	private static final int TASK_NUM = 2000;
+	private static final int BLOCK_MILLIS = 10;
+
+	@Test
+	public void testBenchmark() throws Exception {
+		if (!VirtualThreads.isSupported()) {
+			System.out.println("virtual thread is not supported by current jdk");
+			return;
+		}
+		// warm jvm
+		run(ThreadPool.newThreadPool(THREAD_NUM, "bench-platform", false), TASK_NUM / 10);
+		run(ThreadPool.newThreadPool(THREAD_NUM, "bench-virtual", true), TASK_NUM / 10);
+
+		for (int ix = 0; ix < 3; ++ix) {
+			long t1 = run(ThreadPool.newThreadPool(THREAD_NUM, "bench-platform", false), TASK_NUM);
+			long t2 = run(ThreadPool.newThreadPool(THREAD_NUM, "bench-virtual", true), TASK_NUM);
+			System.out.println("platform threads = " + t1 + "ms, virtual threads = " + t2
+					+ "ms, " + ((double) t1) / t2);
+		}
+	}
+
+	/**
+	 * @return milliseconds to finish all tasks
+	 */
+	private long run(ThreadPool threadPool, int taskNum) throws Exception {
+		final CountDownLatch latch = new CountDownLatch(taskNum);
+		Runnable task = new Runnable() {
+			@Override
+			public void run() {
+				try {
+					Thread.sleep(BLOCK_MILLIS);
+				} catch (InterruptedException ex) {
+					// ignore
+				}
+				latch.countDown();
+			}
+		};
+		long t1 = System.currentTimeMillis();
+		for (int i = 0; i < taskNum; i++) {
+			threadPool.submit(task);
+		}
+		latch.await();
+		long t2 = System.currentTimeMillis();
+		threadPool.stop();
+		threadPool.join();
+		return t2 - t1;
+	}
+}
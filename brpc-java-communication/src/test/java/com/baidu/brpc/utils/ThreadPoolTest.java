@@ -21,6 +21,8 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 public class ThreadPoolTest {
@@ -70,4 +72,121 @@ public class ThreadPoolTest {
 		threadPool.join();
 	}
 
+	@Test
+	public void threadPerTask() throws Exception {
+		ThreadPool threadPool = ThreadPool.newThreadPerTaskPool(new CustomThreadFactory("test"), 10);
+		final CountDownLatch started = new CountDownLatch(10);
+		final CountDownLatch finish = new CountDownLatch(1);
+		for (int i = 0; i < 10; ++i) {
+			threadPool.submit(new Runnable() {
+				@Override
+				public void run() {
+					started.countDown();
+					try {
+						finish.await();
+					} catch (InterruptedException ex) {
+						// ignore
+					}
+				}
+			});
+		}
+		// every blocked task has its own thread
+		Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+		Assert.assertEquals(10, threadPool.getStatInfo().getThreadNum());
+		finish.countDown();
+		threadPool.stop();
+		Assert.assertFalse(threadPool.submit(new Runnable() {
+			@Override
+			public void run() {
+			}
+		}));
+	}
+
+	@Test
+	public void threadPerTaskBounded() throws Exception {
+		ThreadPool threadPool = ThreadPool.newThreadPerTaskPool(new CustomThreadFactory("test"), 2);
+		final CountDownLatch started = new CountDownLatch(2);
+		final AtomicInteger interrupted = new AtomicInteger(0);
+		Runnable blockedTask = new Runnable() {
+			@Override
+			public void run() {
+				started.countDown();
+				try {
+					Thread.sleep(60000);
+				} catch (InterruptedException ex) {
+					interrupted.incrementAndGet();
+				}
+			}
+		};
+		Assert.assertTrue(threadPool.trySubmit(blockedTask));
+		Assert.assertTrue(threadPool.trySubmit(blockedTask));
+		Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+		// no more threads than max task num
+		Assert.assertFalse(threadPool.trySubmit(blockedTask));
+		Assert.assertEquals(1, threadPool.getStatInfo().getRejectedTaskNum());
+		Assert.assertEquals(2, threadPool.getStatInfo().getThreadNum());
+
+		// running tasks are interrupted and joined
+		threadPool.stop();
+		Assert.assertEquals(2, interrupted.get());
+		Assert.assertEquals(0, threadPool.getStatInfo().getThreadNum());
+	}
+
+	@Test
+	public void virtualThreadFallback() {
+		ThreadPool threadPool = ThreadPool.newThreadPool(2, "test", true);
+		if (!VirtualThreads.isSupported()) {
+			Assert.assertEquals(2, threadPool.getStatInfo().getThreadNum());
+		}
+		threadPool.stop();
+		threadPool.join();
+	}
+
+	@Test
+	public void trySubmitRejectWhenFull() throws Exception {
+		ThreadPool threadPool = new ThreadPool(1, new CustomThreadFactory("test"), 4);
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch finish = new CountDownLatch(1);
+		Assert.assertTrue(threadPool.trySubmit(new Runnable() {
+			@Override
+			public void run() {
+				started.countDown();
+				try {
+					finish.await();
+				} catch (InterruptedException ex) {
+					// ignore
+				}
+			}
+		}));
+		Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+		Runnable[] tasks = new Runnable[6];
+		for (int i = 0; i < tasks.length; ++i) {
+			tasks[i] = new Runnable() {
+				@Override
+				public void run() {
+				}
+			};
+		}
+		// the only thread is blocked, so queue accepts 4 tasks at most
+		Assert.assertEquals(4, threadPool.trySubmit(tasks, 0, tasks.length));
+		Assert.assertEquals(2, threadPool.getStatInfo().getRejectedTaskNum());
+		finish.countDown();
+		threadPool.stop();
+		threadPool.join();
+	}
+
+	@Test
+	public void queueWaitStat() {
+		ThreadPool threadPool = new ThreadPool(1, new CustomThreadFactory("test"));
+		threadPool.recordQueueWait(TimeUnit.MILLISECONDS.toNanos(1));
+		threadPool.recordQueueWait(TimeUnit.MILLISECONDS.toNanos(3));
+		threadPool.recordExpired();
+		ThreadPool.StatInfo statInfo = threadPool.getStatInfo();
+		Assert.assertEquals(2, statInfo.getQueuedTaskNum());
+		Assert.assertEquals(2000, statInfo.getAvgQueueWaitMicros());
+		Assert.assertEquals(3000, statInfo.getMaxQueueWaitMicros());
+		Assert.assertEquals(1, statInfo.getExpiredTaskNum());
+		threadPool.stop();
+		threadPool.join();
+	}
 }
@@ -17,6 +17,7 @@
 package com.baidu.brpc.client;
 
 import com.baidu.brpc.*;
+import com.baidu.brpc.compress.CompressPolicy;
 import com.baidu.brpc.exceptions.RpcException;
 import com.baidu.brpc.protocol.NamingOptions;
 import com.baidu.brpc.protocol.Protocol;
@@ -26,7 +27,7 @@ import com.baidu.brpc.protocol.nshead.NSHead;
 import com.baidu.brpc.protocol.nshead.NSHeadMeta;
 import com.baidu.brpc.protocol.push.SPHead;
 import com.baidu.brpc.protocol.push.ServerPushProtocol;
-import com.baidu.brpc.utils.ProtobufUtils;
+import com.baidu.brpc.serialize.SerializerManager;
 import lombok.extern.slf4j.Slf4j;
 import net.sf.cglib.proxy.Enhancer;
 import net.sf.cglib.proxy.MethodInterceptor;
@@ -61,6 +62,50 @@ public class BrpcProxy implements MethodInterceptor {
 
     private Map<String, RpcMethodInfo> rpcMethodMap = new HashMap<String, RpcMethodInfo>();
 
+    private Map<String, ProxyMethod> proxyMethodMap = new HashMap<String, ProxyMethod>();
+
+    /**
+     * request fields of a proxied method which are the same for every call,
+     * they are prepared when the proxy is built, so a call does not read the annotations again.
+     */
+    protected static class ProxyMethod {
+        final RpcMethodInfo rpcMethodInfo;
+        final Method targetMethod;
+        final String serviceName;
+        final String methodName;
+        final short nsHeadId;
+        final short nsHeadVersion;
+        final String nsHeadProvider;
+
+        ProxyMethod(RpcMethodInfo rpcMethodInfo) {
+            this.rpcMethodInfo = rpcMethodInfo;
+            this.targetMethod = rpcMethodInfo.getMethod();
+            this.serviceName = rpcMethodInfo.getServiceName();
+            this.methodName = rpcMethodInfo.getMethodName();
+            NSHeadMeta nsHeadMeta = rpcMethodInfo.getNsHeadMeta();
+            NSHead defaultNsHead = new NSHead();
+            this.nsHeadId = nsHeadMeta == null ? defaultNsHead.id : nsHeadMeta.id();
+            this.nsHeadVersion = nsHeadMeta == null ? defaultNsHead.version : nsHeadMeta.version();
+            this.nsHeadProvider = nsHeadMeta == null ? defaultNsHead.provider : nsHeadMeta.provider();
+        }
+
+        /**
+         * nshead is filled by encoder, so every request has its own one.
+         */
+        NSHead createNsHead() {
+            return new NSHead(0, nsHeadId, nsHeadVersion, nsHeadProvider, 0);
+        }
+    }
+
+    /**
+     * proxy which only sends requests, methods are resolved by the caller, such as {@link BrpcStubProxy}.
+     *
+     * @param rpcClient rpc client对象
+     */
+    protected BrpcProxy(RpcClient rpcClient) {
+        this.rpcClient = rpcClient;
+    }
+
     /**
      * 初始化时提前解析好method信息，在rpc交互时会更快。
      *
@@ -71,55 +116,68 @@ public class BrpcProxy implements MethodInterceptor {
         this.rpcClient = rpcClient;
         Method[] methods = clazz.getMethods();
         for (Method method : methods) {
-            if (notProxyMethodSet.contains(method.getName())) {
-                log.debug("{}:{} does not need to proxy",
-                        method.getDeclaringClass().getName(), method.getName());
+            RpcMethodInfo methodInfo = createRpcMethodInfo(method);
+            if (methodInfo == null) {
                 continue;
             }
+            rpcMethodMap.put(method.getName(), methodInfo);
+            proxyMethodMap.put(method.getName(), new ProxyMethod(methodInfo));
+            log.debug("client serviceName={}, methodName={}",
+                    method.getDeclaringClass().getName(), method.getName());
+        }
+    }
 
-            Class[] parameterTypes = method.getParameterTypes();
-            int paramLength = parameterTypes.length;
-            if (paramLength >= 1
-                    && Future.class.isAssignableFrom(method.getReturnType())
-                    && !RpcCallback.class.isAssignableFrom(parameterTypes[paramLength - 1])) {
-                throw new IllegalArgumentException("returnType is Future, but last argument is not RpcCallback");
-            }
+    /**
+     * parse rpc method info of interface method.
+     *
+     * @param method interface method, it can be sync or async
+     * @return rpc method info of the sync method, null if the method need not proxy
+     */
+    protected static RpcMethodInfo createRpcMethodInfo(Method method) {
+        if (!isProxyMethod(method)) {
+            log.debug("{}:{} does not need to proxy",
+                    method.getDeclaringClass().getName(), method.getName());
+            return null;
+        }
 
-            Method syncMethod = method;
-            if (paramLength > 1) {
-                int startIndex = 0;
-                int endIndex = paramLength - 1;
-                // has callback, async rpc
-                if (RpcCallback.class.isAssignableFrom(parameterTypes[paramLength - 1])) {
-                    endIndex--;
-                    paramLength--;
-                }
-                Class[] actualParameterTypes = new Class[paramLength];
-                for (int i = 0; startIndex <= endIndex; i++) {
-                    actualParameterTypes[i] = parameterTypes[startIndex++];
-                }
-                try {
-                    syncMethod = method.getDeclaringClass().getMethod(
-                            method.getName(), actualParameterTypes);
-                } catch (NoSuchMethodException ex) {
-                    throw new IllegalArgumentException("can not find sync method:" + method.getName());
-                }
-            }
+        Class[] parameterTypes = method.getParameterTypes();
+        int paramLength = parameterTypes.length;
+        if (paramLength >= 1
+                && Future.class.isAssignableFrom(method.getReturnType())
+                && !RpcCallback.class.isAssignableFrom(parameterTypes[paramLength - 1])) {
+            throw new IllegalArgumentException("returnType is Future, but last argument is not RpcCallback");
+        }
 
-            RpcMethodInfo methodInfo;
-            ProtobufUtils.MessageType messageType = ProtobufUtils.getMessageType(syncMethod);
-            if (messageType == ProtobufUtils.MessageType.PROTOBUF) {
-                methodInfo = new ProtobufRpcMethodInfo(syncMethod);
-            } else if (messageType == ProtobufUtils.MessageType.JPROTOBUF) {
-                methodInfo = new JprotobufRpcMethodInfo(syncMethod);
-            } else {
-                methodInfo = new RpcMethodInfo(syncMethod);
+        Method syncMethod = method;
+        if (paramLength > 1) {
+            int startIndex = 0;
+            int endIndex = paramLength - 1;
+            // has callback, async rpc
+            if (RpcCallback.class.isAssignableFrom(parameterTypes[paramLength - 1])) {
+                endIndex--;
+                paramLength--;
+            }
+            Class[] actualParameterTypes = new Class[paramLength];
+            for (int i = 0; startIndex <= endIndex; i++) {
+                actualParameterTypes[i] = parameterTypes[startIndex++];
+            }
+            try {
+                syncMethod = method.getDeclaringClass().getMethod(
+                        method.getName(), actualParameterTypes);
+            } catch (NoSuchMethodException ex) {
+                throw new IllegalArgumentException("can not find sync method:" + method.getName());
             }
-
-            rpcMethodMap.put(method.getName(), methodInfo);
-            log.debug("client serviceName={}, methodName={}",
-                    method.getDeclaringClass().getName(), method.getName());
         }
+
+        RpcMethodInfo methodInfo = SerializerManager.getInstance().createRpcMethodInfo(syncMethod);
+        return methodInfo;
+    }
+
+    /**
+     * @return false if the method is a method of Object, which is not sent as rpc
+     */
+    protected static boolean isProxyMethod(Method method) {
+        return !notProxyMethodSet.contains(method.getName());
     }
 
     public static <T> T getProxy(RpcClient rpcClient, Class clazz) {
@@ -150,12 +208,38 @@ public class BrpcProxy implements MethodInterceptor {
     public Object intercept(Object obj, Method method, Object[] args,
                             MethodProxy proxy) throws Throwable {
         String methodName = method.getName();
-        RpcMethodInfo rpcMethodInfo = rpcMethodMap.get(methodName);
-        if (rpcMethodInfo == null) {
+        ProxyMethod proxyMethod = proxyMethodMap.get(methodName);
+        if (proxyMethod == null) {
             log.debug("{}:{} does not need to proxy",
                     method.getDeclaringClass().getName(), methodName);
             return proxy.invokeSuper(obj, args);
         }
+
+        // parse request params
+        RpcCallback callback = null;
+        Object[] sendArgs = args;
+        int argLength = args.length;
+        // 异步调用
+        if (argLength > 1 && args[argLength - 1] instanceof RpcCallback) {
+            callback = (RpcCallback) args[argLength - 1];
+            sendArgs = new Object[argLength - 1];
+            System.arraycopy(args, 0, sendArgs, 0, argLength - 1);
+        }
+        return invokeRpc(obj, proxyMethod, sendArgs, callback);
+    }
+
+    /**
+     * send rpc request and wait response for sync call.
+     *
+     * @param obj      proxy object
+     * @param proxyMethod method info prepared when the proxy is built
+     * @param args     request args without callback
+     * @param callback callback for async call, null for sync call
+     * @return rpc result for sync call, or future for async call
+     */
+    protected Object invokeRpc(Object obj, ProxyMethod proxyMethod, Object[] args,
+                               RpcCallback callback) throws Throwable {
+        RpcMethodInfo rpcMethodInfo = proxyMethod.rpcMethodInfo;
         Request request = null;
         int readTimeout = 10 * 1000;
         int writeTimeout = 10 * 1000;
@@ -168,7 +252,10 @@ public class BrpcProxy implements MethodInterceptor {
             request.setSpHead(spHead);
         }
 
-        request.setCompressType(rpcClient.getRpcClientOptions().getCompressType().getNumber());
+        RpcClientOptions rpcClientOptions = rpcClient.getRpcClientOptions();
+        request.setCompressType(CompressPolicy.selectRequestCompressType(rpcMethodInfo,
+                args != null && args.length > 0 ? args[0] : null,
+                rpcClientOptions.getCompressType().getNumber(), rpcClientOptions.getMinCompressSize()));
         request.setSubscribeInfo(rpcClient.getNamingServiceProcessor().getSubscribeInfo());
         readTimeout = rpcClient.getRpcClientOptions().getReadTimeoutMillis();
         writeTimeout = rpcClient.getRpcClientOptions().getWriteTimeoutMillis();
@@ -176,40 +263,13 @@ public class BrpcProxy implements MethodInterceptor {
         try {
             request.setTarget(obj);
             request.setRpcMethodInfo(rpcMethodInfo);
-            request.setTargetMethod(rpcMethodInfo.getMethod());
-            request.setServiceName(rpcMethodInfo.getServiceName());
-            request.setMethodName(rpcMethodInfo.getMethodName());
-            NSHeadMeta nsHeadMeta = rpcMethodInfo.getNsHeadMeta();
-            NSHead nsHead = nsHeadMeta == null ? new NSHead() : new NSHead(0, nsHeadMeta.id(), nsHeadMeta.version(),
-                    nsHeadMeta.provider(), 0);
-            request.setNsHead(nsHead);
-
-            // parse request params
-            RpcCallback callback = null;
-            int argLength = args.length;
-            if (argLength > 1) {
-                int startIndex = 0;
-                int endIndex = argLength - 1;
-                // 异步调用
-                if (args[endIndex] instanceof RpcCallback) {
-                    callback = (RpcCallback) args[endIndex];
-                    endIndex -= 1;
-                    argLength -= 1;
-                }
-
-                if (argLength <= 0) {
-                    throw new RpcException(RpcException.UNKNOWN_EXCEPTION, "invalid params");
-                }
-
-                Object[] sendArgs = new Object[argLength];
-                for (int i = 0; startIndex <= endIndex; i++) {
-                    sendArgs[i] = args[startIndex++];
-                }
-                request.setArgs(sendArgs);
+            request.setTargetMethod(proxyMethod.targetMethod);
+            request.setServiceName(proxyMethod.serviceName);
+            request.setMethodName(proxyMethod.methodName);
+            request.setNsHead(proxyMethod.createNsHead());
+            request.setArgs(args);
+            if (callback != null) {
                 request.setCallback(callback);
-            } else {
-                // sync call
-                request.setArgs(args);
             }
 
             if (RpcContext.isSet()) {
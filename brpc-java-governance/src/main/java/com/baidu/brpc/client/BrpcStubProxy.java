@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.brpc.client;
+
+import com.baidu.brpc.RpcMethodInfo;
+import com.baidu.brpc.protocol.NamingOptions;
+import lombok.extern.slf4j.Slf4j;
+import net.sf.cglib.proxy.Callback;
+import net.sf.cglib.proxy.CallbackFilter;
+import net.sf.cglib.proxy.Enhancer;
+import net.sf.cglib.proxy.MethodInterceptor;
+import net.sf.cglib.proxy.MethodProxy;
+import net.sf.cglib.proxy.NoOp;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * BrpcStubProxy generates a stub class for each service interface,
+ * every interface method of the stub is bound to its own callback,
+ * which holds the {@link RpcMethodInfo}, request fields and callback position parsed at {@link #getProxy} time.
+ * Compared with {@link BrpcProxy}, calling a method needs no lookup by method name,
+ * and overloaded methods are supported.
+ * Stub classes are cached, so more proxies of the same interface only create new instances.
+ */
+@SuppressWarnings("unchecked")
+@Slf4j
+public class BrpcStubProxy {
+
+    private static final ConcurrentMap<Class, StubClass> stubClassMap = new ConcurrentHashMap<Class, StubClass>();
+
+    private static class StubClass {
+        Class proxyClass;
+        // interface methods, the callback of methods[i] is at index i + 1
+        Method[] methods;
+        // whether methods[i] is sent as rpc, Object methods declared in interface are not
+        boolean[] proxied;
+    }
+
+    private static class MethodIndexFilter implements CallbackFilter {
+        private Map<String, Integer> methodIndexMap = new HashMap<String, Integer>();
+
+        MethodIndexFilter(Method[] methods) {
+            for (int i = 0; i < methods.length; i++) {
+                methodIndexMap.put(methodKey(methods[i]), i + 1);
+            }
+        }
+
+        @Override
+        public int accept(Method method) {
+            Integer index = methodIndexMap.get(methodKey(method));
+            // methods of Object are not proxied
+            return index == null ? 0 : index;
+        }
+
+        private static String methodKey(Method method) {
+            return method.getName() + Arrays.toString(method.getParameterTypes());
+        }
+    }
+
+    private static class StubMethod implements MethodInterceptor {
+        private final BrpcProxy brpcProxy;
+        private final BrpcProxy.ProxyMethod proxyMethod;
+        private final boolean async;
+
+        StubMethod(BrpcProxy brpcProxy, RpcMethodInfo rpcMethodInfo, Method method) {
+            this.brpcProxy = brpcProxy;
+            this.proxyMethod = new BrpcProxy.ProxyMethod(rpcMethodInfo);
+            Class[] parameterTypes = method.getParameterTypes();
+            this.async = parameterTypes.length > 1
+                    && RpcCallback.class.isAssignableFrom(parameterTypes[parameterTypes.length - 1]);
+        }
+
+        @Override
+        public Object intercept(Object obj, Method method, Object[] args, MethodProxy proxy) throws Throwable {
+            if (!async) {
+                return brpcProxy.invokeRpc(obj, proxyMethod, args, null);
+            }
+            int argLength = args.length - 1;
+            Object[] sendArgs = new Object[argLength];
+            System.arraycopy(args, 0, sendArgs, 0, argLength);
+            return brpcProxy.invokeRpc(obj, proxyMethod, sendArgs, (RpcCallback) args[argLength]);
+        }
+    }
+
+    public static <T> T getProxy(RpcClient rpcClient, Class clazz) {
+        return getProxy(rpcClient, clazz, null);
+    }
+
+    public static <T> T getProxy(RpcClient rpcClient, Class clazz, NamingOptions namingOptions) {
+        rpcClient.setServiceInterface(clazz, namingOptions);
+        StubClass stubClass = getOrCreateStubClass(clazz);
+        BrpcProxy brpcProxy = new BrpcProxy(rpcClient);
+        Callback[] callbacks = new Callback[stubClass.methods.length + 1];
+        callbacks[0] = NoOp.INSTANCE;
+        for (int i = 0; i < stubClass.methods.length; i++) {
+            Method method = stubClass.methods[i];
+            if (stubClass.proxied[i]) {
+                callbacks[i + 1] = new StubMethod(brpcProxy, BrpcProxy.createRpcMethodInfo(method), method);
+            } else {
+                callbacks[i + 1] = NoOp.INSTANCE;
+            }
+        }
+        Enhancer.registerCallbacks(stubClass.proxyClass, callbacks);
+        try {
+            return (T) stubClass.proxyClass.newInstance();
+        } catch (Exception ex) {
+            throw new IllegalArgumentException("create stub of " + clazz.getName() + " failed", ex);
+        } finally {
+            Enhancer.registerCallbacks(stubClass.proxyClass, null);
+        }
+    }
+
+    private static StubClass getOrCreateStubClass(Class clazz) {
+        StubClass stubClass = stubClassMap.get(clazz);
+        if (stubClass != null) {
+            return stubClass;
+        }
+        stubClass = new StubClass();
+        stubClass.methods = clazz.getMethods();
+        stubClass.proxied = new boolean[stubClass.methods.length];
+        Class[] callbackTypes = new Class[stubClass.methods.length + 1];
+        callbackTypes[0] = NoOp.class;
+        for (int i = 0; i < stubClass.methods.length; i++) {
+            stubClass.proxied[i] = BrpcProxy.isProxyMethod(stubClass.methods[i]);
+            callbackTypes[i + 1] = stubClass.proxied[i] ? MethodInterceptor.class : NoOp.class;
+        }
+        Enhancer enhancer = new Enhancer();
+        enhancer.setSuperclass(clazz);
+        enhancer.setCallbackFilter(new MethodIndexFilter(stubClass.methods));
+        enhancer.setCallbackTypes(callbackTypes);
+        enhancer.setUseCache(false);
+        stubClass.proxyClass = enhancer.createClass();
+        log.debug("create stub class {} for {}", stubClass.proxyClass.getName(), clazz.getName());
+        StubClass prev = stubClassMap.putIfAbsent(clazz, stubClass);
+        return prev != null ? prev : stubClass;
+    }
+}
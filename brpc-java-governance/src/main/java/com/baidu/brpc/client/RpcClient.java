@@ -26,6 +26,7 @@ import org.apache.commons.lang3.Validate;
 import com.baidu.brpc.CommunicationSpiManager;
 import com.baidu.brpc.GovernanceSpiManager;
 import com.baidu.brpc.client.channel.Endpoint;
+import com.baidu.brpc.compress.ZstdDictionaryManager;
 import com.baidu.brpc.exceptions.RpcException;
 import com.baidu.brpc.interceptor.Interceptor;
 import com.baidu.brpc.loadbalance.LoadBalanceManager;
@@ -219,6 +220,9 @@ public class RpcClient {
         }
 
         initGlobal(rpcClientOptions);
+        if (rpcClientOptions.isZstdDictionaryTraining()) {
+            ZstdDictionaryManager.getInstance().setTrainingEnabled(true);
+        }
         communicationOptions = rpcClientOptions.buildCommunicationOptions(interceptors);
 
         // 负载均衡算法
@@ -19,6 +19,7 @@ package com.baidu.brpc.client;
 import com.baidu.brpc.client.channel.ChannelType;
 import com.baidu.brpc.interceptor.Interceptor;
 import com.baidu.brpc.loadbalance.LoadBalanceStrategy;
+import com.baidu.brpc.protocol.AttachmentStream;
 import com.baidu.brpc.protocol.Options;
 import com.baidu.brpc.protocol.Protocol;
 import com.baidu.brpc.protocol.ProtocolManager;
@@ -44,6 +45,16 @@ public class RpcClientOptions {
     private int readTimeoutMillis = 1000;
     private int writeTimeoutMillis = 1000;
     private ChannelType channelType = ChannelType.POOLED_CONNECTION;
+    // connection num for MULTI_CONNECTION channel type
+    private int multiConnectionNum = 4;
+    // connection select type for MULTI_CONNECTION channel type
+    private int multiConnectionSelectType = BrpcConstants.MULTI_CONNECTION_LEAST_IN_FLIGHT;
+    // max idle connections kept for reuse in SHORT_CONNECTION channel type, 0 means close after each call
+    private int shortConnectionIdleNum = 0;
+    // idle connection of SHORT_CONNECTION channel type is closed after the time
+    private int shortConnectionIdleTimeoutMillis = 5000;
+    // send request data in SYN packet (TCP_FASTOPEN_CONNECT), only works with netty epoll
+    private boolean tcpFastOpenConnect = false;
     private int maxTotalConnections = 8;
     private int minIdleConnections = 8;
     private int maxTryTimes = 3;
@@ -57,6 +68,8 @@ public class RpcClientOptions {
     // fair load balance will not start, just use random load balance strategy
     private float activeInstancesRatioOfFairLoadBalance = 0.5f;
     private int healthyCheckIntervalMillis = 3000;
+    // traffic of a new or recovered instance ramps up linearly in this time, 0 means no warm up
+    private int warmUpMillis = 0;
     private boolean reuseAddr = true;
     private boolean tcpNoDelay = true;
     // so linger
@@ -73,6 +86,8 @@ public class RpcClientOptions {
     private int ioThreadNum = Runtime.getRuntime().availableProcessors();
     // threads used for deserialize rpc response and execute the callback
     private int workThreadNum = Runtime.getRuntime().availableProcessors();
+    // run response callbacks in virtual threads instead of work threads, works on jdk 21+
+    private boolean virtualThread = false;
     /**
      * io event type, netty or jdk
      */
@@ -81,10 +96,23 @@ public class RpcClientOptions {
     private int futureBufferSize = 1000000;
     private String encoding = "utf-8";
     private Options.CompressType compressType = Options.CompressType.COMPRESS_TYPE_NONE;
+    // requests smaller than it are sent uncompressed, 0 means no limit
+    private int minCompressSize = 0;
+    /**
+     * train zstd dictionaries from sampled responses, and negotiate with server to compress responses with them.
+     * see {@link com.baidu.brpc.compress.ZstdDictionaryManager}.
+     */
+    private boolean zstdDictionaryTraining = false;
     private String clientName;
 
     // share worker thread poll and event thread pool between multi RpcClients
     private boolean globalThreadPoolSharing = false;
+    // attachment larger than it is sent to server in chunks, 0 means disabled
+    private int attachmentChunkSize = 0;
+    // bytes of a chunked attachment from server kept before it is subscribed
+    private int attachmentWindowSize = AttachmentStream.DEFAULT_WINDOW_SIZE;
+    // bytes of chunked attachments kept by all streams of one connection
+    private int attachmentConnectionWindowSize = AttachmentStream.DEFAULT_CONNECTION_WINDOW_SIZE;
 
     public RpcClientOptions(RpcClientOptions options) {
         this.copyFrom(options);
@@ -94,11 +122,19 @@ public class RpcClientOptions {
         this.activeInstancesRatioOfFairLoadBalance = another.activeInstancesRatioOfFairLoadBalance;
         this.backlog = another.backlog;
         this.channelType = another.channelType;
+        this.multiConnectionNum = another.multiConnectionNum;
+        this.multiConnectionSelectType = another.multiConnectionSelectType;
+        this.shortConnectionIdleNum = another.shortConnectionIdleNum;
+        this.shortConnectionIdleTimeoutMillis = another.shortConnectionIdleTimeoutMillis;
+        this.tcpFastOpenConnect = another.tcpFastOpenConnect;
         this.compressType = another.compressType;
+        this.minCompressSize = another.minCompressSize;
+        this.zstdDictionaryTraining = another.zstdDictionaryTraining;
         this.connectTimeoutMillis = another.connectTimeoutMillis;
         this.encoding = another.encoding;
         this.futureBufferSize = another.futureBufferSize;
         this.healthyCheckIntervalMillis = another.healthyCheckIntervalMillis;
+        this.warmUpMillis = another.warmUpMillis;
         this.ioThreadNum = another.ioThreadNum;
         this.keepAliveTime = another.keepAliveTime;
         this.latencyWindowSizeOfFairLoadBalance = another.latencyWindowSizeOfFairLoadBalance;
@@ -115,19 +151,30 @@ public class RpcClientOptions {
         this.tcpNoDelay = another.tcpNoDelay;
         this.timeBetweenEvictionRunsMillis = another.timeBetweenEvictionRunsMillis;
         this.workThreadNum = another.workThreadNum;
+        this.virtualThread = another.virtualThread;
         this.writeTimeoutMillis = another.writeTimeoutMillis;
         this.clientName = another.clientName;
         this.globalThreadPoolSharing = another.globalThreadPoolSharing;
+        this.attachmentChunkSize = another.attachmentChunkSize;
+        this.attachmentWindowSize = another.attachmentWindowSize;
+        this.attachmentConnectionWindowSize = another.attachmentConnectionWindowSize;
     }
 
     public CommunicationOptions buildCommunicationOptions(List<Interceptor> interceptors) {
         CommunicationOptions.CommunicationOptionsBuilder builder = CommunicationOptions.builder()
                 .backlog(backlog)
                 .channelType(channelType)
+                .multiConnectionNum(multiConnectionNum)
+                .multiConnectionSelectType(multiConnectionSelectType)
+                .shortConnectionIdleNum(shortConnectionIdleNum)
+                .shortConnectionIdleTimeoutMillis(shortConnectionIdleTimeoutMillis)
+                .tcpFastOpenConnect(tcpFastOpenConnect)
                 .compressType(compressType)
+                .minCompressSize(minCompressSize)
                 .connectTimeoutMillis(connectTimeoutMillis)
                 .encoding(encoding)
                 .healthyCheckIntervalMillis(healthyCheckIntervalMillis)
+                .warmUpMillis(warmUpMillis)
                 .ioThreadNum(ioThreadNum)
                 .keepAliveTime(keepAliveTime)
                 .maxTotalConnections(maxTotalConnections)
@@ -141,14 +188,20 @@ public class RpcClientOptions {
                 .tcpNoDelay(tcpNoDelay)
                 .timeBetweenEvictionRunsMillis(timeBetweenEvictionRunsMillis)
                 .workThreadNum(workThreadNum)
+                .virtualThread(virtualThread)
                 .writeTimeoutMillis(writeTimeoutMillis)
                 .clientName(clientName)
                 .globalThreadPoolSharing(globalThreadPoolSharing)
+                .attachmentChunkSize(attachmentChunkSize)
+                .attachmentWindowSize(attachmentWindowSize)
+                .attachmentConnectionWindowSize(attachmentConnectionWindowSize)
                 .latencyWindowSizeOfFairLoadBalance(latencyWindowSizeOfFairLoadBalance);
         // protocol
         Protocol protocol = ProtocolManager.getInstance().getProtocol(protocolType);
-        if (!protocol.returnChannelBeforeResponse() && channelType == ChannelType.SINGLE_CONNECTION) {
-            String errorString = "it can't use SINGLE_CONNECTION when protocol returns channel before response";
+        if (!protocol.returnChannelBeforeResponse()
+                && (channelType == ChannelType.SINGLE_CONNECTION || channelType == ChannelType.MULTI_CONNECTION)) {
+            String errorString = "it can't use " + channelType.getName()
+                    + " when protocol returns channel after response";
             log.error(errorString);
             throw new IllegalArgumentException(errorString);
         }
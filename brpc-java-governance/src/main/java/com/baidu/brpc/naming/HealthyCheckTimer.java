@@ -63,7 +63,7 @@ public class HealthyCheckTimer implements TimerTask {
             while (iter.hasNext()) {
                 CommunicationClient instance = iter.next();
                 boolean isHealthy = isInstanceHealthy(instance);
-                if (isHealthy) {
+                if (!isHealthy) {
                     // healthy change to be unhealthy
                     newUnhealthyInstances.add(instance);
                 }
@@ -76,9 +76,14 @@ public class HealthyCheckTimer implements TimerTask {
                     instanceProcessor.getUnhealthyInstances().addAll(newUnhealthyInstances);
                 }
 
-                if (newHealthyInstances.size() > 0) {
-                    instanceProcessor.getHealthyInstances().addAll(newHealthyInstances);
-                    instanceProcessor.getUnhealthyInstances().removeAll(newHealthyInstances);
+                long currentTimeMillis = System.currentTimeMillis();
+                for (CommunicationClient instance : newHealthyInstances) {
+                    // the instance may be deleted during checking
+                    if (instanceProcessor.getUnhealthyInstances().remove(instance)) {
+                        // recovered instance warms up again
+                        instance.setReadyTimeMillis(currentTimeMillis);
+                        instanceProcessor.getHealthyInstances().add(instance);
+                    }
                 }
             } finally {
                 instanceProcessor.getLock().unlock();
@@ -9,6 +9,11 @@ import com.baidu.brpc.client.channel.ServiceInstance;
 import com.baidu.brpc.protocol.NamingOptions;
 import com.baidu.brpc.protocol.SubscribeInfo;
 import com.baidu.brpc.thread.BrpcThreadPoolManager;
+import com.baidu.brpc.thread.TimerInstance;
+import io.netty.util.Timeout;
+import io.netty.util.TimerTask;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.GenericFutureListener;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
@@ -16,13 +21,16 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Random;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
 @Slf4j
 @Getter
 public class NamingServiceProcessor {
+    private static final int DRAIN_CHECK_INTERVAL_MILLIS = 50;
     private NamingService namingService;
     private Class serviceInterface;
     private SubscribeInfo subscribeInfo;
@@ -32,6 +40,10 @@ public class NamingServiceProcessor {
             = new CopyOnWriteArrayList<CommunicationClient>();
     private CopyOnWriteArrayList<CommunicationClient> unhealthyInstances
             = new CopyOnWriteArrayList<CommunicationClient>();
+    // new instances whose connections are not ready, they are only selected when no other instance exists
+    private CopyOnWriteArrayList<CommunicationClient> connectingInstances
+            = new CopyOnWriteArrayList<CommunicationClient>();
+    private Random random = new Random();
     private Lock lock = new ReentrantLock();
     private HealthyCheckTimer healthyCheckTimer;
     private CommunicationOptions communicationOptions;
@@ -108,9 +120,17 @@ public class NamingServiceProcessor {
         try {
             if (!allInstances.contains(instance)) {
                 allInstances.add(instance);
-                CommunicationClient communicationClient = new InterceptCommunicationClient(
+                final CommunicationClient communicationClient = new InterceptCommunicationClient(
                         instance, communicationOptions, communicationOptions.getInterceptors());
-                healthyInstances.add(communicationClient);
+                // connect in background, the instance is added to load balance when connected
+                connectingInstances.add(communicationClient);
+                communicationClient.getBrpcChannel().prepareConnections().addListener(
+                        new GenericFutureListener<Future<Void>>() {
+                            @Override
+                            public void operationComplete(Future<Void> future) {
+                                onInstanceConnected(communicationClient, future.isSuccess());
+                            }
+                        });
             } else {
                 log.debug("service instance already exist, {}:{}", instance.getIp(), instance.getPort());
             }
@@ -119,6 +139,25 @@ public class NamingServiceProcessor {
         }
     }
 
+    private void onInstanceConnected(CommunicationClient communicationClient, boolean success) {
+        lock.lock();
+        try {
+            // the instance may be deleted when connecting
+            if (!connectingInstances.remove(communicationClient)) {
+                return;
+            }
+            if (success) {
+                communicationClient.setReadyTimeMillis(System.currentTimeMillis());
+                healthyInstances.add(communicationClient);
+            } else {
+                log.info("connect to instance {} failed", communicationClient.getServiceInstance());
+                unhealthyInstances.add(communicationClient);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
     public void deleteInstances(Collection<ServiceInstance> instances) {
         List<CommunicationClient> removedClients = new ArrayList<CommunicationClient>();
         for (ServiceInstance instance : instances) {
@@ -128,15 +167,26 @@ public class NamingServiceProcessor {
             }
         }
 
-        // close the channel pool after 1 second, so that request can be finished
-        try {
-            Thread.sleep(1000);
-        } catch (InterruptedException ex) {
-            log.warn("InterruptedException:", ex);
-        }
+        // close the channel pool after in-flight requests are finished,
+        // without blocking the notify thread of naming service
+        long deadline = System.currentTimeMillis() + communicationOptions.getReadTimeoutMillis();
         for (CommunicationClient communicationClient : removedClients) {
+            stopAfterDrained(communicationClient, deadline);
+        }
+    }
+
+    private void stopAfterDrained(final CommunicationClient communicationClient, final long deadline) {
+        if (communicationClient.getBrpcChannel().getInFlightNum() <= 0
+                || System.currentTimeMillis() >= deadline) {
             communicationClient.stop();
+            return;
         }
+        TimerInstance.getInstance().newTimeout(new TimerTask() {
+            @Override
+            public void run(Timeout timeout) {
+                stopAfterDrained(communicationClient, deadline);
+            }
+        }, DRAIN_CHECK_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
     }
 
     public CommunicationClient deleteInstance(ServiceInstance instance) {
@@ -147,9 +197,12 @@ public class NamingServiceProcessor {
                 if (communicationClient == null) {
                     communicationClient = deleteInstance(unhealthyInstances, instance);
                 }
+                if (communicationClient == null) {
+                    communicationClient = deleteInstance(connectingInstances, instance);
+                }
                 if (communicationClient == null) {
                     log.warn("instance {} exist in allInstances, " +
-                            "but not in healthyInstances and unhealthyInstances", instance);
+                            "but not in healthyInstances, unhealthyInstances and connectingInstances", instance);
                 }
                 return communicationClient;
             }
@@ -162,11 +215,35 @@ public class NamingServiceProcessor {
     }
 
     public List<CommunicationClient> getInstances() {
-        List<CommunicationClient> instances = new ArrayList<CommunicationClient>();
         if (healthyInstances.size() > 0) {
-            instances.addAll(healthyInstances);
-        } else {
-            instances.addAll(unhealthyInstances);
+            return getWarmedUpInstances(healthyInstances);
+        }
+        List<CommunicationClient> instances = new ArrayList<CommunicationClient>();
+        instances.addAll(unhealthyInstances);
+        instances.addAll(connectingInstances);
+        return instances;
+    }
+
+    /**
+     * instances in warm up are kept with probability of elapsed / warmUpMillis,
+     * so their traffic ramps up linearly instead of receiving full share at once.
+     */
+    private List<CommunicationClient> getWarmedUpInstances(List<CommunicationClient> candidates) {
+        List<CommunicationClient> instances = new ArrayList<CommunicationClient>(candidates.size());
+        int warmUpMillis = communicationOptions.getWarmUpMillis();
+        if (warmUpMillis <= 0) {
+            instances.addAll(candidates);
+            return instances;
+        }
+        long currentTimeMillis = System.currentTimeMillis();
+        for (CommunicationClient instance : candidates) {
+            long elapsed = currentTimeMillis - instance.getReadyTimeMillis();
+            if (elapsed >= warmUpMillis || random.nextInt(warmUpMillis) < elapsed) {
+                instances.add(instance);
+            }
+        }
+        if (instances.isEmpty()) {
+            instances.addAll(candidates);
         }
         return instances;
     }
@@ -185,6 +262,9 @@ public class NamingServiceProcessor {
         for (CommunicationClient client : unhealthyInstances) {
             client.stop();
         }
+        for (CommunicationClient client : connectingInstances) {
+            client.stop();
+        }
         if (!communicationOptions.isGlobalThreadPoolSharing()) {
             BrpcThreadPoolManager threadPoolManager = BrpcThreadPoolManager.getInstance();
             threadPoolManager.stopServiceThreadPool(subscribeInfo.getServiceId());
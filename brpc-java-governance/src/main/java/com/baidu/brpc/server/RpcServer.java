@@ -110,17 +110,18 @@ public class RpcServer extends InterceptCommunicationServer {
         }
     }
 
-    public boolean shutdown() {
-        if (super.shutdown()) {
-            if (namingService != null) {
-                for (RegisterInfo registerInfo : registerInfoList) {
-                    namingService.unregister(registerInfo);
-                }
-                namingService.destroy();
+    /**
+     * unregister from naming service before draining requests,
+     * so clients remove this server and stop sending new requests.
+     */
+    @Override
+    protected void beforeDrain() {
+        if (namingService != null) {
+            for (RegisterInfo registerInfo : registerInfoList) {
+                namingService.unregister(registerInfo);
             }
-            return true;
+            namingService.destroy();
         }
-        return false;
     }
 
     public boolean isShutdown() {
@@ -17,9 +17,13 @@
 package com.baidu.brpc.client;
 
 import com.baidu.brpc.RpcOptionsUtils;
+import com.baidu.brpc.protocol.BrpcMeta;
 import com.baidu.brpc.protocol.Options;
+import com.baidu.brpc.protocol.jprotobuf.EchoRequest;
+import com.baidu.brpc.protocol.jprotobuf.EchoResponse;
 import com.baidu.brpc.protocol.standard.Echo;
 import com.baidu.brpc.protocol.standard.EchoService;
+import com.baidu.brpc.protocol.standard.EchoServiceAsync;
 import com.baidu.brpc.protocol.standard.EchoServiceImpl;
 import com.baidu.brpc.server.RpcServer;
 import com.baidu.brpc.server.RpcServerOptions;
@@ -27,10 +31,20 @@ import com.baidu.brpc.server.ServiceManager;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.concurrent.Future;
+
 import static org.junit.Assert.assertEquals;
 
 public class RpcLongConnectionClientTest {
 
+	public interface OverloadEchoService {
+		@BrpcMeta(serviceName = "example.EchoService", methodName = "Echo")
+		Echo.EchoResponse echo(Echo.EchoRequest request);
+
+		@BrpcMeta(serviceName = "example.EchoService", methodName = "Echo")
+		EchoResponse echo(EchoRequest request);
+	}
+
 	@Before
 	public void init() {
 		if (ServiceManager.getInstance() != null) {
@@ -55,6 +69,62 @@ public class RpcLongConnectionClientTest {
 		rpcServer.shutdown();
 	}
 
+	@Test
+	public void testStubProxy() throws Exception {
+		RpcServer rpcServer = new RpcServer(8000, RpcOptionsUtils.getRpcServerOptions());
+		rpcServer.registerService(new EchoServiceImpl());
+		rpcServer.start();
+
+		RpcClient rpcClient = new RpcClient("list://127.0.0.1:8000",
+				RpcOptionsUtils.getRpcClientOptions());
+		EchoServiceAsync echoService = BrpcStubProxy.getProxy(rpcClient, EchoServiceAsync.class);
+		Echo.EchoRequest request = Echo.EchoRequest.newBuilder().setMessage("hello").build();
+		Echo.EchoResponse response = echoService.echo(request);
+		assertEquals("hello", response.getMessage());
+		Future<Echo.EchoResponse> future = echoService.echo(request, new RpcCallback<Echo.EchoResponse>() {
+			@Override
+			public void success(Echo.EchoResponse response) {
+			}
+
+			@Override
+			public void fail(Throwable e) {
+			}
+		});
+		assertEquals("hello", future.get().getMessage());
+		// stub class is cached
+		RpcClient rpcClient2 = new RpcClient("list://127.0.0.1:8000",
+				RpcOptionsUtils.getRpcClientOptions());
+		EchoServiceAsync echoService2 = BrpcStubProxy.getProxy(rpcClient2, EchoServiceAsync.class);
+		assertEquals(echoService.getClass(), echoService2.getClass());
+		assertEquals("hello", echoService2.echo(request).getMessage());
+		rpcClient2.stop();
+		rpcClient.stop();
+
+		rpcServer.shutdown();
+	}
+
+	@Test
+	public void testStubProxyOverload() {
+		RpcServer rpcServer = new RpcServer(8000, RpcOptionsUtils.getRpcServerOptions());
+		rpcServer.registerService(new EchoServiceImpl());
+		rpcServer.start();
+
+		RpcClient rpcClient = new RpcClient("list://127.0.0.1:8000",
+				RpcOptionsUtils.getRpcClientOptions());
+		OverloadEchoService echoService = BrpcStubProxy.getProxy(rpcClient, OverloadEchoService.class);
+		// each overload decodes its own response type
+		Echo.EchoResponse protoResponse = echoService.echo(
+				Echo.EchoRequest.newBuilder().setMessage("proto").build());
+		assertEquals("proto", protoResponse.getMessage());
+		EchoRequest request = new EchoRequest();
+		request.setMessage("jprotobuf");
+		EchoResponse response = echoService.echo(request);
+		assertEquals("jprotobuf", response.getMessage());
+		rpcClient.stop();
+
+		rpcServer.shutdown();
+	}
+
 	@Test
 	public void testHttpProto() {
 		RpcServerOptions serverOptions = RpcOptionsUtils.getRpcServerOptions();
@@ -18,11 +18,14 @@ package com.baidu.brpc.client;
 
 import com.baidu.brpc.RpcMethodInfo;
 import com.baidu.brpc.RpcOptionsUtils;
+import com.baidu.brpc.protocol.nshead.NSHead;
+import com.baidu.brpc.protocol.standard.Echo;
 import com.baidu.brpc.protocol.standard.EchoService;
 import org.junit.Assert;
 import org.junit.Test;
 
 import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
 import java.util.Map;
 
 public class RpcProxyTest {
@@ -53,4 +56,16 @@ public class RpcProxyTest {
 		RpcMethodInfo rpcMethodInfo = methodInfoMap.entrySet().iterator().next().getValue();
 		Assert.assertTrue(rpcMethodInfo != null);
 	}
+
+	@Test
+	public void testProxyMethod() throws Exception {
+		Method method = EchoService.class.getMethod("echo", Echo.EchoRequest.class);
+		BrpcProxy.ProxyMethod proxyMethod = new BrpcProxy.ProxyMethod(BrpcProxy.createRpcMethodInfo(method));
+		Assert.assertEquals("example.EchoService", proxyMethod.serviceName);
+		Assert.assertEquals("Echo", proxyMethod.methodName);
+		NSHead nsHead = proxyMethod.createNsHead();
+		Assert.assertEquals(new NSHead(0, (short) 0, (short) 1, "", 0), nsHead);
+		// nshead is modified by encoder, so it is not shared between requests
+		Assert.assertNotSame(nsHead, proxyMethod.createNsHead());
+	}
 }